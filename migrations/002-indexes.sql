@@ -0,0 +1,16 @@
+-- Indexes for the link table lookups and title searches. The link indexes include both columns so that the
+-- lookups by book or by tag are answered from the index alone.
+
+-- A book can only be tagged once with the same tag, keep the oldest link of any duplicates.
+DELETE FROM books_tags_link
+  WHERE id NOT IN (SELECT MIN(id) FROM books_tags_link GROUP BY book_id, tag_id);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uq_books_tags_link ON books_tags_link (book_id, tag_id);
+
+CREATE INDEX IF NOT EXISTS ix_books_tags_link_tid ON books_tags_link (tag_id, book_id);
+
+CREATE INDEX IF NOT EXISTS ix_books_authors_link_bid ON books_authors_link (book_id, author_id);
+
+CREATE INDEX IF NOT EXISTS ix_books_authors_link_aid ON books_authors_link (author_id, book_id);
+
+CREATE INDEX IF NOT EXISTS ix_books_title ON books (title);
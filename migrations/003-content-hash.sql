@@ -0,0 +1,6 @@
+-- SHA-256 of each book file, so that copies of a file are recognised whatever they are named or titled. Books added
+-- before this have no hash until a file with the same title is imported and theirs is computed for comparison.
+
+ALTER TABLE books ADD COLUMN content_hash TEXT;
+
+CREATE INDEX IF NOT EXISTS ix_books_content_hash ON books (content_hash);
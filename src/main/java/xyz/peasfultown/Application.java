@@ -1,5 +1,7 @@
 package xyz.peasfultown;
 
+import xyz.peasfultown.dao.DAOException;
+import xyz.peasfultown.helpers.ConnectionFactory;
 import xyz.peasfultown.interfaces.JebmanGUI;
 import xyz.peasfultown.interfaces.JebmanPrompt;
 import xyz.peasfultown.interfaces.Prompter;
@@ -11,6 +13,7 @@ public class Application {
     private static MainController mc;
 
     public static void main(String[] args) {
+        ApplicationConfig.loadSettingsFromConfigFile();
 
         int argi = 0;
         while (argi < args.length) {
@@ -44,6 +47,8 @@ public class Application {
             System.err.format("Unable to run database creation script: %s%n", e.getMessage());
             System.exit(-1);
         }
+        // Book changes are written in the background, also save them if the program is interrupted
+        Runtime.getRuntime().addShutdownHook(new Thread(Application::closeController));
 
         if (gui) {
             JebmanGUI.run(mc);
@@ -51,6 +56,17 @@ public class Application {
             JebmanPrompt prompt = new JebmanPrompt(new Prompter(System.in, System.out), mc);
             prompt.run();
         }
+
+        closeController();
+        ConnectionFactory.closeAll();
+    }
+
+    private static void closeController() {
+        try {
+            mc.close();
+        } catch (DAOException e) {
+            System.err.format("Failed to save book changes: %s%n", e.getMessage());
+        }
     }
 
     private static void usage() {
@@ -6,18 +6,45 @@ import org.apache.commons.configuration2.PropertiesConfiguration;
 import org.apache.commons.configuration2.builder.FileBasedConfigurationBuilder;
 import org.apache.commons.configuration2.builder.fluent.Parameters;
 import org.apache.commons.configuration2.ex.ConfigurationException;
+import org.sqlite.SQLiteConfig;
+import xyz.peasfultown.helpers.IngestMode;
 
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Locale;
 
 public class ApplicationConfig {
     public static final String SQLITE_JDBC_PREFIX = "jdbc:sqlite:";
     public static String CONNECTION_STRING;
     public static Path MAIN_PATH;
+    public static boolean CONNECTION_POOL_ENABLED = true;
+    public static int CONNECTION_POOL_MAX_READERS = 4;
+    public static int IMPORT_BATCH_SIZE = 500;
+    public static int IMPORT_THREADS = Runtime.getRuntime().availableProcessors();
+    public static int SEARCH_RESULT_LIMIT = 500;
+    public static boolean LAZY_LOADING = false;
+    public static int BOOK_CACHE_SIZE = 2000;
+    public static boolean THUMBNAILS_WITH_IMAGEMAGICK = false;
+    // Milliseconds an edited book may wait before it is written to the database, 0 writes it right away
+    public static long BOOK_UPDATE_FLUSH_DELAY = 500;
+    public static IngestMode INGEST_MODE = IngestMode.COPY;
+    // Read every imported book back from the library and compare it to the hash taken before the import
+    public static boolean VERIFY_INGEST = false;
+    // SQLite settings applied to every connection, see loadSettingsFromConfigFile(). The defaults suit one
+    // writer and several readers: with the write-ahead log readers keep reading while an import writes.
+    public static SQLiteConfig.JournalMode SQLITE_JOURNAL_MODE = SQLiteConfig.JournalMode.WAL;
+    // NORMAL only syncs at checkpoints in WAL mode, a power loss can undo the last commits but not corrupt the file
+    public static SQLiteConfig.SynchronousMode SQLITE_SYNCHRONOUS = SQLiteConfig.SynchronousMode.NORMAL;
+    // Page cache of each connection, negative values are in KiB
+    public static int SQLITE_CACHE_SIZE = -8192;
+    public static long SQLITE_MMAP_SIZE = 256L * 1024 * 1024;
+    public static SQLiteConfig.TempStore SQLITE_TEMP_STORE = SQLiteConfig.TempStore.MEMORY;
+    public static int SQLITE_BUSY_TIMEOUT = 5000;
 
     static {
         MAIN_PATH = Path.of(ApplicationDefaults.MAIN_PATH);
+        setConnectionString(MAIN_PATH);
     }
 
     /**
@@ -91,6 +118,64 @@ public class ApplicationConfig {
         }
     }
 
+    public static void loadSettingsFromConfigFile() {
+        loadSettingsFromConfigFile(ApplicationDefaults.PROPERTIES_FILE_NAME);
+    }
+
+    /**
+     * Read the library and SQLite settings from a properties file, settings missing from it keep their current value:
+     * <ul>
+     *     <li>{@code library.lazyLoading}: true to read books from the database as they are needed instead of loading
+     *     every book on startup;</li>
+     *     <li>{@code library.bookCacheSize}: books kept in memory with lazy loading;</li>
+     *     <li>{@code thumbnails.imageMagick}: true to render thumbnails with ImageMagick instead of inside the JVM;</li>
+     *     <li>{@code ingest.mode}: COPY, HARD_LINK, REFLINK or MOVE, how imported books get into the library, see
+     *     {@link IngestMode};</li>
+     *     <li>{@code ingest.verify}: true to read every imported book back and compare it to its hash;</li>
+     *     <li>{@code db.journalMode}: DELETE, TRUNCATE, PERSIST, MEMORY, WAL or OFF;</li>
+     *     <li>{@code db.synchronous}: OFF, NORMAL or FULL;</li>
+     *     <li>{@code db.cacheSize}: pages, or KiB if negative, of each connection's cache;</li>
+     *     <li>{@code db.mmapSize}: bytes of the database file to memory map, 0 to read it instead;</li>
+     *     <li>{@code db.tempStore}: DEFAULT, FILE or MEMORY;</li>
+     *     <li>{@code db.busyTimeout}: milliseconds to wait for a lock before failing.</li>
+     * </ul>
+     * They take effect on connections opened afterwards, see {@link xyz.peasfultown.helpers.ConnectionFactory#closeAll()}.
+     */
+    static void loadSettingsFromConfigFile(String fileName) {
+        Parameters params = new Parameters();
+        FileBasedConfigurationBuilder<FileBasedConfiguration> builder =
+                new FileBasedConfigurationBuilder<FileBasedConfiguration>(PropertiesConfiguration.class)
+                        .configure(params.properties().setFileName(fileName));
+        try {
+            Configuration config = builder.getConfiguration();
+            LAZY_LOADING = config.getBoolean("library.lazyLoading", LAZY_LOADING);
+            BOOK_CACHE_SIZE = config.getInt("library.bookCacheSize", BOOK_CACHE_SIZE);
+            THUMBNAILS_WITH_IMAGEMAGICK = config.getBoolean("thumbnails.imageMagick", THUMBNAILS_WITH_IMAGEMAGICK);
+            INGEST_MODE = getEnum(config, "ingest.mode", INGEST_MODE);
+            VERIFY_INGEST = config.getBoolean("ingest.verify", VERIFY_INGEST);
+            SQLITE_JOURNAL_MODE = getEnum(config, "db.journalMode", SQLITE_JOURNAL_MODE);
+            SQLITE_SYNCHRONOUS = getEnum(config, "db.synchronous", SQLITE_SYNCHRONOUS);
+            SQLITE_TEMP_STORE = getEnum(config, "db.tempStore", SQLITE_TEMP_STORE);
+            SQLITE_CACHE_SIZE = config.getInt("db.cacheSize", SQLITE_CACHE_SIZE);
+            SQLITE_MMAP_SIZE = config.getLong("db.mmapSize", SQLITE_MMAP_SIZE);
+            SQLITE_BUSY_TIMEOUT = config.getInt("db.busyTimeout", SQLITE_BUSY_TIMEOUT);
+        } catch (ConfigurationException | RuntimeException e) {
+            System.err.format("Failed to read settings from application properties, keep defaults: %s%n", e);
+        }
+    }
+
+    private static <E extends Enum<E>> E getEnum(Configuration config, String key, E current) {
+        String value = config.getString(key);
+        if (value == null)
+            return current;
+        try {
+            return Enum.valueOf(current.getDeclaringClass(), value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.format("Unknown value %s for %s, keep %s%n", value, key, current);
+            return current;
+        }
+    }
+
     /**
      * Set all variables to defaults for application.
      */
@@ -0,0 +1,223 @@
+package xyz.peasfultown;
+
+import xyz.peasfultown.dao.DAOException;
+import xyz.peasfultown.domain.Book;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Edited books waiting to be written to the database (write-behind). An edit is appended to a lock-free queue and
+ * returns at once, a background thread writes the edits appended within the flush delay in one batched transaction.
+ * A book edited several times before it is written is written once, as it was last appended. The journal keeps a copy
+ * of the book taken when it is appended, later changes to the book are written when it is appended again.
+ * <p>
+ * A batch that fails is written again one book at a time, so that a book that cannot be written, e.g. because another
+ * program removed it, does not hold back the others. Books that still fail stay in the journal for the next flushes
+ * and are given up after {@link #MAX_WRITE_ATTEMPTS}. {@link #close()} writes whatever is left, so that nothing is lost
+ * on shutdown.
+ */
+class BookUpdateJournal {
+    interface Writer {
+        void write(Collection<Book> books) throws DAOException;
+    }
+
+    static final int MAX_WRITE_ATTEMPTS = 3;
+
+    private static final class Entry {
+        final long seq;
+        final Book book;
+        final int failedWrites;
+
+        Entry(long seq, Book book, int failedWrites) {
+            this.seq = seq;
+            this.book = book;
+            this.failedWrites = failedWrites;
+        }
+    }
+
+    private final ConcurrentLinkedQueue<Entry> entries = new ConcurrentLinkedQueue<>();
+    // Orders the edits of a book, an edit put back after a failed flush must not win over a newer one
+    private final AtomicLong seq = new AtomicLong();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final long flushDelayMillis;
+    private final Writer writer;
+    // Held while draining and writing, so that edits are written in order and discarded edits are not being written
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ScheduledThreadPoolExecutor flusher;
+    private volatile boolean closed;
+
+    /**
+     * @param flushDelayMillis how long an edit may wait before it is written, 0 writes every edit as it is appended.
+     * @param writer           writes a batch of books in one transaction.
+     */
+    BookUpdateJournal(long flushDelayMillis, Writer writer) {
+        this.flushDelayMillis = flushDelayMillis;
+        this.writer = writer;
+        this.flusher = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "book-update-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Controllers are not always closed, the thread must not outlive the last edit
+        this.flusher.setKeepAliveTime(1, TimeUnit.SECONDS);
+        this.flusher.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Add an edited book to the journal. Without a flush delay, or once the journal is closed, the book is written
+     * before this returns.
+     *
+     * @throws DAOException if the book was to be written at once and could not be.
+     */
+    void append(Book book) throws DAOException {
+        entries.add(new Entry(seq.incrementAndGet(), new Book(book), 0));
+        if (flushDelayMillis <= 0 || closed) {
+            flush();
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            flusher.schedule(this::flushInBackground, flushDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Write every book in the journal now, in one batch, or one at a time if the batch fails.
+     *
+     * @throws DAOException if some of the books could not be written, after the others were. They are kept for the next
+     *                      flushes, or given up if they failed too often.
+     */
+    void flush() throws DAOException {
+        lock.lock();
+        try {
+            Map<Integer, Entry> latest = new LinkedHashMap<>();
+            Entry entry;
+            while ((entry = entries.poll()) != null) {
+                Entry previous = latest.get(entry.book.getId());
+                if (previous == null || previous.seq < entry.seq)
+                    latest.put(entry.book.getId(), entry);
+            }
+            if (latest.isEmpty())
+                return;
+
+            List<Book> books = new ArrayList<>(latest.size());
+            for (Entry e : latest.values()) {
+                books.add(e.book);
+            }
+            try {
+                writer.write(books);
+                return;
+            } catch (DAOException | RuntimeException e) {
+                if (latest.size() == 1) {
+                    keepOrGiveUp(latest.values().iterator().next(), e);
+                    throw e;
+                }
+            }
+
+            // Find the books that fail, the others are written regardless
+            int failed = 0;
+            Exception lastFailure = null;
+            for (Entry e : latest.values()) {
+                try {
+                    writer.write(List.of(e.book));
+                } catch (DAOException | RuntimeException ex) {
+                    keepOrGiveUp(e, ex);
+                    failed++;
+                    lastFailure = ex;
+                }
+            }
+            if (lastFailure != null)
+                throw new DAOException(String.format("Failed to write %d of %d book updates: %s",
+                        failed, latest.size(), lastFailure.getMessage()), lastFailure);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void keepOrGiveUp(Entry entry, Exception failure) {
+        if (entry.failedWrites + 1 < MAX_WRITE_ATTEMPTS) {
+            // A newer edit appended meanwhile still wins, it has a higher sequence number
+            entries.add(new Entry(entry.seq, entry.book, entry.failedWrites + 1));
+        } else {
+            System.err.format("Giving up writing the update of book %d after %d attempts: %s%n",
+                    entry.book.getId(), MAX_WRITE_ATTEMPTS, failure.getMessage());
+        }
+    }
+
+    private void flushInBackground() {
+        flushScheduled.set(false);
+        try {
+            flush();
+        } catch (DAOException | RuntimeException e) {
+            System.err.format("Failed to write book updates, retrying in %d ms: %s%n", flushDelayMillis, e.getMessage());
+            if (!closed && !entries.isEmpty() && flushScheduled.compareAndSet(false, true))
+                flusher.schedule(this::flushInBackground, flushDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return a copy of the book with the given ID as it was last appended, or null if it has no edit waiting to be
+     * written.
+     */
+    Book getPending(int bookId) {
+        Entry found = null;
+        for (Entry entry : entries) {
+            if (entry.book.getId() == bookId && (found == null || found.seq < entry.seq))
+                found = entry;
+        }
+        return found != null ? new Book(found.book) : null;
+    }
+
+    /**
+     * @return copies of the books with edits waiting to be written, as they were last appended, by book ID.
+     */
+    Map<Integer, Book> getPendingBooks() {
+        Map<Integer, Entry> latest = new HashMap<>();
+        for (Entry entry : entries) {
+            Entry previous = latest.get(entry.book.getId());
+            if (previous == null || previous.seq < entry.seq)
+                latest.put(entry.book.getId(), entry);
+        }
+        Map<Integer, Book> books = new HashMap<>(latest.size() * 2);
+        for (Entry entry : latest.values()) {
+            books.put(entry.book.getId(), new Book(entry.book));
+        }
+        return books;
+    }
+
+    /**
+     * Forget the edits of a book, e.g. because it is being removed. Waits for a flush in progress, which may be
+     * writing them.
+     */
+    void discard(int bookId) {
+        lock.lock();
+        try {
+            entries.removeIf(entry -> entry.book.getId() == bookId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Write every book left and stop the background thread. Books appended afterwards are written at once.
+     *
+     * @throws DAOException if the books left could not be written.
+     */
+    void close() throws DAOException {
+        closed = true;
+        flusher.shutdown();
+        flush();
+    }
+}
@@ -0,0 +1,69 @@
+package xyz.peasfultown;
+
+import xyz.peasfultown.domain.Author;
+import xyz.peasfultown.domain.Book;
+import xyz.peasfultown.domain.BookAuthor;
+import xyz.peasfultown.domain.Publisher;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Books written to the database in one import transaction, along with the authors and publishers they introduce.
+ */
+class ImportBatch {
+    final List<Item> items = new ArrayList<>();
+    final Map<String, Author> newAuthors = new LinkedHashMap<>();
+    final Map<String, Publisher> newPublishers = new LinkedHashMap<>();
+
+    boolean isEmpty() {
+        return items.isEmpty();
+    }
+
+    int size() {
+        return items.size();
+    }
+
+    /**
+     * A file going through the import, from its parsed metadata to the records created for it. Once the result is set
+     * the file is done with, whether it was imported or not.
+     */
+    static class Item {
+        final int index;
+        final Path file;
+        HashMap<String, String> meta;
+        // Copy of the file in the staging directory and the hash of its content, until it is moved into the library
+        Path staged;
+        String contentHash;
+        // Thumbnail rendered from an epub's cover while parsing, as PNG
+        byte[] thumbnail;
+        // Or with ImageMagick, the cover image taken out of the epub into a temporary file
+        Path cover;
+        Book book;
+        // Every author of the book, the first one names its directory
+        List<Author> authors;
+        List<BookAuthor> links;
+        boolean stored;
+        ImportReport.Result result;
+
+        Item(int index, Path file) {
+            this.index = index;
+            this.file = file;
+        }
+
+        String getFileType() {
+            return meta.get("filetype");
+        }
+
+        void setResult(ImportReport.Status status, String message) {
+            // Every file's item is kept until the import ends, the thumbnail is not needed any more
+            this.thumbnail = null;
+            this.result = new ImportReport.Result(file, status,
+                    status == ImportReport.Status.IMPORTED ? book : null, message);
+        }
+    }
+}
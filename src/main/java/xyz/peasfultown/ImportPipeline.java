@@ -0,0 +1,303 @@
+package xyz.peasfultown;
+
+import xyz.peasfultown.helpers.EpubArchive;
+import xyz.peasfultown.helpers.MetaReader;
+import xyz.peasfultown.helpers.ThumbnailGenerator;
+import xyz.peasfultown.helpers.ThumbnailGeneratorException;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Imports files in three stages connected by bounded queues:
+ * <ol>
+ *     <li>parse: worker threads read the metadata of the files, render the thumbnails of epubs while they have them
+ *     open, and hash the files, copying them into the staging directory on the way when books are copied;</li>
+ *     <li>store: the calling thread checks the hashes for duplicates and writes the records in batched transactions,
+ *     it is the only thread touching the database and the controller's record sets;</li>
+ *     <li>copy: worker threads put the stored books into the library, see {@link ApplicationConfig#INGEST_MODE}, and
+ *     generate their thumbnails.</li>
+ * </ol>
+ * Copying comes after storing because a book's directory is named after its record ID. A full queue blocks the stage
+ * feeding it, so a slow stage holds back the ones before it instead of piling up work in memory.
+ * <p>
+ * Files are stored in the order they are given regardless of which parser finishes first, so record IDs and the
+ * choice of which duplicate is kept are the same as with a serial import. Parsers may only run a window of files ahead
+ * of the file being stored, which bounds the files waiting to be stored in order when an early one is slow to parse.
+ */
+class ImportPipeline {
+    private static final int QUEUE_CAPACITY_PER_THREAD = 16;
+    // How long a partial batch waits for the next parsed file before it is written anyway.
+    private static final long BATCH_LINGER_MILLIS = 100;
+    private static final ImportBatch.Item END_OF_INPUT = new ImportBatch.Item(-1, null);
+
+    private final MainController mc;
+    private final int batchSize;
+    private final int threads;
+    private final Consumer<ImportReport.Result> onResult;
+
+    ImportPipeline(MainController mc, int batchSize, int threads) {
+        this(mc, batchSize, threads, result -> {
+        });
+    }
+
+    /**
+     * @param onResult called on the thread running the import as each file is done with, in the order they finish.
+     */
+    ImportPipeline(MainController mc, int batchSize, int threads, Consumer<ImportReport.Result> onResult) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("Batch size must be at least 1.");
+        this.mc = mc;
+        this.batchSize = batchSize;
+        this.threads = Math.max(1, threads);
+        this.onResult = onResult;
+    }
+
+    /**
+     * Import the files, blocking until every file is done with. If the calling thread is interrupted, files that are
+     * not finished yet are reported as failed.
+     */
+    ImportReport run(List<Path> files) {
+        int fileCount = files.size();
+        ImportBatch.Item[] items = new ImportBatch.Item[fileCount];
+        BlockingQueue<ImportBatch.Item> parsed = new ArrayBlockingQueue<>(threads * QUEUE_CAPACITY_PER_THREAD);
+        BlockingQueue<ImportBatch.Item> stored = new ArrayBlockingQueue<>(threads * QUEUE_CAPACITY_PER_THREAD);
+        // Unbounded so that copy workers never wait on the store stage, which may itself be waiting on them.
+        BlockingQueue<ImportBatch.Item> copied = new LinkedBlockingQueue<>();
+        AtomicInteger nextFile = new AtomicInteger();
+        // One permit per file parsed or being parsed but not yet taken by the store stage
+        Semaphore window = new Semaphore(threads * QUEUE_CAPACITY_PER_THREAD);
+
+        ExecutorService parsers = Executors.newFixedThreadPool(threads, namedThreads("jebman-import-parse-"));
+        ExecutorService copiers = Executors.newFixedThreadPool(threads, namedThreads("jebman-import-copy-"));
+        int inFlight = 0;
+        try {
+            for (int t = 0; t < threads; t++) {
+                parsers.execute(() -> parse(files, nextFile, window, parsed));
+                copiers.execute(() -> copy(stored, copied));
+            }
+
+            Set<String> contentHashes = new HashSet<>();
+            ImportBatch batch = new ImportBatch();
+            int next = 0;
+            while (next < fileCount) {
+                inFlight -= completeCopied(copied);
+
+                if (items[next] == null) {
+                    ImportBatch.Item item = batch.isEmpty()
+                            ? parsed.take()
+                            : parsed.poll(BATCH_LINGER_MILLIS, TimeUnit.MILLISECONDS);
+                    if (item != null) {
+                        items[item.index] = item;
+                    } else {
+                        // Parsing is behind, write what we have so the copy stage is not left idle.
+                        inFlight += store(batch, contentHashes, stored);
+                        batch = new ImportBatch();
+                    }
+                    continue;
+                }
+
+                ImportBatch.Item item = items[next++];
+                window.release();
+                mc.prepareImport(batch, item, contentHashes);
+                if (item.result != null)
+                    onResult.accept(item.result);
+                if (batch.size() >= batchSize) {
+                    inFlight += store(batch, contentHashes, stored);
+                    batch = new ImportBatch();
+                }
+            }
+            inFlight += store(batch, contentHashes, stored);
+
+            for (int t = 0; t < threads; t++) {
+                stored.put(END_OF_INPUT);
+            }
+            for (; inFlight > 0; inFlight--) {
+                complete(copied.take());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            parsers.shutdownNow();
+            copiers.shutdownNow();
+        }
+
+        // Parsed but never stored
+        ImportBatch.Item unclaimed;
+        while ((unclaimed = parsed.poll()) != null) {
+            mc.deleteStagingFile(unclaimed.staged);
+        }
+
+        if (inFlight > 0) {
+            // Interrupted, give the copy workers a moment to stop so their books are accounted for.
+            try {
+                copiers.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            completeCopied(copied);
+        }
+
+        ImportReport report = new ImportReport();
+        for (int i = 0; i < fileCount; i++) {
+            ImportBatch.Item item = items[i] != null ? items[i] : new ImportBatch.Item(i, files.get(i));
+            deleteCover(item);
+            mc.deleteStagingFile(item.staged);
+            if (item.result == null) {
+                if (item.stored)
+                    mc.discardImport(item);
+                report.add(new ImportReport.Result(item.file, ImportReport.Status.FAILED, null, "Import interrupted."));
+            } else {
+                report.add(item.result);
+            }
+        }
+        return report;
+    }
+
+    private void parse(List<Path> files, AtomicInteger nextFile, Semaphore window,
+                       BlockingQueue<ImportBatch.Item> parsed) {
+        while (true) {
+            try {
+                window.acquire();
+            } catch (InterruptedException e) {
+                return;
+            }
+            int i = nextFile.getAndIncrement();
+            if (i >= files.size()) {
+                window.release();
+                return;
+            }
+
+            ImportBatch.Item item = new ImportBatch.Item(i, files.get(i));
+            try {
+                if (!Files.exists(item.file))
+                    throw new FileNotFoundException("File does not exist.");
+                if (item.file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".epub")) {
+                    try (EpubArchive epub = EpubArchive.open(item.file)) {
+                        item.meta = MetaReader.getMetadata(epub);
+                        prepareThumbnail(item, epub);
+                    }
+                } else {
+                    item.meta = MetaReader.getMetadata(item.file);
+                }
+                mc.stageImport(item);
+            } catch (Exception e) {
+                item.setResult(ImportReport.Status.FAILED, e.getMessage());
+            }
+
+            try {
+                parsed.put(item);
+            } catch (InterruptedException e) {
+                mc.deleteStagingFile(item.staged);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Render the thumbnail, or for ImageMagick take out the cover, from the open epub. If that fails the copy stage
+     * tries again from the copied book and reports why.
+     */
+    private static void prepareThumbnail(ImportBatch.Item item, EpubArchive epub) {
+        try {
+            if (ApplicationConfig.THUMBNAILS_WITH_IMAGEMAGICK)
+                item.cover = ThumbnailGenerator.extractEpubCover(epub);
+            else
+                item.thumbnail = ThumbnailGenerator.renderEpubThumbnail(epub);
+        } catch (ThumbnailGeneratorException e) {
+            // Left to the copy stage
+        }
+    }
+
+    private static void deleteCover(ImportBatch.Item item) {
+        if (item.cover == null)
+            return;
+        try {
+            Files.deleteIfExists(item.cover);
+        } catch (IOException e) {
+            System.err.format("Unable to delete temporary cover %s: %s%n", item.cover, e.getMessage());
+        }
+        item.cover = null;
+    }
+
+    private void copy(BlockingQueue<ImportBatch.Item> stored, BlockingQueue<ImportBatch.Item> copied) {
+        try {
+            ImportBatch.Item item;
+            while ((item = stored.take()) != END_OF_INPUT) {
+                mc.copyImportedBook(item);
+                copied.add(item);
+            }
+        } catch (InterruptedException e) {
+            // Import cancelled
+        }
+    }
+
+    /**
+     * Write the batch to the database and hand its books to the copy stage. Books found to be duplicates when the batch
+     * is written, added by another thread since they were prepared, are reported instead.
+     *
+     * @return number of books handed to the copy stage.
+     */
+    private int store(ImportBatch batch, Set<String> contentHashes, BlockingQueue<ImportBatch.Item> stored)
+            throws InterruptedException {
+        if (batch.isEmpty())
+            return 0;
+
+        List<ImportBatch.Item> items = new ArrayList<>(batch.items);
+        boolean committed = mc.storeImportBatch(batch);
+        int count = 0;
+        for (ImportBatch.Item item : items) {
+            if (item.stored) {
+                stored.put(item);
+                count++;
+                continue;
+            }
+            // A failed batch kept none of its books, let later copies of its files through.
+            if (!committed)
+                contentHashes.remove(item.contentHash);
+            onResult.accept(item.result);
+        }
+        return count;
+    }
+
+    private int completeCopied(BlockingQueue<ImportBatch.Item> copied) {
+        int count = 0;
+        ImportBatch.Item item;
+        while ((item = copied.poll()) != null) {
+            complete(item);
+            count++;
+        }
+        return count;
+    }
+
+    private void complete(ImportBatch.Item item) {
+        mc.completeImport(item);
+        onResult.accept(item.result);
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
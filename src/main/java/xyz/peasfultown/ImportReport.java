@@ -0,0 +1,88 @@
+package xyz.peasfultown;
+
+import xyz.peasfultown.domain.Book;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of a bulk import, with one result per file in the order the files were given.
+ */
+public class ImportReport {
+    public enum Status {
+        IMPORTED,
+        DUPLICATE,
+        FAILED
+    }
+
+    public static class Result {
+        private final Path file;
+        private final Status status;
+        private final Book book;
+        private final String message;
+
+        Result(Path file, Status status, Book book, String message) {
+            this.file = file;
+            this.status = status;
+            this.book = book;
+            this.message = message;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * @return the imported book, or null if the file was not imported.
+         */
+        public Book getBook() {
+            return book;
+        }
+
+        /**
+         * @return why the file was skipped or failed, or a warning for an imported file. Null if there is nothing to
+         * report.
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return message == null
+                    ? String.format("%s: %s", status, file)
+                    : String.format("%s: %s (%s)", status, file, message);
+        }
+    }
+
+    private final List<Result> results = new ArrayList<>();
+
+    void add(Result result) {
+        results.add(result);
+    }
+
+    public List<Result> getResults() {
+        return Collections.unmodifiableList(results);
+    }
+
+    public int count(Status status) {
+        int count = 0;
+        for (Result result : results) {
+            if (result.getStatus() == status)
+                count++;
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Imported %d, duplicates %d, failed %d",
+                count(Status.IMPORTED), count(Status.DUPLICATE), count(Status.FAILED));
+    }
+}
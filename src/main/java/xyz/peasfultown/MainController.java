@@ -13,6 +13,9 @@ import xyz.peasfultown.dao.RecordAlreadyExistsException;
 import xyz.peasfultown.dao.impl.*;
 import xyz.peasfultown.domain.*;
 import xyz.peasfultown.helpers.*;
+import xyz.peasfultown.search.SearchIndex;
+import xyz.peasfultown.search.TagIndex;
+import xyz.peasfultown.search.TagQuery;
 
 import javax.xml.stream.XMLStreamException;
 import java.io.File;
@@ -25,26 +28,52 @@ import java.sql.SQLException;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * TODO: upon instantialization, check program's main path for the SQLite database file (metadata.db) and load it.
+ * <p>
+ * The controller can be used from several threads at once, e.g. the GUI reading books while an import runs. Changes
+ * to the library are made one at a time under a single writer lock, reads take no lock at the controller level: the
+ * loaded records are kept in {@link ConcurrentRecordSet}s and the links between them in {@link LinkIndex}es, which
+ * lock only for the one record or link being added or removed, so a reader never waits for an import to finish.
  */
 public class MainController {
+    private static final int SEARCH_INDEX_PAGE_SIZE = 1000;
+    // Book files are copied here and hashed before their records are written, then moved into the library
+    private static final String STAGING_DIRECTORY = ".import";
     private final Path mainPath;
-    private SearchableRecordSet<Book> bookSet;
-    private SearchableRecordSet<Series> seriesSet;
-    private SearchableRecordSet<Publisher> publisherSet;
-    private SearchableRecordSet<Author> authorSet;
-    private SearchableRecordSet<Tag> tagSet;
-    private SearchableRecordSet<BookAuthor> bookAuthorLinkSet;
-    private SearchableRecordSet<BookTag> bookTagLinkSet;
-    private GenericDAO<Book> bookDAO;
-    private GenericDAO<Series> seriesDAO;
-    private GenericDAO<Publisher> publisherDAO;
-    private GenericDAO<Author> authorDAO;
-    private GenericDAO<Tag> tagDAO;
-    private GenericDAO<BookAuthor> bookAuthorDAO;
-    private GenericDAO<BookTag> bookTagDAO;
+    // Held while changing the database and the loaded records, readers do not take it
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile SearchableRecordSet<Book> bookSet;
+    private volatile SearchableRecordSet<Series> seriesSet;
+    private volatile SearchableRecordSet<Publisher> publisherSet;
+    private volatile SearchableRecordSet<Author> authorSet;
+    private volatile SearchableRecordSet<Tag> tagSet;
+    // Book ID to author IDs and book ID to tag IDs, instead of a record per link
+    private volatile LinkIndex bookAuthorLinks;
+    private volatile LinkIndex bookTagLinks;
+    private volatile GenericDAO<Book> bookDAO;
+    private volatile GenericDAO<Series> seriesDAO;
+    private volatile GenericDAO<Publisher> publisherDAO;
+    private volatile GenericDAO<Author> authorDAO;
+    private volatile GenericDAO<Tag> tagDAO;
+    private volatile GenericDAO<BookAuthor> bookAuthorDAO;
+    private volatile GenericDAO<BookTag> bookTagDAO;
+    private final SearchIndex searchIndex = new SearchIndex();
+    private volatile boolean searchIndexBuilt;
+    private final TagIndex tagIndex = new TagIndex();
+    private volatile boolean tagIndexBuilt;
+    // Lazy loading only: the most recently used books, instead of bookSet and the link sets holding every record
+    private volatile boolean lazy;
+    private volatile WeightedLruCache<Integer, Book> bookCache;
+    // Edited books are written to the database in the background, see updateBook(). Only the journal's own lock is
+    // held while writing them, not the writer lock.
+    private final BookUpdateJournal bookUpdates = new BookUpdateJournal(
+            ApplicationConfig.BOOK_UPDATE_FLUSH_DELAY, books -> this.bookDAO.updateAll(books));
 
     /**
      * Default constructor creates a directory for the program at the user's `Documents` directory.
@@ -66,9 +95,22 @@ public class MainController {
             }
         }
 
+        // Left behind by an import that did not finish
+        Path staging = mainPath.resolve(STAGING_DIRECTORY);
+        if (Files.isDirectory(staging)) {
+            try {
+                Files.walkFileTree(staging, new TreeDeleter());
+            } catch (IOException e) {
+                System.err.format("Failed to clear staging directory %s: %s%n", staging, e);
+            }
+        }
+
+        // Connections left from a previous controller may point to a database file that has since been replaced
+        ConnectionFactory.closeAll();
+
         // tables
         try (Connection con = ConnectionFactory.getConnection()) {
-            ScriptRunner.runScript(con, new File("database.sql"));
+            SchemaMigrator.migrate(con);
         } catch (SQLException e) {
             throw new SQLException(e.getMessage(), e);
         }
@@ -76,7 +118,38 @@ public class MainController {
         populateCollections();
     }
 
+    /**
+     * Load the records into memory. With {@link ApplicationConfig#LAZY_LOADING} only the series, publishers, authors
+     * and tags are loaded, which are little more than ID to name dictionaries. Books are then read from the database
+     * when they are asked for and the last {@link ApplicationConfig#BOOK_CACHE_SIZE} of them are kept, book to author
+     * and tag links are read per book, and the search index is built on the first search. Startup then no longer
+     * reads a row per book.
+     */
     public void populateCollections() {
+        writeLock.lock();
+        try {
+            loadCollections();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void loadCollections() {
+        // Edits made before the reload would be read back as they were
+        try {
+            bookUpdates.flush();
+        } catch (DAOException e) {
+            System.err.format("Failed to write book updates before reloading: %s%n", e.getMessage());
+        }
+        this.lazy = ApplicationConfig.LAZY_LOADING;
+        synchronized (searchIndex) {
+            this.searchIndexBuilt = false;
+            this.searchIndex.clear();
+        }
+        synchronized (tagIndex) {
+            this.tagIndexBuilt = false;
+            this.tagIndex.clear();
+        }
         try {
             this.publisherDAO = new JDBCPublisherDAO();
             this.seriesDAO = new JDBCSeriesDAO();
@@ -89,11 +162,20 @@ public class MainController {
             this.publisherSet = (SearchableRecordSet<Publisher>) this.readAllPublishers();
             this.authorSet = (SearchableRecordSet<Author>) this.readAllAuthors();
             this.tagSet = (SearchableRecordSet<Tag>) this.readAllTags();
-            this.bookAuthorLinkSet = (SearchableRecordSet<BookAuthor>) this.readAllBookAuthorLinks();
-            this.bookTagLinkSet = (SearchableRecordSet<BookTag>) this.readAllBookTagLinks();
-
             this.bookDAO = new JDBCBookDAO(seriesSet, publisherSet);
-            this.bookSet = (SearchableRecordSet<Book>) this.readAllBooks();
+
+            if (lazy) {
+                this.bookCache = new WeightedLruCache<>(ApplicationConfig.BOOK_CACHE_SIZE, book -> 1);
+                this.bookSet = null;
+                this.bookAuthorLinks = null;
+                this.bookTagLinks = null;
+            } else {
+                this.bookCache = null;
+                this.bookAuthorLinks = ((JDBCBookAuthorDAO) this.bookAuthorDAO).readLinkIndex();
+                this.bookTagLinks = ((JDBCBookTagDAO) this.bookTagDAO).readLinkIndex();
+                this.bookSet = (SearchableRecordSet<Book>) this.readAllBooks();
+                buildSearchIndex();
+            }
         } catch (DAOException e) {
             System.err.println("Unable to populate collections.");
         }
@@ -105,61 +187,469 @@ public class MainController {
     }
 
     public void insertSeries(Series series) throws DAOException {
-        this.seriesDAO.create(series);
-        this.seriesSet.add(series);
+        writeLock.lock();
+        try {
+            this.seriesDAO.create(series);
+            this.seriesSet.add(series);
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     public void insertPublisher(Publisher publisher) throws DAOException {
-        this.publisherDAO.create(publisher);
-        this.publisherSet.add(publisher);
+        writeLock.lock();
+        try {
+            this.publisherDAO.create(publisher);
+            this.publisherSet.add(publisher);
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     public void insertAuthor(Author author) throws DAOException {
-        this.authorDAO.create(author);
-        this.authorSet.add(author);
+        writeLock.lock();
+        try {
+            this.authorDAO.create(author);
+            this.authorSet.add(author);
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     public void insertTag(Tag tag) throws DAOException {
-        this.tagDAO.create(tag);
-        this.tagSet.add(tag);
+        writeLock.lock();
+        try {
+            this.tagDAO.create(tag);
+            this.tagSet.add(tag);
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     /**
      * Copy book over to main program directory, and insert a record of the book to SQLite database.
+     * The file is hashed while it is copied, a book whose content is already in the library is rejected whatever its
+     * name or title. {@link ApplicationConfig#INGEST_MODE} decides whether the book is copied, linked or moved.
+     * Reading and copying the file happen outside the writer lock, only the duplicate check and the records
+     * are written under it.
      *
      * @param file
      * @throws IOException
      * @throws XMLStreamException
+     * @throws RecordAlreadyExistsException if the library already holds a copy of the file.
      */
     public void insertBook(Path file) throws Exception {
         if (!Files.exists(file))
             throw new FileNotFoundException("File does not exist.");
 
-        HashMap<String, String> metadata = MetaReader.getMetadata(file);
+        // Epubs are opened once for both the metadata and the cover
+        boolean isEpub = file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".epub");
         Book book = null;
-        book = createRecordsFromMetadata(metadata);
-        String authorName = metadata
-                .getOrDefault("author", metadata.getOrDefault("creator", "Unknown"));
+        List<BookAuthor> links = new ArrayList<>();
+        Path staged = null;
+        try (EpubArchive epub = isEpub ? EpubArchive.open(file) : null) {
+            HashMap<String, String> metadata = isEpub ? MetaReader.getMetadata(epub) : MetaReader.getMetadata(file);
+            String contentHash;
+            if (ApplicationConfig.INGEST_MODE.isStaged()) {
+                staged = createStagingFile(metadata.get("filetype"));
+                contentHash = ContentHasher.copy(file, staged);
+            } else {
+                contentHash = ContentHasher.hash(file);
+            }
+            writeLock.lock();
+            try {
+                if (isDuplicate(contentHash, metadata.getOrDefault("title", metadata.get("filename"))))
+                    throw new RecordAlreadyExistsException("Book already exists in records.");
+
+                book = createRecordsFromMetadata(metadata, contentHash, links);
+            } finally {
+                writeLock.unlock();
+            }
+            Path targetPath = mainPath.resolve(book.getPath())
+                    .resolve(getBookFileName(book.getTitle(), metadata.get("filetype")));
+
+            try {
+                addBookToPath(file, staged, targetPath, contentHash);
+                staged = null;
+
+                if (isEpub)
+                    ThumbnailGenerator.generateEpubThumbnail(epub, targetPath.getParent().resolve("cover.png"));
+                else
+                    createThumbnail(
+                            targetPath.toFile(),
+                            targetPath.getParent().resolve("cover.png"),
+                            metadata.get("filetype"));
+            } catch (Exception e) {
+                // The records are committed, do not leave them behind without the book
+                discardRecords(book, links);
+                removeFromLibrary(file, targetPath);
+                throw e;
+            }
+        } finally {
+            deleteStagingFile(staged);
+        }
+
+        addLoadedBook(book);
+        indexBook(book);
+    }
+
+    /**
+     * Import every epub and pdf file under a directory, see {@link #importBooks(List, int)}.
+     *
+     * @param directory directory to search, or a single book file.
+     * @return one result per book file found.
+     * @throws IOException if the directory cannot be read.
+     */
+    public ImportReport importBooks(Path directory) throws IOException {
+        if (!Files.isDirectory(directory))
+            return importBooks(List.of(directory));
+
+        return importBooks(findBookFiles(List.of(directory)));
+    }
+
+    /**
+     * Find the epub and pdf files among the given files and under the given directories. Files come in the order
+     * given, those found in a directory sorted by path.
+     *
+     * @throws IOException if a directory cannot be read.
+     */
+    public static List<Path> findBookFiles(Collection<Path> paths) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (Path path : paths) {
+            if (!Files.isDirectory(path)) {
+                if (isBookFile(path))
+                    files.add(path);
+                continue;
+            }
+            try (Stream<Path> found = Files.walk(path)) {
+                files.addAll(found.filter(Files::isRegularFile)
+                        .filter(MainController::isBookFile)
+                        .sorted()
+                        .collect(Collectors.toList()));
+            }
+        }
+        return files;
+    }
+
+    private static boolean isBookFile(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".epub") || name.endsWith(".pdf");
+    }
+
+    public ImportReport importBooks(List<Path> files) {
+        return importBooks(files, ApplicationConfig.IMPORT_BATCH_SIZE);
+    }
+
+    /**
+     * Import many books at once. Unlike {@link #insertBook(Path)}, the database writes for a whole batch of files are
+     * grouped into one transaction and sent as batched statements, so the cost of a commit is paid once per batch
+     * instead of several times per book. A failing batch is rolled back as a whole and its files are reported as
+     * failed, earlier batches stay imported. Metadata parsing, copying and thumbnail generation run on
+     * {@link ApplicationConfig#IMPORT_THREADS} worker threads, see {@link ImportPipeline}.
+     *
+     * @param files     book files to import.
+     * @param batchSize number of files per transaction.
+     * @return one result per file, in the given order.
+     */
+    public ImportReport importBooks(List<Path> files, int batchSize) {
+        return new ImportPipeline(this, batchSize, ApplicationConfig.IMPORT_THREADS).run(files);
+    }
+
+    /**
+     * Same as {@link #importBooks(List, int)}, reporting each file as soon as it is done with. Files finish out of
+     * order, duplicates and unreadable files before the books imported alongside them. Interrupting the calling
+     * thread cancels the import: books already imported are kept and the files not done yet are reported as failed.
+     *
+     * @param onResult called on the calling thread with the result of each file.
+     */
+    public ImportReport importBooks(List<Path> files, int batchSize, Consumer<ImportReport.Result> onResult) {
+        return new ImportPipeline(this, batchSize, ApplicationConfig.IMPORT_THREADS, onResult).run(files);
+    }
+
+    /**
+     * Check a parsed file against the library and the files imported before it, and add it to the batch along with
+     * the author and publisher records it needs. Sets the item's result instead if it will not be imported.
+     *
+     * @param contentHashes content hashes of the files accepted so far in this import.
+     */
+    void prepareImport(ImportBatch batch, ImportBatch.Item item, Set<String> contentHashes) {
+        if (item.result != null)
+            return;
+
+        try {
+            HashMap<String, String> meta = item.meta;
+            Book book = new Book();
+            book.setTitle(meta.getOrDefault("title", meta.get("filename")));
+            book.setContentHash(item.contentHash);
+            if (isDuplicate(item.contentHash, book.getTitle())
+                    || !contentHashes.add(item.contentHash)) {
+                item.setResult(ImportReport.Status.DUPLICATE, "Book already exists in records.");
+                return;
+            }
+
+            if (meta.get("filetype").equalsIgnoreCase("epub")) {
+                book.setIsbn(meta.getOrDefault("isbn", ""));
+                book.setUuid(meta.getOrDefault("uuid", ""));
+                String publisherName = meta.get("publisher");
+                if (publisherName != null) {
+                    Publisher publisher = publisherSet.getByName(publisherName);
+                    if (publisher == null)
+                        publisher = batch.newPublishers.computeIfAbsent(publisherName.toLowerCase(Locale.ROOT),
+                                k -> new Publisher(publisherName));
+                    book.setPublisher(publisher);
+                }
+            }
+            book.setPublishDate(MetaReader
+                    .parseDate(meta.getOrDefault("date", Instant.now().truncatedTo(ChronoUnit.SECONDS).toString())));
+
+            item.book = book;
+            item.authors = resolveAuthors(MetaReader.getAuthorNames(meta), batch.newAuthors);
+            batch.items.add(item);
+        } catch (Exception e) {
+            item.setResult(ImportReport.Status.FAILED, e.getMessage());
+        }
+    }
+
+    /**
+     * Write the records of a batch in a single transaction. If the transaction fails, every item of the batch is
+     * marked as failed.
+     * <p>
+     * The batch was prepared without the writer lock, so it is checked again under it: authors and publishers added
+     * since are used instead of creating them twice, and books added since with the same content are taken out of the
+     * batch as duplicates.
+     *
+     * @return true if the batch was committed.
+     */
+    boolean storeImportBatch(ImportBatch batch) {
+        writeLock.lock();
+        try {
+            return storeImportBatchLocked(batch);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private boolean storeImportBatchLocked(ImportBatch batch) {
+        if (batch.items.isEmpty())
+            return true;
+
+        try {
+            revalidateImportBatch(batch);
+        } catch (DAOException e) {
+            for (ImportBatch.Item item : batch.items) {
+                item.setResult(ImportReport.Status.FAILED, e.getMessage());
+            }
+            return false;
+        }
+
+        List<Book> books = new ArrayList<>(batch.size());
+        List<BookAuthor> links = new ArrayList<>();
+        for (ImportBatch.Item item : batch.items) {
+            item.book.setPath(getRelativePathToBook(item.authors.get(0).getName(), item.book.getTitle()));
+            books.add(item.book);
+        }
+
+        try (Connection con = ConnectionFactory.beginTransaction()) {
+            publisherDAO.createAll(batch.newPublishers.values());
+            authorDAO.createAll(batch.newAuthors.values());
+            ((JDBCBookDAO) this.bookDAO).createAllNumbered(books);
+            for (ImportBatch.Item item : batch.items) {
+                item.links = createBookAuthorLinks(item.book, item.authors);
+                links.addAll(item.links);
+            }
+            bookAuthorDAO.createAll(links);
+            con.commit();
+        } catch (SQLException | DAOException e) {
+            for (ImportBatch.Item item : batch.items) {
+                item.setResult(ImportReport.Status.FAILED, e.getMessage());
+            }
+            return false;
+        }
+
+        for (ImportBatch.Item item : batch.items) {
+            item.stored = true;
+        }
+        this.publisherSet.addAll(batch.newPublishers.values());
+        this.authorSet.addAll(batch.newAuthors.values());
+        if (!lazy) {
+            for (BookAuthor link : links) {
+                this.bookAuthorLinks.add(link.getBookId(), link.getAuthorId());
+            }
+        }
+        return true;
+    }
+
+    private void revalidateImportBatch(ImportBatch batch) throws DAOException {
+        Iterator<Map.Entry<String, Author>> authors = batch.newAuthors.entrySet().iterator();
+        while (authors.hasNext()) {
+            Author added = authors.next().getValue();
+            Author existing = authorSet.getByName(added.getName());
+            if (existing == null)
+                continue;
+            authors.remove();
+            for (ImportBatch.Item item : batch.items) {
+                item.authors.replaceAll(a -> a == added ? existing : a);
+            }
+        }
+
+        Iterator<Map.Entry<String, Publisher>> publishers = batch.newPublishers.entrySet().iterator();
+        while (publishers.hasNext()) {
+            Publisher added = publishers.next().getValue();
+            Publisher existing = publisherSet.getByName(added.getName());
+            if (existing == null)
+                continue;
+            publishers.remove();
+            for (ImportBatch.Item item : batch.items) {
+                if (item.book.getPublisher() == added)
+                    item.book.setPublisher(existing);
+            }
+        }
+
+        Iterator<ImportBatch.Item> items = batch.items.iterator();
+        while (items.hasNext()) {
+            ImportBatch.Item item = items.next();
+            if (((JDBCBookDAO) this.bookDAO).readByContentHash(item.contentHash) != null) {
+                item.setResult(ImportReport.Status.DUPLICATE, "Book already exists in records.");
+                items.remove();
+            }
+        }
+    }
+
+    /**
+     * Hash a parsed file ahead of its import. Books to be copied are copied into the staging directory at the same
+     * time, the others are only read.
+     */
+    void stageImport(ImportBatch.Item item) throws IOException {
+        if (ApplicationConfig.INGEST_MODE.isStaged()) {
+            item.staged = createStagingFile(item.getFileType());
+            item.contentHash = ContentHasher.copy(item.file, item.staged);
+        } else {
+            item.contentHash = ContentHasher.hash(item.file);
+        }
+    }
+
+    /**
+     * Put a stored book into the library and generate its thumbnail. Only touches the file system, so it is safe to
+     * call from any thread.
+     */
+    void copyImportedBook(ImportBatch.Item item) {
+        Path targetPath = mainPath.resolve(item.book.getPath())
+                .resolve(getBookFileName(item.book.getTitle(), item.getFileType()));
+        try {
+            addBookToPath(item.file, item.staged, targetPath, item.contentHash);
+            item.staged = null;
+        } catch (IOException e) {
+            item.setResult(ImportReport.Status.FAILED, e.getMessage());
+            return;
+        }
+
+        String message = null;
+        Path coverPath = targetPath.getParent().resolve("cover.png");
+        try {
+            if (item.thumbnail != null)
+                ThumbnailGenerator.writeThumbnail(item.thumbnail, coverPath);
+            else if (item.cover != null)
+                ThumbnailGenerator.generateCoverThumbnail(item.cover, coverPath);
+            else
+                createThumbnail(targetPath.toFile(), coverPath, item.getFileType());
+        } catch (ThumbnailGeneratorException e) {
+            message = "No thumbnail generated: " + e.getMessage();
+            try {
+                ThumbnailGenerator.addPlaceHolderThumbnail(coverPath);
+            } catch (ThumbnailGeneratorException ex) {
+                System.err.format("Failed to add placeholder thumbnail for %s: %s%n", item.file, ex.getMessage());
+            }
+        }
+        item.setResult(ImportReport.Status.IMPORTED, message);
+    }
 
-        Path targetPath = getBookTargetDirectoryPath(authorName, book.getTitle(), book.getId())
-                .resolve(getBookFileName(book.getTitle(), metadata.get("filetype")));
+    /**
+     * Add a copied book to the library, or remove the records of a book that could not be copied.
+     */
+    void completeImport(ImportBatch.Item item) {
+        if (item.result.getStatus() == ImportReport.Status.IMPORTED) {
+            addLoadedBook(item.book);
+            if (searchIndexBuilt)
+                indexBook(item.book, item.authors, Collections.emptyList());
+        } else {
+            discardImport(item);
+        }
+    }
 
-        addBookToPath(file, targetPath);
+    /**
+     * Remove the rows of a stored book that did not make it into the library.
+     */
+    void discardImport(ImportBatch.Item item) {
+        discardRecords(item.book, item.links);
+        item.stored = false;
+    }
 
-        createThumbnail(
-                targetPath.toFile(),
-                targetPath.getParent().resolve("cover.png"),
-                metadata.get("filetype"));
+    /**
+     * Remove the rows written for a book that did not make it into the library, along with its author links.
+     */
+    private void discardRecords(Book book, List<BookAuthor> links) {
+        writeLock.lock();
+        try {
+            for (BookAuthor link : links) {
+                bookAuthorDAO.delete(link.getId());
+            }
+            bookDAO.delete(book.getId());
+        } catch (DAOException e) {
+            System.err.format("Failed to remove records of %s: %s%n", book.getTitle(), e.getMessage());
+        } finally {
+            writeLock.unlock();
+        }
+        if (!lazy)
+            this.bookAuthorLinks.removeLeft(book.getId());
+    }
 
-        this.bookSet.add(book);
+    /**
+     * Take a book that failed to be added back out of the library: a file moved in is moved back where it came from,
+     * and the book's directory is deleted.
+     */
+    private void removeFromLibrary(Path file, Path target) {
+        Path directory = target.getParent();
+        try {
+            if (!Files.exists(file) && Files.exists(target))
+                Files.move(target, file);
+            if (Files.isDirectory(directory))
+                Files.walkFileTree(directory, new TreeDeleter());
+        } catch (IOException e) {
+            System.err.format("Unable to remove %s from the library: %s%n", directory, e.getMessage());
+        }
     }
 
+    /**
+     * Apply the changes made to a book to the loaded records and the search index at once, and write them to the
+     * database in the background, see {@link ApplicationConfig#BOOK_UPDATE_FLUSH_DELAY}. Several edits of a book in a
+     * row are written once. Does not take the writer lock, so an edit never waits for an import to write its batch.
+     *
+     * @throws DAOException only if the book was to be written at once and could not be, a failed background write is
+     *                      retried.
+     */
     public void updateBook(Book bookToUpdate) throws DAOException {
         bookToUpdate.setModifiedDate(Instant.now());
-        this.bookDAO.update(bookToUpdate);
-        Book book = this.bookSet.stream().filter(b -> b.getId() == bookToUpdate.getId()).findFirst().get();
-        this.bookSet.remove(book);
-        this.bookSet.add(bookToUpdate);
+        Book book = findLoadedBook(bookToUpdate.getId());
+        if (book != null)
+            removeLoadedBook(book);
+        addLoadedBook(bookToUpdate);
+        indexBook(bookToUpdate);
+        bookUpdates.append(bookToUpdate);
+    }
+
+    /**
+     * Write the book edits still waiting in the background now.
+     */
+    public void flushBookUpdates() throws DAOException {
+        bookUpdates.flush();
+    }
+
+    /**
+     * Write the book edits still waiting and stop writing in the background, edits made afterwards are written at
+     * once. Call before exiting.
+     */
+    public void close() throws DAOException {
+        bookUpdates.close();
     }
 
     public void removeBook(int id) throws DAOException, IOException {
@@ -170,10 +660,25 @@ public class MainController {
     public void removeBook(Book book) throws DAOException, IOException {
         Path pathToRemove = Path.of(ApplicationConfig.MAIN_PATH.toString(), book.getPath());
         TreeDeleter td = new TreeDeleter();
-        Files.walkFileTree(pathToRemove, td);
-
-        bookDAO.delete(book.getId());
-        bookSet.remove(book);
+        writeLock.lock();
+        try {
+            Files.walkFileTree(pathToRemove, td);
+
+            bookUpdates.discard(book.getId());
+            bookDAO.delete(book.getId());
+            removeLoadedBook(book);
+            if (!lazy) {
+                this.bookAuthorLinks.removeLeft(book.getId());
+                this.bookTagLinks.removeLeft(book.getId());
+            }
+            searchIndex.remove(book.getId());
+            synchronized (tagIndex) {
+                if (tagIndexBuilt)
+                    tagIndex.removeBook(book.getId());
+            }
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     public void tagBook(int bookId, int tagId) throws DAOException {
@@ -182,20 +687,30 @@ public class MainController {
         if (tag == null)
             throw new DAOException("No tag record with matching ID.");
 
-        this.addBookTagLink(bookId, tag.getId());
+        writeLock.lock();
+        try {
+            this.addBookTagLink(bookId, tag.getId());
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     public void tagBook(int bookId, String tagName) throws DAOException {
-        Tag tag = this.getTagByName(tagName);
+        writeLock.lock();
+        try {
+            Tag tag = this.getTagByName(tagName);
 
-        if (tag == null) {
-            tag = new Tag();
-            tag.setName(tagName);
-            this.insertTag(tag);
-        }
+            if (tag == null) {
+                tag = new Tag();
+                tag.setName(tagName);
+                this.insertTag(tag);
+            }
 
-        tag = this.getTagByName(tagName);
-        this.addBookTagLink(bookId, tag.getId());
+            tag = this.getTagByName(tagName);
+            this.addBookTagLink(bookId, tag.getId());
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     public Set<Publisher> readAllPublishers() throws DAOException {
@@ -255,110 +770,582 @@ public class MainController {
     }
 
     public Set<Book> readAllBooks() throws DAOException {
-        return bookDAO.readAll();
+        IndexedRecordSet<Book> books = (IndexedRecordSet<Book>) bookDAO.readAll();
+        if (bookUpdates.isEmpty())
+            return books;
+        for (Book pending : bookUpdates.getPendingBooks().values()) {
+            Book read = books.getById(pending.getId());
+            if (read != null) {
+                books.remove(read);
+                books.add(pending);
+            }
+        }
+        return books;
     }
 
     public Author getBookAuthorByBookId(int id) {
-        for (BookAuthor ba : bookAuthorLinkSet) {
-            if (ba.getBookId() == id)
-                return this.authorSet.getById(ba.getAuthorId());
+        if (lazy) {
+            try {
+                return readAuthorsByBookId(id, id).get(id);
+            } catch (DAOException e) {
+                System.err.format("Failed to read author of book %d: %s%n", id, e.getMessage());
+                return null;
+            }
         }
-        return null;
+
+        int authorId = bookAuthorLinks.getFirstRight(id);
+        return authorId < 0 ? null : this.authorSet.getById(authorId);
+    }
+
+    /**
+     * Map every book ID to its author, built from the loaded link records in a single pass. Use this instead of
+     * calling {@link #getBookAuthorByBookId(int)} for each book.
+     */
+    public Map<Integer, Author> getAuthorsByBookId() {
+        if (!lazy) {
+            LinkIndex links = this.bookAuthorLinks;
+            Map<Integer, Author> authors = new HashMap<>(links.size() * 4 / 3 + 1);
+            // Same as getBookAuthorByBookId, the first link of a book wins
+            links.forEach((bookId, authorId) -> authors.putIfAbsent(bookId, this.authorSet.getById(authorId)));
+            return authors;
+        }
+
+        Set<BookAuthor> links = getBookAuthorLinks();
+        Map<Integer, Author> authors = new HashMap<>(links.size() * 4 / 3 + 1);
+        for (BookAuthor ba : links) {
+            if (!authors.containsKey(ba.getBookId()))
+                authors.put(ba.getBookId(), this.authorSet.getById(ba.getAuthorId()));
+        }
+        return authors;
+    }
+
+    /**
+     * Map every tagged book ID to its tags, in the order they were applied, built from the loaded link records in a
+     * single pass. Books without tags are left out. Use this instead of calling {@link #getTagsOfBook(int)} for each
+     * book, which queries the database every time.
+     */
+    public Map<Integer, List<Tag>> getTagsByBookId() {
+        Map<Integer, List<Tag>> tags = new HashMap<>();
+        if (!lazy) {
+            this.bookTagLinks.forEach((bookId, tagId) -> {
+                Tag tag = this.tagSet.getById(tagId);
+                if (tag != null)
+                    tags.computeIfAbsent(bookId, k -> new ArrayList<>(2)).add(tag);
+            });
+            return tags;
+        }
+
+        for (BookTag bt : getBookTagLinks()) {
+            Tag tag = this.tagSet.getById(bt.getTagId());
+            if (tag != null)
+                tags.computeIfAbsent(bt.getBookId(), k -> new ArrayList<>(2)).add(tag);
+        }
+        return tags;
+    }
+
+    public int countBooks() throws DAOException {
+        return ((JDBCBookDAO) this.bookDAO).count();
+    }
+
+    /**
+     * Read a page of books from the database in ID order, see {@link JDBCBookDAO#readPage(int, int)}.
+     */
+    public List<Book> readBookPage(int afterId, int limit) throws DAOException {
+        return withPendingUpdates(((JDBCBookDAO) this.bookDAO).readPage(afterId, limit));
+    }
+
+    public int readBookIdAt(int index) throws DAOException {
+        return ((JDBCBookDAO) this.bookDAO).readIdAtOffset(index);
+    }
+
+    /**
+     * Same as {@link #getAuthorsByBookId()} for a range of book IDs, read from the database.
+     */
+    public Map<Integer, Author> readAuthorsByBookId(int firstBookId, int lastBookId) throws DAOException {
+        Map<Integer, Author> authors = new HashMap<>();
+        for (BookAuthor ba : ((JDBCBookAuthorDAO) this.bookAuthorDAO).readByBookIdRange(firstBookId, lastBookId)) {
+            if (!authors.containsKey(ba.getBookId()))
+                authors.put(ba.getBookId(), this.authorSet.getById(ba.getAuthorId()));
+        }
+        return authors;
+    }
+
+    /**
+     * Same as {@link #getTagsByBookId()} for a range of book IDs, read from the database.
+     */
+    public Map<Integer, List<Tag>> readTagsByBookId(int firstBookId, int lastBookId) throws DAOException {
+        Map<Integer, List<Tag>> tags = new HashMap<>();
+        for (BookTag bt : ((JDBCBookTagDAO) this.bookTagDAO).readByBookIdRange(firstBookId, lastBookId)) {
+            Tag tag = this.tagSet.getById(bt.getTagId());
+            if (tag != null)
+                tags.computeIfAbsent(bt.getBookId(), k -> new ArrayList<>(2)).add(tag);
+        }
+        return tags;
+    }
+
+    /**
+     * Search the books by the words of their title, authors, tags, publisher and series, see {@link SearchIndex}.
+     *
+     * @param query words to look for, partly typed or misspelled words are matched too.
+     * @param limit maximum number of books returned.
+     * @return matching books, best match first.
+     */
+    public List<Book> searchBooks(String query, int limit) throws DAOException {
+        if (!searchIndexBuilt)
+            buildSearchIndex();
+
+        List<Book> books = new ArrayList<>();
+        for (int id : searchIndex.search(query, limit)) {
+            Book book = findBook(id);
+            if (book != null)
+                books.add(book);
+        }
+        return books;
+    }
+
+    public List<Book> searchBooks(String query) throws DAOException {
+        return searchBooks(query, ApplicationConfig.SEARCH_RESULT_LIMIT);
+    }
+
+    /**
+     * Find the books whose tags match a boolean expression, such as {@code scifi AND (owned OR borrowed) AND NOT read},
+     * see {@link TagQuery}. Answered from the in-memory {@link TagIndex}, built on the first query.
+     *
+     * @return IDs of the matching books, in ascending order.
+     * @throws IllegalArgumentException if the query is not well formed.
+     */
+    public int[] getBookIdsByTagQuery(String query) throws DAOException {
+        return getBookIdsByTagQuery(TagQuery.parse(query));
+    }
+
+    public int[] getBookIdsByTagQuery(TagQuery query) throws DAOException {
+        buildTagIndex();
+        return tagIndex.search(query, name -> {
+            Tag tag = this.tagSet.getByName(name);
+            return tag != null ? tag.getId() : -1;
+        });
+    }
+
+    /**
+     * Same as {@link #getBookIdsByTagQuery(String)}, returning the books in ID order.
+     */
+    public List<Book> getBooksByTagQuery(String query) throws DAOException {
+        int[] ids = getBookIdsByTagQuery(query);
+        List<Book> books = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            Book book = findBook(id);
+            if (book != null)
+                books.add(book);
+        }
+        return books;
+    }
+
+    /**
+     * Same as {@link #readAuthorsByBookId(int, int)} for a few books scattered over the library, such as search
+     * results. Reads the links of one book at a time.
+     */
+    public Map<Integer, Author> readAuthorsByBookIds(Collection<Integer> bookIds) throws DAOException {
+        Map<Integer, Author> authors = new HashMap<>();
+        for (int id : bookIds) {
+            authors.putAll(readAuthorsByBookId(id, id));
+        }
+        return authors;
+    }
+
+    /**
+     * Same as {@link #readTagsByBookId(int, int)} for a few books scattered over the library, such as search results.
+     * Reads the links of one book at a time.
+     */
+    public Map<Integer, List<Tag>> readTagsByBookIds(Collection<Integer> bookIds) throws DAOException {
+        Map<Integer, List<Tag>> tags = new HashMap<>();
+        for (int id : bookIds) {
+            tags.putAll(readTagsByBookId(id, id));
+        }
+        return tags;
     }
 
     public Path getMainPath() {
         return this.mainPath;
     }
 
-    private String getRelativePathToBook(String authorName, String bookTitle, int id) {
+    /**
+     * Create an empty file in the staging directory for a book to be copied into before it is imported. The staging
+     * directory is in the library, so moving the book to its place afterwards does not copy it again.
+     */
+    Path createStagingFile(String fileType) throws IOException {
+        Path staging = Files.createDirectories(mainPath.resolve(STAGING_DIRECTORY));
+        return Files.createTempFile(staging, "book-", "." + fileType);
+    }
+
+    void deleteStagingFile(Path staged) {
+        if (staged == null)
+            return;
+        try {
+            Files.deleteIfExists(staged);
+        } catch (IOException e) {
+            System.err.format("Unable to delete staged file %s: %s%n", staged, e.getMessage());
+        }
+    }
+
+    /**
+     * Check whether the library already holds a file with the given content, through the index on the content hash.
+     * A book added before hashes were kept is only found if it has the same title. Its file is hashed then and the
+     * hash saved like an edit of the book, so it is compared by content from then on.
+     */
+    private boolean isDuplicate(String contentHash, String title) throws DAOException {
+        if (((JDBCBookDAO) this.bookDAO).readByContentHash(contentHash) != null)
+            return true;
+
+        Book sameTitle = findBookByTitle(title);
+        if (sameTitle == null)
+            return false;
+        // Hashed before but maybe not written yet
+        if (sameTitle.getContentHash() != null)
+            return contentHash.equals(sameTitle.getContentHash());
+
+        Path file = findStoredBookFile(sameTitle);
+        if (file == null)
+            return true;
+        try {
+            sameTitle.setContentHash(ContentHasher.hash(file));
+        } catch (IOException e) {
+            System.err.format("Failed to hash %s: %s%n", file, e.getMessage());
+            return true;
+        }
+        try {
+            bookUpdates.append(sameTitle);
+        } catch (DAOException e) {
+            // Only costs hashing the file again next time
+            System.err.format("Failed to save the content hash of %s: %s%n", file, e.getMessage());
+        }
+        return contentHash.equals(sameTitle.getContentHash());
+    }
+
+    private Path findStoredBookFile(Book book) {
+        Path directory = mainPath.resolve(book.getPath());
+        for (String fileType : new String[]{"epub", "pdf"}) {
+            Path file = directory.resolve(getBookFileName(book.getTitle(), fileType));
+            if (Files.isRegularFile(file))
+                return file;
+        }
+        return null;
+    }
+
+    /**
+     * Path of a book's directory without its ID, which {@link JDBCBookDAO#createNumbered(Book)} appends as " (id)".
+     */
+    private String getRelativePathToBook(String authorName, String bookTitle) {
         return new StringBuilder(authorName)
                 .append(System.getProperty("file.separator"))
-                .append(bookTitle)
-                .append(' ').append('(').append(id).append(')').toString();
+                .append(bookTitle).toString();
+    }
+
+    /**
+     * Index every book, from the loaded records, or with lazy loading by reading the books from the database a page
+     * at a time without keeping them. The index is locked while it is built, so searches wait for it to be complete
+     * and only the first of them builds it.
+     */
+    private void buildSearchIndex() throws DAOException {
+        synchronized (searchIndex) {
+            if (searchIndexBuilt)
+                return;
+            this.searchIndex.clear();
+            if (!lazy) {
+                Map<Integer, List<Author>> authors = new HashMap<>();
+                this.bookAuthorLinks.forEach((bookId, authorId) -> addAuthorOfBook(authors, bookId, authorId));
+                indexBooks(this.bookSet, authors, getTagsByBookId());
+            } else {
+                List<Book> page;
+                int lastId = 0;
+                while (!(page = readBookPage(lastId, SEARCH_INDEX_PAGE_SIZE)).isEmpty()) {
+                    int firstId = page.get(0).getId();
+                    lastId = page.get(page.size() - 1).getId();
+                    Map<Integer, List<Author>> authors = new HashMap<>();
+                    for (BookAuthor ba : ((JDBCBookAuthorDAO) this.bookAuthorDAO).readByBookIdRange(firstId, lastId)) {
+                        addAuthorOfBook(authors, ba.getBookId(), ba.getAuthorId());
+                    }
+                    indexBooks(page, authors, readTagsByBookId(firstId, lastId));
+                }
+            }
+            this.searchIndexBuilt = true;
+        }
     }
 
-    private void addBookToPath(Path file, Path target) throws IOException {
+    private void indexBooks(Collection<Book> books, Map<Integer, List<Author>> authors, Map<Integer, List<Tag>> tags) {
+        for (Book book : books) {
+            indexBook(book,
+                    authors.getOrDefault(book.getId(), Collections.emptyList()),
+                    tags.getOrDefault(book.getId(), Collections.emptyList()));
+        }
+    }
+
+    private void addAuthorOfBook(Map<Integer, List<Author>> authors, int bookId, int authorId) {
+        Author author = this.authorSet.getById(authorId);
+        if (author != null)
+            authors.computeIfAbsent(bookId, k -> new ArrayList<>(1)).add(author);
+    }
+
+    /**
+     * Load every book ID and book to tag link into the tag index, from the loaded records or with lazy loading from
+     * the database. Only the first call builds it.
+     */
+    private void buildTagIndex() throws DAOException {
+        synchronized (tagIndex) {
+            if (tagIndexBuilt)
+                return;
+            this.tagIndex.clear();
+            if (!lazy) {
+                for (Book book : this.bookSet) {
+                    tagIndex.addBook(book.getId());
+                }
+            } else {
+                List<Book> page;
+                int lastId = 0;
+                while (!(page = ((JDBCBookDAO) this.bookDAO).readPage(lastId, SEARCH_INDEX_PAGE_SIZE)).isEmpty()) {
+                    for (Book book : page) {
+                        tagIndex.addBook(book.getId());
+                    }
+                    lastId = page.get(page.size() - 1).getId();
+                }
+            }
+            LinkIndex links = lazy ? ((JDBCBookTagDAO) this.bookTagDAO).readLinkIndex() : this.bookTagLinks;
+            links.forEach(tagIndex::addTag);
+            this.tagIndexBuilt = true;
+        }
+    }
+
+    /**
+     * Index a book again after it or one of its links changed.
+     */
+    private void indexBook(Book book) throws DAOException {
+        if (!searchIndexBuilt)
+            return;
+
+        List<Tag> tags = new ArrayList<>();
+        for (Tag tag : getTagsOfBook(book.getId())) {
+            if (tag != null)
+                tags.add(tag);
+        }
+        indexBook(book, getAuthorsOfBook(book.getId()), tags);
+    }
+
+    /**
+     * Look up a book by ID, from the loaded books or with lazy loading from the cache or the database.
+     */
+    private Book findBook(int id) throws DAOException {
+        if (!lazy)
+            return this.bookSet.getById(id);
+
+        Book book = this.bookCache.get(id);
+        if (book != null)
+            return book;
+        book = bookUpdates.getPending(id);
+        if (book == null)
+            book = this.bookDAO.read(id);
+        if (book != null)
+            this.bookCache.put(id, book);
+        return book;
+    }
+
+    private Book findBookByTitle(String title) throws DAOException {
+        if (!lazy)
+            return this.bookSet.getByName(title);
+
+        // An edit waiting to be written may have given a book the title, or taken it away from the one read
+        Map<Integer, Book> pending = bookUpdates.getPendingBooks();
+        Book book = null;
+        for (Book edited : pending.values()) {
+            if (edited.getTitle().equalsIgnoreCase(title)) {
+                book = edited;
+                break;
+            }
+        }
+        if (book == null) {
+            book = ((JDBCBookDAO) this.bookDAO).readByTitleIgnoreCase(title);
+            if (book == null || pending.containsKey(book.getId()))
+                return null;
+        }
+        // Hand out the same instance as findBook if the book is cached
+        Book cached = this.bookCache.get(book.getId());
+        return cached != null ? cached : book;
+    }
+
+    /**
+     * Replace the books read from the database that have edits waiting in the journal with the edited books, so that
+     * reads see the edits without waiting for them to be written.
+     */
+    private List<Book> withPendingUpdates(List<Book> books) {
+        if (bookUpdates.isEmpty())
+            return books;
+        Map<Integer, Book> pending = bookUpdates.getPendingBooks();
+        books.replaceAll(book -> pending.getOrDefault(book.getId(), book));
+        return books;
+    }
+
+    private Book findLoadedBook(int id) {
+        return lazy ? this.bookCache.get(id) : this.bookSet.getById(id);
+    }
+
+    private void addLoadedBook(Book book) {
+        if (lazy)
+            this.bookCache.put(book.getId(), book);
+        else
+            this.bookSet.add(book);
+        synchronized (tagIndex) {
+            if (tagIndexBuilt)
+                tagIndex.addBook(book.getId());
+        }
+    }
+
+    private void removeLoadedBook(Book book) {
+        if (lazy)
+            this.bookCache.remove(book.getId());
+        else
+            this.bookSet.remove(book);
+    }
+
+    /**
+     * Replace the entries of a book in the search index at once, a search never sees the book half indexed.
+     */
+    private void indexBook(Book book, List<Author> authors, List<Tag> tags) {
+        int id = book.getId();
+        synchronized (searchIndex) {
+            this.searchIndex.remove(id);
+            this.searchIndex.add(id, SearchIndex.Field.TITLE, book.getTitle());
+            for (Author author : authors) {
+                this.searchIndex.add(id, SearchIndex.Field.AUTHOR, author.getName());
+            }
+            for (Tag tag : tags) {
+                this.searchIndex.add(id, SearchIndex.Field.TAG, tag.getName());
+            }
+            if (book.getPublisher() != null)
+                this.searchIndex.add(id, SearchIndex.Field.PUBLISHER, book.getPublisher().getName());
+            if (book.getSeries() != null)
+                this.searchIndex.add(id, SearchIndex.Field.SERIES, book.getSeries().getName());
+        }
+    }
+
+    /**
+     * Put a book at its place in the library, see {@link IngestMode}.
+     *
+     * @param file   the book being imported.
+     * @param staged its copy in the staging directory, or null if it is not copied.
+     */
+    private void addBookToPath(Path file, Path staged, Path target, String contentHash) throws IOException {
         Path destDir = target.getParent();
 
         if (!Files.isDirectory(destDir) || !Files.exists(destDir)) {
             Files.createDirectories(destDir);
         }
-        Files.copy(file, target);
-    }
-
-    private Path getBookTargetDirectoryPath(String authorName, String bookTitle, int id) {
-        return Path.of(mainPath.toString(), getRelativePathToBook(authorName, bookTitle, id));
+        // The staged copy is in the library already, it only needs renaming. The hash was taken from the bytes as they
+        // were read, verifying checks what reached the disk.
+        if (staged != null)
+            IngestMode.MOVE.transfer(staged, target, contentHash, ApplicationConfig.VERIFY_INGEST);
+        else
+            ApplicationConfig.INGEST_MODE.transfer(file, target, contentHash, ApplicationConfig.VERIFY_INGEST);
     }
 
     private String getBookFileName(String bookTitle, String fileType) {
         return String.format("%s.%s", bookTitle, fileType);
     }
 
-    private Book createRecordsFromMetadata(HashMap<String, String> meta) throws DAOException {
+    /**
+     * Create the records of a new book, with its publisher and authors if they are not in the library yet, in a single
+     * transaction. The links to all of its authors are written in one batch.
+     *
+     * @param links filled with the links created to the book's authors.
+     */
+    private Book createRecordsFromMetadata(HashMap<String, String> meta, String contentHash, List<BookAuthor> links)
+            throws DAOException {
         Book book = new Book();
         book.setTitle(meta.getOrDefault("title", meta.get("filename")));
+        book.setContentHash(contentHash);
 
-        if (bookSet.getByName(book.getTitle()) != null) {
-            throw new RecordAlreadyExistsException("Book already exists in records.");
-        }
-
+        Publisher newPublisher = null;
         if (meta.get("filetype").equalsIgnoreCase("epub")) {
-            setEpub(book, meta);
+            book.setIsbn(meta.getOrDefault("isbn", ""));
+            book.setUuid(meta.getOrDefault("uuid", ""));
+            String publisherName = meta.get("publisher");
+            if (publisherName != null) {
+                Publisher publisher = publisherSet.getByName(publisherName);
+                if (publisher == null)
+                    publisher = newPublisher = new Publisher(publisherName);
+                book.setPublisher(publisher);
+            }
         }
 
         book.setPublishDate(MetaReader
                 .parseDate(meta.getOrDefault("date", Instant.now().truncatedTo(ChronoUnit.SECONDS).toString())));
 
-        bookDAO.create(book);
-        String authorName = meta.getOrDefault("author", meta.getOrDefault("creator", "Unknown"));
-        Author author = createAuthorFromName(authorName);
-        book.setPath(getRelativePathToBook(author.getName(), book.getTitle(), book.getId()));
-        bookDAO.update(book);
-        addBookAuthorLink(book.getId(), author.getId());
+        Map<String, Author> newAuthors = new LinkedHashMap<>();
+        List<Author> authors = resolveAuthors(MetaReader.getAuthorNames(meta), newAuthors);
+        try (Connection con = ConnectionFactory.beginTransaction()) {
+            if (newPublisher != null)
+                publisherDAO.create(newPublisher);
+            authorDAO.createAll(newAuthors.values());
+            book.setPath(getRelativePathToBook(authors.get(0).getName(), book.getTitle()));
+            ((JDBCBookDAO) this.bookDAO).createNumbered(book);
+            List<BookAuthor> created = createBookAuthorLinks(book, authors);
+            bookAuthorDAO.createAll(created);
+            links.addAll(created);
+            con.commit();
+        } catch (SQLException e) {
+            throw new DAOException(String.format("Failed to store records of %s: %s", book.getTitle(), e.getMessage()), e);
+        }
+
+        if (newPublisher != null)
+            this.publisherSet.add(newPublisher);
+        this.authorSet.addAll(newAuthors.values());
+        if (!lazy) {
+            for (BookAuthor link : links) {
+                this.bookAuthorLinks.add(link.getBookId(), link.getAuthorId());
+            }
+        }
         return book;
     }
 
-    private void setEpub(Book book, HashMap<String, String> meta) throws DAOException {
-        book.setIsbn(meta.getOrDefault("isbn", ""));
-        book.setUuid(meta.getOrDefault("uuid", ""));
-        String publisherMeta = meta.get("publisher");
-        Publisher publisher = createPublisherFromName(publisherMeta);
-        book.setPublisher(publisher);
+    /**
+     * Look up the authors of a book by name in a single pass. Names not in the library yet get a new author, kept in
+     * {@code newAuthors} by lower case name so that books sharing a new author share its record.
+     */
+    private List<Author> resolveAuthors(List<String> names, Map<String, Author> newAuthors) {
+        List<Author> authors = new ArrayList<>(names.size());
+        for (String name : names) {
+            Author author = authorSet.getByName(name);
+            if (author == null)
+                author = newAuthors.computeIfAbsent(name.toLowerCase(Locale.ROOT), k -> new Author(name));
+            authors.add(author);
+        }
+        return authors;
     }
 
-    private void addBookAuthorLink(int bookId, int authorId) throws DAOException {
-        BookAuthor ba = new BookAuthor(bookId, authorId);
-        this.bookAuthorDAO.create(ba);
-        this.bookAuthorLinkSet.add(ba);
+    private List<BookAuthor> createBookAuthorLinks(Book book, List<Author> authors) {
+        List<BookAuthor> links = new ArrayList<>(authors.size());
+        for (Author author : authors) {
+            links.add(new BookAuthor(book.getId(), author.getId()));
+        }
+        return links;
     }
 
     private void addBookTagLink(int bookId, int tagId) throws DAOException {
+        // Tagging a book twice with the same tag is a no-op, the links table only allows one of each
+        boolean tagged = lazy
+                ? ((GenericJointTableDAO) this.bookTagDAO).readSecondColIdsByFirstColIds(bookId).contains(tagId)
+                : this.bookTagLinks.contains(bookId, tagId);
+        if (tagged)
+            return;
+
         BookTag bt = new BookTag(bookId, tagId);
         this.bookTagDAO.create(bt);
-        this.bookTagLinkSet.add(bt);
-    }
-
-    private Author createAuthorFromName(String name) throws DAOException {
-        Author author = authorSet.getByName(name);
-        if (author == null) {
-            author = new Author(name);
-            authorDAO.create(author);
-            this.authorSet.add(author);
+        if (!lazy)
+            this.bookTagLinks.add(bookId, tagId);
+        synchronized (tagIndex) {
+            if (tagIndexBuilt)
+                tagIndex.addTag(bookId, tagId);
         }
-        return author;
-    }
-
-    private Publisher createPublisherFromName(String publisherName) throws DAOException {
-        if (publisherName != null) {
-            Publisher publisher = publisherSet.getByName(publisherName);
-            if (publisher == null) {
-                publisher = new Publisher(publisherName);
-                publisherDAO.create(publisher);
-                this.publisherSet.add(publisher);
-            }
-            return publisher;
-        }
-        return null;
+        Tag tag = this.tagSet.getById(tagId);
+        if (tag != null && searchIndexBuilt)
+            this.searchIndex.add(bookId, SearchIndex.Field.TAG, tag.getName());
     }
 
     private void createThumbnail(File file, Path targetLocation, String fileType) throws ThumbnailGeneratorException {
@@ -379,12 +1366,28 @@ public class MainController {
         }
     }
 
+    /**
+     * @return every book. With lazy loading they are read from the database on every call.
+     */
     public Set<Book> getBooks() {
-        return this.bookSet;
+        if (!lazy)
+            return this.bookSet;
+
+        try {
+            return readAllBooks();
+        } catch (DAOException e) {
+            System.err.format("Failed to read books from database: %s%n", e.getMessage());
+            return new IndexedRecordSet<>();
+        }
     }
 
     public Book getBookByTitle(String title) {
-        return this.bookSet.getByName(title);
+        try {
+            return findBookByTitle(title);
+        } catch (DAOException e) {
+            System.err.format("Failed to read book %s from database: %s%n", title, e.getMessage());
+            return null;
+        }
     }
 
     public Set<Integer> readBookIdsByTagId(int id) throws DAOException {
@@ -404,10 +1407,14 @@ public class MainController {
     }
 
     public Set<Book> getBooksByTag(int tagId) throws DAOException {
-        Set<Integer> ids = this.readBookIdsByTagId(tagId);
+        buildTagIndex();
         Set<Book> books = new HashSet<>();
-        for (int id : ids) {
-            books.add(this.bookSet.getById(id));
+        for (int id : tagIndex.getBookIds(tagId)) {
+            // With lazy loading the book may have been removed from the database by another program since the
+            // index was built
+            Book book = findBook(id);
+            if (book != null)
+                books.add(book);
         }
         return books;
     }
@@ -417,14 +1424,56 @@ public class MainController {
     }
 
     public Set<Tag> getTagsOfBook(int bookId) throws DAOException {
-        Set<Integer> tagIds = ((GenericJointTableDAO) this.bookTagDAO).readSecondColIdsByFirstColIds(bookId);
         Set<Tag> tags = new LinkedHashSet<>();
+        if (!lazy) {
+            for (int id : this.bookTagLinks.getRight(bookId)) {
+                tags.add(getTagById(id));
+            }
+            return tags;
+        }
+
+        Set<Integer> tagIds = ((GenericJointTableDAO) this.bookTagDAO).readSecondColIdsByFirstColIds(bookId);
         for (int id : tagIds) {
             tags.add(getTagById(id));
         }
         return tags;
     }
 
+    /**
+     * @return the authors of a book, in the order they were linked.
+     */
+    public List<Author> getAuthorsOfBook(int bookId) throws DAOException {
+        List<Author> authors = new ArrayList<>();
+        if (!lazy) {
+            for (int id : this.bookAuthorLinks.getRight(bookId)) {
+                authors.add(this.authorSet.getById(id));
+            }
+            return authors;
+        }
+
+        for (BookAuthor ba : ((JDBCBookAuthorDAO) this.bookAuthorDAO).readByBookIdRange(bookId, bookId)) {
+            authors.add(this.authorSet.getById(ba.getAuthorId()));
+        }
+        return authors;
+    }
+
+    /**
+     * @return the books of an author, in the order they were linked, or when read from the database in the order of
+     * their IDs.
+     */
+    public List<Book> getBooksByAuthor(int authorId) throws DAOException {
+        int[] bookIds = lazy
+                ? ((JDBCBookAuthorDAO) this.bookAuthorDAO).readBookIdsByAuthorId(authorId)
+                : this.bookAuthorLinks.getLeft(authorId);
+        List<Book> books = new ArrayList<>(bookIds.length);
+        for (int id : bookIds) {
+            Book book = findBook(id);
+            if (book != null)
+                books.add(book);
+        }
+        return books;
+    }
+
     public Set<Series> getSeries() {
         return this.seriesSet;
     }
@@ -446,22 +1495,62 @@ public class MainController {
     }
 
     public Tag getTagById(int id) {
-        return this.tagSet.stream().filter(t -> t.getId() == id).findFirst().get();
+        return this.tagSet.getById(id);
     }
 
     public Tag getTagByName(String name) {
         return this.tagSet.getByName(name);
     }
 
+    /**
+     * @return every book to author link, created from the link index on every call and without their row IDs. With
+     * lazy loading they are read from the database on every call.
+     */
     public Set<BookAuthor> getBookAuthorLinks() {
-        return this.bookAuthorLinkSet;
+        if (!lazy) {
+            Set<BookAuthor> links = new LinkedHashSet<>();
+            this.bookAuthorLinks.forEach((bookId, authorId) -> links.add(new BookAuthor(bookId, authorId)));
+            return links;
+        }
+
+        try {
+            return readAllBookAuthorLinks();
+        } catch (DAOException e) {
+            System.err.format("Failed to read book author links from database: %s%n", e.getMessage());
+            return new IndexedRecordSet<>();
+        }
     }
 
+    /**
+     * @return every book to tag link, created from the link index on every call and without their row IDs. With lazy
+     * loading they are read from the database on every call.
+     */
     public Set<BookTag> getBookTagLinks() {
-        return this.bookTagLinkSet;
+        if (!lazy) {
+            Set<BookTag> links = new LinkedHashSet<>();
+            this.bookTagLinks.forEach((bookId, tagId) -> links.add(new BookTag(bookId, tagId)));
+            return links;
+        }
+
+        try {
+            return readAllBookTagLinks();
+        } catch (DAOException e) {
+            System.err.format("Failed to read book tag links from database: %s%n", e.getMessage());
+            return new IndexedRecordSet<>();
+        }
     }
 
     public Book getLastInsertedBook() {
+        if (lazy) {
+            try {
+                Book book = ((JDBCBookDAO) this.bookDAO).readLastInsertedRow();
+                return book != null ? findBook(book.getId()) : null;
+            } catch (DAOException e) {
+                System.err.format("Failed to read last book from database: %s%n", e.getMessage());
+                return null;
+            }
+        }
+
         Iterator<Book> iBooks = this.bookSet.iterator();
         Book book = null;
         while (iBooks.hasNext()) {
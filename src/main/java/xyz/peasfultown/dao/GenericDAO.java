@@ -1,5 +1,6 @@
 package xyz.peasfultown.dao;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -12,5 +13,24 @@ public interface GenericDAO<P> {
 
     void update(P object) throws DAOException;
 
+    /**
+     * Create all objects in one batch and assign their new IDs. Runs in its own transaction unless the caller
+     * already started one.
+     */
+    default void createAll(Collection<P> objects) throws DAOException {
+        for (P object : objects) {
+            create(object);
+        }
+    }
+
+    /**
+     * Update all objects in one batch. Runs in its own transaction unless the caller already started one.
+     */
+    default void updateAll(Collection<P> objects) throws DAOException {
+        for (P object : objects) {
+            update(object);
+        }
+    }
+
     void delete(int id) throws DAOException;
 }
@@ -3,13 +3,14 @@ package xyz.peasfultown.dao.impl;
 import xyz.peasfultown.dao.DAOException;
 import xyz.peasfultown.dao.GenericDAO;
 import xyz.peasfultown.domain.Record;
-import xyz.peasfultown.domain.SearchableRecordSet;
+import xyz.peasfultown.domain.ConcurrentRecordSet;
 import xyz.peasfultown.helpers.ConnectionFactory;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.HashSet;
 
 public abstract class JDBCAbstractDAO<P extends Record> implements GenericDAO<P> {
@@ -54,7 +55,7 @@ public abstract class JDBCAbstractDAO<P extends Record> implements GenericDAO<P>
     public void create(P object) throws DAOException {
         String createQuery = this.getCreateQuery();
 
-        try (Connection con = ConnectionFactory.getConnection();
+        try (Connection con = ConnectionFactory.getWriteConnection();
              PreparedStatement stmt = con.prepareStatement(createQuery)) {
             setStatementObject(stmt, object);
             if (stmt.executeUpdate() < EXECUTE_UPDATE_SUCCESS) {
@@ -66,13 +67,64 @@ public abstract class JDBCAbstractDAO<P extends Record> implements GenericDAO<P>
         }
     }
 
+    /**
+     * Insert all objects with a single batched statement. SQLite hands out consecutive row IDs to the rows of a batch
+     * since nothing else can write in between, so the IDs are counted back from the last inserted one.
+     */
+    @Override
+    public void createAll(Collection<P> objects) throws DAOException {
+        createAll(objects, getCreateQuery());
+    }
+
+    /**
+     * Same as {@link #createAll(Collection)} with another insert statement, which must insert one row per object.
+     */
+    protected void createAll(Collection<P> objects, String createQuery) throws DAOException {
+        if (objects.isEmpty())
+            return;
+
+        try (Connection con = ConnectionFactory.getWriteConnection()) {
+            boolean ownTransaction = con.getAutoCommit();
+            if (ownTransaction)
+                con.setAutoCommit(false);
+            try {
+                try (PreparedStatement stmt = con.prepareStatement(createQuery)) {
+                    for (P object : objects) {
+                        setStatementObject(stmt, object);
+                        stmt.addBatch();
+                    }
+                    for (int count : stmt.executeBatch()) {
+                        if (count < EXECUTE_UPDATE_SUCCESS)
+                            throw new DAOException("Failed to create object.");
+                    }
+                }
+
+                int id = getLastInsertId(con) - objects.size();
+                for (P object : objects) {
+                    assignObjectId(object, ++id);
+                }
+                if (ownTransaction)
+                    con.commit();
+            } catch (Exception e) {
+                if (ownTransaction)
+                    con.rollback();
+                throw e;
+            } finally {
+                if (ownTransaction)
+                    con.setAutoCommit(true);
+            }
+        } catch (Exception e) {
+            throw new DAOException(e.getMessage(), e);
+        }
+    }
+
     public HashSet<P> readAll() throws DAOException {
         String readAllQuery = this.getReadAllQuery();
 
-        try (Connection con = ConnectionFactory.getConnection();
+        try (Connection con = ConnectionFactory.getReadConnection();
             PreparedStatement stmt = con.prepareStatement(readAllQuery)) {
             try (ResultSet rs = stmt.executeQuery()) {
-                HashSet<P> objects = new SearchableRecordSet<>();
+                HashSet<P> objects = new ConcurrentRecordSet<>();
                 while (rs.next()) {
                     objects.add(getObjectFromResultSet(rs));
                 }
@@ -87,7 +139,7 @@ public abstract class JDBCAbstractDAO<P extends Record> implements GenericDAO<P>
     public P read(int id) throws DAOException {
         String readQuery = this.getReadByIdQuery();
 
-        try (Connection con = ConnectionFactory.getConnection();
+        try (Connection con = ConnectionFactory.getReadConnection();
              PreparedStatement stmt = con.prepareStatement(readQuery)) {
             setStatementId(stmt, id);
             try (ResultSet rs = stmt.executeQuery()) {
@@ -105,7 +157,7 @@ public abstract class JDBCAbstractDAO<P extends Record> implements GenericDAO<P>
     public P read(String str) throws DAOException {
         String readQuery = this.getReadByNameQuery();
 
-        try (Connection con = ConnectionFactory.getConnection();
+        try (Connection con = ConnectionFactory.getReadConnection();
              PreparedStatement stmt = con.prepareStatement(readQuery)) {
             setStatementString(stmt, str);
             try (ResultSet rs = stmt.executeQuery()) {
@@ -122,7 +174,7 @@ public abstract class JDBCAbstractDAO<P extends Record> implements GenericDAO<P>
     public P readLastInsertedRow() throws DAOException {
         String readQuery = this.getLastInsertedRowQuery();
 
-        try (Connection con = ConnectionFactory.getConnection();
+        try (Connection con = ConnectionFactory.getReadConnection();
             PreparedStatement stmt = con.prepareStatement(readQuery);
             ResultSet rs = stmt.executeQuery()) {
             if (rs.next())
@@ -137,7 +189,7 @@ public abstract class JDBCAbstractDAO<P extends Record> implements GenericDAO<P>
     @Override
     public void update(P object) throws DAOException {
         String updateQuery = getUpdateQuery();
-        try (Connection con = ConnectionFactory.getConnection();
+        try (Connection con = ConnectionFactory.getWriteConnection();
              PreparedStatement stmt = con.prepareStatement(updateQuery)) {
 
             setStatementObject(stmt, object);
@@ -149,11 +201,46 @@ public abstract class JDBCAbstractDAO<P extends Record> implements GenericDAO<P>
         }
     }
 
+    @Override
+    public void updateAll(Collection<P> objects) throws DAOException {
+        if (objects.isEmpty())
+            return;
+
+        try (Connection con = ConnectionFactory.getWriteConnection()) {
+            boolean ownTransaction = con.getAutoCommit();
+            if (ownTransaction)
+                con.setAutoCommit(false);
+            try {
+                try (PreparedStatement stmt = con.prepareStatement(getUpdateQuery())) {
+                    for (P object : objects) {
+                        setStatementObject(stmt, object);
+                        stmt.addBatch();
+                    }
+                    for (int count : stmt.executeBatch()) {
+                        if (count < EXECUTE_UPDATE_SUCCESS)
+                            throw new DAOException("Failed to update record.");
+                    }
+                }
+                if (ownTransaction)
+                    con.commit();
+            } catch (Exception e) {
+                if (ownTransaction)
+                    con.rollback();
+                throw e;
+            } finally {
+                if (ownTransaction)
+                    con.setAutoCommit(true);
+            }
+        } catch (Exception e) {
+            throw new DAOException(e.getMessage(), e);
+        }
+    }
+
     @Override
     public void delete(int id) throws DAOException {
         String deleteQuery = getDeleteQuery();
 
-        try (Connection con = ConnectionFactory.getConnection();
+        try (Connection con = ConnectionFactory.getWriteConnection();
              PreparedStatement stmt = con.prepareStatement(deleteQuery)) {
             setStatementId(stmt, id);
             if (stmt.executeUpdate() < EXECUTE_UPDATE_SUCCESS) {
@@ -165,11 +252,15 @@ public abstract class JDBCAbstractDAO<P extends Record> implements GenericDAO<P>
     }
 
     public void setNewId(Connection con, P object) throws DAOException {
+        assignObjectId(object, getLastInsertId(con));
+    }
+
+    private int getLastInsertId(Connection con) throws DAOException {
         String lastIdQuery = getLastInsertIdQuery();
         try (PreparedStatement stmt = con.prepareStatement(lastIdQuery);
              ResultSet rs = stmt.executeQuery()) {
             if (rs.next())
-                assignObjectId(object, rs.getInt("id"));
+                return rs.getInt("id");
             else
                 throw new DAOException("Failed to assign new record ID");
         } catch (Exception e) {
@@ -179,7 +270,7 @@ public abstract class JDBCAbstractDAO<P extends Record> implements GenericDAO<P>
 
     public int count() throws DAOException {
         String countQuery = this.getCountRowsQuery();
-        try (Connection con = ConnectionFactory.getConnection();
+        try (Connection con = ConnectionFactory.getReadConnection();
             PreparedStatement stmt = con.prepareStatement(countQuery)) {
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next())
@@ -45,7 +45,7 @@ public class JDBCAuthorDAO extends JDBCAbstractDAO<Author> {
 
     @Override
     protected String getCountRowsQuery() {
-        return "SELECT COUNT(*) FROM authors AS count;";
+        return "SELECT COUNT(*) AS count FROM authors;";
     }
 
     @Override
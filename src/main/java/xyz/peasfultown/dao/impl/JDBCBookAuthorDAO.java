@@ -2,10 +2,16 @@ package xyz.peasfultown.dao.impl;
 
 import xyz.peasfultown.dao.DAOException;
 import xyz.peasfultown.domain.BookAuthor;
+import xyz.peasfultown.domain.LinkIndex;
+import xyz.peasfultown.helpers.ConnectionFactory;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 
 public class JDBCBookAuthorDAO extends JDBCAbstractDAO<BookAuthor> {
     @Override
@@ -45,7 +51,7 @@ public class JDBCBookAuthorDAO extends JDBCAbstractDAO<BookAuthor> {
 
     @Override
     protected String getCountRowsQuery() {
-        return "SELECT COUNT(*) FROM books_authors_link AS count;";
+        return "SELECT COUNT(*) AS count FROM books_authors_link;";
     }
 
     @Override
@@ -53,6 +59,18 @@ public class JDBCBookAuthorDAO extends JDBCAbstractDAO<BookAuthor> {
         return "";
     }
 
+    protected String getReadByBookIdRangeQuery() {
+        return "SELECT * FROM books_authors_link WHERE book_id BETWEEN ? AND ?;";
+    }
+
+    protected String getReadBookIdsByAuthorIdQuery() {
+        return "SELECT book_id FROM books_authors_link WHERE author_id=?;";
+    }
+
+    protected String getReadLinkIndexQuery() {
+        return "SELECT book_id, author_id FROM books_authors_link ORDER BY id;";
+    }
+
     @Override
     protected void setStatementObject(PreparedStatement stmt, BookAuthor object) throws DAOException {
         try {
@@ -82,4 +100,63 @@ public class JDBCBookAuthorDAO extends JDBCAbstractDAO<BookAuthor> {
     public BookAuthor read(String str) throws DAOException {
         return null;
     }
+
+    /**
+     * Read the links of all books with IDs in the given range, by book and in the order they were created.
+     */
+    public List<BookAuthor> readByBookIdRange(int firstBookId, int lastBookId) throws DAOException {
+        try (Connection con = ConnectionFactory.getReadConnection();
+             PreparedStatement stmt = con.prepareStatement(getReadByBookIdRangeQuery())) {
+            stmt.setInt(1, firstBookId);
+            stmt.setInt(2, lastBookId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                List<BookAuthor> links = new ArrayList<>();
+                while (rs.next()) {
+                    links.add(getObjectFromResultSet(rs));
+                }
+                // Already grouped by book through the index, only the few links of each book are reordered
+                links.sort(Comparator.comparingInt(BookAuthor::getBookId).thenComparingInt(BookAuthor::getId));
+                return links;
+            }
+        } catch (Exception e) {
+            throw new DAOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Read the IDs of an author's books, in the order of the book IDs.
+     */
+    public int[] readBookIdsByAuthorId(int authorId) throws DAOException {
+        try (Connection con = ConnectionFactory.getReadConnection();
+             PreparedStatement stmt = con.prepareStatement(getReadBookIdsByAuthorIdQuery())) {
+            stmt.setInt(1, authorId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                List<Integer> ids = new ArrayList<>();
+                while (rs.next()) {
+                    ids.add(rs.getInt("book_id"));
+                }
+                return ids.stream().mapToInt(Integer::intValue).toArray();
+            }
+        } catch (Exception e) {
+            throw new DAOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Read every link into a {@link LinkIndex} from book IDs to author IDs, without creating a link record per row.
+     */
+    public LinkIndex readLinkIndex() throws DAOException {
+        try (Connection con = ConnectionFactory.getReadConnection();
+             PreparedStatement stmt = con.prepareStatement(getReadLinkIndexQuery())) {
+            try (ResultSet rs = stmt.executeQuery()) {
+                LinkIndex links = new LinkIndex();
+                while (rs.next()) {
+                    links.add(rs.getInt(1), rs.getInt(2));
+                }
+                return links;
+            }
+        } catch (Exception e) {
+            throw new DAOException(e.getMessage(), e);
+        }
+    }
 }
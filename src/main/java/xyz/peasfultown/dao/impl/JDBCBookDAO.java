@@ -5,12 +5,16 @@ import xyz.peasfultown.domain.Book;
 import xyz.peasfultown.domain.Publisher;
 import xyz.peasfultown.domain.SearchableRecordSet;
 import xyz.peasfultown.domain.Series;
+import xyz.peasfultown.helpers.ConnectionFactory;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Types;
-import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 
 public class JDBCBookDAO extends JDBCAbstractDAO<Book> {
@@ -36,15 +40,15 @@ public class JDBCBookDAO extends JDBCAbstractDAO<Book> {
     protected String getCreateQuery() {
         return "INSERT INTO books " +
                 "(isbn, uuid, title, series_id, series_number, publisher_id, " +
-                "date_published, date_added, date_modified, path) " +
-                "VALUES (?,?,?,?,?,?,?,?,?,?);";
+                "date_published, date_added, date_modified, path, content_hash) " +
+                "VALUES (?,?,?,?,?,?,?,?,?,?,?);";
     }
 
     @Override
     protected String getUpdateQuery() {
         return "UPDATE books " +
                 "SET isbn=?,uuid=?,title=?,series_id=?,series_number=?,publisher_id=?," +
-                "date_published=?,date_added=?,date_modified=?,path=? " +
+                "date_published=?,date_added=?,date_modified=?,path=?,content_hash=? " +
                 "WHERE id=?;";
     }
 
@@ -78,7 +82,146 @@ public class JDBCBookDAO extends JDBCAbstractDAO<Book> {
 
     @Override
     protected String getCountRowsQuery() {
-        return "SELECT COUNT(*) from books AS count;";
+        return "SELECT COUNT(*) AS count FROM books;";
+    }
+
+    protected String getReadPageQuery() {
+        return "SELECT B.*, P.name AS publisher_name, S.name AS series_name FROM books B " +
+                "LEFT JOIN publishers P ON B.publisher_id = P.id " +
+                "LEFT JOIN series S ON B.series_id = S.id " +
+                "WHERE B.id > ? ORDER BY B.id ASC LIMIT ?;";
+    }
+
+    protected String getReadByTitleIgnoreCaseQuery() {
+        return "SELECT B.*, P.name AS publisher_name, S.name AS series_name FROM books B " +
+                "LEFT JOIN publishers P ON B.publisher_id = P.id " +
+                "LEFT JOIN series S ON B.series_id = S.id " +
+                "WHERE B.title=? COLLATE NOCASE LIMIT 1;";
+    }
+
+    protected String getReadByContentHashQuery() {
+        return "SELECT B.*, P.name AS publisher_name, S.name AS series_name FROM books B " +
+                "LEFT JOIN publishers P ON B.publisher_id = P.id " +
+                "LEFT JOIN series S ON B.series_id = S.id " +
+                "WHERE B.content_hash=? LIMIT 1;";
+    }
+
+    protected String getReadIdAtOffsetQuery() {
+        return "SELECT id FROM books ORDER BY id ASC LIMIT 1 OFFSET ?;";
+    }
+
+    /**
+     * Insert a book with " (id)" appended to its path. The statement picks the ID itself the way AUTOINCREMENT does,
+     * one past the largest ID the table ever held, so the row is written once with its final path.
+     */
+    protected String getCreateNumberedQuery() {
+        return "INSERT INTO books " +
+                "(isbn, uuid, title, series_id, series_number, publisher_id, " +
+                "date_published, date_added, date_modified, path, content_hash, id) " +
+                "SELECT ?,?,?,?,?,?,?,?,?,? || ' (' || N.id || ')',?,N.id FROM (SELECT 1 + MAX(" +
+                "IFNULL((SELECT seq FROM sqlite_sequence WHERE name='books'), 0), " +
+                "IFNULL((SELECT MAX(id) FROM books), 0)) AS id) N";
+    }
+
+    /**
+     * Insert a book whose path ends in its own ID in a single statement, instead of inserting it and updating its path
+     * once the ID is known. The ID and the final path are returned by the insert and set on the book.
+     *
+     * @param book book to insert, its path without the ID.
+     */
+    public void createNumbered(Book book) throws DAOException {
+        try (Connection con = ConnectionFactory.getWriteConnection();
+             PreparedStatement stmt = con.prepareStatement(getCreateNumberedQuery() + " RETURNING id, path;")) {
+            setStatementObject(stmt, book);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next())
+                    throw new DAOException("Failed to create object.");
+                book.setId(rs.getInt("id"));
+                book.setPath(rs.getString("path"));
+            }
+        } catch (Exception e) {
+            throw new DAOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Same as {@link #createNumbered(Book)} for many books, in a single batched statement.
+     */
+    public void createAllNumbered(Collection<Book> books) throws DAOException {
+        createAll(books, getCreateNumberedQuery() + ";");
+        for (Book book : books) {
+            book.setPath(book.getPath() + " (" + book.getId() + ")");
+        }
+    }
+
+    /**
+     * Read a page of books ordered by ID, starting after the given ID (keyset pagination). Pass 0 for the first page.
+     */
+    public List<Book> readPage(int afterId, int limit) throws DAOException {
+        try (Connection con = ConnectionFactory.getReadConnection();
+             PreparedStatement stmt = con.prepareStatement(getReadPageQuery())) {
+            stmt.setInt(1, afterId);
+            stmt.setInt(2, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                List<Book> books = new ArrayList<>(limit);
+                while (rs.next()) {
+                    books.add(getObjectFromResultSet(rs));
+                }
+                return books;
+            }
+        } catch (Exception e) {
+            throw new DAOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Read a book by its title, ignoring the case of ASCII letters. The title column and its index ix_books_title are
+     * case-insensitive already.
+     *
+     * @return the book, or null if there is no book with that title.
+     */
+    public Book readByTitleIgnoreCase(String title) throws DAOException {
+        try (Connection con = ConnectionFactory.getReadConnection();
+             PreparedStatement stmt = con.prepareStatement(getReadByTitleIgnoreCaseQuery())) {
+            stmt.setString(1, title);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? getObjectFromResultSet(rs) : null;
+            }
+        } catch (Exception e) {
+            throw new DAOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Read the book whose file has the given content hash, see {@link Book#getContentHash()}.
+     *
+     * @return the book, or null if no book has that hash.
+     */
+    public Book readByContentHash(String contentHash) throws DAOException {
+        try (Connection con = ConnectionFactory.getReadConnection();
+             PreparedStatement stmt = con.prepareStatement(getReadByContentHashQuery())) {
+            stmt.setString(1, contentHash);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? getObjectFromResultSet(rs) : null;
+            }
+        } catch (Exception e) {
+            throw new DAOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return ID of the book at the given position in ID order, or -1 if there are not that many books.
+     */
+    public int readIdAtOffset(int offset) throws DAOException {
+        try (Connection con = ConnectionFactory.getReadConnection();
+             PreparedStatement stmt = con.prepareStatement(getReadIdAtOffsetQuery())) {
+            stmt.setInt(1, offset);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt("id") : -1;
+            }
+        } catch (Exception e) {
+            throw new DAOException(e.getMessage(), e);
+        }
     }
 
     @Override
@@ -104,9 +247,10 @@ public class JDBCBookDAO extends JDBCAbstractDAO<Book> {
             stmt.setString(8, object.getAddedDate().toString());
             stmt.setString(9, object.getModifiedDate().toString());
             stmt.setString(10, object.getPath());
+            stmt.setString(11, object.getContentHash());
 
             if (object.getId() > 0)
-                stmt.setInt(11, object.getId());
+                stmt.setInt(12, object.getId());
         } catch (SQLException e) {
             throw new DAOException(e.getMessage(), e);
         }
@@ -120,7 +264,7 @@ public class JDBCBookDAO extends JDBCAbstractDAO<Book> {
             book.setUuid(rs.getString("uuid"));
             book.setIsbn(rs.getString("isbn"));
             book.setTitle(rs.getString("title"));
-            Integer seriesId = rs.getInt("series_id");
+            int seriesId = rs.getInt("series_id");
             if (seriesId > 0) {
                 Series series = (Series) seriesSet.getById(seriesId);
                 if (series == null) {
@@ -129,7 +273,7 @@ public class JDBCBookDAO extends JDBCAbstractDAO<Book> {
                 }
                 book.setSeries(series);
             }
-            Integer publisherId = rs.getInt("publisher_id");
+            int publisherId = rs.getInt("publisher_id");
             if (publisherId > 0) {
                 Publisher publisher = (Publisher) publisherSet.getById(publisherId);
                 if (publisher == null) {
@@ -139,10 +283,12 @@ public class JDBCBookDAO extends JDBCAbstractDAO<Book> {
                 book.setPublisher(publisher);
             }
             book.setSeriesNumber(rs.getDouble("series_number"));
-            book.setPublishDate(Instant.parse(rs.getString("date_published")));
-            book.setAddedDate(Instant.parse(rs.getString("date_added")));
-            book.setModifiedDate(Instant.parse(rs.getString("date_modified")));
+            // Straight to epoch seconds, and the path after the ID and title it may be made of, see Book
+            book.setPublishEpochSecond(Book.parseEpochSecond(rs.getString("date_published")));
+            book.setAddedEpochSecond(Book.parseEpochSecond(rs.getString("date_added")));
+            book.setModifiedEpochSecond(Book.parseEpochSecond(rs.getString("date_modified")));
             book.setPath(rs.getString("path"));
+            book.setContentHash(rs.getString("content_hash"));
         } catch (SQLException e) {
             throw new DAOException(e.getMessage(), e);
         }
@@ -3,13 +3,18 @@ package xyz.peasfultown.dao.impl;
 import xyz.peasfultown.dao.DAOException;
 import xyz.peasfultown.dao.GenericJointTableDAO;
 import xyz.peasfultown.domain.BookTag;
+import xyz.peasfultown.domain.LinkIndex;
 import xyz.peasfultown.helpers.ConnectionFactory;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.TreeMap;
 
 public class JDBCBookTagDAO extends JDBCAbstractDAO<BookTag> implements GenericJointTableDAO {
     @Override
@@ -54,15 +59,23 @@ public class JDBCBookTagDAO extends JDBCAbstractDAO<BookTag> implements GenericJ
 
     @Override
     protected String getCountRowsQuery() {
-        return "SELECT COUNT(id) FROM books_tags_link AS count;";
+        return "SELECT COUNT(*) AS count FROM books_tags_link;";
     }
 
     protected String getReadBookIdsByTagIdQuery() {
-        return "SELECT * FROM books_tags_link WHERE tag_id=?;";
+        return "SELECT book_id FROM books_tags_link WHERE tag_id=?;";
     }
 
     protected String getReadTagIdsByBookIdQuery() {
-        return "SELECT * FROM books_tags_link WHERE book_id=?;";
+        return "SELECT id, tag_id FROM books_tags_link WHERE book_id=?;";
+    }
+
+    protected String getReadByBookIdRangeQuery() {
+        return "SELECT * FROM books_tags_link WHERE book_id BETWEEN ? AND ?;";
+    }
+
+    protected String getReadLinkIndexQuery() {
+        return "SELECT book_id, tag_id FROM books_tags_link ORDER BY id;";
     }
 
     @Override
@@ -90,10 +103,13 @@ public class JDBCBookTagDAO extends JDBCAbstractDAO<BookTag> implements GenericJ
         return link;
     }
 
+    /**
+     * Read the IDs of a tag's books, in the order of the book IDs.
+     */
     public Set<Integer> readBookIdsByTagId(int tagId) throws DAOException {
         String readQuery = getReadBookIdsByTagIdQuery();
 
-        try (Connection con = ConnectionFactory.getConnection();
+        try (Connection con = ConnectionFactory.getReadConnection();
              PreparedStatement stmt = con.prepareStatement(readQuery)) {
             setStatementId(stmt, tagId);
             try (ResultSet rs = stmt.executeQuery()) {
@@ -108,18 +124,22 @@ public class JDBCBookTagDAO extends JDBCAbstractDAO<BookTag> implements GenericJ
         }
     }
 
+    /**
+     * Read the IDs of a book's tags, in the order they were linked.
+     */
     public Set<Integer> readTagIdsByBookId(int bookId) throws DAOException {
         String readQuery = getReadTagIdsByBookIdQuery();
 
-        try (Connection con = ConnectionFactory.getConnection();
+        try (Connection con = ConnectionFactory.getReadConnection();
             PreparedStatement stmt = con.prepareStatement(readQuery)) {
             stmt.setInt(1, bookId);
             try (ResultSet rs = stmt.executeQuery()) {
-                Set<Integer> ids = new LinkedHashSet<>();
+                // The index on the book ID returns the tags by tag ID, link IDs give the order they were linked in
+                TreeMap<Integer, Integer> byLinkId = new TreeMap<>();
                 while (rs.next()) {
-                    ids.add(rs.getInt("tag_id"));
+                    byLinkId.put(rs.getInt("id"), rs.getInt("tag_id"));
                 }
-                return ids;
+                return new LinkedHashSet<>(byLinkId.values());
             }
         } catch (Exception e) {
             throw new DAOException(e.getMessage(), e);
@@ -133,4 +153,44 @@ public class JDBCBookTagDAO extends JDBCAbstractDAO<BookTag> implements GenericJ
     public Set<Integer> readSecondColIdsByFirstColIds(int id) throws DAOException {
         return readTagIdsByBookId(id);
     }
+
+    /**
+     * Read the links of all books with IDs in the given range, by book and in the order they were created.
+     */
+    public List<BookTag> readByBookIdRange(int firstBookId, int lastBookId) throws DAOException {
+        try (Connection con = ConnectionFactory.getReadConnection();
+             PreparedStatement stmt = con.prepareStatement(getReadByBookIdRangeQuery())) {
+            stmt.setInt(1, firstBookId);
+            stmt.setInt(2, lastBookId);
+            try (ResultSet rs = stmt.executeQuery()) {
+                List<BookTag> links = new ArrayList<>();
+                while (rs.next()) {
+                    links.add(getObjectFromResultSet(rs));
+                }
+                // Already grouped by book through the index, only the few links of each book are reordered
+                links.sort(Comparator.comparingInt(BookTag::getBookId).thenComparingInt(BookTag::getId));
+                return links;
+            }
+        } catch (Exception e) {
+            throw new DAOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Read every link into a {@link LinkIndex} from book IDs to tag IDs, without creating a link record per row.
+     */
+    public LinkIndex readLinkIndex() throws DAOException {
+        try (Connection con = ConnectionFactory.getReadConnection();
+             PreparedStatement stmt = con.prepareStatement(getReadLinkIndexQuery())) {
+            try (ResultSet rs = stmt.executeQuery()) {
+                LinkIndex links = new LinkIndex();
+                while (rs.next()) {
+                    links.add(rs.getInt(1), rs.getInt(2));
+                }
+                return links;
+            }
+        } catch (Exception e) {
+            throw new DAOException(e.getMessage(), e);
+        }
+    }
 }
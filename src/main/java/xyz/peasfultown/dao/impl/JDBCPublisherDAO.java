@@ -46,7 +46,7 @@ public class JDBCPublisherDAO extends JDBCAbstractDAO<Publisher> {
 
     @Override
     protected String getCountRowsQuery() {
-        return "SELECT COUNT(*) FROM publishers AS count;";
+        return "SELECT COUNT(*) AS count FROM publishers;";
     }
 
     @Override
@@ -49,7 +49,7 @@ public class JDBCSeriesDAO extends JDBCAbstractDAO<Series> {
 
     @Override
     protected String getCountRowsQuery() {
-        return "SELECT COUNT(*) FROM series AS count;";
+        return "SELECT COUNT(*) AS count FROM series;";
     }
 
     @Override
@@ -50,7 +50,7 @@ public class JDBCTagDAO extends JDBCAbstractDAO<Tag>{
 
     @Override
     protected String getCountRowsQuery() {
-        return "SELECT COUNT(*) FROM tags AS count;";
+        return "SELECT COUNT(*) AS count FROM tags;";
     }
 
     @Override
@@ -0,0 +1,55 @@
+package xyz.peasfultown.domain;
+
+import java.util.Arrays;
+
+/**
+ * Base class for records that let collections know when their ID or name is changed in place,
+ * so that indexes keyed on those fields stay correct. Listeners may be added and removed from any thread, changes are
+ * announced to the listeners registered when the change is made.
+ */
+public abstract class AbstractRecord implements Record {
+    private static final RecordListener[] NO_LISTENERS = new RecordListener[0];
+    private transient volatile RecordListener[] listeners = NO_LISTENERS;
+
+    public synchronized void addRecordListener(RecordListener listener) {
+        RecordListener[] updated = Arrays.copyOf(listeners, listeners.length + 1);
+        updated[listeners.length] = listener;
+        listeners = updated;
+    }
+
+    public synchronized void removeRecordListener(RecordListener listener) {
+        for (int i = 0; i < listeners.length; i++) {
+            if (listeners[i] == listener) {
+                RecordListener[] updated = new RecordListener[listeners.length - 1];
+                System.arraycopy(listeners, 0, updated, 0, i);
+                System.arraycopy(listeners, i + 1, updated, i, listeners.length - i - 1);
+                listeners = updated;
+                return;
+            }
+        }
+    }
+
+    protected void fireIdChanged(int oldId) {
+        fireIdChanged(oldId, getName());
+    }
+
+    /**
+     * Notify an ID change of a record whose name is made from its ID.
+     */
+    protected void fireIdChanged(int oldId, String oldName) {
+        if (oldId == getId())
+            return;
+        for (RecordListener l : listeners) {
+            l.recordIdChanged(this, oldId, oldName);
+        }
+    }
+
+    protected void fireNameChanged(String oldName) {
+        String newName = getName();
+        if (oldName == null ? newName == null : oldName.equals(newName))
+            return;
+        for (RecordListener l : listeners) {
+            l.recordNameChanged(this, oldName);
+        }
+    }
+}
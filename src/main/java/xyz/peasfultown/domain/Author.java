@@ -12,7 +12,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.StringJoiner;
 
-public class Author implements Record {
+public class Author extends AbstractRecord {
     private int id;
     private String name;
 
@@ -33,7 +33,9 @@ public class Author implements Record {
     }
 
     public void setId(int id) {
+        int oldId = this.id;
         this.id = id;
+        fireIdChanged(oldId);
     }
 
     public String getName() {
@@ -41,7 +43,9 @@ public class Author implements Record {
     }
 
     public void setName(String name) {
+        String oldName = this.name;
         this.name = name;
+        fireNameChanged(oldName);
     }
 
     public static Author[] getArrayOfAuthorsObjectsFromString(String authors) {
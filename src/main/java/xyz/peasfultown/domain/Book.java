@@ -8,31 +8,55 @@ package xyz.peasfultown.domain;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 
+import java.io.File;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
-import java.time.temporal.ChronoUnit;
 import java.util.StringJoiner;
+import java.util.UUID;
+
+/**
+ * A book, kept small since every book of the library is loaded: dates are held as epoch seconds, an ISBN written as
+ * digits only as a number, a UUID as two longs, and a path made of the author's directory, the title and the ID as
+ * the directory name shared with the author's other books. Values that do not fit these forms are kept as they are,
+ * the getters always return what was set.
+ */
+public class Book extends AbstractRecord {
+    private static final long SECONDS_PER_DAY = 86400;
+    // Tags of a packed ISBN, the digits are kept in the low bits
+    private static final long ISBN_13 = 1L << 62;
+    private static final long ISBN_10 = 1L << 61;
+    private static final String UUID_URN_PREFIX = "urn:uuid:";
 
-public class Book implements Record {
     private int id;
+    // Either the ISBN as given, or the packed ISBN if not 0
     private String isbn;
+    private long packedIsbn;
+    // Either the UUID as given, or its bits if packed
     private String uuid;
+    private long uuidHigh;
+    private long uuidLow;
+    private boolean uuidPacked;
+    private boolean uuidUrn;
     private String title;
     private Series series;
     private double seriesNumber;
     private Publisher publisher;
-    private Instant publishDate;
-    private Instant addedDate;
-    private Instant modifiedDate;
+    private long publishDate;
+    private long addedDate;
+    private long modifiedDate;
+    // Either the path as given, or null and the directory it is in, for "directory/title (id)" paths
     private String path;
+    private String pathDirectory;
+    private String contentHash;
 
     public Book() {
         this.isbn = "";
         this.uuid = "";
         this.seriesNumber = 1.0;
-        this.publishDate = Instant.now().truncatedTo(ChronoUnit.DAYS);
-        this.addedDate = this.modifiedDate = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        long now = Instant.now().getEpochSecond();
+        this.publishDate = now - Math.floorMod(now, SECONDS_PER_DAY);
+        this.addedDate = this.modifiedDate = now;
     }
 
     public Book(String title) {
@@ -42,9 +66,9 @@ public class Book implements Record {
 
     public Book(String isbn, String uuid, String title, Instant publishDate) {
         this(title);
-        this.isbn = isbn;
-        this.uuid = uuid;
-        this.publishDate = publishDate.truncatedTo(ChronoUnit.DAYS);
+        setIsbn(isbn);
+        setUuid(uuid);
+        setPublishDate(publishDate);
     }
 
     public Book(int id, String isbn, String uuid, String title, Series series, Double seriesNumber, Publisher publisher,
@@ -54,9 +78,34 @@ public class Book implements Record {
         this.series = series;
         this.seriesNumber = seriesNumber;
         this.publisher = publisher;
-        this.addedDate = addedDate.truncatedTo(ChronoUnit.SECONDS);
-        this.modifiedDate = modifiedDate.truncatedTo(ChronoUnit.SECONDS);
-        this.path = path;
+        setAddedDate(addedDate);
+        setModifiedDate(modifiedDate);
+        setPath(path);
+    }
+
+    /**
+     * Copy the fields of a book as they are now. The copy shares the series and publisher records of the original, and
+     * none of its listeners.
+     */
+    public Book(Book book) {
+        this.id = book.id;
+        this.isbn = book.isbn;
+        this.packedIsbn = book.packedIsbn;
+        this.uuid = book.uuid;
+        this.uuidHigh = book.uuidHigh;
+        this.uuidLow = book.uuidLow;
+        this.uuidPacked = book.uuidPacked;
+        this.uuidUrn = book.uuidUrn;
+        this.title = book.title;
+        this.series = book.series;
+        this.seriesNumber = book.seriesNumber;
+        this.publisher = book.publisher;
+        this.publishDate = book.publishDate;
+        this.addedDate = book.addedDate;
+        this.modifiedDate = book.modifiedDate;
+        this.path = book.path;
+        this.pathDirectory = book.pathDirectory;
+        this.contentHash = book.contentHash;
     }
 
     public int getId() {
@@ -64,23 +113,52 @@ public class Book implements Record {
     }
 
     public void setId(int id) {
+        // A derived path ends in the ID it was made with
+        unpackPath();
+        int oldId = this.id;
         this.id = id;
+        fireIdChanged(oldId);
     }
 
     public String getIsbn() {
-        return isbn;
+        return packedIsbn != 0 ? unpackIsbn(packedIsbn) : isbn;
     }
 
     public void setIsbn(String isbn) {
-        this.isbn = isbn;
+        long packed = packIsbn(isbn);
+        this.packedIsbn = packed;
+        this.isbn = packed != 0 ? null : isbn;
     }
 
     public String getUuid() {
-        return this.uuid;
+        if (!uuidPacked)
+            return this.uuid;
+        String uuid = new UUID(uuidHigh, uuidLow).toString();
+        return uuidUrn ? UUID_URN_PREFIX + uuid : uuid;
     }
 
     public void  setUuid(String uuid) {
         this.uuid = uuid;
+        this.uuidPacked = false;
+        if (uuid == null)
+            return;
+        boolean urn = uuid.startsWith(UUID_URN_PREFIX);
+        String text = urn ? uuid.substring(UUID_URN_PREFIX.length()) : uuid;
+        if (text.length() != 36)
+            return;
+        try {
+            UUID parsed = UUID.fromString(text);
+            // Only if it comes back the same, e.g. not in upper case
+            if (parsed.toString().equals(text)) {
+                this.uuid = null;
+                this.uuidPacked = true;
+                this.uuidHigh = parsed.getMostSignificantBits();
+                this.uuidLow = parsed.getLeastSignificantBits();
+                this.uuidUrn = urn;
+            }
+        } catch (IllegalArgumentException e) {
+            // Not a UUID, kept as text
+        }
     }
 
     public String getTitle() {
@@ -88,7 +166,11 @@ public class Book implements Record {
     }
 
     public void setTitle(String title) {
+        // A derived path keeps the title it was made with
+        unpackPath();
+        String oldTitle = this.title;
         this.title = title;
+        fireNameChanged(oldTitle);
     }
 
     public void setSeries(Series series) {
@@ -116,35 +198,98 @@ public class Book implements Record {
     }
 
     public Instant getPublishDate() {
-        return publishDate;
+        return Instant.ofEpochSecond(publishDate);
     }
 
     public void setPublishDate(Instant publishDate) {
-        this.publishDate = publishDate.truncatedTo(ChronoUnit.DAYS);
+        setPublishEpochSecond(publishDate.getEpochSecond());
+    }
+
+    /**
+     * @return the publish date in seconds since the epoch, at the start of its day.
+     */
+    public long getPublishEpochSecond() {
+        return publishDate;
+    }
+
+    public void setPublishEpochSecond(long publishDate) {
+        this.publishDate = publishDate - Math.floorMod(publishDate, SECONDS_PER_DAY);
     }
 
     public Instant getAddedDate() {
-        return addedDate;
+        return Instant.ofEpochSecond(addedDate);
     }
 
     public void setAddedDate(Instant addedDate) {
-        this.addedDate = addedDate.truncatedTo(ChronoUnit.SECONDS);
+        this.addedDate = addedDate.getEpochSecond();
+    }
+
+    public long getAddedEpochSecond() {
+        return addedDate;
+    }
+
+    public void setAddedEpochSecond(long addedDate) {
+        this.addedDate = addedDate;
     }
 
     public Instant getModifiedDate() {
-        return modifiedDate;
+        return Instant.ofEpochSecond(modifiedDate);
     }
 
     public void setModifiedDate(Instant modifiedDate) {
-        this.modifiedDate = modifiedDate.truncatedTo(ChronoUnit.SECONDS);
+        this.modifiedDate = modifiedDate.getEpochSecond();
+    }
+
+    public long getModifiedEpochSecond() {
+        return modifiedDate;
+    }
+
+    public void setModifiedEpochSecond(long modifiedDate) {
+        this.modifiedDate = modifiedDate;
     }
 
     public String getPath() {
-        return this.path;
+        if (pathDirectory == null)
+            return this.path;
+        return new StringBuilder(pathDirectory.length() + title.length() + 16)
+                .append(pathDirectory).append(File.separatorChar)
+                .append(title).append(" (").append(id).append(')').toString();
     }
 
+    /**
+     * Set the path of the book's directory. Paths made of a directory, the title and the ID, as books are put in the
+     * library, are kept as the directory only, shared with the other books in it.
+     */
     public void setPath(String path) {
         this.path = path;
+        this.pathDirectory = null;
+        if (path == null || title == null)
+            return;
+        int separator = path.lastIndexOf(File.separatorChar);
+        if (separator <= 0 || !path.endsWith(" (" + id + ")")
+                || !path.regionMatches(separator + 1, title, 0, title.length())
+                || path.length() != separator + 1 + title.length() + String.valueOf(id).length() + 3)
+            return;
+        this.pathDirectory = path.substring(0, separator).intern();
+        this.path = null;
+    }
+
+    private void unpackPath() {
+        if (pathDirectory != null) {
+            this.path = getPath();
+            this.pathDirectory = null;
+        }
+    }
+
+    /**
+     * @return SHA-256 of the book file as lowercase hex, or null for books added before hashes were kept.
+     */
+    public String getContentHash() {
+        return this.contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
     }
 
     public String getName() {
@@ -158,6 +303,104 @@ public class Book implements Record {
         return ld.atStartOfDay().toInstant(ZoneOffset.UTC);
     }
 
+    /**
+     * Read a date as written by {@link Instant#toString()} in seconds since the epoch, any fraction of a second is
+     * dropped. The usual "yyyy-MM-ddTHH:mm:ss[.fraction]Z" form is read digit by digit instead of through a parser,
+     * others are left to {@link Instant#parse(CharSequence)}.
+     *
+     * @throws java.time.format.DateTimeParseException if the text is not a date.
+     */
+    public static long parseEpochSecond(String text) {
+        int length = text.length();
+        if (length >= 20 && text.charAt(4) == '-' && text.charAt(7) == '-' && text.charAt(10) == 'T'
+                && text.charAt(13) == ':' && text.charAt(16) == ':' && text.charAt(length - 1) == 'Z'
+                && (length == 20 || text.charAt(19) == '.')) {
+            int year = digits(text, 0, 4);
+            int month = digits(text, 5, 2);
+            int day = digits(text, 8, 2);
+            int hour = digits(text, 11, 2);
+            int minute = digits(text, 14, 2);
+            int second = digits(text, 17, 2);
+            boolean fraction = length == 20 || digits(text, 20, length - 21) >= 0;
+            if (year >= 0 && month >= 1 && month <= 12 && day >= 1 && day <= 31
+                    && hour >= 0 && hour < 24 && minute >= 0 && minute < 60 && second >= 0 && second < 60 && fraction
+                    && (day <= 28 || day <= LocalDate.of(year, month, 1).lengthOfMonth()))
+                return epochDay(year, month, day) * SECONDS_PER_DAY + hour * 3600 + minute * 60 + second;
+        }
+        return Instant.parse(text).getEpochSecond();
+    }
+
+    // Value of the decimal digits at the given place, or -1 if one of them is not a digit
+    private static int digits(String text, int start, int count) {
+        if (count < 1 || count > 9)
+            return -1;
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9')
+                return -1;
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    // Days since 1970-01-01 of a date in the proleptic Gregorian calendar
+    private static long epochDay(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * @return an ISBN-13, or ISBN-10, written as digits only packed in a long, or 0 if it is written otherwise.
+     */
+    static long packIsbn(String isbn) {
+        if (isbn == null)
+            return 0;
+        if (isbn.length() == 13) {
+            long digits = 0;
+            for (int i = 0; i < 13; i++) {
+                char c = isbn.charAt(i);
+                if (c < '0' || c > '9')
+                    return 0;
+                digits = digits * 10 + (c - '0');
+            }
+            return ISBN_13 | digits;
+        }
+        if (isbn.length() == 10) {
+            long digits = 0;
+            for (int i = 0; i < 9; i++) {
+                char c = isbn.charAt(i);
+                if (c < '0' || c > '9')
+                    return 0;
+                digits = digits * 10 + (c - '0');
+            }
+            char check = isbn.charAt(9);
+            if (check == 'X')
+                return ISBN_10 | (digits * 11 + 10);
+            if (check < '0' || check > '9')
+                return 0;
+            return ISBN_10 | (digits * 11 + (check - '0'));
+        }
+        return 0;
+    }
+
+    static String unpackIsbn(long packed) {
+        if ((packed & ISBN_13) != 0)
+            return zeroPadded(packed & ~ISBN_13, 13);
+        long digits = packed & ~ISBN_10;
+        long check = digits % 11;
+        return zeroPadded(digits / 11, 9) + (check == 10 ? "X" : String.valueOf(check));
+    }
+
+    private static String zeroPadded(long value, int length) {
+        String digits = Long.toString(value);
+        return "0".repeat(length - digits.length()) + digits;
+    }
+
     @Override
     public String toString() {
         boolean seriesIsNull = (getSeries() == null);
@@ -195,8 +438,10 @@ public class Book implements Record {
 
         Book book = (Book) obj;
 
+        // An ISBN is always packed the same way, comparing the packed forms compares the ISBNs
         return new EqualsBuilder()
                 .append(isbn, book.isbn)
+                .append(packedIsbn, book.packedIsbn)
                 .append(title, book.title)
                 .append(publishDate, book.publishDate)
                 .isEquals();
@@ -206,12 +451,14 @@ public class Book implements Record {
     public int hashCode() {
         return new HashCodeBuilder(17, 37)
                 .append(isbn)
+                .append(packedIsbn)
                 .append(title)
                 .append(publishDate)
                 .toHashCode();
     }
 }
 
+
 /**
  * The MIT License (MIT)
  * =====================
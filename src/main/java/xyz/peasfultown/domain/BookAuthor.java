@@ -5,7 +5,7 @@ import org.apache.commons.lang3.builder.HashCodeBuilder;
 
 import java.util.StringJoiner;
 
-public class BookAuthor implements Record {
+public class BookAuthor extends AbstractRecord {
     private int id;
     private int bookId;
     private int authorId;
@@ -28,7 +28,10 @@ public class BookAuthor implements Record {
     }
 
     public void setId(int id) {
+        int oldId = this.id;
+        String oldName = getName();
         this.id = id;
+        fireIdChanged(oldId, oldName);
     }
 
     public int getBookId() {
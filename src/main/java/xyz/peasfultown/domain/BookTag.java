@@ -1,6 +1,6 @@
 package xyz.peasfultown.domain;
 
-public class BookTag implements Record {
+public class BookTag extends AbstractRecord {
     private int id;
     private int bookId;
     private int tagId;
@@ -30,7 +30,9 @@ public class BookTag implements Record {
     }
 
     public void setId(int id) {
+        int oldId = this.id;
         this.id = id;
+        fireIdChanged(oldId);
     }
 
     public int getBookId() {
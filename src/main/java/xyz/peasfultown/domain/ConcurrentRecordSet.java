@@ -0,0 +1,223 @@
+package xyz.peasfultown.domain;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * An {@link IndexedRecordSet} that can be shared between threads. Each set has its own read/write lock: lookups and
+ * {@link #size()} share the read lock, changes take the write lock for the one change only, so readers wait at most for
+ * a single add or remove and never for a whole import. Bulk changes such as {@link #addAll(Collection)} take the lock
+ * once.
+ * <p>
+ * Iterators, streams and {@link #toArray()} work on a copy of the records taken when they are created, so iterating
+ * never throws {@link java.util.ConcurrentModificationException} and never holds the lock while the caller works on the
+ * records. Removing through an iterator removes the record from the set.
+ */
+public class ConcurrentRecordSet<R extends Record> extends IndexedRecordSet<R> {
+    private static final long serialVersionUID = 1L;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public ConcurrentRecordSet() {
+        super();
+    }
+
+    public ConcurrentRecordSet(Collection<? extends R> records) {
+        super();
+        addAll(records);
+    }
+
+    @Override
+    public R getById(int id) {
+        lock.readLock().lock();
+        try {
+            return super.getById(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public R getByName(String name) {
+        lock.readLock().lock();
+        try {
+            return super.getByName(name);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return super.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        lock.readLock().lock();
+        try {
+            return super.contains(o);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean add(R record) {
+        lock.writeLock().lock();
+        try {
+            return super.add(record);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends R> records) {
+        // Copied first, the collection may be another set locking on its own
+        List<R> added = new ArrayList<>(records);
+        lock.writeLock().lock();
+        try {
+            boolean changed = false;
+            for (R record : added) {
+                changed |= super.add(record);
+            }
+            return changed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        lock.writeLock().lock();
+        try {
+            return super.remove(o);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> c) {
+        return removeIf(c::contains);
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> c) {
+        return removeIf(r -> !c.contains(r));
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super R> filter) {
+        lock.writeLock().lock();
+        try {
+            boolean changed = false;
+            Iterator<R> it = super.iterator();
+            while (it.hasNext()) {
+                if (filter.test(it.next())) {
+                    it.remove();
+                    changed = true;
+                }
+            }
+            return changed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            super.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Iterator<R> iterator() {
+        Iterator<R> it = snapshot().iterator();
+        return new Iterator<>() {
+            private R last;
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public R next() {
+                last = it.next();
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                if (last == null)
+                    throw new IllegalStateException();
+                ConcurrentRecordSet.this.remove(last);
+                last = null;
+            }
+        };
+    }
+
+    @Override
+    public Object[] toArray() {
+        return snapshot().toArray();
+    }
+
+    @Override
+    public <T> T[] toArray(T[] a) {
+        return snapshot().toArray(a);
+    }
+
+    @Override
+    public void recordIdChanged(Record record, int oldId, String oldName) {
+        lock.writeLock().lock();
+        try {
+            super.recordIdChanged(record, oldId, oldName);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void recordNameChanged(Record record, String oldName) {
+        lock.writeLock().lock();
+        try {
+            super.recordNameChanged(record, oldName);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private List<R> snapshot() {
+        lock.readLock().lock();
+        try {
+            List<R> records = new ArrayList<>(super.size());
+            Iterator<R> it = super.iterator();
+            while (it.hasNext()) {
+                records.add(it.next());
+            }
+            return records;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package xyz.peasfultown.domain;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * A {@link SearchableRecordSet} that keeps hash indexes on record IDs and case-folded record names, so that
+ * {@link #getById(int)} and {@link #getByName(String)} run in constant time instead of scanning the whole set.
+ * <p>
+ * Iteration order is the same as {@link SearchableRecordSet} (insertion order). When several records share an ID or
+ * name, lookups return the first one in iteration order, just like the linear scan does. Records extending
+ * {@link AbstractRecord} are watched for in-place renames and ID changes (e.g. {@link Book#setTitle(String)}) and
+ * are re-indexed automatically.
+ */
+public class IndexedRecordSet<R extends Record> extends SearchableRecordSet<R> implements RecordListener {
+    private static final long serialVersionUID = 1L;
+
+    private final Index<Integer> idIndex = new Index<>(Record::getId);
+    private final Index<String> nameIndex = new Index<>(r -> foldName(r.getName()));
+
+    public IndexedRecordSet() {
+        super();
+    }
+
+    public IndexedRecordSet(Collection<? extends R> records) {
+        super();
+        addAll(records);
+    }
+
+    @Override
+    public R getById(int id) {
+        return idIndex.get(id);
+    }
+
+    @Override
+    public R getByName(String name) {
+        if (name == null)
+            return null;
+        return nameIndex.get(foldName(name));
+    }
+
+    @Override
+    public boolean add(R record) {
+        if (!super.add(record))
+            return false;
+        idIndex.put(record);
+        nameIndex.put(record);
+        if (record instanceof AbstractRecord)
+            ((AbstractRecord) record).addRecordListener(this);
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof Record))
+            return super.remove(o);
+
+        R removed = findRemoved((Record) o);
+        if (super.remove(o)) {
+            if (removed != null)
+                unindex(removed);
+            return true;
+        }
+
+        // A record renamed in place may no longer be found by its hash code (e.g. Book hashes on its title), fall back
+        // to removing it by identity.
+        if (removed == o) {
+            Iterator<R> it = super.iterator();
+            while (it.hasNext()) {
+                if (it.next() == o) {
+                    it.remove();
+                    unindex(removed);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void clear() {
+        for (R r : this) {
+            if (r instanceof AbstractRecord)
+                ((AbstractRecord) r).removeRecordListener(this);
+        }
+        super.clear();
+        idIndex.clear();
+        nameIndex.clear();
+    }
+
+    @Override
+    public Iterator<R> iterator() {
+        Iterator<R> it = super.iterator();
+        return new Iterator<>() {
+            private R last;
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public R next() {
+                last = it.next();
+                return last;
+            }
+
+            @Override
+            public void remove() {
+                it.remove();
+                unindex(last);
+            }
+        };
+    }
+
+    @Override
+    public void recordIdChanged(Record record, int oldId, String oldName) {
+        R r = idIndex.find(oldId, record, true);
+        if (r == null)
+            return;
+        idIndex.remove(oldId, r);
+        idIndex.put(r);
+        // Names made from the ID, e.g. BookAuthor's, change along with it
+        if (oldName == null ? r.getName() != null : !oldName.equals(r.getName()))
+            recordNameChanged(r, oldName);
+    }
+
+    @Override
+    public void recordNameChanged(Record record, String oldName) {
+        R r = nameIndex.find(foldName(oldName), record, true);
+        if (r == null)
+            return;
+        nameIndex.remove(foldName(oldName), r);
+        nameIndex.put(r);
+    }
+
+    /**
+     * The set removes whichever element is equal to the given object, which is not necessarily the same instance.
+     * The set can hold only one element equal to it, so the record to unindex is the given one if the indexes have it,
+     * or else the equal one they have under the same ID or name.
+     */
+    private R findRemoved(Record o) {
+        R byId = idIndex.find(o.getId(), o, false);
+        if (byId != null)
+            return byId;
+        return nameIndex.find(foldName(o.getName()), o, false);
+    }
+
+    private void unindex(R record) {
+        if (record instanceof AbstractRecord)
+            ((AbstractRecord) record).removeRecordListener(this);
+        idIndex.remove(record.getId(), record);
+        nameIndex.remove(foldName(record.getName()), record);
+    }
+
+    private static String foldName(String name) {
+        return name == null ? null : name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Maps a key to the first record in iteration order that has it. Records sharing a key with an earlier record are
+     * kept in a list for that key only, so removing one never looks beyond the records with the same key.
+     */
+    private class Index<K> {
+        private final HashMap<K, R> first = new HashMap<>();
+        // Only for keys held by more than one record, usually none or a few
+        private final HashMap<K, List<R>> others = new HashMap<>();
+        private final Function<R, K> keyOf;
+
+        Index(Function<R, K> keyOf) {
+            this.keyOf = keyOf;
+        }
+
+        R get(K key) {
+            return first.get(key);
+        }
+
+        /**
+         * @return the indexed record with the given key that is the given object, or if not sameOnly one equal to it.
+         */
+        R find(K key, Object o, boolean sameOnly) {
+            if (key == null)
+                return null;
+            R found = first.get(key);
+            if (found == o)
+                return found;
+            R equal = !sameOnly && found != null && found.equals(o) ? found : null;
+            for (R other : others.getOrDefault(key, List.of())) {
+                if (other == o)
+                    return other;
+                if (!sameOnly && equal == null && other.equals(o))
+                    equal = other;
+            }
+            return equal;
+        }
+
+        void put(R record) {
+            K key = keyOf.apply(record);
+            if (key == null)
+                return;
+            R existing = first.putIfAbsent(key, record);
+            if (existing != null && existing != record)
+                others.computeIfAbsent(key, k -> new ArrayList<>(2)).add(record);
+        }
+
+        void remove(K key, R record) {
+            if (key == null)
+                return;
+            List<R> sharing = others.get(key);
+            if (first.get(key) == record) {
+                if (sharing == null) {
+                    first.remove(key);
+                } else {
+                    first.put(key, sharing.remove(0));
+                    if (sharing.isEmpty())
+                        others.remove(key);
+                }
+            } else if (sharing != null) {
+                for (int i = 0; i < sharing.size(); i++) {
+                    if (sharing.get(i) == record) {
+                        sharing.remove(i);
+                        if (sharing.isEmpty())
+                            others.remove(key);
+                        return;
+                    }
+                }
+            }
+        }
+
+        void clear() {
+            first.clear();
+            others.clear();
+        }
+    }
+}
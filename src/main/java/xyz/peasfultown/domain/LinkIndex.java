@@ -0,0 +1,348 @@
+/**
+ * See end of file for extended copyright information.
+ * Original Author(s): PeasfulTown <peasfultown@gmail.com>
+ * Description: Compact in-memory index of the links between two kinds of records, such as books and authors.
+ */
+package xyz.peasfultown.domain;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Links between the IDs of two kinds of records, e.g. books and tags, kept as arrays of {@code int} rather than as
+ * link records. Each side is an open addressing map from an ID to the array of IDs it is linked to, so both
+ * directions (book to tags and tag to books) are answered in time proportional to the number of links of the ID.
+ * A link costs 8 bytes, one int on each side, plus a few words per ID, instead of a link object and its set entry.
+ * <p>
+ * IDs linked to an ID come in the order the links were added. Links are unique: adding a link that exists already is a
+ * no-op, which is checked on the left side, the side with few links per ID (a book has few tags, a tag may have most
+ * of the books).
+ * <p>
+ * Like {@link ConcurrentRecordSet}, lookups share a read lock and changes take the write lock for the one change, so
+ * the index can be shared between threads.
+ */
+public class LinkIndex {
+    private final Adjacency leftToRight = new Adjacency();
+    private final Adjacency rightToLeft = new Adjacency();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private int size;
+
+    /**
+     * Receives links, see {@link #forEach(LinkConsumer)}.
+     */
+    public interface LinkConsumer {
+        void accept(int left, int right);
+    }
+
+    /**
+     * @return false if the link exists already.
+     */
+    public boolean add(int left, int right) {
+        lock.writeLock().lock();
+        try {
+            if (leftToRight.contains(left, right))
+                return false;
+            leftToRight.add(left, right);
+            rightToLeft.add(right, left);
+            size++;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return false if there was no such link.
+     */
+    public boolean remove(int left, int right) {
+        lock.writeLock().lock();
+        try {
+            if (!leftToRight.remove(left, right))
+                return false;
+            rightToLeft.remove(right, left);
+            size--;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove every link of a left side ID, e.g. when a book is removed.
+     */
+    public void removeLeft(int left) {
+        lock.writeLock().lock();
+        try {
+            int[] rights = leftToRight.removeKey(left);
+            for (int right : rights) {
+                rightToLeft.remove(right, left);
+            }
+            size -= rights.length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean contains(int left, int right) {
+        lock.readLock().lock();
+        try {
+            return leftToRight.contains(left, right);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the IDs linked to a left side ID, in the order they were linked.
+     */
+    public int[] getRight(int left) {
+        lock.readLock().lock();
+        try {
+            return leftToRight.get(left);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the first ID linked to a left side ID, or -1 if there is none.
+     */
+    public int getFirstRight(int left) {
+        lock.readLock().lock();
+        try {
+            return leftToRight.getFirst(left);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the IDs linked to a right side ID, in the order they were linked.
+     */
+    public int[] getLeft(int right) {
+        lock.readLock().lock();
+        try {
+            return rightToLeft.get(right);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Pass every link to the consumer, grouped by left side ID and in the order they were linked within a group.
+     * Changes wait until the pass is over, so the consumer should be quick and must not change the index.
+     */
+    public void forEach(LinkConsumer consumer) {
+        lock.readLock().lock();
+        try {
+            leftToRight.forEach(consumer);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            leftToRight.clear();
+            rightToLeft.clear();
+            size = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Map from an ID to the IDs linked to it, with linear probing. A slot is free when its value array is null. Removed
+     * keys are taken out by shifting the keys after them back, so lookups never have to step over deleted slots.
+     */
+    private static class Adjacency {
+        private static final int[] NONE = new int[0];
+        private static final int INITIAL_CAPACITY = 16;
+
+        private int[] keys = new int[INITIAL_CAPACITY];
+        private int[][] values = new int[INITIAL_CAPACITY][];
+        private int[] counts = new int[INITIAL_CAPACITY];
+        private int keyCount;
+
+        void add(int key, int value) {
+            if ((keyCount + 1) * 4 > keys.length * 3)
+                resize(keys.length * 2);
+
+            int slot = find(key);
+            int[] linked = values[slot];
+            if (linked == null) {
+                keys[slot] = key;
+                values[slot] = new int[]{value};
+                counts[slot] = 1;
+                keyCount++;
+                return;
+            }
+            int count = counts[slot];
+            if (count == linked.length)
+                values[slot] = linked = Arrays.copyOf(linked, count + Math.max(1, count >> 1));
+            linked[count] = value;
+            counts[slot] = count + 1;
+        }
+
+        boolean contains(int key, int value) {
+            int slot = find(key);
+            int[] linked = values[slot];
+            if (linked == null)
+                return false;
+            for (int i = 0; i < counts[slot]; i++) {
+                if (linked[i] == value)
+                    return true;
+            }
+            return false;
+        }
+
+        int[] get(int key) {
+            int slot = find(key);
+            return values[slot] == null ? NONE : Arrays.copyOf(values[slot], counts[slot]);
+        }
+
+        int getFirst(int key) {
+            int slot = find(key);
+            return values[slot] == null ? -1 : values[slot][0];
+        }
+
+        boolean remove(int key, int value) {
+            int slot = find(key);
+            int[] linked = values[slot];
+            if (linked == null)
+                return false;
+            int count = counts[slot];
+            for (int i = 0; i < count; i++) {
+                if (linked[i] == value) {
+                    System.arraycopy(linked, i + 1, linked, i, count - i - 1);
+                    if (--counts[slot] == 0)
+                        removeSlot(slot);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        int[] removeKey(int key) {
+            int slot = find(key);
+            if (values[slot] == null)
+                return NONE;
+            int[] linked = Arrays.copyOf(values[slot], counts[slot]);
+            removeSlot(slot);
+            return linked;
+        }
+
+        void forEach(LinkConsumer consumer) {
+            for (int slot = 0; slot < keys.length; slot++) {
+                int[] linked = values[slot];
+                if (linked == null)
+                    continue;
+                for (int i = 0; i < counts[slot]; i++) {
+                    consumer.accept(keys[slot], linked[i]);
+                }
+            }
+        }
+
+        void clear() {
+            keys = new int[INITIAL_CAPACITY];
+            values = new int[INITIAL_CAPACITY][];
+            counts = new int[INITIAL_CAPACITY];
+            keyCount = 0;
+        }
+
+        /**
+         * @return the slot of the key, or the free slot it would go in.
+         */
+        private int find(int key) {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (values[slot] != null && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private void removeSlot(int slot) {
+            int mask = keys.length - 1;
+            values[slot] = null;
+            counts[slot] = 0;
+            keyCount--;
+            // Move back the keys that probed past the freed slot
+            int free = slot;
+            for (int next = (slot + 1) & mask; values[next] != null; next = (next + 1) & mask) {
+                int home = hash(keys[next]) & mask;
+                // The key can move to the free slot if its home is not between the free slot and where it is now
+                if (free <= next ? (home <= free || home > next) : (home <= free && home > next)) {
+                    keys[free] = keys[next];
+                    values[free] = values[next];
+                    counts[free] = counts[next];
+                    values[next] = null;
+                    counts[next] = 0;
+                    free = next;
+                }
+            }
+        }
+
+        private void resize(int capacity) {
+            int[] oldKeys = keys;
+            int[][] oldValues = values;
+            int[] oldCounts = counts;
+            keys = new int[capacity];
+            values = new int[capacity][];
+            counts = new int[capacity];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldValues[i] == null)
+                    continue;
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+
+        // IDs are sequential, spread them over the table
+        private static int hash(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
+
+
+/**
+ * The MIT License (MIT)
+ * =====================
+ * <p>
+ * Copyright © 2023 PeasfulTown
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the “Software”), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
@@ -11,7 +11,7 @@ import org.apache.commons.lang3.builder.HashCodeBuilder;
 import java.util.HashMap;
 import java.util.StringJoiner;
 
-public class Publisher implements Record {
+public class Publisher extends AbstractRecord {
     private int id;
     private String name;
 
@@ -44,7 +44,9 @@ public class Publisher implements Record {
     }
 
     public void setId(int id) {
+        int oldId = this.id;
         this.id = id;
+        fireIdChanged(oldId);
     }
 
     public int getId() {
@@ -56,7 +58,9 @@ public class Publisher implements Record {
     }
 
     public void setName(String name) {
+        String oldName = this.name;
         this.name = name;
+        fireNameChanged(oldName);
     }
 
     public static Publisher findPublisherInMap(HashMap<Integer, Publisher> publishers, String name) {
@@ -0,0 +1,14 @@
+package xyz.peasfultown.domain;
+
+/**
+ * Receives notifications when the identifying fields of a record (its ID or name) change in place.
+ */
+public interface RecordListener {
+    /**
+     * @param oldName name of the record before the change, which differs from its name now if the name is made from
+     *                the ID.
+     */
+    void recordIdChanged(Record record, int oldId, String oldName);
+
+    void recordNameChanged(Record record, String oldName);
+}
@@ -10,7 +10,7 @@ import org.apache.commons.lang3.builder.HashCodeBuilder;
 
 import java.util.StringJoiner;
 
-public class Series implements Record {
+public class Series extends AbstractRecord {
     private int id;
     private String name;
 
@@ -28,7 +28,9 @@ public class Series implements Record {
     }
 
     public void setId(int id) {
+        int oldId = this.id;
         this.id = id;
+        fireIdChanged(oldId);
     }
 
     public String getName() {
@@ -36,7 +38,9 @@ public class Series implements Record {
     }
 
     public void setName(String name) {
+        String oldName = this.name;
         this.name = name;
+        fireNameChanged(oldName);
     }
 
     @Override
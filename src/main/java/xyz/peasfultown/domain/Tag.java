@@ -3,7 +3,7 @@ package xyz.peasfultown.domain;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 
-public class Tag implements Record {
+public class Tag extends AbstractRecord {
     private int id;
     private String name;
 
@@ -27,7 +27,9 @@ public class Tag implements Record {
     }
 
     public void setId(int id) {
+        int oldId = this.id;
         this.id = id;
+        fireIdChanged(oldId);
     }
 
     public String getName() {
@@ -35,7 +37,9 @@ public class Tag implements Record {
     }
 
     public void setName(String name) {
+        String oldName = this.name;
         this.name = name;
+        fireNameChanged(oldName);
     }
 
     @Override
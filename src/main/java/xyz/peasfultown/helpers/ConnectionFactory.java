@@ -5,21 +5,150 @@
  */
 package xyz.peasfultown.helpers;
 
+import org.sqlite.SQLiteConfig;
 import xyz.peasfultown.ApplicationConfig;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.Properties;
 
+/**
+ * Hands out SQLite connections. In pooled mode (see {@link ApplicationConfig#CONNECTION_POOL_ENABLED}) connections are
+ * long-lived and reused, otherwise a new connection is opened for every call.
+ * <p>
+ * Callers always close the connections they get, in pooled mode that returns them to the pool.
+ */
 public class ConnectionFactory {
-    private static String CONNECTION_STRING;
+    private static volatile ConnectionPool pool;
+    // Unpooled mode only, the transaction connection of the current thread
+    private static final ThreadLocal<Connection> transaction = new ThreadLocal<>();
 
-    static {
-        CONNECTION_STRING = ApplicationConfig.CONNECTION_STRING;
+    /**
+     * Get a connection that may write to the database.
+     */
+    public static Connection getConnection() throws SQLException {
+        return getWriteConnection();
     }
 
-    public static Connection getConnection() throws SQLException {
-        return DriverManager.getConnection(CONNECTION_STRING);
+    /**
+     * Get a connection for queries only. In pooled mode several readers can be open at the same time.
+     */
+    public static Connection getReadConnection() throws SQLException {
+        if (!ApplicationConfig.CONNECTION_POOL_ENABLED)
+            return transaction.get() != null ? nonClosing(transaction.get()) : openConnection();
+        return getPool().getReader();
+    }
+
+    /**
+     * Get the writer connection. In pooled mode there is a single writer shared among threads, the calling thread has
+     * it to itself until the connection is closed.
+     */
+    public static Connection getWriteConnection() throws SQLException {
+        if (!ApplicationConfig.CONNECTION_POOL_ENABLED)
+            return transaction.get() != null ? nonClosing(transaction.get()) : openConnection();
+        return getPool().getWriter();
+    }
+
+    /**
+     * Start a transaction on the writer connection. Until the returned connection is closed, every connection the
+     * calling thread gets from this factory takes part in the transaction, so DAO calls made in between are committed
+     * or rolled back together. Closing the connection without committing rolls the transaction back.
+     * Transactions do not nest.
+     */
+    public static Connection beginTransaction() throws SQLException {
+        if (ApplicationConfig.CONNECTION_POOL_ENABLED) {
+            Connection con = getPool().getWriter();
+            con.setAutoCommit(false);
+            return con;
+        }
+
+        if (transaction.get() != null)
+            throw new SQLException("A transaction is already in progress on this thread.");
+        Connection con = openConnection();
+        con.setAutoCommit(false);
+        transaction.set(con);
+        return (Connection) Proxy.newProxyInstance(ConnectionFactory.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("close")) {
+                        if (transaction.get() == con) {
+                            transaction.remove();
+                            if (!con.getAutoCommit())
+                                con.rollback();
+                            con.close();
+                        }
+                        return null;
+                    }
+                    return invoke(con, method, args);
+                });
+    }
+
+    /**
+     * Close all pooled connections. The next call opens new ones, e.g. after the main path has changed or the
+     * database file was replaced.
+     */
+    public static synchronized void closeAll() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
+
+    private static ConnectionPool getPool() {
+        String url = ApplicationConfig.CONNECTION_STRING;
+        ConnectionPool current = pool;
+        if (current != null && current.getUrl().equals(url))
+            return current;
+
+        synchronized (ConnectionFactory.class) {
+            if (pool != null && pool.getUrl().equals(url))
+                return pool;
+            if (pool != null)
+                pool.close();
+            pool = new ConnectionPool(url, getConnectionProperties(), ApplicationConfig.CONNECTION_POOL_MAX_READERS);
+            return pool;
+        }
+    }
+
+    /**
+     * Handle to the thread's transaction connection that leaves it open when closed.
+     */
+    private static Connection nonClosing(Connection con) {
+        return (Connection) Proxy.newProxyInstance(ConnectionFactory.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("close"))
+                        return null;
+                    return invoke(con, method, args);
+                });
+    }
+
+    private static Object invoke(Connection con, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(con, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Connection openConnection() throws SQLException {
+        return DriverManager.getConnection(ApplicationConfig.CONNECTION_STRING, getConnectionProperties());
+    }
+
+    /**
+     * Pragmas applied once when a connection is opened, from the SQLite settings of {@link ApplicationConfig}.
+     */
+    private static Properties getConnectionProperties() {
+        SQLiteConfig config = new SQLiteConfig();
+        config.setJournalMode(ApplicationConfig.SQLITE_JOURNAL_MODE);
+        config.setSynchronous(ApplicationConfig.SQLITE_SYNCHRONOUS);
+        config.setCacheSize(ApplicationConfig.SQLITE_CACHE_SIZE);
+        config.setPragma(SQLiteConfig.Pragma.MMAP_SIZE, Long.toString(ApplicationConfig.SQLITE_MMAP_SIZE));
+        config.setTempStore(ApplicationConfig.SQLITE_TEMP_STORE);
+        config.setBusyTimeout(ApplicationConfig.SQLITE_BUSY_TIMEOUT);
+        return config.toProperties();
     }
 }
 
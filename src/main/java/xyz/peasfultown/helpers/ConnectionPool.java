@@ -0,0 +1,335 @@
+/**
+ * See end of file for extended copyright information.
+ * Original Author(s): PeasfulTown (peasfultown@gmail.com)
+ * Description: Pool of long-lived SQLite connections, with a set of reader connections and a single shared writer.
+ */
+package xyz.peasfultown.helpers;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Connections handed out by the pool are lightweight handles: closing them returns the underlying connection to the
+ * pool instead of closing the database file. Each underlying connection caches its prepared statements, so repeated
+ * DAO calls skip parsing the SQL again.
+ * <p>
+ * SQLite only allows one writer at a time, so all writes go through a single writer connection guarded by a
+ * reentrant lock. A thread that already holds the writer gets the same connection back for nested calls, and reads
+ * made while holding it also use it so that they see the thread's own uncommitted changes.
+ */
+class ConnectionPool implements AutoCloseable {
+    private static final int STATEMENT_CACHE_SIZE = 64;
+    private static final long ACQUIRE_TIMEOUT_SECONDS = 30;
+
+    private final String url;
+    private final Properties properties;
+    private final int maxReaders;
+    private final BlockingQueue<PooledConnection> idleReaders = new LinkedBlockingQueue<>();
+    private final AtomicInteger openReaders = new AtomicInteger();
+    private final ReentrantLock writerLock = new ReentrantLock();
+    private PooledConnection writer;
+    private volatile boolean closed;
+
+    ConnectionPool(String url, Properties properties, int maxReaders) {
+        this.url = url;
+        this.properties = properties;
+        this.maxReaders = Math.max(1, maxReaders);
+    }
+
+    String getUrl() {
+        return url;
+    }
+
+    Connection getReader() throws SQLException {
+        if (writerLock.isHeldByCurrentThread())
+            return getWriter();
+
+        PooledConnection reader = idleReaders.poll();
+        if (reader == null) {
+            if (openReaders.incrementAndGet() <= maxReaders) {
+                try {
+                    reader = open();
+                } catch (SQLException e) {
+                    openReaders.decrementAndGet();
+                    throw e;
+                }
+            } else {
+                openReaders.decrementAndGet();
+                try {
+                    reader = idleReaders.poll(ACQUIRE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for a database connection.", e);
+                }
+                if (reader == null)
+                    throw new SQLException("Timed out waiting for a database connection.");
+            }
+        }
+        return reader.newHandle(this::releaseReader);
+    }
+
+    Connection getWriter() throws SQLException {
+        writerLock.lock();
+        try {
+            if (closed)
+                throw new SQLException("Connection pool is closed.");
+            if (writer == null || writer.physical.isClosed())
+                writer = open();
+            return writer.newHandle(this::releaseWriter);
+        } catch (SQLException | RuntimeException e) {
+            writerLock.unlock();
+            throw e;
+        }
+    }
+
+    private void releaseReader(PooledConnection reader) {
+        try {
+            if (closed || reader.physical.isClosed()) {
+                reader.close();
+                openReaders.decrementAndGet();
+                return;
+            }
+            if (!reader.physical.getAutoCommit()) {
+                reader.physical.rollback();
+                reader.physical.setAutoCommit(true);
+            }
+            idleReaders.offer(reader);
+        } catch (SQLException e) {
+            reader.close();
+            openReaders.decrementAndGet();
+        }
+    }
+
+    private void releaseWriter(PooledConnection connection) {
+        try {
+            // Outermost lease, do not leave a transaction dangling for the next thread.
+            if (writerLock.getHoldCount() == 1 && !connection.physical.isClosed()
+                    && !connection.physical.getAutoCommit()) {
+                connection.physical.rollback();
+                connection.physical.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            System.err.format("Failed to reset writer connection: %s%n", e.getMessage());
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    private PooledConnection open() throws SQLException {
+        return new PooledConnection(DriverManager.getConnection(url, properties));
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        PooledConnection reader;
+        while ((reader = idleReaders.poll()) != null) {
+            reader.close();
+            openReaders.decrementAndGet();
+        }
+        writerLock.lock();
+        try {
+            if (writer != null) {
+                writer.close();
+                writer = null;
+            }
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    private interface Releaser {
+        void release(PooledConnection connection);
+    }
+
+    /**
+     * An open SQLite connection along with its prepared statement cache.
+     */
+    private static class PooledConnection {
+        private final Connection physical;
+        private final Map<String, CachedStatement> statements =
+                new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                        if (size() > STATEMENT_CACHE_SIZE && !eldest.getValue().inUse) {
+                            eldest.getValue().closeQuietly();
+                            return true;
+                        }
+                        return false;
+                    }
+                };
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        Connection newHandle(Releaser releaser) {
+            return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new ConnectionHandle(this, releaser));
+        }
+
+        PreparedStatement prepare(String sql) throws SQLException {
+            CachedStatement cached = statements.get(sql);
+            if (cached == null || cached.statement.isClosed()) {
+                cached = new CachedStatement(physical.prepareStatement(sql));
+                statements.put(sql, cached);
+            } else if (cached.inUse) {
+                // The same query is already open on this connection (nested call), hand out a one-off statement.
+                return physical.prepareStatement(sql);
+            }
+            cached.inUse = true;
+            return cached.proxy;
+        }
+
+        void close() {
+            for (CachedStatement cached : statements.values()) {
+                cached.closeQuietly();
+            }
+            statements.clear();
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                System.err.format("Failed to close database connection: %s%n", e.getMessage());
+            }
+        }
+    }
+
+    private static class ConnectionHandle implements InvocationHandler {
+        private final PooledConnection connection;
+        private final Releaser releaser;
+        private boolean closed;
+
+        ConnectionHandle(PooledConnection connection, Releaser releaser) {
+            this.connection = connection;
+            this.releaser = releaser;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!closed) {
+                        closed = true;
+                        releaser.release(connection);
+                    }
+                    return null;
+                case "isClosed":
+                    return closed || connection.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + connection.physical;
+                default:
+                    break;
+            }
+
+            if (closed)
+                throw new SQLException("Connection handle is closed.");
+
+            if (method.getName().equals("prepareStatement")
+                    && args != null && args.length == 1 && args[0] instanceof String) {
+                return connection.prepare((String) args[0]);
+            }
+
+            try {
+                return method.invoke(connection.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * A prepared statement that stays open in the cache. Closing it only clears its parameters and marks it free.
+     */
+    private static class CachedStatement implements InvocationHandler {
+        private final PreparedStatement statement;
+        private final PreparedStatement proxy;
+        private boolean inUse;
+
+        CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (inUse) {
+                        inUse = false;
+                        statement.clearParameters();
+                        statement.clearBatch();
+                    }
+                    return null;
+                case "isClosed":
+                    return !inUse || statement.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+
+            try {
+                return method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        void closeQuietly() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                // Ignore, the connection is going away or the statement is being evicted.
+            }
+        }
+    }
+}
+
+/**
+ * The MIT License (MIT)
+ * =====================
+ * <p>
+ * Copyright © 2023 PeasfulTown
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the “Software”), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
@@ -0,0 +1,223 @@
+/**
+ * See end of file for extended copyright information.
+ * Original Author(s): PeasfulTown <peasfultown@gmail.com>
+ * Description: An opened epub file, locates the package document and the cover image by the references inside the
+ * archive instead of by file names.
+ */
+package xyz.peasfultown.helpers;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * An epub opened for reading. The package document (OPF) is found through {@code META-INF/container.xml} and the cover
+ * through the package document's manifest, so neither needs a scan of the archive's entries. Epubs that lack these
+ * references fall back to matching entry names, which is how they were found before.
+ * <p>
+ * Open the archive once and pass it to both {@link MetaReader#getMetadata(EpubArchive)} and
+ * {@link ThumbnailGenerator#generateEpubThumbnail(EpubArchive, Path)}, the cover found while reading the metadata is
+ * remembered.
+ */
+public class EpubArchive implements Closeable {
+    static final String CONTAINER_PATH = "META-INF/container.xml";
+    private static final String PACKAGE_MEDIA_TYPE = "application/oebps-package+xml";
+    private static final Pattern COVER_FILE_NAME_PATTERN = Pattern.compile(".*cover\\.(jpg|jpeg|png)",
+            Pattern.CASE_INSENSITIVE);
+
+    private final Path file;
+    private final ZipFile zip;
+    private final ZipEntry packageDocument;
+    private boolean packageRead;
+    private String coverPath;
+
+    private EpubArchive(Path file, ZipFile zip) throws IOException {
+        this.file = file;
+        this.zip = zip;
+        this.packageDocument = findPackageDocument();
+    }
+
+    /**
+     * @throws FileNotFoundException if the epub has no package document.
+     * @throws IOException           if the file is not a zip archive.
+     */
+    public static EpubArchive open(Path file) throws IOException {
+        ZipFile zip = new ZipFile(file.toFile());
+        try {
+            return new EpubArchive(file, zip);
+        } catch (IOException | RuntimeException e) {
+            zip.close();
+            throw e;
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public ZipEntry getPackageDocument() {
+        return packageDocument;
+    }
+
+    public InputStream openPackageDocument() throws IOException {
+        return zip.getInputStream(packageDocument);
+    }
+
+    /**
+     * @return the cover image, or null if the epub does not have one.
+     * @throws MetadataReaderException if the package document has to be read to find the cover and cannot be.
+     */
+    public ZipEntry getCoverEntry() throws MetadataReaderException {
+        if (!packageRead)
+            MetaReader.readPackageDocument(this, new HashMap<>());
+
+        if (coverPath != null) {
+            ZipEntry entry = zip.getEntry(coverPath);
+            if (entry != null)
+                return entry;
+        }
+        return findEntry(COVER_FILE_NAME_PATTERN);
+    }
+
+    public InputStream getInputStream(ZipEntry entry) throws IOException {
+        return zip.getInputStream(entry);
+    }
+
+    /**
+     * Called once the package document has been read.
+     *
+     * @param coverHref manifest reference of the cover image, relative to the package document, or null if the
+     *                  manifest names no cover.
+     */
+    void setPackageRead(String coverHref) {
+        this.packageRead = true;
+        this.coverPath = coverHref == null ? null : resolve(packageDocument.getName(), coverHref);
+    }
+
+    private ZipEntry findPackageDocument() throws IOException {
+        ZipEntry container = zip.getEntry(CONTAINER_PATH);
+        if (container != null) {
+            String path = readRootFilePath(container);
+            ZipEntry entry = path == null ? null : zip.getEntry(path);
+            if (entry != null)
+                return entry;
+        }
+
+        // Not a valid epub, but some readers open it anyway
+        ZipEntry entry = findEntry(null);
+        if (entry == null)
+            throw new FileNotFoundException(String.format("No package document found in %s", file.getFileName()));
+        return entry;
+    }
+
+    private String readRootFilePath(ZipEntry container) throws IOException {
+        XMLStreamReader xsr = null;
+        try (InputStream is = zip.getInputStream(container)) {
+            xsr = XMLInputFactory.newDefaultFactory().createXMLStreamReader(is);
+            String firstPath = null;
+            while (xsr.hasNext()) {
+                if (xsr.next() != XMLStreamConstants.START_ELEMENT || !xsr.getLocalName().equals("rootfile"))
+                    continue;
+                String path = xsr.getAttributeValue(null, "full-path");
+                if (path == null)
+                    continue;
+                // Epubs can carry other renditions, the package document is the one with the package media type
+                if (PACKAGE_MEDIA_TYPE.equals(xsr.getAttributeValue(null, "media-type")))
+                    return path;
+                if (firstPath == null)
+                    firstPath = path;
+            }
+            return firstPath;
+        } catch (XMLStreamException e) {
+            System.err.format("Unable to read %s of %s: %s%n", CONTAINER_PATH, file.getFileName(), e.getMessage());
+            return null;
+        } finally {
+            if (xsr != null) {
+                try {
+                    xsr.close();
+                } catch (XMLStreamException e) {
+                    System.err.format("Unable to close XMLStreamReader: %s%n", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param pattern entry name pattern, or null for the first package document by extension.
+     */
+    private ZipEntry findEntry(Pattern pattern) {
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements()) {
+            ZipEntry entry = entries.nextElement();
+            if (entry.isDirectory())
+                continue;
+            if (pattern == null
+                    ? entry.getName().toLowerCase(Locale.ROOT).endsWith(".opf")
+                    : pattern.matcher(entry.getName()).matches())
+                return entry;
+        }
+        return null;
+    }
+
+    /**
+     * Resolve a manifest reference against the path of the package document. References are URLs, so they may be
+     * percent-encoded and may climb out of the package document's directory.
+     */
+    static String resolve(String base, String href) {
+        try {
+            String path = new URI(null, null, base, null).resolve(new URI(href)).normalize().getPath();
+            if (path != null)
+                return path;
+        } catch (Exception e) {
+            // Not a valid URL, likely an unencoded file name
+        }
+        int slash = base.lastIndexOf('/');
+        return slash < 0 ? href : base.substring(0, slash + 1) + href;
+    }
+
+    @Override
+    public void close() throws IOException {
+        zip.close();
+    }
+}
+
+/**
+ * The MIT License (MIT)
+ * =====================
+ * <p>
+ * Copyright © 2023 PeasfulTown
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the “Software”), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
@@ -0,0 +1,197 @@
+/**
+ * See end of file for extended copyright information.
+ * Original Author(s): PeasfulTown <peasfultown@gmail.com>
+ * Description: Ways of putting an imported book file into the library.
+ */
+package xyz.peasfultown.helpers;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * How an imported book file gets into the library. Copying leaves the original alone and doubles the disk space and
+ * the writes, the other modes avoid that when the library is on the same file system as the files being imported.
+ */
+public enum IngestMode {
+    /**
+     * A full copy. The file is copied into the library's staging directory and hashed in the same pass, then moved
+     * into place.
+     */
+    COPY {
+        @Override
+        void transfer(Path source, Path target) throws IOException {
+            Files.copy(source, target);
+        }
+    },
+    /**
+     * A hard link to the original, no data is written. Editing either file changes both. Falls back to a copy when
+     * the library is on another file system or the file system has no hard links.
+     */
+    HARD_LINK {
+        @Override
+        void transfer(Path source, Path target) throws IOException {
+            try {
+                Files.createLink(target, source);
+            } catch (FileSystemException | UnsupportedOperationException e) {
+                COPY.transfer(source, target);
+            }
+        }
+    },
+    /**
+     * A copy-on-write clone sharing its blocks with the original until either is changed, so no data is written. Made
+     * with {@code cp --reflink=always} on Linux (Btrfs, XFS) and {@code cp -c} (clonefile) on macOS (APFS). Where the
+     * file system cannot clone, falls back to a copy made inside the kernel with {@link FileChannel#transferTo}, which
+     * takes as much disk space as {@link #COPY}. Unlike COPY the file is not staged, it is read once more to be hashed
+     * before the import.
+     */
+    REFLINK {
+        // File systems found unable to clone, not tried again
+        private final Set<FileStore> noClones = ConcurrentHashMap.newKeySet();
+
+        @Override
+        void transfer(Path source, Path target) throws IOException {
+            if (Files.exists(target))
+                throw new FileAlreadyExistsException(target.toString());
+            FileStore store = Files.getFileStore(target.getParent());
+            if (!noClones.contains(store)) {
+                if (cloneFile(source, target))
+                    return;
+                noClones.add(store);
+            }
+            kernelCopy(source, target);
+        }
+
+        /**
+         * @return false if the operating system or file system cannot clone the file.
+         */
+        private boolean cloneFile(Path source, Path target) throws IOException {
+            String os = System.getProperty("os.name").toLowerCase(Locale.ROOT);
+            ProcessBuilder cp;
+            if (os.contains("linux"))
+                cp = new ProcessBuilder("cp", "--reflink=always", "--", source.toString(), target.toString());
+            else if (os.contains("mac"))
+                cp = new ProcessBuilder("cp", "-c", "--", source.toString(), target.toString());
+            else
+                return false;
+
+            Process process = null;
+            try {
+                process = cp.redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+                if (process.waitFor() == 0)
+                    return true;
+            } catch (IOException e) {
+                // No cp to run
+            } catch (InterruptedException e) {
+                process.destroyForcibly();
+                Thread.currentThread().interrupt();
+                Files.deleteIfExists(target);
+                throw new InterruptedIOException("Interrupted while cloning " + source);
+            }
+            Files.deleteIfExists(target);
+            return false;
+        }
+
+        private void kernelCopy(Path source, Path target) throws IOException {
+            try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                try {
+                    long size = in.size();
+                    for (long position = 0; position < size; ) {
+                        position += in.transferTo(position, size - position, out);
+                    }
+                } catch (IOException e) {
+                    Files.deleteIfExists(target);
+                    throw e;
+                }
+            }
+        }
+    },
+    /**
+     * The original is moved into the library, a rename on the same file system. Files found to be duplicates are left
+     * where they are.
+     */
+    MOVE {
+        @Override
+        void transfer(Path source, Path target) throws IOException {
+            Files.move(source, target);
+        }
+
+        @Override
+        void undo(Path source, Path target) throws IOException {
+            // The target is the only copy left
+            Files.move(target, source);
+        }
+    };
+
+    /**
+     * Put a book file at its place in the library. The target must not exist.
+     */
+    abstract void transfer(Path source, Path target) throws IOException;
+
+    /**
+     * Take a file put in place by {@link #transfer(Path, Path)} back out of the library.
+     */
+    void undo(Path source, Path target) throws IOException {
+        Files.deleteIfExists(target);
+    }
+
+    /**
+     * Same as {@link #transfer(Path, Path)}, and with verification read the file back and compare it to the hash taken
+     * before the import. A file that does not match is taken back out of the library, a moved file is moved back.
+     *
+     * @throws IOException if the file could not be put in place or does not match the hash.
+     */
+    public void transfer(Path source, Path target, String contentHash, boolean verify) throws IOException {
+        transfer(source, target);
+        if (verify && !ContentHasher.hash(target).equals(contentHash)) {
+            undo(source, target);
+            throw new IOException(String.format("Checksum of %s does not match the imported file.", target));
+        }
+    }
+
+    /**
+     * @return whether books are copied into the staging directory while they are hashed, see {@link #COPY}.
+     */
+    public boolean isStaged() {
+        return this == COPY;
+    }
+}
+
+
+/**
+ * The MIT License (MIT)
+ * =====================
+ * <p>
+ * Copyright © 2023 PeasfulTown
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the “Software”), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
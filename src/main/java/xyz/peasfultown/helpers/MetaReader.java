@@ -6,8 +6,10 @@
  */
 package xyz.peasfultown.helpers;
 
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDDocumentInformation;
+import org.apache.pdfbox.util.DateConverter;
 import org.xml.sax.SAXException;
 
 import javax.xml.parsers.ParserConfigurationException;
@@ -17,7 +19,6 @@ import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamConstants;
-import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
@@ -29,12 +30,15 @@ import java.time.LocalDate;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
-import java.util.Enumeration;
+import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Pattern;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 public class MetaReader {
     public static final String PATTERN_ISBN = "(97[89])?([0-9]){10}";
@@ -42,14 +46,27 @@ public class MetaReader {
     public static final String PATTERN_DATE = "[0-9]{4}-(0[1-9]|1[012])-(([0-2][0-9])|(3[01]))";
     public static final String PATTERN_ISO_DATETIME = "[0-9]{4}-(0[1-9]|1[012])-(([0-2][0-9])|(3[01]))T(([01][0-9])|(2[0-3])):[0-5][0-9]:[0-5][0-9](\\.[0-9]+)??Z";
     public static final String PATTERN_ISO_DATETIME_OFFSET = "[0-9]{4}-(0[1-9]|1[012])-(([0-2][0-9])|(3[01]))T(([01][0-9])|(2[0-3])):[0-5][0-9]:[0-5][0-9](\\.[0-9]+)??(\\+[0-5][0-9]:[0-5][0-9])";
-    private static final String EPUB_META_FILE_NAME_PATTERN = ".*?(content.opf)$";
+    private static final long PDF_MEMORY_LIMIT = 16 * 1024 * 1024;
+    // Joins the names under the "authors" key, a character no name contains
+    private static final String AUTHOR_SEPARATOR = "\n";
+    // How several people are written in the single author field of a pdf
+    private static final Pattern PDF_AUTHOR_SEPARATOR = Pattern.compile("\\s*(?:;|&|\\band\\b)\\s*");
+    private static final Pattern ISBN = Pattern.compile(PATTERN_ISBN);
+    private static final Pattern UUID = Pattern.compile(PATTERN_UUID);
+    private static final Pattern DATE = Pattern.compile(PATTERN_DATE);
+    private static final Pattern ISO_DATETIME = Pattern.compile(PATTERN_ISO_DATETIME);
+    private static final Pattern ISO_DATETIME_OFFSET = Pattern.compile(PATTERN_ISO_DATETIME_OFFSET);
 
     public static HashMap<String, String> getMetadata(Path file) throws MetadataReaderException {
         HashMap<String, String> meta = new HashMap<>();
         setBasicFileProperties(meta, file);
         switch (meta.get("filetype").toLowerCase()) {
             case "epub":
-                setEpubMetadata(file, meta);
+                try (EpubArchive epub = EpubArchive.open(file)) {
+                    readPackageDocument(epub, meta);
+                } catch (IOException e) {
+                    throw new MetadataReaderException(e.getMessage(), e);
+                }
                 return meta;
             case "pdf":
                 setPDFMetadata(file, meta);
@@ -60,12 +77,37 @@ public class MetaReader {
     }
 
     private static void setPDFMetadata(Path file, HashMap<String, String> meta) throws MetadataReaderException {
-        try (PDDocument pdf = PDDocument.load(file.toFile())) {
+        Map<String, String> info;
+        try {
+            info = PdfInfoReader.read(file);
+        } catch (IOException e) {
+            throw new MetadataReaderException("Problem while getting PDF metadata.", e);
+        }
+        if (info == null) {
+            loadPDFMetadata(file, meta);
+            return;
+        }
+
+        if (info.get(PdfInfoReader.TITLE) != null)
+            meta.put("title", info.get(PdfInfoReader.TITLE));
+        if (info.get(PdfInfoReader.AUTHOR) != null)
+            putPdfAuthors(meta, info.get(PdfInfoReader.AUTHOR));
+        Calendar creationDate = DateConverter.toCalendar(info.get(PdfInfoReader.CREATION_DATE));
+        if (creationDate != null)
+            meta.put("date", creationDate.toInstant().truncatedTo(ChronoUnit.SECONDS).toString());
+    }
+
+    /**
+     * Read the metadata by loading the whole document, for pdfs {@link PdfInfoReader} cannot read. Parsed objects
+     * beyond {@link #PDF_MEMORY_LIMIT} bytes go to a temporary file, so large scans do not fill the heap.
+     */
+    private static void loadPDFMetadata(Path file, HashMap<String, String> meta) throws MetadataReaderException {
+        try (PDDocument pdf = PDDocument.load(file.toFile(), MemoryUsageSetting.setupMixed(PDF_MEMORY_LIMIT))) {
             PDDocumentInformation pdfInfo = pdf.getDocumentInformation();
             if (pdfInfo.getTitle() != null)
                 meta.put("title", pdfInfo.getTitle());
             if (pdfInfo.getAuthor() != null)
-                meta.put("author", pdfInfo.getAuthor());
+                putPdfAuthors(meta, pdfInfo.getAuthor());
             if (pdfInfo.getCreationDate() != null)
                 meta.put("date", pdfInfo.getCreationDate().toInstant().truncatedTo(ChronoUnit.SECONDS).toString());
         } catch (Exception e) {
@@ -73,9 +115,68 @@ public class MetaReader {
         }
     }
 
-    private static void setEpubMetadata(Path file, HashMap<String, String> meta) throws MetadataReaderException {
+    private static void putPdfAuthors(Map<String, String> meta, String author) {
+        meta.put("author", author);
+        meta.put("authors", String.join(AUTHOR_SEPARATOR, splitPdfAuthors(author)));
+    }
+
+    /**
+     * Split the author field of a pdf into names, on semicolons, ampersands and "and". Commas separate names only if
+     * every part has a space in it, "Shelley, Mary" is one name written last name first.
+     */
+    static List<String> splitPdfAuthors(String author) {
+        List<String> names = new ArrayList<>();
+        for (String part : PDF_AUTHOR_SEPARATOR.split(author.trim())) {
+            String[] commaParts = part.split(",");
+            boolean fullNames = commaParts.length > 1;
+            for (String commaPart : commaParts) {
+                fullNames &= commaPart.trim().contains(" ");
+            }
+            if (fullNames) {
+                for (String commaPart : commaParts) {
+                    names.add(commaPart.trim());
+                }
+            } else if (!part.isBlank()) {
+                names.add(part.trim());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Every author of a book from its metadata, in the order given and without repeats: each {@code dc:creator} of an
+     * epub, the names in the author field of a pdf. Falls back to the single author, or "Unknown".
+     */
+    public static List<String> getAuthorNames(Map<String, String> meta) {
+        List<String> names = new ArrayList<>();
+        String authors = meta.get("authors");
+        if (authors != null) {
+            Set<String> seen = new HashSet<>();
+            for (String name : authors.split(AUTHOR_SEPARATOR)) {
+                name = name.trim();
+                if (!name.isEmpty() && seen.add(name.toLowerCase(Locale.ROOT)))
+                    names.add(name);
+            }
+        }
+        if (names.isEmpty())
+            names.add(meta.getOrDefault("author", meta.getOrDefault("creator", "Unknown")));
+        return names;
+    }
+
+    /**
+     * Read the metadata of an already opened epub. The cover image named in its manifest is remembered by the archive,
+     * see {@link EpubArchive#getCoverEntry()}.
+     */
+    public static HashMap<String, String> getMetadata(EpubArchive epub) throws MetadataReaderException {
+        HashMap<String, String> meta = new HashMap<>();
+        setBasicFileProperties(meta, epub.getFile());
+        readPackageDocument(epub, meta);
+        return meta;
+    }
+
+    static void readPackageDocument(EpubArchive epub, Map<String, String> meta) throws MetadataReaderException {
         try {
-            processXML(file.toFile(), meta);
+            processXML(epub, meta);
         } catch (Exception e) {
             throw new MetadataReaderException(e.getMessage(), e);
         }
@@ -92,14 +193,13 @@ public class MetaReader {
         metadata.putIfAbsent("filetype", filename.substring(ind + 1));
     }
 
-    private static void processXML(File epub, HashMap<String, String> meta) throws XMLStreamException {
+    private static void processXML(EpubArchive epub, Map<String, String> meta) throws XMLStreamException {
         XMLInputFactory xif = XMLInputFactory.newDefaultFactory();
         XMLStreamReader xsr = null;
 
-        try (ZipFile zip = new ZipFile(epub);
-             InputStream is = zip.getInputStream(getEpubMetaFile(zip))) {
+        try (InputStream is = epub.openPackageDocument()) {
             xsr = xif.createXMLStreamReader(is);
-            processElements(xsr, meta);
+            epub.setPackageRead(processElements(xsr, meta));
         } catch (Exception e) {
             throw new XMLStreamException(e.getMessage(), e);
         } finally {
@@ -113,24 +213,75 @@ public class MetaReader {
         }
     }
 
-    private static void processElements(XMLStreamReader xsr, HashMap<String, String> meta) throws MetadataReaderException {
+    /**
+     * Read the Dublin Core metadata, then the manifest for the cover image. The cover is the manifest item with the
+     * epub 3 {@code cover-image} property, or else the item named by the epub 2 {@code <meta name="cover">}. Reading
+     * stops as soon as the cover is certain, the rest of a large manifest is skipped.
+     *
+     * @return reference of the cover image, or null if the package document names none.
+     */
+    private static String processElements(XMLStreamReader xsr, Map<String, String> meta) throws MetadataReaderException {
         String propName = null;
+        boolean inMetadata = true;
+        String coverId = null;
+        String coverHref = null;
+        boolean coverImageProperty = false;
+        boolean epub2 = false;
+        // Items seen before the cover's id is known, only needed if the manifest comes first
+        Map<String, String> imageHrefs = new HashMap<>();
+        // Text of the dc:creator being read, and those read so far
+        StringBuilder creator = null;
+        List<String> creators = new ArrayList<>();
         try {
             while (xsr.hasNext()) {
                 xsr.next();
                 switch (xsr.getEventType()) {
                     case XMLStreamConstants.START_ELEMENT:
-                        if (xsr.getPrefix().equals("dc"))
-                            propName = xsr.getLocalName();
+                        String localName = xsr.getLocalName();
+                        if (localName.equals("package")) {
+                            String version = xsr.getAttributeValue(null, "version");
+                            epub2 = version != null && version.startsWith("2");
+                        } else if (inMetadata && "dc".equals(xsr.getPrefix())) {
+                            propName = localName;
+                            if (localName.equals("creator"))
+                                creator = new StringBuilder();
+                        } else if (localName.equals("meta")) {
+                            if ("cover".equals(xsr.getAttributeValue(null, "name")))
+                                coverId = xsr.getAttributeValue(null, "content");
+                        } else if (localName.equals("item")) {
+                            String href = xsr.getAttributeValue(null, "href");
+                            String id = xsr.getAttributeValue(null, "id");
+                            String properties = xsr.getAttributeValue(null, "properties");
+                            if (href == null)
+                                break;
+                            String mediaType = xsr.getAttributeValue(null, "media-type");
+                            if (properties != null && (" " + properties + " ").contains(" cover-image ")) {
+                                if (!inMetadata)
+                                    return href;
+                                coverHref = href;
+                                coverImageProperty = true;
+                            } else if (!coverImageProperty && id != null) {
+                                if (id.equals(coverId)) {
+                                    // Epub 2 has no cover-image property that could still come
+                                    if (epub2 && !inMetadata)
+                                        return href;
+                                    coverHref = href;
+                                }
+                                else if (coverId == null && mediaType != null && mediaType.startsWith("image/"))
+                                    imageHrefs.put(id, href);
+                            }
+                        }
                         break;
                     case XMLStreamConstants.CHARACTERS:
-                        if (xsr.hasText()) {
+                        if (inMetadata && xsr.hasText()) {
                             String parserText = xsr.getText();
+                            if (creator != null)
+                                creator.append(parserText);
                             if (propName != null && propName.equals("identifier")) {
-                                boolean isUUID = Pattern.matches(MetaReader.PATTERN_UUID, parserText);
+                                boolean isUUID = UUID.matcher(parserText).matches();
                                 if (isUUID) {
                                     meta.putIfAbsent("uuid", parserText);
-                                } else if (Pattern.matches(MetaReader.PATTERN_ISBN, parserText)) {
+                                } else if (ISBN.matcher(parserText).matches()) {
                                     meta.putIfAbsent("isbn", parserText);
                                 }
                             } else {
@@ -139,9 +290,18 @@ public class MetaReader {
                         }
                         break;
                     case XMLStreamConstants.END_ELEMENT:
-                        // End process when reach end of metadata tag no need to process further
-                        if (xsr.getLocalName().equals("metadata")) {
-                            return;
+                        if (creator != null && xsr.getLocalName().equals("creator")) {
+                            if (!creator.toString().isBlank())
+                                creators.add(creator.toString().trim());
+                            creator = null;
+                        } else if (xsr.getLocalName().equals("metadata")) {
+                            inMetadata = false;
+                            propName = null;
+                            if (!creators.isEmpty())
+                                meta.put("authors", String.join(AUTHOR_SEPARATOR, creators));
+                        } else if (xsr.getLocalName().equals("manifest")) {
+                            // Nothing to read past the manifest
+                            return coverHref != null ? coverHref : imageHrefs.get(coverId);
                         }
                         break;
                     default:
@@ -152,33 +312,21 @@ public class MetaReader {
         } catch (Exception e) {
             throw new MetadataReaderException(e.getMessage(), e);
         }
+        return coverHref != null ? coverHref : imageHrefs.get(coverId);
     }
 
     public static Instant parseDate(String date) {
-        if (Pattern.matches(PATTERN_DATE, date)) {
+        if (DATE.matcher(date).matches()) {
             return LocalDate.parse(date).atStartOfDay().toInstant(ZoneOffset.UTC);
-        } else if (Pattern.matches(PATTERN_ISO_DATETIME, date)) {
+        } else if (ISO_DATETIME.matcher(date).matches()) {
             return Instant.parse(date);
-        } else if (Pattern.matches(PATTERN_ISO_DATETIME_OFFSET, date)) {
+        } else if (ISO_DATETIME_OFFSET.matcher(date).matches()) {
             return DateTimeFormatter.ISO_OFFSET_DATE_TIME.parse(date, Instant::from);
         }
 
         return Instant.now().truncatedTo(ChronoUnit.DAYS);
     }
 
-    private static ZipEntry getEpubMetaFile(ZipFile zipFile) {
-        Enumeration elems = zipFile.entries();
-
-        while (elems.hasMoreElements()) {
-            ZipEntry ze = (ZipEntry) elems.nextElement();
-            if (Pattern.matches(".*?content.opf$", ze.getName())) {
-                return ze;
-            }
-        }
-
-        return null;
-    }
-
     /**
      * SAX parser method to get metadata from epub.
      *
@@ -208,15 +356,6 @@ public class MetaReader {
 
         // TODO (feat): check filetype before creating instantiating ZipFile object
 
-        ZipFile epubZip = new ZipFile(file.toFile());
-        ZipEntry epubMetaFile = getEpubMetaFile(epubZip);
-
-        if (epubMetaFile == null) {
-            throw new FileNotFoundException("Failed to find Epub metadata file.");
-        }
-
-        InputStream epubMetaInputStream = epubZip.getInputStream(epubMetaFile);
-
         SAXParser saxParser = null;
         try {
             SAXParserFactory saxParserFactory = SAXParserFactory.newInstance();
@@ -230,16 +369,15 @@ public class MetaReader {
         }
 
         HashMap meta = null;
-        try {
+        try (EpubArchive epub = EpubArchive.open(file);
+             InputStream epubMetaInputStream = epub.openPackageDocument()) {
             EpubMetadataSAXHandler metaHandler = new EpubMetadataSAXHandler();
             saxParser.parse(epubMetaInputStream, metaHandler);
             meta = metaHandler.getResults();
+        } catch (FileNotFoundException e) {
+            throw new FileNotFoundException("Failed to find Epub metadata file.");
         } catch (IOException e) {
             throw new IOException("Epub parsing operation failed.\n" + e.getMessage());
-        } finally {
-            if (epubMetaInputStream != null) {
-                epubMetaInputStream.close();
-            }
         }
 
         return meta;
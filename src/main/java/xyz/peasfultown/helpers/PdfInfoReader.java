@@ -0,0 +1,495 @@
+/**
+ * See end of file for extended copyright information.
+ * Original Author(s): PeasfulTown <peasfultown@gmail.com>
+ * Description: Reads the document information dictionary of a pdf through its cross-reference table, without
+ * loading the document.
+ */
+package xyz.peasfultown.helpers;
+
+import org.apache.pdfbox.cos.COSString;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads the document information (Info) dictionary of a pdf by following {@code startxref} at the end of the file to
+ * the cross-reference table and the trailer, then reading the one object the trailer points to. Only a few small
+ * pieces of the file are read, whatever its size, where loading the document with PDFBox parses all of it.
+ * <p>
+ * This only covers the plain case: classic cross-reference tables, possibly updated incrementally, and an Info
+ * dictionary holding its strings directly. For cross-reference streams, compressed or encrypted objects and anything
+ * malformed {@link #read(Path)} returns null, and the caller should load the document instead.
+ */
+class PdfInfoReader {
+    static final String TITLE = "Title";
+    static final String AUTHOR = "Author";
+    static final String CREATION_DATE = "CreationDate";
+
+    // startxref has to be in the last 1024 bytes, some writers append junk after %%EOF though
+    private static final int TAIL_SIZE = 4096;
+    private static final int LINE_SIZE = 64;
+    private static final int ENTRY_SIZE = 20;
+    // Largest trailer or Info dictionary read, anything bigger is left to PDFBox
+    private static final int MAX_OBJECT_SIZE = 64 * 1024;
+    private static final int MAX_SECTIONS = 64;
+
+    private final RandomAccessFile raf;
+    private final long length;
+
+    private PdfInfoReader(RandomAccessFile raf) throws IOException {
+        this.raf = raf;
+        this.length = raf.length();
+    }
+
+    /**
+     * @return the text of the Title, Author and CreationDate entries the pdf has, or null if the Info dictionary cannot
+     * be read this way.
+     * @throws IOException if the file cannot be read.
+     */
+    static Map<String, String> read(Path file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "r")) {
+            return new PdfInfoReader(raf).readInfo();
+        } catch (MalformedException | EOFException e) {
+            return null;
+        }
+    }
+
+    private Map<String, String> readInfo() throws IOException {
+        int tailSize = (int) Math.min(TAIL_SIZE, length);
+        byte[] tail = read(length - tailSize, tailSize);
+        int startxref = lastIndexOf(tail, "startxref");
+        if (startxref < 0)
+            return null;
+        long xref = new Parser(tail, startxref + "startxref".length()).readInteger();
+
+        Reference info = null;
+        Set<Long> visited = new HashSet<>();
+        while (xref >= 0 && visited.size() < MAX_SECTIONS && visited.add(xref)) {
+            Section section = readSection(xref);
+            if (info == null) {
+                // The newest trailer is the one that counts
+                if (section.trailer.containsKey("Encrypt"))
+                    return null;
+                Object ref = section.trailer.get("Info");
+                if (ref == null)
+                    return new HashMap<>();
+                if (!(ref instanceof Reference))
+                    return null;
+                info = (Reference) ref;
+            }
+
+            long offset = section.lookup(info);
+            if (offset == 0)
+                return null;
+            if (offset > 0)
+                return readInfoDictionary(offset, info);
+
+            Object prev = section.trailer.get("Prev");
+            xref = prev instanceof Long ? (Long) prev : -1;
+        }
+        return null;
+    }
+
+    private Section readSection(long offset) throws IOException {
+        Section section = new Section();
+        Parser parser = new Parser(read(offset, LINE_SIZE), 0);
+        if (!parser.readKeyword().equals("xref"))
+            // A cross-reference stream
+            throw new MalformedException();
+
+        long pos = offset + parser.pos;
+        while (true) {
+            parser = new Parser(read(pos, LINE_SIZE), 0);
+            parser.skipWhitespace();
+            if (parser.peek() == 't') {
+                if (!parser.readKeyword().equals("trailer"))
+                    throw new MalformedException();
+                pos += parser.pos;
+                break;
+            }
+            long start = parser.readInteger();
+            long count = parser.readInteger();
+            parser.skipEndOfLine();
+            if (start < 0 || count < 0)
+                throw new MalformedException();
+            section.subsections.add(new long[]{start, count, pos + parser.pos});
+            pos += parser.pos + count * ENTRY_SIZE;
+        }
+
+        Object trailer = new Parser(read(pos, (int) Math.min(MAX_OBJECT_SIZE, length - pos)), 0).readObject();
+        if (!(trailer instanceof Map))
+            throw new MalformedException();
+        section.trailer = castDictionary(trailer);
+        return section;
+    }
+
+    private Map<String, String> readInfoDictionary(long offset, Reference ref) throws IOException {
+        Parser parser = new Parser(read(offset, (int) Math.min(MAX_OBJECT_SIZE, length - offset)), 0);
+        if (parser.readInteger() != ref.number || parser.readInteger() != ref.generation
+                || !parser.readKeyword().equals("obj"))
+            return null;
+        Object object = parser.readObject();
+        if (!(object instanceof Map))
+            return null;
+
+        Map<String, Object> dictionary = castDictionary(object);
+        Map<String, String> info = new HashMap<>();
+        for (String key : new String[]{TITLE, AUTHOR, CREATION_DATE}) {
+            Object value = dictionary.get(key);
+            if (value instanceof byte[])
+                // Decodes UTF-16 and PDFDocEncoding the same way loading the document would
+                info.put(key, new COSString((byte[]) value).getString());
+            else if (value != null)
+                // Likely a reference to a string object, not worth following
+                return null;
+        }
+        return info;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> castDictionary(Object object) {
+        return (Map<String, Object>) object;
+    }
+
+    private byte[] read(long offset, int size) throws IOException {
+        if (offset < 0 || offset >= length)
+            throw new MalformedException();
+        byte[] bytes = new byte[(int) Math.min(size, length - offset)];
+        raf.seek(offset);
+        raf.readFully(bytes);
+        return bytes;
+    }
+
+    private static int lastIndexOf(byte[] bytes, String keyword) {
+        byte[] k = keyword.getBytes(StandardCharsets.US_ASCII);
+        outer:
+        for (int i = bytes.length - k.length; i >= 0; i--) {
+            for (int j = 0; j < k.length; j++) {
+                if (bytes[i + j] != k[j])
+                    continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private class Section {
+        // {first object number, count, file offset of the first entry}
+        final List<long[]> subsections = new ArrayList<>();
+        Map<String, Object> trailer;
+
+        /**
+         * @return the offset of the object, 0 if it is free in this section, or -1 if this section does not list it.
+         */
+        long lookup(Reference ref) throws IOException {
+            for (int i = subsections.size() - 1; i >= 0; i--) {
+                long[] subsection = subsections.get(i);
+                if (ref.number < subsection[0] || ref.number >= subsection[0] + subsection[1])
+                    continue;
+                Parser entry = new Parser(read(subsection[2] + (ref.number - subsection[0]) * ENTRY_SIZE, ENTRY_SIZE), 0);
+                long offset = entry.readInteger();
+                long generation = entry.readInteger();
+                String type = entry.readKeyword();
+                if (type.equals("f") || generation != ref.generation)
+                    return 0;
+                if (!type.equals("n") || offset <= 0)
+                    throw new MalformedException();
+                return offset;
+            }
+            return -1;
+        }
+    }
+
+    private static class Reference {
+        final long number;
+        final long generation;
+
+        Reference(long number, long generation) {
+            this.number = number;
+            this.generation = generation;
+        }
+    }
+
+    private static class MalformedException extends IOException {
+    }
+
+    /**
+     * Just enough of the pdf syntax to read dictionaries. Strings are returned as their raw bytes, names as strings,
+     * integers as longs, other numbers as doubles and keywords such as {@code true} as strings.
+     */
+    private static class Parser {
+        private final byte[] bytes;
+        private int pos;
+
+        Parser(byte[] bytes, int pos) {
+            this.bytes = bytes;
+            this.pos = pos;
+        }
+
+        int peek() throws MalformedException {
+            if (pos >= bytes.length)
+                throw new MalformedException();
+            return bytes[pos] & 0xFF;
+        }
+
+        private int next() throws MalformedException {
+            int b = peek();
+            pos++;
+            return b;
+        }
+
+        void skipWhitespace() throws MalformedException {
+            while (pos < bytes.length) {
+                int b = bytes[pos] & 0xFF;
+                if (b == '%') {
+                    while (pos < bytes.length && bytes[pos] != '\n' && bytes[pos] != '\r')
+                        pos++;
+                } else if (isWhitespace(b)) {
+                    pos++;
+                } else {
+                    return;
+                }
+            }
+            throw new MalformedException();
+        }
+
+        void skipEndOfLine() {
+            while (pos < bytes.length && isWhitespace(bytes[pos] & 0xFF))
+                pos++;
+        }
+
+        long readInteger() throws MalformedException {
+            skipWhitespace();
+            int start = pos;
+            long value = 0;
+            while (pos < bytes.length && Character.isDigit(bytes[pos])) {
+                value = value * 10 + (bytes[pos++] - '0');
+                if (value > Integer.MAX_VALUE * 1024L)
+                    throw new MalformedException();
+            }
+            if (pos == start)
+                throw new MalformedException();
+            return value;
+        }
+
+        String readKeyword() throws MalformedException {
+            skipWhitespace();
+            int start = pos;
+            while (pos < bytes.length && isRegular(bytes[pos] & 0xFF))
+                pos++;
+            return new String(bytes, start, pos - start, StandardCharsets.ISO_8859_1);
+        }
+
+        Object readObject() throws MalformedException {
+            skipWhitespace();
+            int b = peek();
+            switch (b) {
+                case '/':
+                    pos++;
+                    return readName();
+                case '(':
+                    pos++;
+                    return readLiteralString();
+                case '[':
+                    pos++;
+                    List<Object> array = new ArrayList<>();
+                    while (true) {
+                        skipWhitespace();
+                        if (peek() == ']') {
+                            pos++;
+                            return array;
+                        }
+                        array.add(readObject());
+                    }
+                case '<':
+                    pos++;
+                    if (peek() != '<')
+                        return readHexString();
+                    pos++;
+                    Map<String, Object> dictionary = new HashMap<>();
+                    while (true) {
+                        skipWhitespace();
+                        if (peek() == '>') {
+                            pos++;
+                            if (next() != '>')
+                                throw new MalformedException();
+                            return dictionary;
+                        }
+                        if (next() != '/')
+                            throw new MalformedException();
+                        String key = readName();
+                        dictionary.put(key, readObject());
+                    }
+                default:
+                    if (Character.isDigit(b) || b == '+' || b == '-' || b == '.')
+                        return readNumberOrReference();
+                    String keyword = readKeyword();
+                    if (keyword.isEmpty())
+                        throw new MalformedException();
+                    return keyword;
+            }
+        }
+
+        private Object readNumberOrReference() throws MalformedException {
+            String number = readKeyword();
+            if (!number.matches("\\d+")) {
+                try {
+                    return Double.parseDouble(number);
+                } catch (NumberFormatException e) {
+                    throw new MalformedException();
+                }
+            }
+
+            long value = Long.parseLong(number);
+            // An integer followed by another integer and R is an indirect reference
+            int mark = pos;
+            try {
+                long generation = readInteger();
+                if (readKeyword().equals("R"))
+                    return new Reference(value, generation);
+            } catch (MalformedException e) {
+                // Just a number
+            }
+            pos = mark;
+            return value;
+        }
+
+        private String readName() throws MalformedException {
+            StringBuilder name = new StringBuilder();
+            while (pos < bytes.length && isRegular(bytes[pos] & 0xFF)) {
+                int b = next();
+                if (b == '#' && pos + 1 < bytes.length) {
+                    b = Integer.parseInt(new String(bytes, pos, 2, StandardCharsets.ISO_8859_1), 16);
+                    pos += 2;
+                }
+                name.append((char) b);
+            }
+            return name.toString();
+        }
+
+        private byte[] readLiteralString() throws MalformedException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int depth = 1;
+            while (true) {
+                int b = next();
+                if (b == '(') {
+                    depth++;
+                } else if (b == ')') {
+                    if (--depth == 0)
+                        return out.toByteArray();
+                } else if (b == '\r') {
+                    // Line breaks inside strings are read as \n
+                    if (pos < bytes.length && bytes[pos] == '\n')
+                        pos++;
+                    b = '\n';
+                } else if (b == '\\') {
+                    b = next();
+                    switch (b) {
+                        case 'n':
+                            b = '\n';
+                            break;
+                        case 'r':
+                            b = '\r';
+                            break;
+                        case 't':
+                            b = '\t';
+                            break;
+                        case 'b':
+                            b = '\b';
+                            break;
+                        case 'f':
+                            b = '\f';
+                            break;
+                        case '\r':
+                            if (pos < bytes.length && bytes[pos] == '\n')
+                                pos++;
+                            continue;
+                        case '\n':
+                            continue;
+                        default:
+                            if (b >= '0' && b <= '7') {
+                                int octal = b - '0';
+                                for (int i = 0; i < 2 && peek() >= '0' && peek() <= '7'; i++)
+                                    octal = octal * 8 + (next() - '0');
+                                b = octal & 0xFF;
+                            }
+                            // Anything else stands for itself, including \( \) and \\
+                            break;
+                    }
+                }
+                out.write(b);
+            }
+        }
+
+        private byte[] readHexString() throws MalformedException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int high = -1;
+            while (true) {
+                int b = next();
+                if (b == '>')
+                    break;
+                if (isWhitespace(b))
+                    continue;
+                int digit = Character.digit(b, 16);
+                if (digit < 0)
+                    throw new MalformedException();
+                if (high < 0) {
+                    high = digit;
+                } else {
+                    out.write(high << 4 | digit);
+                    high = -1;
+                }
+            }
+            // An odd last digit is followed by an implicit 0
+            if (high >= 0)
+                out.write(high << 4);
+            return out.toByteArray();
+        }
+
+        private static boolean isWhitespace(int b) {
+            return b == 0 || b == '\t' || b == '\n' || b == '\f' || b == '\r' || b == ' ';
+        }
+
+        private static boolean isRegular(int b) {
+            return !isWhitespace(b) && "()<>[]{}/%".indexOf(b) < 0;
+        }
+    }
+}
+
+/**
+ * The MIT License (MIT)
+ * =====================
+ * <p>
+ * Copyright © 2023 PeasfulTown
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the “Software”), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
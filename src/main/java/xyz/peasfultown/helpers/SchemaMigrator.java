@@ -0,0 +1,106 @@
+/**
+ * See end of file for extended copyright information.
+ * Original Author(s): PeasfulTown <peasfultown@gmail.com>
+ * Description: Brings the database schema up to date, using SQLite's `user_version` header field to remember which
+ * migration scripts have been applied.
+ */
+package xyz.peasfultown.helpers;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Migration scripts are applied in order, each one in its own transaction together with the bump of `user_version`,
+ * so a failing script leaves the database at the previous version. A database that is already up to date costs a
+ * single pragma read on startup.
+ * <p>
+ * `database.sql` is the original schema and counts as version 1. Databases created before versioning have a
+ * `user_version` of 0, its statements are all `IF NOT EXISTS` so running it again on them is harmless. Later versions
+ * live in the `migrations` directory. Never edit a script once released, add a new one instead.
+ */
+public class SchemaMigrator {
+    private static final String[] MIGRATIONS = {
+            "database.sql",
+            "migrations/002-indexes.sql",
+            "migrations/003-content-hash.sql"
+    };
+
+    public static int getLatestVersion() {
+        return MIGRATIONS.length;
+    }
+
+    public static int getVersion(Connection con) throws SQLException {
+        try (PreparedStatement stmt = con.prepareStatement("PRAGMA user_version;");
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Apply the migrations the database has not seen yet.
+     *
+     * @return the number of migrations applied.
+     * @throws SQLException if a migration fails, or the database was written by a newer version of the program.
+     */
+    public static int migrate(Connection con) throws SQLException {
+        int version = getVersion(con);
+        if (version > MIGRATIONS.length)
+            throw new SQLException(String.format(
+                    "Database schema version %d is newer than the latest supported version %d.",
+                    version, MIGRATIONS.length));
+
+        int applied = 0;
+        while (version < MIGRATIONS.length) {
+            String script = MIGRATIONS[version];
+            con.setAutoCommit(false);
+            try {
+                ScriptRunner.runScript(con, new File(script));
+                // Pragmas cannot take bound parameters
+                try (Statement stmt = con.createStatement()) {
+                    stmt.executeUpdate("PRAGMA user_version = " + (version + 1) + ";");
+                }
+                con.commit();
+                version++;
+                applied++;
+            } catch (SQLException e) {
+                con.rollback();
+                throw new SQLException(String.format("Failed to apply migration %s: %s", script, e.getMessage()), e);
+            } finally {
+                con.setAutoCommit(true);
+            }
+        }
+        return applied;
+    }
+}
+
+/**
+ * The MIT License (MIT)
+ * =====================
+ * <p>
+ * Copyright © 2023 PeasfulTown
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the “Software”), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
@@ -11,16 +11,25 @@ import java.util.Iterator;
 public class ScriptRunner {
     private static final char DELIM = ';';
     private static final String SQL_COMMENT_PREFIX = "--";
+    /**
+     * Run every statement of the script in one transaction. If the connection is already in a transaction, the
+     * statements become part of it and committing is left to the caller.
+     */
     public static void runScript(Connection con, File script) throws SQLException {
-        con.setAutoCommit(false);
+        boolean ownTransaction = con.getAutoCommit();
+        if (ownTransaction)
+            con.setAutoCommit(false);
         try (BufferedReader br = Files.newBufferedReader(script.toPath())) {
             Iterator<String> iLines = br.lines().iterator();
             StringBuilder sb = new StringBuilder();
             processScript(con, sb, iLines);
         } catch (Exception e) {
+            if (ownTransaction)
+                con.rollback();
             throw new SQLException(e.getMessage(), e);
         } finally {
-            con.setAutoCommit(true);
+            if (ownTransaction)
+                con.setAutoCommit(true);
         }
     }
 
@@ -3,23 +3,49 @@ package xyz.peasfultown.helpers;
 import org.im4java.core.ConvertCmd;
 import org.im4java.core.IMOperation;
 import xyz.peasfultown.Application;
+import xyz.peasfultown.ApplicationConfig;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
-import java.util.Iterator;
-import java.util.regex.Pattern;
+import java.util.Locale;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
+/**
+ * Generates the cover.png thumbnails of books. Thumbnails are rendered inside the JVM by {@link ThumbnailRenderer},
+ * or by ImageMagick's convert if {@link ApplicationConfig#THUMBNAILS_WITH_IMAGEMAGICK} is set.
+ */
 public class ThumbnailGenerator {
-    private static final String COVER_FILE_NAME_PATTERN = ".*cover\\.(jpg|png)";
+    static final int PDF_THUMBNAIL_WIDTH = 480;
+    static final int COVER_THUMBNAIL_WIDTH = 300;
+
     public static void generatePDFThumbnail(File pdfFile, Path target) throws ThumbnailGeneratorException {
+        if (ApplicationConfig.THUMBNAILS_WITH_IMAGEMAGICK) {
+            generatePDFThumbnailWithImageMagick(pdfFile, target);
+            return;
+        }
+
+        try (ThumbnailRenderer renderer = ThumbnailRenderer.acquire()) {
+            ByteArrayOutputStream png = new ByteArrayOutputStream();
+            renderer.renderPdf(pdfFile.toPath(), PDF_THUMBNAIL_WIDTH, png);
+            Files.write(target, png.toByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ThumbnailGeneratorException("Interrupted while waiting to generate PDF thumbnail.", e);
+        } catch (Exception e) {
+            throw new ThumbnailGeneratorException("Exception while trying to generate PDF thumbnail.", e);
+        }
+    }
+
+    private static void generatePDFThumbnailWithImageMagick(File pdfFile, Path target) throws ThumbnailGeneratorException {
         try {
             IMOperation op = new IMOperation();
             op.addImage(pdfFile.getAbsolutePath().toString()+"[0]");
-            op.thumbnail(480);
+            op.thumbnail(PDF_THUMBNAIL_WIDTH);
             op.background("white");
             op.alpha("remove");
             op.addImage(target.toString());
@@ -34,19 +60,98 @@ public class ThumbnailGenerator {
     }
 
     public static void generateEpubThumbnail(File epubFile, Path target) throws ThumbnailGeneratorException {
-        Path tmpFile;
-        try (ZipFile zipFile = new ZipFile(epubFile)) {
-            ZipEntry coverFile = getCoverFromZip(zipFile);
-            if (coverFile == null)
-                throw new ThumbnailGeneratorException("Ebook cover file not found.");
-            String[] parts = epubFile.getName().split("\\.");
-            tmpFile = Files.createTempFile("jebman", parts[1].equals("png") ? ".png" : ".jpg");
-            Files.copy(zipFile.getInputStream(coverFile), tmpFile, StandardCopyOption.REPLACE_EXISTING);
+        try (EpubArchive epub = EpubArchive.open(epubFile.toPath())) {
+            generateEpubThumbnail(epub, target);
+        } catch (IOException e) {
+            throw new ThumbnailGeneratorException("Exception occurred while trying to generate thumbnail for Epub file", e);
+        }
+    }
+
+    /**
+     * Generate the thumbnail from an epub that is already open, e.g. after reading its metadata.
+     */
+    public static void generateEpubThumbnail(EpubArchive epub, Path target) throws ThumbnailGeneratorException {
+        if (!ApplicationConfig.THUMBNAILS_WITH_IMAGEMAGICK) {
+            writeThumbnail(renderEpubThumbnail(epub), target);
+            return;
+        }
+
+        Path cover = extractEpubCover(epub);
+        try {
+            generateCoverThumbnail(cover, target);
+        } finally {
+            try {
+                Files.deleteIfExists(cover);
+            } catch (IOException e) {
+                System.err.format("Unable to delete temporary cover %s: %s%n", cover, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Render the thumbnail of an epub's cover in memory, decoding the cover straight from the archive. Always renders
+     * inside the JVM, whatever {@link ApplicationConfig#THUMBNAILS_WITH_IMAGEMAGICK} says.
+     *
+     * @return the thumbnail as PNG, for {@link #writeThumbnail(byte[], Path)}.
+     */
+    public static byte[] renderEpubThumbnail(EpubArchive epub) throws ThumbnailGeneratorException {
+        ZipEntry coverFile = findCover(epub);
+        try (ThumbnailRenderer renderer = ThumbnailRenderer.acquire();
+             InputStream is = epub.getInputStream(coverFile)) {
+            return renderer.renderImage(is, COVER_THUMBNAIL_WIDTH);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ThumbnailGeneratorException("Interrupted while waiting to generate Epub thumbnail.", e);
+        } catch (Exception e) {
+            throw new ThumbnailGeneratorException("Exception occurred while trying to generate thumbnail for Epub file", e);
+        }
+    }
+
+    public static void writeThumbnail(byte[] png, Path target) throws ThumbnailGeneratorException {
+        try {
+            Files.write(target, png);
+        } catch (IOException e) {
+            throw new ThumbnailGeneratorException("Exception occurred while trying to write thumbnail.", e);
+        }
+    }
+
+    /**
+     * Copy the cover image of an epub to a temporary file, for {@link #generateCoverThumbnail(Path, Path)}. The caller
+     * deletes the file.
+     */
+    public static Path extractEpubCover(EpubArchive epub) throws ThumbnailGeneratorException {
+        ZipEntry coverFile = findCover(epub);
+        try {
+            Path tmpFile = Files.createTempFile("jebman",
+                    coverFile.getName().toLowerCase(Locale.ROOT).endsWith(".png") ? ".png" : ".jpg");
             tmpFile.toFile().deleteOnExit();
+            try (InputStream is = epub.getInputStream(coverFile)) {
+                Files.copy(is, tmpFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return tmpFile;
+        } catch (Exception e) {
+            throw new ThumbnailGeneratorException("Exception occurred while trying to extract the Epub cover", e);
+        }
+    }
+
+    public static void generateCoverThumbnail(Path cover, Path target) throws ThumbnailGeneratorException {
+        if (!ApplicationConfig.THUMBNAILS_WITH_IMAGEMAGICK) {
+            try (ThumbnailRenderer renderer = ThumbnailRenderer.acquire();
+                 InputStream is = Files.newInputStream(cover)) {
+                writeThumbnail(renderer.renderImage(is, COVER_THUMBNAIL_WIDTH), target);
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ThumbnailGeneratorException("Interrupted while waiting to generate thumbnail.", e);
+            } catch (IOException e) {
+                throw new ThumbnailGeneratorException("Exception occurred while trying to generate thumbnail for Epub file", e);
+            }
+        }
 
+        try {
             IMOperation op = new IMOperation();
-            op.addImage(tmpFile.toAbsolutePath().toString());
-            op.thumbnail(300);
+            op.addImage(cover.toAbsolutePath().toString());
+            op.thumbnail(COVER_THUMBNAIL_WIDTH);
             op.addImage(target.toString());
 
             ConvertCmd cmd = new ConvertCmd();
@@ -58,17 +163,16 @@ public class ThumbnailGenerator {
         }
     }
 
-    private static ZipEntry getCoverFromZip(ZipFile zipFile) {
-        Iterator iFiles = zipFile.entries().asIterator();
-        while (iFiles.hasNext()) {
-            ZipEntry entry = (ZipEntry) iFiles.next();
-            if (Pattern.matches(COVER_FILE_NAME_PATTERN, entry.getName())) {
-                System.out.println("zip entry file found");
-                return entry;
-            }
+    private static ZipEntry findCover(EpubArchive epub) throws ThumbnailGeneratorException {
+        ZipEntry coverFile;
+        try {
+            coverFile = epub.getCoverEntry();
+        } catch (MetadataReaderException e) {
+            throw new ThumbnailGeneratorException("Exception occurred while trying to find the Epub cover", e);
         }
-
-        return null;
+        if (coverFile == null)
+            throw new ThumbnailGeneratorException("Ebook cover file not found.");
+        return coverFile;
     }
 
     public static void addPlaceHolderThumbnail(Path target) throws ThumbnailGeneratorException {
@@ -0,0 +1,180 @@
+/**
+ * See end of file for extended copyright information.
+ * Original Author(s): PeasfulTown <peasfultown@gmail.com>
+ * Description: Renders thumbnails inside the JVM, with PDFBox for pdf pages and ImageIO for cover images.
+ */
+package xyz.peasfultown.helpers;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Renders thumbnails without starting an external process: the first page of a pdf with PDFBox's
+ * {@link PDFRenderer}, covers by decoding them with ImageIO straight from their stream.
+ * <p>
+ * A renderer is not thread-safe. Take one from the pool with {@link #acquire()} and give it back by closing it. The
+ * pool holds one renderer per processor, so no more pages and covers are decoded at once than there are processors
+ * to work on them, however many import threads ask. Renderers keep their PNG writer between thumbnails.
+ */
+class ThumbnailRenderer implements Closeable {
+    static final int POOL_SIZE = Runtime.getRuntime().availableProcessors();
+    private static final Semaphore PERMITS = new Semaphore(POOL_SIZE, true);
+    private static final ConcurrentLinkedQueue<ThumbnailRenderer> IDLE = new ConcurrentLinkedQueue<>();
+    // Scratch memory of a pdf being rendered, past this it goes to a temporary file
+    private static final long PDF_MEMORY_LIMIT = 16 * 1024 * 1024;
+
+    private final ImageWriter pngWriter;
+
+    private ThumbnailRenderer() {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("png");
+        if (!writers.hasNext())
+            throw new IllegalStateException("No PNG image writer available.");
+        this.pngWriter = writers.next();
+    }
+
+    /**
+     * Take a renderer from the pool, waiting for one if all are in use.
+     */
+    static ThumbnailRenderer acquire() throws InterruptedException {
+        PERMITS.acquire();
+        ThumbnailRenderer renderer = IDLE.poll();
+        if (renderer != null)
+            return renderer;
+        try {
+            return new ThumbnailRenderer();
+        } catch (RuntimeException e) {
+            PERMITS.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Give the renderer back to the pool.
+     */
+    @Override
+    public void close() {
+        IDLE.add(this);
+        PERMITS.release();
+    }
+
+    /**
+     * Render the first page of a pdf on a white background, scaled to the given width.
+     */
+    void renderPdf(Path pdfFile, int width, OutputStream out) throws IOException {
+        try (PDDocument pdf = PDDocument.load(pdfFile.toFile(), MemoryUsageSetting.setupMixed(PDF_MEMORY_LIMIT))) {
+            if (pdf.getNumberOfPages() == 0)
+                throw new IOException("The PDF has no pages.");
+            PDPage page = pdf.getPage(0);
+            PDRectangle box = page.getCropBox();
+            // Rotated pages are rendered sideways, their width is the height of the box
+            float pageWidth = page.getRotation() % 180 == 0 ? box.getWidth() : box.getHeight();
+            BufferedImage image = new PDFRenderer(pdf).renderImage(0, width / pageWidth, ImageType.RGB);
+            writePng(image, out);
+        }
+    }
+
+    /**
+     * Decode an image and scale it down to the given width. Narrower images keep their size.
+     */
+    void renderImage(InputStream in, int width, OutputStream out) throws IOException {
+        BufferedImage image = ImageIO.read(new MemoryCacheImageInputStream(in));
+        if (image == null)
+            throw new IOException("Unsupported image format.");
+        writePng(scaleToWidth(image, width), out);
+    }
+
+    byte[] renderImage(InputStream in, int width) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        renderImage(in, width, out);
+        return out.toByteArray();
+    }
+
+    private void writePng(BufferedImage image, OutputStream out) throws IOException {
+        try (ImageOutputStream ios = new MemoryCacheImageOutputStream(out)) {
+            pngWriter.setOutput(ios);
+            pngWriter.write(image);
+        } finally {
+            pngWriter.reset();
+        }
+    }
+
+    /**
+     * Scale down in steps of at most half, a single bilinear step from a large cover drops most of its pixels and
+     * looks grainy.
+     */
+    static BufferedImage scaleToWidth(BufferedImage image, int width) {
+        if (image.getWidth() <= width)
+            return image;
+
+        int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        int targetHeight = Math.max(1, Math.round((float) image.getHeight() * width / image.getWidth()));
+        BufferedImage scaled = image;
+        int w = image.getWidth();
+        int h = image.getHeight();
+        do {
+            w = Math.max(width, w / 2);
+            h = w == width ? targetHeight : Math.max(targetHeight, h / 2);
+            BufferedImage step = new BufferedImage(w, h, type);
+            Graphics2D g = step.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(scaled, 0, 0, w, h, null);
+            } finally {
+                g.dispose();
+            }
+            scaled = step;
+        } while (w > width);
+        return scaled;
+    }
+}
+
+/**
+ * The MIT License (MIT)
+ * =====================
+ * <p>
+ * Copyright © 2023 PeasfulTown
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the “Software”), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
@@ -0,0 +1,108 @@
+package xyz.peasfultown.interfaces;
+
+import javafx.beans.InvalidationListener;
+import javafx.beans.Observable;
+import javafx.scene.image.Image;
+import xyz.peasfultown.helpers.WeightedLruCache;
+
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Loads book covers for the info panel without blocking the FX thread. Covers are decoded in the background at the
+ * size they are shown at, and recently shown ones are kept in a cache bounded by their total pixel count.
+ * <p>
+ * Only the latest request matters: asking for a new cover cancels the decode of the previous one, so holding down an
+ * arrow key in the table does not queue up a decode for every row passed over. Must be used from the FX thread.
+ */
+public class CoverLoader {
+    // About 60 covers at the default width
+    static final long DEFAULT_MAX_PIXELS = 300L * 450 * 60;
+
+    private final double width;
+    private final Image placeholder;
+    private final WeightedLruCache<Path, Image> cache;
+    private Image pending;
+
+    public CoverLoader(double width) {
+        this(width, DEFAULT_MAX_PIXELS);
+    }
+
+    public CoverLoader(double width, long maxPixels) {
+        this.width = width;
+        this.placeholder = new Image(Objects.requireNonNull(
+                CoverLoader.class.getClassLoader().getResourceAsStream("nocover.png")), width, 0, true, true);
+        this.cache = new WeightedLruCache<>(maxPixels,
+                image -> (long) image.getWidth() * (long) image.getHeight());
+    }
+
+    /**
+     * The image shown while a cover loads, or for books without a cover.
+     */
+    public Image getPlaceholder() {
+        return placeholder;
+    }
+
+    /**
+     * Request a cover image. The callback runs on the FX thread, right away if the cover is cached, otherwise once it
+     * is decoded. It is not called at all if another cover is requested in the meantime. Covers that fail to load
+     * are replaced by the placeholder.
+     *
+     * @param cover path to the cover file, or null for the placeholder.
+     */
+    public void load(Path cover, Consumer<Image> onLoaded) {
+        cancelPending();
+        if (cover == null) {
+            onLoaded.accept(placeholder);
+            return;
+        }
+
+        Image cached = cache.get(cover);
+        if (cached != null) {
+            onLoaded.accept(cached);
+            return;
+        }
+
+        Image image = new Image(cover.toUri().toString(), width, 0, true, true, true);
+        pending = image;
+        InvalidationListener onDone = new InvalidationListener() {
+            @Override
+            public void invalidated(Observable observable) {
+                if (image.getProgress() < 1.0 && !image.isError())
+                    return;
+                image.progressProperty().removeListener(this);
+                image.errorProperty().removeListener(this);
+                if (pending != image)
+                    return;
+
+                pending = null;
+                if (image.isError()) {
+                    onLoaded.accept(placeholder);
+                } else {
+                    cache.put(cover, image);
+                    onLoaded.accept(image);
+                }
+            }
+        };
+        image.progressProperty().addListener(onDone);
+        image.errorProperty().addListener(onDone);
+        // The image may have finished, or failed, before the listeners were attached
+        onDone.invalidated(image.progressProperty());
+    }
+
+    /**
+     * Forget a cached cover, e.g. after the cover file was replaced.
+     */
+    public void evict(Path cover) {
+        cache.remove(cover);
+    }
+
+    private void cancelPending() {
+        if (pending != null) {
+            Image image = pending;
+            pending = null;
+            image.cancel();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package xyz.peasfultown.interfaces;
+
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+import xyz.peasfultown.ApplicationConfig;
+import xyz.peasfultown.ImportReport;
+import xyz.peasfultown.MainController;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Imports books off the FX thread, see {@link MainController#importBooks(List, int, java.util.function.Consumer)}.
+ * Progress counts the files done with, the message names the last one along with the import rate. Cancelling the
+ * task interrupts the import, books already imported are kept.
+ * <p>
+ * Imported books are announced to the FX thread in batches: a count is handed over in one {@code Platform.runLater}
+ * and the books imported before it runs are added to that count, so the FX thread is not flooded with an update per
+ * book.
+ */
+public class ImportTask extends Task<ImportReport> {
+    private final MainController mc;
+    private final List<Path> paths;
+    private final IntConsumer onBooksImported;
+    private final AtomicInteger pendingBooks = new AtomicInteger();
+    private int done;
+    private int imported;
+    private int duplicates;
+    private int failed;
+
+    /**
+     * @param paths           book files and directories to search for books.
+     * @param onBooksImported called on the FX thread with the number of books imported since its last call.
+     */
+    public ImportTask(MainController mc, List<Path> paths, IntConsumer onBooksImported) {
+        this.mc = mc;
+        this.paths = List.copyOf(paths);
+        this.onBooksImported = onBooksImported;
+    }
+
+    @Override
+    protected ImportReport call() throws Exception {
+        updateMessage("Looking for books...");
+        List<Path> files = MainController.findBookFiles(paths);
+        updateProgress(0, files.size());
+
+        long start = System.nanoTime();
+        return mc.importBooks(files, ApplicationConfig.IMPORT_BATCH_SIZE, result -> {
+            done++;
+            switch (result.getStatus()) {
+                case IMPORTED:
+                    imported++;
+                    if (pendingBooks.getAndIncrement() == 0)
+                        Platform.runLater(() -> onBooksImported.accept(pendingBooks.getAndSet(0)));
+                    break;
+                case DUPLICATE:
+                    duplicates++;
+                    break;
+                default:
+                    failed++;
+            }
+
+            double seconds = Math.max(1e-3, (System.nanoTime() - start) / 1e9);
+            updateProgress(done, files.size());
+            updateMessage(String.format("%d of %d (%.1f books/s), %d added, %d duplicates, %d failed. %s: %s",
+                    done, files.size(), done / seconds, imported, duplicates, failed,
+                    result.getStatus().toString().toLowerCase(Locale.ROOT), result.getFile().getFileName()));
+        });
+    }
+}
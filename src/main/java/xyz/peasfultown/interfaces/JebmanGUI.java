@@ -14,19 +14,21 @@ import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.TextFieldTableCell;
-import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.*;
 import javafx.scene.text.Font;
 import javafx.scene.text.Text;
 import javafx.scene.text.TextFlow;
+import javafx.scene.input.TransferMode;
+import javafx.scene.paint.Color;
+import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.util.Callback;
 import xyz.peasfultown.ApplicationConfig;
+import xyz.peasfultown.ImportReport;
 import xyz.peasfultown.MainController;
 import xyz.peasfultown.dao.DAOException;
-import xyz.peasfultown.dao.RecordAlreadyExistsException;
 import xyz.peasfultown.domain.*;
 
 import java.io.File;
@@ -35,18 +37,38 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static xyz.peasfultown.interfaces.GUIHelpers.*;
 
 // TODO: handle book series edit
 public class JebmanGUI extends Application {
+    // Files that were not imported listed in the summary at the end of an import
+    private static final int IMPORT_PROBLEMS_SHOWN = 10;
     private Stage stage;
     private final GridPane mainGrid = new GridPane();
     private final GridPane infoPanel = new GridPane();
     private final Font font = new Font("Arial", 20);
+    private CoverLoader coverLoader;
     private static MainController mc;
 
-    private final ObservableList<BookAuthorView> data = FXCollections.observableList(new ArrayList<>());
+    private PagedBookViewList data;
+    private TableView<BookAuthorView> table;
+    private TextField searchField;
+    private TextField tagFilterField;
+
+    private final ExecutorService importExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "jebman-gui-import");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ImportTask importTask;
+    private Button btnAddBook;
+    private Button btnAddFolder;
+    private HBox importProgressBox;
+    private ProgressBar importProgress;
+    private Label importStatus;
 
     public static void run(MainController mc) {
         JebmanGUI.mc = mc;
@@ -100,10 +122,10 @@ public class JebmanGUI extends Application {
     }
 
     private GridPane getBookInfoPanel() {
-        Image defaultCover = new Image(Objects.requireNonNull(JebmanGUI.class.getClassLoader().getResourceAsStream("nocover.png")));
+        coverLoader = new CoverLoader(300);
         ImageView cover = new ImageView();
         cover.setCache(true);
-        cover.setImage(defaultCover);
+        cover.setImage(coverLoader.getPlaceholder());
         cover.setPreserveRatio(true);
         cover.setFitWidth(300);
 
@@ -179,7 +201,7 @@ public class JebmanGUI extends Application {
     }
 
     private TableView<BookAuthorView> getBookTable() {
-        TableView<BookAuthorView> table = new TableView<>();
+        table = new TableView<>();
         table.setEditable(true);
 
         TableColumn<BookAuthorView, Integer> bookIdCol = this.getBookIdColumn();
@@ -207,17 +229,38 @@ public class JebmanGUI extends Application {
                         seriesIdCol, seriesNameCol, seriesNumberCol,
                         datePublishedCol, dateAddedCol, dateModifiedCol, pathCol)));
 
-        data.addAll(collectBookAuthorViewItems());
+        data = new PagedBookViewList(mc);
+        try {
+            data.refresh();
+        } catch (DAOException e) {
+            showPopupErrorWithExceptionStack(e, "Failed to read books from database");
+        }
         table.setItems(data);
 
+        // Books and folders dropped on the table are imported
+        table.setOnDragOver(event -> {
+            if (importTask == null && event.getDragboard().hasFiles())
+                event.acceptTransferModes(TransferMode.COPY);
+            event.consume();
+        });
+        table.setOnDragDropped(event -> {
+            boolean accepted = importTask == null && event.getDragboard().hasFiles();
+            if (accepted)
+                importBooks(toPaths(event.getDragboard().getFiles()));
+            event.setDropCompleted(accepted);
+            event.consume();
+        });
+
         table.getFocusModel().focusedItemProperty().addListener((observableValue, bookAuthorViewOld, bookAuthorViewNew) -> {
 //            System.out.println("focus changed to: " + table.getFocusModel().getFocusedCell());
 //            System.out.println("observable value null: " + (observableValue.getValue() == null));
             boolean observableValueIsNull = observableValue.getValue() == null;
-            Image cover = !observableValueIsNull
-                    ? new Image(ApplicationConfig.MAIN_PATH.resolve(observableValue.getValue().getBook().getPath()).resolve("cover.png").toUri().toString())
-                    : new Image(Objects.requireNonNull(JebmanGUI.class.getClassLoader().getResourceAsStream("nocover.png")));
-            ((ImageView) Objects.requireNonNull(this.getTableNodeByColAndRow(infoPanel, 0, 0))).setImage(cover);
+            ImageView coverView = (ImageView) Objects.requireNonNull(this.getTableNodeByColAndRow(infoPanel, 0, 0));
+            // Show the placeholder until the cover is decoded, rather than the cover of the previous book
+            coverView.setImage(coverLoader.getPlaceholder());
+            coverLoader.load(!observableValueIsNull
+                    ? ApplicationConfig.MAIN_PATH.resolve(observableValue.getValue().getBook().getPath()).resolve("cover.png")
+                    : null, coverView::setImage);
 
             if (!observableValueIsNull) {
                 ((Label) Objects.requireNonNull(this.getTableNodeByColAndRow(infoPanel, 1, 1))).setText(observableValue.getValue().getBook().getIsbn());
@@ -256,59 +299,198 @@ public class JebmanGUI extends Application {
         hbox.setPrefHeight(100);
 
         final FileChooser fileChooser = new FileChooser();
-        final Button btnAddBook = new Button("Add Book");
+        configureFileChooser(fileChooser);
+        final DirectoryChooser directoryChooser = new DirectoryChooser();
+        directoryChooser.setTitle("Select folder of ebooks to add to library");
+        directoryChooser.setInitialDirectory(new File(System.getProperty("user.home")));
+        btnAddBook = new Button("Add Book");
+        btnAddFolder = new Button("Add Folder");
 
         btnAddBook.setOnAction((final ActionEvent e) -> {
-            configureFileChooser(fileChooser);
-            File ebookFile = fileChooser.showOpenDialog(this.stage);
-            if (ebookFile != null) {
-                try {
-                    mc.insertBook(Path.of(ebookFile.getPath()));
-                    this.data.add(createBookAuthorView(mc.getLastInsertedBook()));
-                    showPopupInfo("Info", ebookFile.getName() + " added to library!");
-                } catch (RecordAlreadyExistsException ex) {
-                    showPopupError(ex, "Jebman - Error", "Ebook already exists in Jebman library.");
-                } catch (Exception ex) {
-                    showPopupErrorWithExceptionStack(ex, "Exception occurred while adding ebook to jebman library");
-                }
-            }
+            List<File> ebookFiles = fileChooser.showOpenMultipleDialog(this.stage);
+            if (ebookFiles != null)
+                importBooks(toPaths(ebookFiles));
+        });
+        btnAddFolder.setOnAction((final ActionEvent e) -> {
+            File directory = directoryChooser.showDialog(this.stage);
+            if (directory != null)
+                importBooks(List.of(directory.toPath()));
         });
 
         btnAddBook.setPrefSize(150, 50);
-        hbox.getChildren().add(btnAddBook);
+        btnAddFolder.setPrefSize(150, 50);
+
+        // Shown while books are imported
+        importProgress = new ProgressBar();
+        importProgress.setPrefWidth(200);
+        importStatus = new Label();
+        importStatus.setTextFill(Color.WHITE);
+        final Button btnCancelImport = new Button("Cancel");
+        btnCancelImport.setOnAction((final ActionEvent e) -> {
+            if (importTask != null)
+                importTask.cancel();
+        });
+        importProgressBox = new HBox(10, importProgress, btnCancelImport, importStatus);
+        importProgressBox.setAlignment(Pos.CENTER_LEFT);
+        importProgressBox.managedProperty().bind(importProgressBox.visibleProperty());
+        importProgressBox.setVisible(false);
+
+        searchField = new TextField();
+        searchField.setPromptText("Search title, author, tag, publisher or series");
+        searchField.setPrefWidth(400);
+        searchField.textProperty().addListener((observable, oldText, newText) -> filterBooks());
+
+        tagFilterField = new TextField();
+        tagFilterField.setPromptText("Tags, e.g. scifi AND (owned OR borrowed) AND NOT read");
+        tagFilterField.setPrefWidth(350);
+        tagFilterField.textProperty().addListener((observable, oldText, newText) -> filterBooks());
+
+        hbox.getChildren().addAll(btnAddBook, btnAddFolder, searchField, tagFilterField, importProgressBox);
 
         return hbox;
     }
 
-    private static void configureFileChooser(final FileChooser fileChooser) {
-        fileChooser.setTitle("Select Ebook to add to library");
-        fileChooser.setInitialDirectory(
-                new File(System.getProperty("user.home"))
-        );
-        fileChooser.getExtensionFilters().addAll(
-                new FileChooser.ExtensionFilter("Ebooks", "*.epub", "*.pdf") // TODO: add .mobi
-        );
+    /**
+     * Import books in the background, one import at a time. Rows are added to the table as books are imported, the
+     * table is read again once the import is over.
+     *
+     * @param paths book files and directories to search for books.
+     */
+    private void importBooks(List<Path> paths) {
+        if (importTask != null)
+            return;
+
+        ImportTask task = new ImportTask(mc, paths, data::append);
+        importTask = task;
+        importProgress.progressProperty().bind(task.progressProperty());
+        importStatus.textProperty().bind(task.messageProperty());
+        btnAddBook.setDisable(true);
+        btnAddFolder.setDisable(true);
+        importProgressBox.setVisible(true);
+
+        task.setOnSucceeded(e -> {
+            endImport();
+            showPopupInfo("Jebman - Import", describeImport(task.getValue()));
+        });
+        task.setOnCancelled(e -> {
+            endImport();
+            showPopupInfo("Jebman - Import", "Import cancelled, the books added until then were kept.");
+        });
+        task.setOnFailed(e -> {
+            endImport();
+            Throwable ex = task.getException();
+            showPopupErrorWithExceptionStack(ex instanceof Exception ? (Exception) ex : new Exception(ex),
+                    "Exception occurred while adding ebooks to jebman library");
+        });
+        importExecutor.execute(task);
     }
 
-    private ObservableList<BookAuthorView> collectBookAuthorViewItems() {
-        Set<Book> booksInDatabase = mc.getBooks();
-        ObservableList<BookAuthorView> bookAuthorViewItems = FXCollections.observableList(new ArrayList<>());
-        for (Book b : booksInDatabase) {
-            BookAuthorView bookAuthorView = createBookAuthorView(b);
-            bookAuthorViewItems.add(bookAuthorView);
+    private void endImport() {
+        importProgress.progressProperty().unbind();
+        importStatus.textProperty().unbind();
+        importProgressBox.setVisible(false);
+        btnAddBook.setDisable(false);
+        btnAddFolder.setDisable(false);
+        importTask = null;
+        try {
+            data.refresh();
+        } catch (DAOException e) {
+            showPopupErrorWithExceptionStack(e, "Failed to read books from database");
         }
-        return bookAuthorViewItems;
+        filterBooks();
     }
 
-    private BookAuthorView createBookAuthorView(Book book) {
-        Author author = mc.getBookAuthorByBookId(book.getId());
+    private static String describeImport(ImportReport report) {
+        if (report.getResults().isEmpty())
+            return "No ebooks found.";
+
+        StringJoiner description = new StringJoiner(System.lineSeparator());
+        description.add(report.toString());
+        int shown = 0;
+        for (ImportReport.Result result : report.getResults()) {
+            if (result.getStatus() == ImportReport.Status.IMPORTED)
+                continue;
+            if (++shown > IMPORT_PROBLEMS_SHOWN) {
+                description.add("...");
+                break;
+            }
+            description.add(result.getFile().getFileName() + ": " + (result.getMessage() != null
+                    ? result.getMessage() : result.getStatus().toString().toLowerCase(Locale.ROOT)));
+        }
+        return description.toString();
+    }
+
+    private static List<Path> toPaths(List<File> files) {
+        List<Path> paths = new ArrayList<>(files.size());
+        for (File file : files) {
+            paths.add(file.toPath());
+        }
+        return paths;
+    }
+
+    /**
+     * Show only the books matching the search words and the tag query in the table, or every book if there are
+     * neither. A tag query that is not well formed, usually one still being typed, leaves the table as it is.
+     */
+    private void filterBooks() {
+        String query = searchField.getText();
+        String tagQuery = tagFilterField.getText();
+        boolean searching = query != null && !query.isBlank();
+        boolean filteringTags = tagQuery != null && !tagQuery.isBlank();
+        tagFilterField.setStyle("");
+        if (!searching && !filteringTags) {
+            if (table.getItems() != data)
+                table.setItems(data);
+            return;
+        }
+
+        List<Book> books;
+        Map<Integer, Author> authors;
+        Map<Integer, List<Tag>> tags;
         try {
-            List<Tag> tags = new ArrayList<>(mc.getTagsOfBook(book));
-            return new BookAuthorView(book, author, tags);
+            if (searching) {
+                books = mc.searchBooks(query);
+                if (filteringTags) {
+                    int[] tagged = mc.getBookIdsByTagQuery(tagQuery);
+                    books.removeIf(book -> Arrays.binarySearch(tagged, book.getId()) < 0);
+                }
+                List<Integer> ids = new ArrayList<>(books.size());
+                for (Book book : books) {
+                    ids.add(book.getId());
+                }
+                authors = mc.readAuthorsByBookIds(ids);
+                tags = mc.readTagsByBookIds(ids);
+            } else {
+                // Possibly most of the library, read the links of the whole ID range at once
+                books = mc.getBooksByTagQuery(tagQuery);
+                int first = books.isEmpty() ? 0 : books.get(0).getId();
+                int last = books.isEmpty() ? -1 : books.get(books.size() - 1).getId();
+                authors = mc.readAuthorsByBookId(first, last);
+                tags = mc.readTagsByBookId(first, last);
+            }
+        } catch (IllegalArgumentException e) {
+            tagFilterField.setStyle("-fx-text-fill: firebrick;");
+            return;
         } catch (DAOException e) {
-            showPopupErrorWithExceptionStack(e);
+            showPopupErrorWithExceptionStack(e, "Failed to search books");
+            return;
         }
-        return null;
+        ObservableList<BookAuthorView> results = FXCollections.observableArrayList();
+        for (Book book : books) {
+            results.add(new BookAuthorView(book, authors.get(book.getId()),
+                    tags.getOrDefault(book.getId(), new ArrayList<>())));
+        }
+        table.setItems(results);
+    }
+
+    private static void configureFileChooser(final FileChooser fileChooser) {
+        fileChooser.setTitle("Select ebooks to add to library");
+        fileChooser.setInitialDirectory(
+                new File(System.getProperty("user.home"))
+        );
+        fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("Ebooks", "*.epub", "*.pdf") // TODO: add .mobi
+        );
     }
 
     private TableColumn<BookAuthorView, Integer> getBookIdColumn() {
@@ -438,6 +620,7 @@ public class JebmanGUI extends Application {
                         }
                         BookAuthorView bav = event.getRowValue();
                         bav.getBook().setSeries(series);
+                        mc.updateBook(bav.getBook());
                         event.getTableView().getItems().set(event.getTablePosition().getRow(), bav);
                     } catch (Exception e) {
                         showPopupErrorWithExceptionStack(e);
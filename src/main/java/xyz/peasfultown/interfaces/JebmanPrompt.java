@@ -1,19 +1,25 @@
 package xyz.peasfultown.interfaces;
 
 import xyz.peasfultown.ApplicationConfig;
+import xyz.peasfultown.ImportReport;
 import xyz.peasfultown.MainController;
 import xyz.peasfultown.dao.DAOException;
+import xyz.peasfultown.domain.Author;
 import xyz.peasfultown.domain.Book;
 import xyz.peasfultown.domain.Publisher;
 import xyz.peasfultown.domain.Series;
 import xyz.peasfultown.helpers.MetadataReaderException;
 
 import java.io.IOException;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.ZoneId;
 import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static java.lang.System.out;
@@ -46,7 +52,10 @@ public class JebmanPrompt {
     private void usage() {
         // TODO: add list sort (date added, title, etc.)
         out.println("list                    List all books in store");
+        out.println("search [words]          List books matching the words");
+        out.println("tags [query]            List books by tag, e.g. scifi AND (owned OR borrowed) AND NOT read");
         out.println("add [path/to/ebook]     Add ebook to library");
+        out.println("import [path/to/dir]    Add all ebooks in a directory to library");
         out.println("remove [id]             Remove book from library");
         out.println("info [id]               Print book information");
         out.println("quit/exit               Quit jebman");
@@ -65,11 +74,28 @@ public class JebmanPrompt {
                 out.println();
                 list();
                 break;
+            case "search":
+                if (!enoughArgs(parts))
+                    break;
+                out.println();
+                search(input.substring(parts[0].length()).trim());
+                break;
+            case "tags":
+                if (!enoughArgs(parts))
+                    break;
+                out.println();
+                searchTags(input.substring(parts[0].length()).trim());
+                break;
             case "add":
                 if (!enoughArgs(parts))
                     break;
                 add(parts[1]);
                 break;
+            case "import":
+                if (!enoughArgs(parts))
+                    break;
+                importBooks(input.substring(parts[0].length()).trim());
+                break;
             case "remove":
                 if (!enoughArgs(parts))
                     break;
@@ -117,19 +143,66 @@ public class JebmanPrompt {
 
     private void list() {
         Set<Book> books = mc.getBooks();
+        Map<Integer, Author> authors = mc.getAuthorsByBookId();
         for (Book b : books) {
-            printBookItem(b);
+            printBookItem(b, authors.get(b.getId()));
         }
         out.println();
     }
 
-    private void printBookItem(Book book) {
+    private void search(String query) {
+        List<Book> books;
+        try {
+            books = mc.searchBooks(query);
+        } catch (DAOException e) {
+            out.format("Failed to read books from database: %s%n", e.getMessage());
+            return;
+        }
+        if (books.isEmpty()) {
+            out.println("No books found.");
+            out.println();
+            return;
+        }
+
+        Map<Integer, Author> authors = mc.getAuthorsByBookId();
+        for (Book b : books) {
+            printBookItem(b, authors.get(b.getId()));
+        }
+        out.println();
+    }
+
+    private void searchTags(String query) {
+        List<Book> books;
+        try {
+            books = mc.getBooksByTagQuery(query);
+        } catch (IllegalArgumentException e) {
+            out.println(e.getMessage());
+            out.println();
+            return;
+        } catch (DAOException e) {
+            out.format("Failed to read books from database: %s%n", e.getMessage());
+            return;
+        }
+        if (books.isEmpty()) {
+            out.println("No books found.");
+            out.println();
+            return;
+        }
+
+        Map<Integer, Author> authors = mc.getAuthorsByBookId();
+        for (Book b : books) {
+            printBookItem(b, authors.get(b.getId()));
+        }
+        out.println();
+    }
+
+    private void printBookItem(Book book, Author author) {
         // TODO: finish
         StringBuilder sb = new StringBuilder();
 
         appendPropertySpaces(sb, String.valueOf(book.getId()), DEFAULT_MAX_CHAR_LENGTH_NUMBER);
         appendPropertySpaces(sb, book.getTitle(), DEFAULT_MAX_CHAR_LENGTH);
-        appendPropertySpaces(sb, mc.getBookAuthorByBookId(book.getId()).getName(), DEFAULT_MAX_CHAR_LENGTH);
+        appendPropertySpaces(sb, author.getName(), DEFAULT_MAX_CHAR_LENGTH);
         Series series = book.getSeries();
         appendPropertySpaces(sb, series != null ? series.getName() : "(No series)", DEFAULT_MAX_CHAR_LENGTH);
         appendPropertySpaces(sb, String.valueOf(book.getSeriesNumber()), DEFAULT_MAX_CHAR_LENGTH_NUMBER);
@@ -193,6 +266,19 @@ public class JebmanPrompt {
         }
     }
 
+    private void importBooks(String path) {
+        try {
+            ImportReport report = mc.importBooks(Path.of(path));
+            for (ImportReport.Result result : report.getResults()) {
+                if (result.getStatus() != ImportReport.Status.IMPORTED || result.getMessage() != null)
+                    out.println(result);
+            }
+            out.println(report);
+        } catch (IOException | InvalidPathException e) {
+            out.format("Failed to read directory: %s%n", e.getMessage());
+        }
+    }
+
     private void remove(int id) {
         try {
             mc.removeBook(id);
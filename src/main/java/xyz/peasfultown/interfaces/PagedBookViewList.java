@@ -0,0 +1,168 @@
+package xyz.peasfultown.interfaces;
+
+import javafx.collections.ObservableListBase;
+import xyz.peasfultown.MainController;
+import xyz.peasfultown.dao.DAOException;
+import xyz.peasfultown.domain.Author;
+import xyz.peasfultown.domain.Book;
+import xyz.peasfultown.domain.Tag;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Rows of the book table, read from the database one page at a time as the table asks for them. The table only asks
+ * for the rows it is showing, so only the pages around the viewport are ever loaded, and only the most recently used
+ * ones are kept. Memory use does not grow with the size of the library.
+ * <p>
+ * Rows are ordered by book ID. Pages are read with keyset pagination: each page starts after the last ID of the page
+ * before it. When the user jumps ahead (e.g. by dragging the scroll bar) the starting ID is looked up once and
+ * remembered.
+ * <p>
+ * The list does not notice changes made to the database behind its back, call {@link #refresh()} after adding or
+ * removing books, or {@link #append(int)} while books are being imported.
+ */
+public class PagedBookViewList extends ObservableListBase<BookAuthorView> {
+    static final int DEFAULT_PAGE_SIZE = 200;
+    static final int DEFAULT_MAX_CACHED_PAGES = 10;
+
+    private final MainController mc;
+    private final int pageSize;
+    private final Map<Integer, List<BookAuthorView>> pages;
+    // Last book ID of the page before, by page number
+    private final Map<Integer, Integer> pageAnchors = new HashMap<>();
+    private int size;
+
+    public PagedBookViewList(MainController mc) {
+        this(mc, DEFAULT_PAGE_SIZE, DEFAULT_MAX_CACHED_PAGES);
+    }
+
+    PagedBookViewList(MainController mc, int pageSize, int maxCachedPages) {
+        this.mc = mc;
+        this.pageSize = pageSize;
+        this.pages = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<BookAuthorView>> eldest) {
+                return size() > maxCachedPages;
+            }
+        };
+    }
+
+    /**
+     * Drop all loaded rows and read the number of books again.
+     */
+    public void refresh() throws DAOException {
+        int oldSize = size;
+        size = mc.countBooks();
+        pages.clear();
+        pageAnchors.clear();
+
+        beginChange();
+        if (oldSize > 0)
+            nextRemove(0, Collections.<BookAuthorView>nCopies(oldSize, null));
+        if (size > 0)
+            nextAdd(0, size);
+        endChange();
+    }
+
+    /**
+     * Add rows for books added to the database since the last refresh, without reading the number of books again or
+     * dropping the loaded rows. New books have higher IDs than every book before them, so their rows go at the end.
+     */
+    public void append(int count) {
+        if (count <= 0)
+            return;
+        int oldSize = size;
+        size += count;
+        // The last page may have been loaded short, it is read again and so is the anchor of the page after it
+        int lastPage = oldSize / pageSize;
+        pages.keySet().removeIf(page -> page >= lastPage);
+        pageAnchors.keySet().removeIf(page -> page > lastPage);
+
+        beginChange();
+        nextAdd(oldSize, size);
+        endChange();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the row, or null if the book was removed from the database since the last refresh.
+     */
+    @Override
+    public BookAuthorView get(int index) {
+        Objects.checkIndex(index, size);
+        List<BookAuthorView> page = getPage(index / pageSize);
+        int offset = index % pageSize;
+        return offset < page.size() ? page.get(offset) : null;
+    }
+
+    @Override
+    public BookAuthorView set(int index, BookAuthorView element) {
+        Objects.checkIndex(index, size);
+        List<BookAuthorView> page = getPage(index / pageSize);
+        int offset = index % pageSize;
+        if (offset >= page.size())
+            throw new IndexOutOfBoundsException("Row " + index + " is no longer in the database.");
+
+        BookAuthorView old = page.set(offset, element);
+        beginChange();
+        nextSet(index, old);
+        endChange();
+        return old;
+    }
+
+    int getLoadedPageCount() {
+        return pages.size();
+    }
+
+    private List<BookAuthorView> getPage(int page) {
+        List<BookAuthorView> rows = pages.get(page);
+        if (rows == null) {
+            try {
+                rows = loadPage(page);
+                pages.put(page, rows);
+            } catch (DAOException e) {
+                // Leave the rows blank, the page is read again the next time the table asks for it
+                System.err.format("Failed to read books from database: %s%n", e.getMessage());
+                return Collections.emptyList();
+            }
+        }
+        return rows;
+    }
+
+    private List<BookAuthorView> loadPage(int page) throws DAOException {
+        Integer anchor = pageAnchors.get(page);
+        if (anchor == null) {
+            anchor = page == 0 ? 0 : mc.readBookIdAt(page * pageSize - 1);
+            if (anchor < 0)
+                return new ArrayList<>();
+            pageAnchors.put(page, anchor);
+        }
+
+        List<Book> books = mc.readBookPage(anchor, pageSize);
+        List<BookAuthorView> rows = new ArrayList<>(books.size());
+        if (books.isEmpty())
+            return rows;
+
+        int firstId = books.get(0).getId();
+        int lastId = books.get(books.size() - 1).getId();
+        pageAnchors.put(page + 1, lastId);
+        Map<Integer, Author> authors = mc.readAuthorsByBookId(firstId, lastId);
+        Map<Integer, List<Tag>> tags = mc.readTagsByBookId(firstId, lastId);
+        for (Book book : books) {
+            List<Tag> bookTags = tags.get(book.getId());
+            rows.add(new BookAuthorView(book, authors.get(book.getId()),
+                    bookTags != null ? bookTags : new ArrayList<>()));
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,74 @@
+package xyz.peasfultown.search;
+
+import java.util.Arrays;
+
+/**
+ * The books an indexed word appears in, as a sorted array of entries that each pack a book ID together with the field
+ * the word appears in. Sorting by entry sorts by book ID, and the entries of one book sit next to each other.
+ */
+class Postings {
+    private static final int FIELD_BITS = 3;
+    static final int MAX_BOOK_ID = Integer.MAX_VALUE >>> FIELD_BITS;
+
+    final String term;
+    // Rough set of the characters in the term, to rule out fuzzy matches without computing the edit distance
+    final long mask;
+    int[] entries = new int[2];
+    int size;
+
+    Postings(String term) {
+        this.term = term;
+        this.mask = charMask(term);
+    }
+
+    static int bookId(int entry) {
+        return entry >>> FIELD_BITS;
+    }
+
+    static int field(int entry) {
+        return entry & ((1 << FIELD_BITS) - 1);
+    }
+
+    /**
+     * @return false if the book already has the word in that field.
+     */
+    boolean add(int bookId, int field) {
+        int entry = (bookId << FIELD_BITS) | field;
+        // Books are mostly indexed in ID order, check the end before searching
+        int i = size > 0 && entries[size - 1] < entry ? -(size + 1) : Arrays.binarySearch(entries, 0, size, entry);
+        if (i >= 0)
+            return false;
+
+        i = -(i + 1);
+        if (size == entries.length)
+            entries = Arrays.copyOf(entries, size * 2);
+        System.arraycopy(entries, i, entries, i + 1, size - i);
+        entries[i] = entry;
+        size++;
+        return true;
+    }
+
+    void removeBook(int bookId) {
+        int from = Arrays.binarySearch(entries, 0, size, bookId << FIELD_BITS);
+        if (from < 0)
+            from = -(from + 1);
+        int to = from;
+        while (to < size && bookId(entries[to]) == bookId) {
+            to++;
+        }
+        System.arraycopy(entries, to, entries, from, size - to);
+        size -= to - from;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    static long charMask(String term) {
+        long mask = 0;
+        for (int i = 0; i < term.length(); i++) {
+            mask |= 1L << (term.charAt(i) & 63);
+        }
+        return mask;
+    }
+}
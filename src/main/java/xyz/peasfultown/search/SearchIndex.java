@@ -0,0 +1,427 @@
+/**
+ * See end of file for extended copyright information.
+ * Original Author(s): PeasfulTown <peasfultown@gmail.com>
+ * Description: In-memory inverted index for searching books by the words of their title, authors, tags, publisher and
+ * series.
+ */
+package xyz.peasfultown.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Inverted index from words to the books they appear in. Text is split into words on anything that is not a letter
+ * or a digit, and words are compared case-insensitively and without accents.
+ * <p>
+ * Every word of a query has to match a book for the book to be found. A query word matches the indexed words that
+ * start with it, so partly typed words already find something. A query word that matches no indexed word at all is
+ * looked up again allowing for a typo or two ({@link #maxEdits(int)}), so "tolkein" still finds "Tolkien".
+ * <p>
+ * Results are ranked by how well each query word matched (whole word, prefix or with typos) and by the field it
+ * matched in, a match in the title counting the most. Books that rank the same come in ID order.
+ * <p>
+ * The index only holds words and book IDs, not the books themselves. It is safe to use from several threads.
+ */
+public class SearchIndex {
+    public enum Field {
+        TITLE(4), AUTHOR(3), SERIES(2), TAG(2), PUBLISHER(1);
+
+        private final int weight;
+
+        Field(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    private static final Field[] FIELDS = Field.values();
+    private static final Pattern SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final int EXACT = 3;
+    private static final int PREFIX = 2;
+    private static final int FUZZY = 1;
+
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    // Postings each book appears in, to take it out of the index again
+    private final Map<Integer, List<Postings>> bookTerms = new HashMap<>();
+    // Terms ordered by length for fuzzy lookups, built on demand and dropped when a term is added or removed
+    private Postings[] termsByLength;
+    // Index of the first term of each length in termsByLength
+    private int[] lengthStarts;
+    private int maxBookId;
+
+    /**
+     * Index the words of a field of a book, in addition to what is already indexed for the book.
+     *
+     * @param text text of the field, may be null.
+     */
+    public synchronized void add(int bookId, Field field, String text) {
+        if (bookId < 0 || bookId > Postings.MAX_BOOK_ID)
+            throw new IllegalArgumentException("Book ID out of range: " + bookId);
+
+        List<String> words = tokenize(text);
+        if (words.isEmpty())
+            return;
+
+        List<Postings> indexed = bookTerms.computeIfAbsent(bookId, k -> new ArrayList<>(words.size()));
+        for (String word : words) {
+            Postings postings = terms.get(word);
+            if (postings == null) {
+                postings = new Postings(word);
+                terms.put(word, postings);
+                termsByLength = null;
+            }
+            if (postings.add(bookId, field.ordinal()) && !indexed.contains(postings))
+                indexed.add(postings);
+        }
+        maxBookId = Math.max(maxBookId, bookId);
+    }
+
+    /**
+     * Take a book out of the index.
+     */
+    public synchronized void remove(int bookId) {
+        List<Postings> indexed = bookTerms.remove(bookId);
+        if (indexed == null)
+            return;
+
+        for (Postings postings : indexed) {
+            postings.removeBook(bookId);
+            if (postings.isEmpty()) {
+                terms.remove(postings.term);
+                termsByLength = null;
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        terms.clear();
+        bookTerms.clear();
+        termsByLength = null;
+        maxBookId = 0;
+    }
+
+    /**
+     * @return number of books in the index.
+     */
+    public synchronized int size() {
+        return bookTerms.size();
+    }
+
+    /**
+     * @return number of distinct words in the index.
+     */
+    public synchronized int termCount() {
+        return terms.size();
+    }
+
+    /**
+     * Find the books matching every word of a query.
+     *
+     * @param query words to look for.
+     * @param limit maximum number of results.
+     * @return IDs of the best matching books, best first. Empty if the query has no words.
+     */
+    public synchronized List<Integer> search(String query, int limit) {
+        List<String> words = tokenize(query);
+        if (words.isEmpty() || limit <= 0 || bookTerms.isEmpty())
+            return Collections.emptyList();
+
+        List<List<Match>> matches = new ArrayList<>(words.size());
+        for (String word : words) {
+            List<Match> wordMatches = match(word);
+            if (wordMatches.isEmpty())
+                return Collections.emptyList();
+            matches.add(wordMatches);
+        }
+        // Rarest word first, so that the candidates are as few as possible from the start
+        matches.sort((a, b) -> Long.compare(countPostings(a), countPostings(b)));
+
+        // matched[id] is the number of query words the book matched so far, a book only stays a candidate while it
+        // matched every word before the current one.
+        int[] matched = new int[maxBookId + 1];
+        int[] score = new int[maxBookId + 1];
+        int[] wordScore = new int[maxBookId + 1];
+        int[] candidates = new int[16];
+        int candidateCount = 0;
+        for (int w = 0; w < matches.size(); w++) {
+            for (Match match : matches.get(w)) {
+                Postings postings = match.postings;
+                for (int i = 0; i < postings.size; i++) {
+                    int entry = postings.entries[i];
+                    int id = Postings.bookId(entry);
+                    int s = match.kind * FIELDS[Postings.field(entry)].weight;
+                    if (matched[id] == w) {
+                        matched[id] = w + 1;
+                        score[id] += s;
+                        wordScore[id] = s;
+                        if (w == 0) {
+                            if (candidateCount == candidates.length)
+                                candidates = Arrays.copyOf(candidates, candidateCount * 2);
+                            candidates[candidateCount++] = id;
+                        }
+                    } else if (matched[id] == w + 1 && s > wordScore[id]) {
+                        // Only the best match of each word counts
+                        score[id] += s - wordScore[id];
+                        wordScore[id] = s;
+                    }
+                }
+            }
+        }
+
+        TopResults top = new TopResults(Math.min(limit, candidateCount));
+        for (int i = 0; i < candidateCount; i++) {
+            int id = candidates[i];
+            if (matched[id] == matches.size())
+                top.offer(id, score[id]);
+        }
+        return top.toList();
+    }
+
+    /**
+     * Indexed words a query word matches: the word itself and the words starting with it, or failing that the words
+     * within {@link #maxEdits(int)} typos of it.
+     */
+    private List<Match> match(String word) {
+        List<Match> matches = new ArrayList<>();
+        NavigableMap<String, Postings> prefixed = terms.subMap(word, true, word + Character.MAX_VALUE, false);
+        for (Postings postings : prefixed.values()) {
+            matches.add(new Match(postings, postings.term.length() == word.length() ? EXACT : PREFIX));
+        }
+        if (!matches.isEmpty())
+            return matches;
+
+        int maxEdits = maxEdits(word.length());
+        if (maxEdits == 0)
+            return matches;
+
+        if (termsByLength == null)
+            sortTermsByLength();
+        long mask = Postings.charMask(word);
+        int last = lengthStarts.length - 1;
+        int from = lengthStarts[Math.min(last, Math.max(0, word.length() - maxEdits))];
+        int to = lengthStarts[Math.min(last, word.length() + maxEdits + 1)];
+        for (int i = from; i < to; i++) {
+            Postings postings = termsByLength[i];
+            // Each edit changes at most two bits of the mask, skip words that cannot be close enough
+            if (Long.bitCount(postings.mask ^ mask) > 2 * maxEdits)
+                continue;
+            if (editDistance(word, postings.term, maxEdits) <= maxEdits)
+                matches.add(new Match(postings, FUZZY));
+        }
+        return matches;
+    }
+
+    private void sortTermsByLength() {
+        int maxLength = 0;
+        for (String term : terms.keySet()) {
+            maxLength = Math.max(maxLength, term.length());
+        }
+        // Counting sort: count the terms of each length, then sum up the counts of the shorter lengths
+        lengthStarts = new int[maxLength + 2];
+        for (String term : terms.keySet()) {
+            lengthStarts[term.length() + 1]++;
+        }
+        for (int length = 1; length < lengthStarts.length; length++) {
+            lengthStarts[length] += lengthStarts[length - 1];
+        }
+        termsByLength = new Postings[terms.size()];
+        int[] next = Arrays.copyOf(lengthStarts, lengthStarts.length);
+        for (Postings postings : terms.values()) {
+            termsByLength[next[postings.term.length()]++] = postings;
+        }
+    }
+
+    /**
+     * Number of typos allowed in a query word of the given length when it matches nothing as typed. Short words are
+     * not matched with typos at all, there are too many words a letter or two away from them.
+     */
+    static int maxEdits(int length) {
+        if (length < 4)
+            return 0;
+        return length < 8 ? 1 : 2;
+    }
+
+    /**
+     * Edit distance between two words, counting a swap of two neighbouring letters as a single typo (optimal string
+     * alignment distance). Gives up as soon as the distance is known to exceed the limit.
+     *
+     * @return the distance, or limit + 1 if it is larger than the limit.
+     */
+    static int editDistance(String a, String b, int limit) {
+        int[] beforePrevious = new int[a.length() + 1];
+        int[] previous = new int[a.length() + 1];
+        int[] row = new int[a.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            previous[i] = i;
+        }
+        for (int j = 1; j <= b.length(); j++) {
+            row[0] = j;
+            int rowMin = j;
+            char cb = b.charAt(j - 1);
+            for (int i = 1; i <= a.length(); i++) {
+                char ca = a.charAt(i - 1);
+                int d = Math.min(Math.min(row[i - 1], previous[i]) + 1, previous[i - 1] + (ca == cb ? 0 : 1));
+                if (i > 1 && j > 1 && ca == b.charAt(j - 2) && a.charAt(i - 2) == cb)
+                    d = Math.min(d, beforePrevious[i - 2] + 1);
+                row[i] = d;
+                rowMin = Math.min(rowMin, d);
+            }
+            if (rowMin > limit)
+                return limit + 1;
+            int[] swap = beforePrevious;
+            beforePrevious = previous;
+            previous = row;
+            row = swap;
+        }
+        return Math.min(previous[a.length()], limit + 1);
+    }
+
+    /**
+     * Split text into lower case words without accents.
+     */
+    public static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty())
+            return Collections.emptyList();
+
+        String folded = text;
+        if (!isAscii(text))
+            folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("");
+        folded = folded.toLowerCase(Locale.ROOT);
+
+        List<String> words = new ArrayList<>();
+        for (String word : SEPARATOR.split(folded)) {
+            if (!word.isEmpty())
+                words.add(word);
+        }
+        return words;
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 0x7f)
+                return false;
+        }
+        return true;
+    }
+
+    private static long countPostings(List<Match> matches) {
+        long count = 0;
+        for (Match match : matches) {
+            count += match.postings.size;
+        }
+        return count;
+    }
+
+    private static class Match {
+        final Postings postings;
+        final int kind;
+
+        Match(Postings postings, int kind) {
+            this.postings = postings;
+            this.kind = kind;
+        }
+    }
+
+    /**
+     * Keeps the best results seen so far in a min-heap, so that ranking many candidates does not sort all of them.
+     * Results are packed into a long as score and inverted ID, which orders them best first when sorted descending.
+     */
+    private static class TopResults {
+        private final long[] heap;
+        private int size;
+
+        TopResults(int limit) {
+            this.heap = new long[limit];
+        }
+
+        void offer(int id, int score) {
+            long packed = ((long) score << 32) | (Integer.MAX_VALUE - id);
+            if (size < heap.length) {
+                heap[size] = packed;
+                siftUp(size++);
+            } else if (packed > heap[0]) {
+                heap[0] = packed;
+                siftDown(0);
+            }
+        }
+
+        List<Integer> toList() {
+            long[] sorted = Arrays.copyOf(heap, size);
+            Arrays.sort(sorted);
+            List<Integer> ids = new ArrayList<>(size);
+            for (int i = size - 1; i >= 0; i--) {
+                ids.add(Integer.MAX_VALUE - (int) sorted[i]);
+            }
+            return ids;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (heap[parent] <= heap[i])
+                    return;
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int smallest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && heap[left] < heap[smallest])
+                    smallest = left;
+                if (right < size && heap[right] < heap[smallest])
+                    smallest = right;
+                if (smallest == i)
+                    return;
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int i, int j) {
+            long tmp = heap[i];
+            heap[i] = heap[j];
+            heap[j] = tmp;
+        }
+    }
+}
+
+/**
+ * The MIT License (MIT)
+ * =====================
+ * <p>
+ * Copyright © 2023 PeasfulTown
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the “Software”), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
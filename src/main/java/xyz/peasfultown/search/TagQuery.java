@@ -0,0 +1,302 @@
+/**
+ * See end of file for extended copyright information.
+ * Original Author(s): PeasfulTown <peasfultown@gmail.com>
+ * Description: Boolean queries over the tags of books, such as "scifi AND (owned OR borrowed) AND NOT read".
+ */
+package xyz.peasfultown.search;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * A boolean expression over tag names. Tags are combined with {@code AND}, {@code OR} and {@code NOT}, which may be
+ * written in any case, and grouped with parentheses. {@code NOT} binds tightest and {@code AND} before {@code OR}.
+ * Tags written next to each other without an operator must both match. A tag name with spaces or parentheses in it,
+ * or that is an operator, is written between double quotes.
+ * <p>
+ * The query is evaluated over sets of book IDs, one {@link BitSet} per tag, see {@link TagIndex}. A tag that is not
+ * found matches no book.
+ */
+public final class TagQuery {
+    private final Node root;
+    private final String text;
+
+    private TagQuery(Node root, String text) {
+        this.root = root;
+        this.text = text;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the query is empty or not well formed.
+     */
+    public static TagQuery parse(String query) {
+        Parser parser = new Parser(tokenize(query));
+        if (parser.atEnd())
+            throw new IllegalArgumentException("Empty tag query.");
+        Node root = parser.parseOr();
+        if (!parser.atEnd())
+            throw new IllegalArgumentException("Unexpected " + parser.peek() + " in tag query.");
+        return new TagQuery(root, query.trim());
+    }
+
+    /**
+     * @param booksWithTag the books of a tag by name, or null if there is no such tag. The sets are not changed.
+     * @param allBooks     every book, what {@code NOT} is taken against.
+     * @return the matching books, a new set.
+     */
+    BitSet evaluate(Function<String, BitSet> booksWithTag, BitSet allBooks) {
+        return root.evaluate(booksWithTag, allBooks);
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    private interface Node {
+        BitSet evaluate(Function<String, BitSet> booksWithTag, BitSet allBooks);
+    }
+
+    private static class TagNode implements Node {
+        final String name;
+
+        TagNode(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public BitSet evaluate(Function<String, BitSet> booksWithTag, BitSet allBooks) {
+            BitSet books = booksWithTag.apply(name);
+            return books != null ? (BitSet) books.clone() : new BitSet();
+        }
+    }
+
+    private static class NotNode implements Node {
+        final Node operand;
+
+        NotNode(Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public BitSet evaluate(Function<String, BitSet> booksWithTag, BitSet allBooks) {
+            BitSet books = (BitSet) allBooks.clone();
+            books.andNot(operand.evaluate(booksWithTag, allBooks));
+            return books;
+        }
+    }
+
+    private static class AndNode implements Node {
+        final List<Node> operands;
+
+        AndNode(List<Node> operands) {
+            this.operands = operands;
+        }
+
+        /**
+         * Negated operands are subtracted from the other operands rather than taken against every book first.
+         */
+        @Override
+        public BitSet evaluate(Function<String, BitSet> booksWithTag, BitSet allBooks) {
+            BitSet books = null;
+            for (Node operand : operands) {
+                if (operand instanceof NotNode)
+                    continue;
+                BitSet matched = operand.evaluate(booksWithTag, allBooks);
+                if (books == null)
+                    books = matched;
+                else
+                    books.and(matched);
+            }
+            if (books == null)
+                books = (BitSet) allBooks.clone();
+            for (Node operand : operands) {
+                if (operand instanceof NotNode && !books.isEmpty())
+                    books.andNot(((NotNode) operand).operand.evaluate(booksWithTag, allBooks));
+            }
+            return books;
+        }
+    }
+
+    private static class OrNode implements Node {
+        final List<Node> operands;
+
+        OrNode(List<Node> operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        public BitSet evaluate(Function<String, BitSet> booksWithTag, BitSet allBooks) {
+            BitSet books = operands.get(0).evaluate(booksWithTag, allBooks);
+            for (int i = 1; i < operands.size(); i++) {
+                books.or(operands.get(i).evaluate(booksWithTag, allBooks));
+            }
+            return books;
+        }
+    }
+
+    private static class Token {
+        static final int TAG = 0;
+        static final int AND = 1;
+        static final int OR = 2;
+        static final int NOT = 3;
+        static final int OPEN = 4;
+        static final int CLOSE = 5;
+
+        final int kind;
+        final String text;
+
+        Token(int kind, String text) {
+            this.kind = kind;
+            this.text = text;
+        }
+
+        @Override
+        public String toString() {
+            return kind == TAG ? "tag \"" + text + "\"" : "\"" + text + "\"";
+        }
+    }
+
+    private static List<Token> tokenize(String query) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(' || c == ')') {
+                tokens.add(new Token(c == '(' ? Token.OPEN : Token.CLOSE, String.valueOf(c)));
+                i++;
+            } else if (c == '"') {
+                int end = query.indexOf('"', i + 1);
+                if (end < 0)
+                    throw new IllegalArgumentException("Missing closing quote in tag query.");
+                tokens.add(new Token(Token.TAG, query.substring(i + 1, end)));
+                i = end + 1;
+            } else {
+                int start = i;
+                while (i < query.length() && !Character.isWhitespace(query.charAt(i))
+                        && "()\"".indexOf(query.charAt(i)) < 0) {
+                    i++;
+                }
+                String word = query.substring(start, i);
+                switch (word.toUpperCase(Locale.ROOT)) {
+                    case "AND":
+                        tokens.add(new Token(Token.AND, word));
+                        break;
+                    case "OR":
+                        tokens.add(new Token(Token.OR, word));
+                        break;
+                    case "NOT":
+                        tokens.add(new Token(Token.NOT, word));
+                        break;
+                    default:
+                        tokens.add(new Token(Token.TAG, word));
+                }
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Recursive descent over: or := and (OR and)*, and := unary (AND? unary)*, unary := NOT unary | ( or ) | tag.
+     */
+    private static class Parser {
+        private final List<Token> tokens;
+        private int position;
+
+        Parser(List<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        boolean atEnd() {
+            return position == tokens.size();
+        }
+
+        Token peek() {
+            return tokens.get(position);
+        }
+
+        private boolean accept(int kind) {
+            if (!atEnd() && peek().kind == kind) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        Node parseOr() {
+            List<Node> operands = new ArrayList<>();
+            operands.add(parseAnd());
+            while (accept(Token.OR)) {
+                operands.add(parseAnd());
+            }
+            return operands.size() == 1 ? operands.get(0) : new OrNode(operands);
+        }
+
+        private Node parseAnd() {
+            List<Node> operands = new ArrayList<>();
+            operands.add(parseUnary());
+            while (!atEnd()) {
+                int kind = peek().kind;
+                if (kind == Token.AND)
+                    position++;
+                else if (kind != Token.TAG && kind != Token.NOT && kind != Token.OPEN)
+                    break;
+                operands.add(parseUnary());
+            }
+            return operands.size() == 1 ? operands.get(0) : new AndNode(operands);
+        }
+
+        private Node parseUnary() {
+            if (atEnd())
+                throw new IllegalArgumentException("Tag query ends too early.");
+            Token token = tokens.get(position++);
+            switch (token.kind) {
+                case Token.NOT:
+                    return new NotNode(parseUnary());
+                case Token.OPEN:
+                    Node inner = parseOr();
+                    if (!accept(Token.CLOSE))
+                        throw new IllegalArgumentException("Missing closing parenthesis in tag query.");
+                    return inner;
+                case Token.TAG:
+                    return new TagNode(token.text);
+                default:
+                    throw new IllegalArgumentException("Unexpected " + token + " in tag query.");
+            }
+        }
+    }
+}
+
+
+/**
+ * The MIT License (MIT)
+ * =====================
+ * <p>
+ * Copyright © 2023 PeasfulTown
+ * <p>
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the “Software”), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ * <p>
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ * <p>
+ * THE SOFTWARE IS PROVIDED “AS IS”, WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
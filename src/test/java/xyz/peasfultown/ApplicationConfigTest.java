@@ -0,0 +1,96 @@
+package xyz.peasfultown;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sqlite.SQLiteConfig;
+import xyz.peasfultown.helpers.IngestMode;
+import xyz.peasfultown.helpers.TreeDeleter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ApplicationConfigTest {
+    private Path dir;
+    private SQLiteConfig.JournalMode journalMode;
+    private SQLiteConfig.SynchronousMode synchronous;
+    private int cacheSize;
+    private long mmapSize;
+    private int busyTimeout;
+    private boolean lazyLoading;
+    private int bookCacheSize;
+    private boolean imageMagick;
+    private IngestMode ingestMode;
+    private boolean verifyIngest;
+
+    @BeforeEach
+    void saveSettings() throws Exception {
+        dir = Files.createTempDirectory("jebman-config");
+        journalMode = ApplicationConfig.SQLITE_JOURNAL_MODE;
+        synchronous = ApplicationConfig.SQLITE_SYNCHRONOUS;
+        cacheSize = ApplicationConfig.SQLITE_CACHE_SIZE;
+        mmapSize = ApplicationConfig.SQLITE_MMAP_SIZE;
+        busyTimeout = ApplicationConfig.SQLITE_BUSY_TIMEOUT;
+        lazyLoading = ApplicationConfig.LAZY_LOADING;
+        bookCacheSize = ApplicationConfig.BOOK_CACHE_SIZE;
+        imageMagick = ApplicationConfig.THUMBNAILS_WITH_IMAGEMAGICK;
+        ingestMode = ApplicationConfig.INGEST_MODE;
+        verifyIngest = ApplicationConfig.VERIFY_INGEST;
+    }
+
+    @AfterEach
+    void restoreSettings() throws Exception {
+        ApplicationConfig.SQLITE_JOURNAL_MODE = journalMode;
+        ApplicationConfig.SQLITE_SYNCHRONOUS = synchronous;
+        ApplicationConfig.SQLITE_CACHE_SIZE = cacheSize;
+        ApplicationConfig.SQLITE_MMAP_SIZE = mmapSize;
+        ApplicationConfig.SQLITE_BUSY_TIMEOUT = busyTimeout;
+        ApplicationConfig.LAZY_LOADING = lazyLoading;
+        ApplicationConfig.BOOK_CACHE_SIZE = bookCacheSize;
+        ApplicationConfig.THUMBNAILS_WITH_IMAGEMAGICK = imageMagick;
+        ApplicationConfig.INGEST_MODE = ingestMode;
+        ApplicationConfig.VERIFY_INGEST = verifyIngest;
+        Files.walkFileTree(dir, new TreeDeleter());
+    }
+
+    @Test
+    void databaseSettingsAreReadFromProperties() throws Exception {
+        Path properties = dir.resolve("application.properties");
+        Files.writeString(properties, "app.mainLocation=/tmp/library\n"
+                + "db.journalMode=truncate\n"
+                + "db.synchronous=FULL\n"
+                + "db.cacheSize=-2000\n"
+                + "db.busyTimeout=250\n"
+                + "db.tempStore=sometimes\n");
+
+        ApplicationConfig.loadSettingsFromConfigFile(properties.toString());
+
+        assertEquals(SQLiteConfig.JournalMode.TRUNCATE, ApplicationConfig.SQLITE_JOURNAL_MODE);
+        assertEquals(SQLiteConfig.SynchronousMode.FULL, ApplicationConfig.SQLITE_SYNCHRONOUS);
+        assertEquals(-2000, ApplicationConfig.SQLITE_CACHE_SIZE);
+        assertEquals(250, ApplicationConfig.SQLITE_BUSY_TIMEOUT);
+        // Missing or unknown, left as they were
+        assertEquals(mmapSize, ApplicationConfig.SQLITE_MMAP_SIZE);
+        assertEquals(SQLiteConfig.TempStore.MEMORY, ApplicationConfig.SQLITE_TEMP_STORE);
+    }
+
+    @Test
+    void librarySettingsAreReadFromProperties() throws Exception {
+        Path properties = dir.resolve("application.properties");
+        Files.writeString(properties, "library.lazyLoading=true\n"
+                + "library.bookCacheSize=500\n"
+                + "thumbnails.imageMagick=true\n"
+                + "ingest.mode=hard_link\n"
+                + "ingest.verify=true\n");
+
+        ApplicationConfig.loadSettingsFromConfigFile(properties.toString());
+
+        assertTrue(ApplicationConfig.LAZY_LOADING);
+        assertEquals(500, ApplicationConfig.BOOK_CACHE_SIZE);
+        assertTrue(ApplicationConfig.THUMBNAILS_WITH_IMAGEMAGICK);
+        assertEquals(IngestMode.HARD_LINK, ApplicationConfig.INGEST_MODE);
+        assertTrue(ApplicationConfig.VERIFY_INGEST);
+    }
+}
@@ -0,0 +1,144 @@
+package xyz.peasfultown;
+
+import org.junit.jupiter.api.Test;
+import xyz.peasfultown.dao.DAOException;
+import xyz.peasfultown.domain.Book;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookUpdateJournalTest {
+    private static Book book(int id, String title) {
+        Book book = new Book(title);
+        book.setId(id);
+        return book;
+    }
+
+    @Test
+    void editsOfABookAreWrittenOnce() throws Exception {
+        List<List<Book>> batches = new ArrayList<>();
+        BookUpdateJournal journal = new BookUpdateJournal(60_000, books -> batches.add(new ArrayList<>(books)));
+        journal.append(book(1, "First"));
+        journal.append(book(2, "Second"));
+        Book latest = book(1, "First, edited");
+        journal.append(latest);
+        // Written as appended, not as changed afterwards
+        latest.setTitle("First, edited again");
+
+        assertEquals("First, edited", journal.getPending(1).getTitle());
+        Map<Integer, Book> pending = journal.getPendingBooks();
+        assertEquals(Set.of(1, 2), pending.keySet());
+        assertEquals("First, edited", pending.get(1).getTitle());
+        // Changing a pending book does not change what is written
+        pending.get(1).setTitle("Changed");
+        journal.getPending(1).setTitle("Changed");
+        journal.flush();
+        assertTrue(journal.isEmpty());
+        assertNull(journal.getPending(1));
+        assertEquals(1, batches.size());
+        assertEquals(2, batches.get(0).size());
+        assertEquals("First, edited", batches.get(0).get(0).getTitle());
+        assertNotSame(latest, batches.get(0).get(0));
+
+        journal.flush();
+        assertEquals(1, batches.size());
+    }
+
+    @Test
+    void failedWritesAreKeptWithoutOverridingNewerEdits() throws Exception {
+        List<Book> written = new ArrayList<>();
+        boolean[] fail = {true};
+        BookUpdateJournal journal = new BookUpdateJournal(60_000, books -> {
+            if (fail[0])
+                throw new DAOException("database is locked");
+            written.addAll(books);
+        });
+        journal.append(book(1, "Old"));
+        journal.append(book(2, "Other"));
+
+        assertThrows(DAOException.class, journal::flush);
+        assertFalse(journal.isEmpty());
+
+        Book newer = book(1, "New");
+        journal.append(newer);
+        fail[0] = false;
+        journal.flush();
+        assertEquals(2, written.size());
+        assertTrue(written.stream().anyMatch(book -> book.getTitle().equals("New")));
+        assertTrue(written.stream().noneMatch(book -> book.getTitle().equals("Old")));
+        assertTrue(journal.isEmpty());
+    }
+
+    @Test
+    void booksThatCannotBeWrittenDoNotHoldBackTheOthers() throws Exception {
+        List<Book> written = new ArrayList<>();
+        int[] attempts = {0};
+        BookUpdateJournal journal = new BookUpdateJournal(60_000, books -> {
+            for (Book book : books) {
+                if (book.getId() == 2) {
+                    attempts[0]++;
+                    throw new DAOException("Failed to update record");
+                }
+            }
+            written.addAll(books);
+        });
+        journal.append(book(1, "First"));
+        journal.append(book(2, "Removed elsewhere"));
+        journal.append(book(3, "Third"));
+
+        assertThrows(DAOException.class, journal::flush);
+        assertEquals(2, written.size());
+        assertNotNull(journal.getPending(2));
+
+        journal.append(book(4, "Fourth"));
+        assertThrows(DAOException.class, journal::flush);
+        assertEquals(3, written.size());
+
+        for (int i = 2; i < BookUpdateJournal.MAX_WRITE_ATTEMPTS; i++) {
+            assertThrows(DAOException.class, journal::flush);
+        }
+        assertTrue(journal.isEmpty());
+        journal.flush();
+        // Once in each batch and once on its own per flush
+        assertEquals(2 + BookUpdateJournal.MAX_WRITE_ATTEMPTS, attempts[0]);
+    }
+
+    @Test
+    void editsAreWrittenInTheBackground() throws Exception {
+        CountDownLatch written = new CountDownLatch(1);
+        List<Book> books = new CopyOnWriteArrayList<>();
+        BookUpdateJournal journal = new BookUpdateJournal(10, batch -> {
+            books.addAll(batch);
+            written.countDown();
+        });
+        journal.append(book(1, "Title"));
+
+        assertTrue(written.await(5, TimeUnit.SECONDS));
+        assertEquals(1, books.size());
+    }
+
+    @Test
+    void closeWritesWhatIsLeft() throws Exception {
+        List<Book> written = new ArrayList<>();
+        BookUpdateJournal journal = new BookUpdateJournal(60_000, written::addAll);
+        journal.append(book(1, "Kept"));
+        journal.append(book(2, "Removed"));
+        journal.discard(2);
+
+        journal.close();
+        assertEquals("Kept", written.get(0).getTitle());
+        assertEquals(1, written.size());
+
+        // Written at once after closing
+        journal.append(book(3, "Late"));
+        assertEquals(2, written.size());
+        assertTrue(journal.isEmpty());
+    }
+}
@@ -0,0 +1,199 @@
+package xyz.peasfultown;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import xyz.peasfultown.domain.Book;
+import xyz.peasfultown.domain.SearchableRecordSet;
+import xyz.peasfultown.helpers.ConnectionFactory;
+import xyz.peasfultown.helpers.IngestMode;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static xyz.peasfultown.TestHelpers.cleanupPath;
+
+class ImportPipelineTest {
+    private static final Path mainPath = Path.of(System.getProperty("java.io.tmpdir"), "jebman-pipeline");
+
+    @BeforeAll
+    static void setup() throws Exception {
+        ApplicationConfig.setMainPath(mainPath);
+    }
+
+    @BeforeEach
+    void cleanup() throws Exception {
+        cleanupPath(mainPath);
+    }
+
+    private Path resource(String name) {
+        return Path.of(getClass().getClassLoader().getResource(name).getFile());
+    }
+
+    @Test
+    void parallelImportKeepsInputOrder() throws Exception {
+        List<Path> books = List.of(resource("dummy.pdf"), resource("frankenstein.epub"),
+                resource("gatsby.epub"), resource("machine-stops.pdf"));
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            files.addAll(books);
+        }
+
+        MainController mc = new MainController();
+        ImportReport report = new ImportPipeline(mc, 1, 4).run(files);
+
+        assertEquals(12, report.getResults().size());
+        assertEquals(4, report.count(ImportReport.Status.IMPORTED));
+        assertEquals(8, report.count(ImportReport.Status.DUPLICATE));
+        for (int i = 0; i < files.size(); i++) {
+            ImportReport.Result result = report.getResults().get(i);
+            assertEquals(files.get(i), result.getFile());
+            if (i < books.size()) {
+                assertEquals(ImportReport.Status.IMPORTED, result.getStatus());
+                assertEquals(i + 1, result.getBook().getId());
+                assertTrue(Files.exists(mainPath.resolve(result.getBook().getPath()).resolve("cover.png")));
+            } else {
+                assertEquals(ImportReport.Status.DUPLICATE, result.getStatus());
+            }
+        }
+
+        SearchableRecordSet<Book> stored = (SearchableRecordSet<Book>) new MainController().getBooks();
+        assertEquals(4, stored.size());
+    }
+
+    @Test
+    void unreadableFilesFailWithoutStoppingTheImport() throws Exception {
+        Path broken = Files.createDirectories(mainPath).resolve("broken.epub");
+        Files.writeString(broken, "not a zip file");
+
+        MainController mc = new MainController();
+        ImportReport report = new ImportPipeline(mc, 10, 2)
+                .run(List.of(broken, resource("frankenstein.epub"), mainPath.resolve("missing.pdf")));
+
+        assertEquals(ImportReport.Status.FAILED, report.getResults().get(0).getStatus());
+        assertEquals(ImportReport.Status.IMPORTED, report.getResults().get(1).getStatus());
+        assertEquals(ImportReport.Status.FAILED, report.getResults().get(2).getStatus());
+        assertEquals(1, mc.getBooks().size());
+    }
+
+    @Test
+    void duplicatesAreFoundByContent() throws Exception {
+        Path dir = Files.createDirectories(mainPath.resolve("incoming"));
+        Path renamed = Files.copy(resource("gatsby.epub"), dir.resolve("renamed.epub"));
+        // Same title, taken from the file name, different bytes
+        Path revised = Files.copy(resource("dummy.pdf"), dir.resolve("dummy.pdf"));
+        Files.write(revised, "\n% revised\n".getBytes(StandardCharsets.ISO_8859_1), StandardOpenOption.APPEND);
+
+        MainController mc = new MainController();
+        ImportReport report = new ImportPipeline(mc, 10, 2)
+                .run(List.of(resource("gatsby.epub"), resource("dummy.pdf"), renamed, revised));
+
+        assertEquals(ImportReport.Status.IMPORTED, report.getResults().get(0).getStatus());
+        assertEquals(ImportReport.Status.IMPORTED, report.getResults().get(1).getStatus());
+        assertEquals(ImportReport.Status.DUPLICATE, report.getResults().get(2).getStatus());
+        assertEquals(ImportReport.Status.IMPORTED, report.getResults().get(3).getStatus());
+        assertEquals(report.getResults().get(1).getBook().getTitle(), report.getResults().get(3).getBook().getTitle());
+        assertNotEquals(report.getResults().get(1).getBook().getContentHash(),
+                report.getResults().get(3).getBook().getContentHash());
+
+        // Nothing is left in the staging directory
+        try (Stream<Path> staged = Files.list(mainPath.resolve(".import"))) {
+            assertEquals(0, staged.count());
+        }
+    }
+
+    @Test
+    void booksWithoutHashesAreHashedWhenAFileWithTheirTitleComes() throws Exception {
+        new ImportPipeline(new MainController(), 10, 1).run(List.of(resource("gatsby.epub")));
+        try (Connection con = ConnectionFactory.getConnection(); Statement st = con.createStatement()) {
+            st.executeUpdate("UPDATE books SET content_hash = NULL");
+        }
+
+        MainController mc = new MainController();
+        ImportReport report = new ImportPipeline(mc, 10, 1).run(List.of(resource("gatsby.epub")));
+        assertEquals(ImportReport.Status.DUPLICATE, report.getResults().get(0).getStatus());
+        mc.close();
+        for (Book book : new MainController().getBooks()) {
+            assertNotNull(book.getContentHash());
+        }
+    }
+
+    @Test
+    void importsLongerThanTheParseWindowKeepTheirOrder() throws Exception {
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            files.add(i % 2 == 0 ? resource("frankenstein.epub") : resource("dummy.pdf"));
+        }
+
+        ImportReport report = new ImportPipeline(new MainController(), 4, 1).run(files);
+        assertEquals(50, report.getResults().size());
+        assertEquals(2, report.count(ImportReport.Status.IMPORTED));
+        for (int i = 0; i < files.size(); i++) {
+            assertEquals(files.get(i), report.getResults().get(i).getFile());
+        }
+    }
+
+    @Test
+    void stagedCopiesAreVerifiedOnDisk() throws Exception {
+        boolean verify = ApplicationConfig.VERIFY_INGEST;
+        try {
+            ApplicationConfig.VERIFY_INGEST = true;
+            ImportReport report = new ImportPipeline(new MainController(), 10, 2)
+                    .run(List.of(resource("gatsby.epub"), resource("dummy.pdf")));
+            assertEquals(2, report.count(ImportReport.Status.IMPORTED));
+        } finally {
+            ApplicationConfig.VERIFY_INGEST = verify;
+        }
+    }
+
+    @Test
+    void linkedBooksAreNotCopied() throws Exception {
+        IngestMode mode = ApplicationConfig.INGEST_MODE;
+        boolean verify = ApplicationConfig.VERIFY_INGEST;
+        try {
+            ApplicationConfig.INGEST_MODE = IngestMode.HARD_LINK;
+            ApplicationConfig.VERIFY_INGEST = true;
+            Path dir = Files.createDirectories(mainPath.resolve("incoming"));
+            Path book = Files.copy(resource("frankenstein.epub"), dir.resolve("frankenstein.epub"));
+
+            MainController mc = new MainController();
+            ImportReport report = new ImportPipeline(mc, 10, 2).run(List.of(book, book));
+
+            assertEquals(ImportReport.Status.IMPORTED, report.getResults().get(0).getStatus());
+            assertEquals(ImportReport.Status.DUPLICATE, report.getResults().get(1).getStatus());
+            Book stored = report.getResults().get(0).getBook();
+            Path imported = mainPath.resolve(stored.getPath()).resolve(stored.getTitle() + ".epub");
+            assertTrue(Files.isSameFile(book, imported));
+            assertFalse(Files.exists(mainPath.resolve(".import")));
+        } finally {
+            ApplicationConfig.INGEST_MODE = mode;
+            ApplicationConfig.VERIFY_INGEST = verify;
+        }
+    }
+
+    @Test
+    void everyFileIsReportedAsItFinishes() throws Exception {
+        Path dir = Files.createDirectories(mainPath.resolve("incoming"));
+        Files.copy(resource("gatsby.epub"), dir.resolve("gatsby.epub"));
+        Files.copy(resource("dummy.pdf"), dir.resolve("dummy.pdf"));
+        Files.writeString(dir.resolve("notes.txt"), "not a book");
+        List<Path> files = MainController.findBookFiles(
+                List.of(resource("frankenstein.epub"), dir, dir.resolve("notes.txt")));
+        assertEquals(List.of(resource("frankenstein.epub"), dir.resolve("dummy.pdf"), dir.resolve("gatsby.epub")), files);
+
+        List<ImportReport.Result> finished = new ArrayList<>();
+        ImportReport report = new MainController()
+                .importBooks(List.of(files.get(0), files.get(1), files.get(0), files.get(2)), 2, finished::add);
+
+        assertEquals(4, finished.size());
+        assertTrue(finished.containsAll(report.getResults()));
+    }
+}
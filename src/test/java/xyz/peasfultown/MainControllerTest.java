@@ -5,20 +5,35 @@
  */
 package xyz.peasfultown;
 
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import xyz.peasfultown.dao.DAOException;
+import xyz.peasfultown.dao.RecordAlreadyExistsException;
 import xyz.peasfultown.dao.impl.*;
 import xyz.peasfultown.domain.*;
+import xyz.peasfultown.helpers.ConnectionFactory;
+import xyz.peasfultown.helpers.ContentHasher;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static xyz.peasfultown.TestHelpers.cleanupPath;
@@ -78,6 +93,30 @@ public class MainControllerTest {
         assertTrue(Files.exists(expectedPath), "File expected at " + expectedPath);
     }
 
+    @Test
+    void failedInsertsLeaveNoRecordsBehind() {
+        Path file = Path.of(getClass().getClassLoader().getResource("dummy.pdf").getFile());
+        try {
+            // A file where the book's directory goes
+            Path blocked = Files.createDirectories(mainPath.resolve("Evangelos Vlachogiannis")).resolve("dummy (1)");
+            Files.writeString(blocked, "");
+
+            MainController mc = new MainController();
+            assertThrows(IOException.class, () -> mc.insertBook(file));
+            assertTrue(mc.getBooks().isEmpty());
+            assertTrue(new MainController().getBooks().isEmpty());
+            assertEquals(0, new JDBCBookAuthorDAO().readAll().size());
+            assertTrue(Files.exists(file));
+
+            Files.delete(blocked);
+            mc.insertBook(file);
+            assertEquals(1, new MainController().getBooks().size());
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            fail(e);
+        }
+    }
+
     @Test
     void insertPDFInsertsCorrectRecords() {
         // TODO: check tags
@@ -238,6 +277,162 @@ public class MainControllerTest {
         }
     }
 
+    @Test
+    void bookIdsAreNotReusedInPaths() {
+        logger.info("Check books get a new ID in their path after the last book is deleted");
+        Path machineStops = Path.of(getClass().getClassLoader().getResource("machine-stops.pdf").getFile());
+        try {
+            MainController mc = new MainController();
+            insertTestBooks(mc);
+            Book removed = mc.getBookByTitle("The-Machine-Stops.dvi");
+            mc.removeBook(removed);
+
+            mc.insertBook(machineStops);
+            Book inserted = mc.getBookByTitle("The-Machine-Stops.dvi");
+            assertEquals(removed.getId() + 1, inserted.getId());
+            assertTrue(inserted.getPath().endsWith(" (" + inserted.getId() + ")"));
+            mc.removeBook(inserted);
+
+            mc.importBooks(List.of(machineStops));
+            Book imported = mc.getBookByTitle("The-Machine-Stops.dvi");
+            assertEquals(inserted.getId() + 1, imported.getId());
+            assertTrue(imported.getPath().endsWith(" (" + imported.getId() + ")"));
+            assertTrue(Files.isDirectory(mainPath.resolve(imported.getPath())));
+
+            Book stored = new MainController().getBookByTitle("The-Machine-Stops.dvi");
+            assertEquals(imported.getId(), stored.getId());
+            assertEquals(imported.getPath(), stored.getPath());
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            fail(e);
+        }
+    }
+
+    @Test
+    void bookEditsApplyAtOnceAndAreWrittenOnClose() {
+        logger.info("Check book edits are visible at once and written to the database when the controller closes");
+        long flushDelay = ApplicationConfig.BOOK_UPDATE_FLUSH_DELAY;
+        ApplicationConfig.BOOK_UPDATE_FLUSH_DELAY = 60_000;
+        try {
+            MainController mc = new MainController();
+            insertTestBooks(mc);
+            Book gatsby = mc.getBookByTitle("The Great Gatsby");
+            gatsby.setTitle("The Greater Gatsby");
+            mc.updateBook(gatsby);
+            gatsby.setTitle("The Greatest Gatsby");
+            gatsby.setSeriesNumber(2.0);
+            mc.updateBook(gatsby);
+
+            assertSame(gatsby, mc.getBookByTitle("The Greatest Gatsby"));
+            assertEquals(gatsby.getId(), mc.searchBooks("greatest").get(0).getId());
+            JDBCBookDAO bookDAO = new JDBCBookDAO((SearchableRecordSet<Series>) new JDBCSeriesDAO().readAll(),
+                    (SearchableRecordSet<Publisher>) new JDBCPublisherDAO().readAll());
+            assertEquals("The Great Gatsby", bookDAO.read(gatsby.getId()).getTitle());
+
+            mc.close();
+            Book stored = bookDAO.read(gatsby.getId());
+            assertEquals("The Greatest Gatsby", stored.getTitle());
+            assertEquals(2.0, stored.getSeriesNumber());
+            assertEquals(gatsby.getModifiedDate(), stored.getModifiedDate());
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            fail(e);
+        } finally {
+            ApplicationConfig.BOOK_UPDATE_FLUSH_DELAY = flushDelay;
+        }
+    }
+
+    @Test
+    void editsOfBooksRemovedElsewhereDoNotFailReads() {
+        long flushDelay = ApplicationConfig.BOOK_UPDATE_FLUSH_DELAY;
+        ApplicationConfig.BOOK_UPDATE_FLUSH_DELAY = 60_000;
+        try {
+            MainController mc = new MainController();
+            insertTestBooks(mc);
+            Book gatsby = mc.getBookByTitle("The Great Gatsby");
+            Book frankenstein = mc.getBookByTitle("Frankenstein");
+            frankenstein.setSeriesNumber(3.0);
+            mc.updateBook(frankenstein);
+            gatsby.setTitle("The Greater Gatsby");
+            mc.updateBook(gatsby);
+
+            new MainController().removeBook(frankenstein.getId());
+            Set<Book> stored = mc.readAllBooks();
+            assertTrue(stored.stream().anyMatch(book -> book.getTitle().equals("The Greater Gatsby")));
+            assertTrue(stored.stream().noneMatch(book -> book.getId() == frankenstein.getId()));
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            fail(e);
+        } finally {
+            ApplicationConfig.BOOK_UPDATE_FLUSH_DELAY = flushDelay;
+        }
+    }
+
+    @Test
+    void lazyReadsSeeEditsNotWrittenYet() {
+        long flushDelay = ApplicationConfig.BOOK_UPDATE_FLUSH_DELAY;
+        boolean lazy = ApplicationConfig.LAZY_LOADING;
+        ApplicationConfig.BOOK_UPDATE_FLUSH_DELAY = 60_000;
+        try {
+            insertTestBooks(new MainController());
+            ApplicationConfig.LAZY_LOADING = true;
+            MainController mc = new MainController();
+            Book gatsby = mc.getBookByTitle("The Great Gatsby");
+            gatsby.setTitle("The Greater Gatsby");
+            mc.updateBook(gatsby);
+
+            assertTrue(mc.readBookPage(0, 10).stream().anyMatch(book ->
+                    book.getId() == gatsby.getId() && book.getTitle().equals("The Greater Gatsby")));
+            assertTrue(mc.readAllBooks().stream().anyMatch(book ->
+                    book.getId() == gatsby.getId() && book.getTitle().equals("The Greater Gatsby")));
+            assertEquals(gatsby.getId(), mc.getBookByTitle("the greater gatsby").getId());
+            assertNull(mc.getBookByTitle("The Great Gatsby"));
+            assertEquals(gatsby.getId(), mc.searchBooks("greater").get(0).getId());
+            // Read without writing the edit first
+            JDBCBookDAO bookDAO = new JDBCBookDAO((SearchableRecordSet<Series>) new JDBCSeriesDAO().readAll(),
+                    (SearchableRecordSet<Publisher>) new JDBCPublisherDAO().readAll());
+            assertEquals("The Great Gatsby", bookDAO.read(gatsby.getId()).getTitle());
+            mc.close();
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            fail(e);
+        } finally {
+            ApplicationConfig.BOOK_UPDATE_FLUSH_DELAY = flushDelay;
+            ApplicationConfig.LAZY_LOADING = lazy;
+        }
+    }
+
+    @Test
+    void contentHashesOfBooksEditedBeforeTheyAreWrittenAreKept() {
+        Path frankenstein = Path.of(getClass().getClassLoader().getResource("frankenstein.epub").getFile());
+        long flushDelay = ApplicationConfig.BOOK_UPDATE_FLUSH_DELAY;
+        ApplicationConfig.BOOK_UPDATE_FLUSH_DELAY = 60_000;
+        try {
+            new MainController().insertBook(frankenstein);
+            try (Connection con = ConnectionFactory.getConnection();
+                 Statement stmt = con.createStatement()) {
+                stmt.executeUpdate("UPDATE books SET content_hash=NULL;");
+            }
+
+            MainController mc = new MainController();
+            Book book = mc.getBookByTitle("Frankenstein");
+            book.setSeriesNumber(3.0);
+            mc.updateBook(book);
+            Path renamed = Files.copy(frankenstein, mainPath.resolve("renamed.epub"));
+            assertThrows(RecordAlreadyExistsException.class, () -> mc.insertBook(renamed));
+            mc.close();
+
+            Book stored = new MainController().getBookByTitle("Frankenstein");
+            assertEquals(ContentHasher.hash(frankenstein), stored.getContentHash());
+            assertEquals(3.0, stored.getSeriesNumber());
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            fail(e);
+        } finally {
+            ApplicationConfig.BOOK_UPDATE_FLUSH_DELAY = flushDelay;
+        }
+    }
+
     @Test
     void addBookTagInsertsCorrectBookTagRecord() {
         // TODO: finish
@@ -282,6 +477,82 @@ public class MainControllerTest {
         }
     }
 
+    @Test
+    void tagQueriesFollowTagsAndRemovals() {
+        boolean lazyLoading = ApplicationConfig.LAZY_LOADING;
+        try {
+            MainController mc = new MainController();
+            insertTestBooks(mc);
+            mc.tagBook(1, "classic");
+            mc.tagBook(2, "classic");
+            mc.tagBook(2, "tbr");
+            mc.tagBook(3, "tbr");
+
+            assertArrayEquals(new int[]{1}, mc.getBookIdsByTagQuery("classic AND NOT tbr"));
+            assertArrayEquals(new int[]{1, 2, 3}, mc.getBookIdsByTagQuery("classic OR tbr"));
+            assertArrayEquals(new int[]{4}, mc.getBookIdsByTagQuery("NOT (classic OR tbr)"));
+
+            // The index is built by now, later changes have to reach it
+            mc.tagBook(4, "tbr");
+            mc.removeBook(2);
+            assertArrayEquals(new int[]{3, 4}, mc.getBookIdsByTagQuery("tbr"));
+            assertEquals(List.of("dummy"), mc.getBooksByTagQuery("classic").stream()
+                    .map(Book::getTitle).collect(Collectors.toList()));
+
+            ApplicationConfig.LAZY_LOADING = true;
+            MainController lazy = new MainController();
+            assertArrayEquals(new int[]{3, 4}, lazy.getBookIdsByTagQuery("tbr AND NOT classic"));
+            assertThrows(IllegalArgumentException.class, () -> lazy.getBookIdsByTagQuery("tbr AND"));
+
+            // Removed by another controller after the lazy one built its index
+            new MainController().removeBook(3);
+            assertEquals(List.of(4), lazy.getBooksByTag(lazy.getTagByName("tbr")).stream()
+                    .map(Book::getId).collect(Collectors.toList()));
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            fail(e);
+        } finally {
+            ApplicationConfig.LAZY_LOADING = lazyLoading;
+        }
+    }
+
+    @Test
+    void linksAreFollowedBothWaysAndDroppedWithTheirBook() {
+        boolean lazyLoading = ApplicationConfig.LAZY_LOADING;
+        try {
+            MainController mc = new MainController();
+            insertTestBooks(mc);
+            Book frankenstein = mc.getBookByTitle("Frankenstein");
+            Author shelley = mc.getAuthorByName("Mary Wollstonecraft Shelley");
+            mc.tagBook(frankenstein.getId(), "classic");
+            mc.tagBook(frankenstein.getId(), "tbr");
+
+            assertEquals(List.of(shelley), mc.getAuthorsOfBook(frankenstein.getId()));
+            assertEquals(List.of(frankenstein), mc.getBooksByAuthor(shelley.getId()));
+            assertEquals(List.of("classic", "tbr"), mc.getTagsOfBook(frankenstein.getId()).stream()
+                    .map(Tag::getName).collect(Collectors.toList()));
+
+            ApplicationConfig.LAZY_LOADING = true;
+            MainController lazy = new MainController();
+            assertEquals(List.of(frankenstein.getId()), lazy.getBooksByAuthor(shelley.getId()).stream()
+                    .map(Book::getId).collect(Collectors.toList()));
+            assertEquals(shelley.getName(), lazy.getAuthorsOfBook(frankenstein.getId()).get(0).getName());
+            ApplicationConfig.LAZY_LOADING = lazyLoading;
+
+            mc.removeBook(frankenstein);
+            assertNull(mc.getBookAuthorByBookId(frankenstein.getId()));
+            assertTrue(mc.getBooksByAuthor(shelley.getId()).isEmpty());
+            assertFalse(mc.getTagsByBookId().containsKey(frankenstein.getId()));
+            assertEquals(3, mc.getBookAuthorLinks().size());
+            assertTrue(mc.getBookTagLinks().isEmpty());
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            fail(e);
+        } finally {
+            ApplicationConfig.LAZY_LOADING = lazyLoading;
+        }
+    }
+
     @Test
     void listTagsThatBookBelongsTo() {
         try {
@@ -305,6 +576,335 @@ public class MainControllerTest {
         }
     }
 
+    @Test
+    void bulkAuthorAndTagMapsMatchPerBookLookups() {
+        try {
+            MainController mc = new MainController();
+            insertTestBooks(mc);
+            mc.tagBook(3, "classic");
+            mc.tagBook(3, "tbr");
+            mc.tagBook(2, "tbr");
+
+            Map<Integer, Author> authors = mc.getAuthorsByBookId();
+            Map<Integer, List<Tag>> tags = mc.getTagsByBookId();
+            for (Book book : mc.getBooks()) {
+                assertEquals(mc.getBookAuthorByBookId(book.getId()), authors.get(book.getId()));
+                List<Tag> bookTags = tags.getOrDefault(book.getId(), List.of());
+                assertEquals(List.copyOf(mc.getTagsOfBook(book)), bookTags);
+            }
+            assertFalse(tags.containsKey(1));
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            fail(e);
+        }
+    }
+
+    @Test
+    void searchBooksFollowsLibraryChanges() {
+        try {
+            MainController mc = new MainController();
+            insertTestBooks(mc);
+            Book frankenstein = ((SearchableRecordSet<Book>) mc.getBooks()).getById(2);
+
+            assertEquals(List.of(frankenstein), mc.searchBooks("franken"));
+            assertEquals(List.of(frankenstein), mc.searchBooks("mary shelly"));
+            assertTrue(mc.searchBooks("horror").isEmpty());
+
+            mc.tagBook(frankenstein.getId(), "horror");
+            assertEquals(List.of(frankenstein), mc.searchBooks("horror"));
+
+            // Rebuilt from the database on load
+            mc = new MainController();
+            assertEquals(List.of(2), mc.searchBooks("horror frankenstein").stream().map(Book::getId)
+                    .collect(Collectors.toList()));
+
+            mc.removeBook(2);
+            assertTrue(mc.searchBooks("frankenstein").isEmpty());
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            fail(e);
+        }
+    }
+
+    @Test
+    void lazyLoadingReadsBooksOnDemand() {
+        boolean lazy = ApplicationConfig.LAZY_LOADING;
+        int cacheSize = ApplicationConfig.BOOK_CACHE_SIZE;
+        try {
+            insertTestBooks(new MainController());
+            ApplicationConfig.LAZY_LOADING = true;
+            ApplicationConfig.BOOK_CACHE_SIZE = 2;
+            MainController mc = new MainController();
+
+            assertEquals(4, mc.countBooks());
+            Book frankenstein = mc.getBookByTitle("FRANKENSTEIN");
+            assertNotNull(frankenstein);
+            assertEquals("Mary Wollstonecraft Shelley", mc.getBookAuthorByBookId(frankenstein.getId()).getName());
+            assertThrows(RecordAlreadyExistsException.class, () -> mc.insertBook(
+                    Path.of(getClass().getClassLoader().getResource("frankenstein.epub").getFile())));
+
+            mc.tagBook(frankenstein.getId(), "horror");
+            assertEquals(Set.of(frankenstein.getId()),
+                    mc.getBooksByTag("horror").stream().map(Book::getId).collect(Collectors.toSet()));
+            assertEquals(List.of(frankenstein.getId()),
+                    mc.searchBooks("shelly horror").stream().map(Book::getId).collect(Collectors.toList()));
+
+            Book gatsby = mc.getBookByTitle("The Great Gatsby");
+            gatsby.setTitle("The Greatest Gatsby");
+            mc.updateBook(gatsby);
+            assertEquals(gatsby.getId(), mc.searchBooks("greatest").get(0).getId());
+
+            mc.removeBook(frankenstein.getId());
+            assertNull(mc.getBookByTitle("Frankenstein"));
+            assertTrue(mc.searchBooks("frankenstein").isEmpty());
+            assertEquals(3, mc.getBooks().size());
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            fail(e);
+        } finally {
+            ApplicationConfig.LAZY_LOADING = lazy;
+            ApplicationConfig.BOOK_CACHE_SIZE = cacheSize;
+        }
+    }
+
+    @Test
+    void importBooksReportsEachFile() {
+        logger.info("Check bulk import imports every book and reports duplicates");
+        Path dummy = Path.of(getClass().getClassLoader().getResource("dummy.pdf").getFile());
+        Path frankenstein = Path.of(getClass().getClassLoader().getResource("frankenstein.epub").getFile());
+        Path gatsby = Path.of(getClass().getClassLoader().getResource("gatsby.epub").getFile());
+        Path machineStops = Path.of(getClass().getClassLoader().getResource("machine-stops.pdf").getFile());
+        try {
+            MainController mc = new MainController();
+            ImportReport report = mc.importBooks(
+                    List.of(dummy, frankenstein, gatsby, frankenstein, machineStops, mainPath.resolve("missing.pdf")),
+                    2);
+
+            assertEquals(6, report.getResults().size());
+            assertEquals(4, report.count(ImportReport.Status.IMPORTED));
+            assertEquals(1, report.count(ImportReport.Status.DUPLICATE));
+            assertEquals(1, report.count(ImportReport.Status.FAILED));
+            assertEquals(ImportReport.Status.DUPLICATE, report.getResults().get(3).getStatus());
+
+            assertEquals(4, mc.getBooks().size());
+            assertEquals(4, mc.getBookAuthorLinks().size());
+            Path expectedPath = Path.of(mainPath.toString(),
+                    "Mary Wollstonecraft Shelley",
+                    "Frankenstein (2)",
+                    "Frankenstein.epub");
+            assertTrue(Files.exists(expectedPath), "File expected at " + expectedPath);
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            fail(e);
+        }
+    }
+
+    @Test
+    void booksAddedBeforeContentHashesAreHashedOnDemand() {
+        Path frankenstein = Path.of(getClass().getClassLoader().getResource("frankenstein.epub").getFile());
+        try {
+            new MainController().insertBook(frankenstein);
+            try (Connection con = ConnectionFactory.getConnection();
+                 Statement stmt = con.createStatement()) {
+                stmt.executeUpdate("UPDATE books SET content_hash=NULL;");
+            }
+
+            MainController mc = new MainController();
+            assertNull(mc.getBookByTitle("Frankenstein").getContentHash());
+            Path renamed = Files.copy(frankenstein, mainPath.resolve("renamed.epub"));
+            assertThrows(RecordAlreadyExistsException.class, () -> mc.insertBook(renamed));
+
+            mc.close();
+            assertEquals(ContentHasher.hash(frankenstein),
+                    new MainController().getBookByTitle("Frankenstein").getContentHash());
+            assertEquals(1, mc.getBooks().size());
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            fail(e);
+        }
+    }
+
+    @Test
+    void everyAuthorOfABookIsLinked() {
+        Path dir = null;
+        try {
+            dir = Files.createTempDirectory("jebman-authors");
+            Path anthology = writePdf(dir.resolve("anthology.pdf"), "Anthology",
+                    "Mary Wollstonecraft Shelley; Bram Stoker & Edgar Allan Poe");
+            Path collection = writePdf(dir.resolve("collection.pdf"), "Collection",
+                    "Bram Stoker and Arthur Conan Doyle");
+
+            MainController mc = new MainController();
+            insertTestBooks(mc);
+            mc.insertBook(anthology);
+            assertEquals(1, mc.importBooks(List.of(collection)).count(ImportReport.Status.IMPORTED));
+
+            Book first = mc.getBookByTitle("Anthology");
+            Book second = mc.getBookByTitle("Collection");
+            Author shelley = mc.getAuthorByName("Mary Wollstonecraft Shelley");
+            Author stoker = mc.getAuthorByName("Bram Stoker");
+            assertEquals(List.of("Mary Wollstonecraft Shelley", "Bram Stoker", "Edgar Allan Poe"),
+                    mc.getAuthorsOfBook(first.getId()).stream().map(Author::getName).collect(Collectors.toList()));
+            assertEquals(List.of("Bram Stoker", "Arthur Conan Doyle"),
+                    mc.getAuthorsOfBook(second.getId()).stream().map(Author::getName).collect(Collectors.toList()));
+            assertEquals(List.of(first, second), mc.getBooksByAuthor(stoker.getId()));
+            assertEquals(2, mc.getBooksByAuthor(shelley.getId()).size());
+            // The first author names the directory
+            assertEquals(shelley.getName(), Path.of(first.getPath()).getParent().toString());
+            assertTrue(Files.exists(mainPath.resolve(first.getPath()).resolve("Anthology.pdf")));
+            assertEquals(List.of(first), mc.searchBooks("allan poe"));
+
+            MainController reloaded = new MainController();
+            assertEquals(mc.getAuthorsOfBook(first.getId()), reloaded.getAuthorsOfBook(first.getId()));
+            assertEquals(mc.getAuthorsOfBook(second.getId()), reloaded.getAuthorsOfBook(second.getId()));
+            assertEquals(mc.getAuthors().size(), reloaded.getAuthors().size());
+
+            // Authors come in the order they were linked, not by author ID
+            mc.insertBook(writePdf(dir.resolve("reversed.pdf"), "Reversed",
+                    "Arthur Conan Doyle; Mary Wollstonecraft Shelley"));
+            int reversed = mc.getBookByTitle("Reversed").getId();
+            boolean lazyLoading = ApplicationConfig.LAZY_LOADING;
+            try {
+                ApplicationConfig.LAZY_LOADING = true;
+                assertEquals(List.of("Arthur Conan Doyle", "Mary Wollstonecraft Shelley"),
+                        new MainController().getAuthorsOfBook(reversed).stream().map(Author::getName)
+                                .collect(Collectors.toList()));
+            } finally {
+                ApplicationConfig.LAZY_LOADING = lazyLoading;
+            }
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            fail(e);
+        } finally {
+            try {
+                if (dir != null)
+                    cleanupPath(dir);
+            } catch (Exception e) {
+                logger.error(e.getMessage(), e);
+            }
+        }
+    }
+
+    private static Path writePdf(Path file, String title, String author) throws Exception {
+        try (PDDocument pdf = new PDDocument()) {
+            pdf.addPage(new PDPage());
+            pdf.getDocumentInformation().setTitle(title);
+            pdf.getDocumentInformation().setAuthor(author);
+            pdf.save(file.toFile());
+        }
+        return file;
+    }
+
+    @Test
+    void importBooksPersistsRecords() {
+        logger.info("Check bulk imported records match the database after reload");
+        Path resources = Path.of(getClass().getClassLoader().getResource("dummy.pdf").getFile()).getParent();
+        try {
+            ImportReport report = new MainController().importBooks(resources);
+            assertEquals(4, report.count(ImportReport.Status.IMPORTED));
+
+            MainController mc = new MainController();
+            SearchableRecordSet<Book> books = (SearchableRecordSet<Book>) mc.getBooks();
+            assertEquals(4, books.size());
+            for (ImportReport.Result result : report.getResults()) {
+                Book book = books.getById(result.getBook().getId());
+                assertEquals(result.getBook().getTitle(), book.getTitle());
+                assertEquals(result.getBook().getPath(), book.getPath());
+                assertEquals(mc.getBookAuthorByBookId(book.getId()).getName(),
+                        Path.of(book.getPath()).getParent().toString());
+            }
+            assertNotNull(mc.getPublisherByName("Oxford University Press"));
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            fail(e);
+        }
+    }
+
+    @Test
+    void readersAndWritersRunDuringAnImport() {
+        logger.info("Read, tag and add records from several threads while books are imported");
+        Path dummy = Path.of(getClass().getClassLoader().getResource("dummy.pdf").getFile());
+        try {
+            // Same pdf with different bytes at the end, so every file is a different book
+            Path dir = Files.createDirectories(mainPath.resolve("incoming"));
+            List<Path> files = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                Path file = Files.copy(dummy, dir.resolve("book-" + i + ".pdf"));
+                Files.write(file, ("\n% " + i + "\n").getBytes(StandardCharsets.ISO_8859_1), StandardOpenOption.APPEND);
+                files.add(file);
+            }
+
+            MainController mc = new MainController();
+            mc.insertBook(dummy);
+            int bookId = mc.getBookByTitle("dummy").getId();
+
+            AtomicBoolean importing = new AtomicBoolean(true);
+            ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+            List<Thread> threads = new ArrayList<>();
+            for (int r = 0; r < 3; r++) {
+                threads.add(new Thread(() -> {
+                    try {
+                        while (importing.get()) {
+                            for (Book book : mc.getBooks()) {
+                                assertNotNull(book.getTitle());
+                            }
+                            mc.getAuthorsByBookId();
+                            mc.getTagsByBookId();
+                            mc.searchBooks("book");
+                            mc.getLastInsertedAuthor();
+                        }
+                    } catch (Throwable t) {
+                        errors.add(t);
+                    }
+                }));
+            }
+            for (int w = 0; w < 2; w++) {
+                int writer = w;
+                threads.add(new Thread(() -> {
+                    try {
+                        for (int i = 0; importing.get(); i++) {
+                            mc.tagBook(bookId, "tag-" + (i % 5));
+                            mc.insertTag(new Tag("tag-" + writer + "-" + i));
+                            mc.insertAuthor(new Author("Author " + writer + "-" + i));
+                        }
+                    } catch (Throwable t) {
+                        errors.add(t);
+                    }
+                }));
+            }
+            for (Thread thread : threads) {
+                thread.start();
+            }
+
+            ImportReport report;
+            try {
+                report = mc.importBooks(files, 5);
+            } finally {
+                importing.set(false);
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+            }
+
+            assertTrue(errors.isEmpty(), () -> errors.peek().toString());
+            assertEquals(files.size(), report.count(ImportReport.Status.IMPORTED));
+
+            MainController reloaded = new MainController();
+            assertEquals(files.size() + 1, mc.getBooks().size());
+            assertEquals(reloaded.getBooks().size(), mc.getBooks().size());
+            assertEquals(reloaded.getAuthors().size(), mc.getAuthors().size());
+            for (Tag tag : reloaded.readAllTags()) {
+                assertEquals(tag.getName(), mc.getTagById(tag.getId()).getName());
+            }
+            assertEquals(reloaded.getBookTagLinks().size(), mc.getBookTagLinks().size());
+            assertEquals(reloaded.getBookAuthorLinks().size(), mc.getBookAuthorLinks().size());
+            assertEquals(files.size(), mc.searchBooks("book", 100).size());
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            fail(e);
+        }
+    }
+
 //    @Test
 //    void addFormatAddsFileToBookDirectory() {
 //        logger.info("Check add book format adds file to the book directory");
@@ -0,0 +1,81 @@
+package xyz.peasfultown.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import xyz.peasfultown.ApplicationConfig;
+import xyz.peasfultown.dao.DAOException;
+import xyz.peasfultown.dao.impl.JDBCBookTagDAO;
+import xyz.peasfultown.dao.impl.JDBCTagDAO;
+import xyz.peasfultown.domain.BookTag;
+import xyz.peasfultown.domain.Tag;
+import xyz.peasfultown.helpers.ConnectionFactory;
+import xyz.peasfultown.helpers.SchemaMigrator;
+import xyz.peasfultown.helpers.TreeDeleter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-operation latency of DAO calls with and without connection pooling, covering the statements that
+ * MainController.tagBook issues.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConnectionFactoryBenchmark {
+    @Param({"true", "false"})
+    private boolean pooled;
+
+    private Path mainPath;
+    private JDBCTagDAO tagDAO;
+    private JDBCBookTagDAO bookTagDAO;
+    private int nextBookId;
+
+    @Setup
+    public void setup() throws Exception {
+        mainPath = Files.createTempDirectory("jebman-bench");
+        ApplicationConfig.setMainPath(mainPath);
+        ApplicationConfig.CONNECTION_POOL_ENABLED = pooled;
+        ConnectionFactory.closeAll();
+        try (Connection con = ConnectionFactory.getConnection()) {
+            SchemaMigrator.migrate(con);
+        }
+        tagDAO = new JDBCTagDAO();
+        bookTagDAO = new JDBCBookTagDAO();
+        tagDAO.create(new Tag("tbr"));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        ConnectionFactory.closeAll();
+        Files.walkFileTree(mainPath, new TreeDeleter());
+    }
+
+    @Benchmark
+    public Tag readTagById() throws DAOException {
+        return tagDAO.read(1);
+    }
+
+    @Benchmark
+    public BookTag createBookTagLink() throws DAOException {
+        // A book can only carry a tag once
+        BookTag bt = new BookTag(++nextBookId, 1);
+        bookTagDAO.create(bt);
+        return bt;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(ConnectionFactoryBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
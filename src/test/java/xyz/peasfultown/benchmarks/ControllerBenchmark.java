@@ -0,0 +1,92 @@
+package xyz.peasfultown.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import xyz.peasfultown.ApplicationConfig;
+import xyz.peasfultown.MainController;
+import xyz.peasfultown.dao.DAOException;
+import xyz.peasfultown.domain.Author;
+import xyz.peasfultown.domain.Book;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controller workflows the user waits on: opening a library, searching it and building the book table.
+ * Run with: mvn -P benchmarks verify -Djmh.include=ControllerBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ControllerBenchmark {
+    @Param({"1000", "10000", "100000"})
+    private int size;
+
+    @Param({"false", "true"})
+    private boolean lazy;
+
+    private Path mainPath;
+    private boolean lazyLoading;
+    private MainController mc;
+
+    @Setup
+    public void setup() throws Exception {
+        mainPath = Fixtures.createLibrary(size);
+        lazyLoading = ApplicationConfig.LAZY_LOADING;
+        ApplicationConfig.LAZY_LOADING = lazy;
+        mc = new MainController();
+        // Build the search index up front, lazy libraries do it on the first search
+        mc.searchBooks(Fixtures.word(0));
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        ApplicationConfig.LAZY_LOADING = lazyLoading;
+        Fixtures.deleteLibrary(mainPath);
+    }
+
+    @Benchmark
+    public MainController openLibrary() throws Exception {
+        return new MainController();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Book> searchByWord() throws DAOException {
+        return mc.searchBooks(Fixtures.word(ThreadLocalRandom.current().nextInt(1000)));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<Book> searchByTitle() throws DAOException {
+        return mc.searchBooks(Fixtures.title(ThreadLocalRandom.current().nextInt(1, size + 1)));
+    }
+
+    @Benchmark
+    public Map<Integer, Author> authorsByBookId() {
+        return mc.getAuthorsByBookId();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public Map<Integer, Author> tablePage() throws DAOException {
+        int first = mc.readBookIdAt(ThreadLocalRandom.current().nextInt(Math.max(1, size - 100)));
+        return mc.readAuthorsByBookId(first, first + 99);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(ControllerBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
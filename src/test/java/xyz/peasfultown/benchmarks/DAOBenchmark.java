@@ -0,0 +1,141 @@
+package xyz.peasfultown.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import xyz.peasfultown.dao.DAOException;
+import xyz.peasfultown.dao.impl.*;
+import xyz.peasfultown.domain.*;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of the DAO operations the controller relies on, against generated libraries of increasing size.
+ * Run with: mvn -P benchmarks verify -Djmh.include=DAOBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DAOBenchmark {
+    private static final int PAGE_SIZE = 200;
+
+    @Param({"1000", "10000", "100000"})
+    private int size;
+
+    private Path mainPath;
+    private JDBCBookDAO bookDAO;
+    private JDBCAuthorDAO authorDAO;
+    private JDBCBookAuthorDAO bookAuthorDAO;
+    private JDBCBookTagDAO bookTagDAO;
+
+    @Setup
+    public void setup() throws Exception {
+        mainPath = Fixtures.createLibrary(size);
+        bookDAO = new JDBCBookDAO(
+                (SearchableRecordSet<Series>) new JDBCSeriesDAO().readAll(),
+                (SearchableRecordSet<Publisher>) new JDBCPublisherDAO().readAll());
+        authorDAO = new JDBCAuthorDAO();
+        bookAuthorDAO = new JDBCBookAuthorDAO();
+        bookTagDAO = new JDBCBookTagDAO();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Fixtures.deleteLibrary(mainPath);
+    }
+
+    private int randomBookId() {
+        return ThreadLocalRandom.current().nextInt(1, size + 1);
+    }
+
+    @Benchmark
+    public Book readBookById() throws DAOException {
+        return bookDAO.read(randomBookId());
+    }
+
+    @Benchmark
+    public Book readBookByTitle() throws DAOException {
+        return bookDAO.read(Fixtures.title(randomBookId()));
+    }
+
+    @Benchmark
+    public Book readBookByTitleIgnoreCase() throws DAOException {
+        return bookDAO.readByTitleIgnoreCase(Fixtures.title(randomBookId()).toUpperCase(Locale.ROOT));
+    }
+
+    @Benchmark
+    public List<Book> readBookPage() throws DAOException {
+        return bookDAO.readPage(ThreadLocalRandom.current().nextInt(Math.max(1, size - PAGE_SIZE)), PAGE_SIZE);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Set<Book> readAllBooks() throws DAOException {
+        return bookDAO.readAll();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Set<Author> readAllAuthors() throws DAOException {
+        return authorDAO.readAll();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Set<BookAuthor> readAllBookAuthorLinks() throws DAOException {
+        return bookAuthorDAO.readAll();
+    }
+
+    @Benchmark
+    public int countBooks() throws DAOException {
+        return bookDAO.count();
+    }
+
+    @Benchmark
+    public List<BookAuthor> readBookAuthorLinksByBookIdRange() throws DAOException {
+        int first = randomBookId();
+        return bookAuthorDAO.readByBookIdRange(first, first + PAGE_SIZE - 1);
+    }
+
+    @Benchmark
+    public Set<Integer> readBookIdsByTagId() throws DAOException {
+        return bookTagDAO.readBookIdsByTagId(ThreadLocalRandom.current().nextInt(1, 101));
+    }
+
+    @Benchmark
+    public Set<Integer> readTagIdsByBookId() throws DAOException {
+        return bookTagDAO.readTagIdsByBookId(randomBookId());
+    }
+
+    @Benchmark
+    public Book createBook() throws DAOException {
+        Book book = new Book("Benchmark Book");
+        bookDAO.create(book);
+        return book;
+    }
+
+    @Benchmark
+    public Book updateBook() throws DAOException {
+        Book book = bookDAO.read(randomBookId());
+        book.setIsbn("9780000000000");
+        bookDAO.update(book);
+        return book;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(DAOBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,295 @@
+package xyz.peasfultown.benchmarks;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentInformation;
+import org.apache.pdfbox.pdmodel.PDPage;
+import xyz.peasfultown.ApplicationConfig;
+import xyz.peasfultown.dao.impl.*;
+import xyz.peasfultown.domain.*;
+import xyz.peasfultown.helpers.ConnectionFactory;
+import xyz.peasfultown.helpers.SchemaMigrator;
+import xyz.peasfultown.helpers.TreeDeleter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Synthetic libraries and book files for the benchmarks. Everything is generated from a fixed seed, so every run
+ * measures the same data.
+ * <p>
+ * Generating a large library takes a while, so each size is generated once into {@code target/jmh-fixtures} and
+ * copied for every benchmark trial. Delete that directory after changing the schema or the generator.
+ */
+public class Fixtures {
+    static final Path FIXTURE_DIR = Path.of("target", "jmh-fixtures");
+    private static final int VOCABULARY_SIZE = 20000;
+    private static final String[] VOCABULARY = generateVocabulary();
+
+    /**
+     * Create a library with the given number of books in a new temporary directory and make it the application's
+     * library. Every book has an author, most have a publisher, about a third are part of a series and they carry up
+     * to three of 100 tags.
+     *
+     * @return the library directory, remove it with {@link #deleteLibrary(Path)}.
+     */
+    public static Path createLibrary(int books) throws Exception {
+        Path template = FIXTURE_DIR.resolve("library-" + books).toAbsolutePath();
+        if (!Files.exists(template.resolve("metadata.db")))
+            generateLibrary(template, books);
+
+        Path mainPath = Files.createTempDirectory("jebman-bench");
+        Files.copy(template.resolve("metadata.db"), mainPath.resolve("metadata.db"));
+        ConnectionFactory.closeAll();
+        ApplicationConfig.setMainPath(mainPath);
+        return mainPath;
+    }
+
+    public static void deleteLibrary(Path mainPath) throws IOException {
+        ConnectionFactory.closeAll();
+        Files.walkFileTree(mainPath, new TreeDeleter());
+    }
+
+    /**
+     * A word of the vocabulary the generated titles and names are made of. Lower indexes are more common.
+     */
+    public static String word(int index) {
+        return VOCABULARY[index % VOCABULARY.length];
+    }
+
+    /**
+     * Title of a book in a generated library, by ID.
+     */
+    public static String title(int bookId) {
+        Random random = new Random(bookId);
+        StringBuilder title = new StringBuilder(capitalize(pickWord(random)));
+        for (int w = random.nextInt(5); w > 0; w--) {
+            title.append(' ').append(pickWord(random));
+        }
+        return title.append(' ').append(bookId).toString();
+    }
+
+    private static void generateLibrary(Path target, int bookCount) throws Exception {
+        Path tmp = Files.createDirectories(target.getParent()).resolve(target.getFileName() + ".tmp");
+        if (Files.exists(tmp))
+            Files.walkFileTree(tmp, new TreeDeleter());
+        Files.createDirectories(tmp);
+
+        Random random = new Random(bookCount);
+        ConnectionFactory.closeAll();
+        ApplicationConfig.setMainPath(tmp);
+        try (Connection con = ConnectionFactory.getConnection()) {
+            SchemaMigrator.migrate(con);
+        }
+        try (Connection con = ConnectionFactory.beginTransaction()) {
+            IndexedRecordSet<Publisher> publishers = new IndexedRecordSet<>();
+            for (int i = 0; i < Math.max(1, bookCount / 50); i++) {
+                publishers.add(new Publisher(capitalize(pickWord(random)) + " Press " + i));
+            }
+            IndexedRecordSet<Series> series = new IndexedRecordSet<>();
+            for (int i = 0; i < Math.max(1, bookCount / 20); i++) {
+                series.add(new Series("The " + capitalize(pickWord(random)) + " Cycle " + i));
+            }
+            List<Author> authors = new ArrayList<>();
+            for (int i = 0; i < Math.max(1, bookCount / 4); i++) {
+                authors.add(new Author(capitalize(pickWord(random)) + " " + capitalize(pickWord(random)) + " " + i));
+            }
+            List<Tag> tags = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                tags.add(new Tag(word(i) + "-" + i));
+            }
+            new JDBCPublisherDAO().createAll(publishers);
+            new JDBCSeriesDAO().createAll(series);
+            new JDBCAuthorDAO().createAll(authors);
+            new JDBCTagDAO().createAll(tags);
+
+            List<Publisher> publisherList = new ArrayList<>(publishers);
+            List<Series> seriesList = new ArrayList<>(series);
+            List<Book> books = new ArrayList<>(bookCount);
+            for (int i = 1; i <= bookCount; i++) {
+                Book book = new Book(title(i));
+                book.setUuid(new UUID(random.nextLong(), random.nextLong()).toString());
+                if (random.nextInt(10) > 0)
+                    book.setPublisher(publisherList.get(random.nextInt(publisherList.size())));
+                if (random.nextInt(3) == 0) {
+                    book.setSeries(seriesList.get(random.nextInt(seriesList.size())));
+                    book.setSeriesNumber(1 + random.nextInt(10));
+                }
+                books.add(book);
+            }
+            JDBCBookDAO bookDAO = new JDBCBookDAO(series, publishers);
+            bookDAO.createAll(books);
+
+            List<BookAuthor> authorLinks = new ArrayList<>(bookCount);
+            List<BookTag> tagLinks = new ArrayList<>();
+            for (Book book : books) {
+                Author author = authors.get(random.nextInt(authors.size()));
+                book.setPath(author.getName() + "/" + book.getTitle() + " (" + book.getId() + ")");
+                authorLinks.add(new BookAuthor(book.getId(), author.getId()));
+                int firstTag = random.nextInt(tags.size());
+                for (int t = random.nextInt(4); t > 0; t--) {
+                    tagLinks.add(new BookTag(book.getId(), tags.get((firstTag + t) % tags.size()).getId()));
+                }
+            }
+            bookDAO.updateAll(books);
+            new JDBCBookAuthorDAO().createAll(authorLinks);
+            new JDBCBookTagDAO().createAll(tagLinks);
+            con.commit();
+        } finally {
+            ConnectionFactory.closeAll();
+        }
+
+        Files.createDirectories(target);
+        Files.move(tmp.resolve("metadata.db"), target.resolve("metadata.db"), StandardCopyOption.ATOMIC_MOVE);
+        Files.walkFileTree(tmp, new TreeDeleter());
+    }
+
+    /**
+     * Write books into a directory, alternating EPUB and PDF files, with distinct titles.
+     *
+     * @param fillerEntries number of extra chapter and image entries in each EPUB.
+     */
+    public static List<Path> createCorpus(Path dir, int count, int fillerEntries) throws IOException {
+        Files.createDirectories(dir);
+        List<Path> files = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            String title = title(1_000_000 + i);
+            String author = capitalize(word(i)) + " " + capitalize(word(i * 7));
+            files.add(i % 2 == 1
+                    ? createEpub(dir.resolve("book-" + i + ".epub"), title, author, fillerEntries)
+                    : createPdf(dir.resolve("book-" + i + ".pdf"), title, author));
+        }
+        return files;
+    }
+
+    /**
+     * Write an EPUB with a container file, an OPF package document with Dublin Core metadata and a cover image,
+     * followed by the given number of chapter and illustration entries.
+     */
+    public static Path createEpub(Path file, String title, String author, int fillerEntries) throws IOException {
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(file))) {
+            byte[] mimetype = "application/epub+zip".getBytes(StandardCharsets.US_ASCII);
+            ZipEntry mimetypeEntry = new ZipEntry("mimetype");
+            mimetypeEntry.setMethod(ZipEntry.STORED);
+            mimetypeEntry.setSize(mimetype.length);
+            CRC32 crc = new CRC32();
+            crc.update(mimetype);
+            mimetypeEntry.setCrc(crc.getValue());
+            zip.putNextEntry(mimetypeEntry);
+            zip.write(mimetype);
+
+            putText(zip, "META-INF/container.xml", "<?xml version=\"1.0\"?>\n" +
+                    "<container version=\"1.0\" xmlns=\"urn:oasis:names:tc:opendocument:xmlns:container\">\n" +
+                    "  <rootfiles>\n" +
+                    "    <rootfile full-path=\"OEBPS/content.opf\" media-type=\"application/oebps-package+xml\"/>\n" +
+                    "  </rootfiles>\n" +
+                    "</container>\n");
+
+            StringBuilder manifest = new StringBuilder();
+            for (int i = 0; i < fillerEntries; i++) {
+                manifest.append(i % 2 == 0
+                        ? "    <item id=\"ch" + i + "\" href=\"text/chapter" + i + ".xhtml\" media-type=\"application/xhtml+xml\"/>\n"
+                        : "    <item id=\"fig" + i + "\" href=\"images/figure" + i + ".png\" media-type=\"image/png\"/>\n");
+            }
+            putText(zip, "OEBPS/content.opf", "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                    "<package xmlns=\"http://www.idpf.org/2007/opf\" version=\"3.0\" unique-identifier=\"uid\">\n" +
+                    "  <metadata xmlns:dc=\"http://purl.org/dc/elements/1.1/\">\n" +
+                    "    <dc:identifier id=\"uid\">" + UUID.nameUUIDFromBytes(title.getBytes(StandardCharsets.UTF_8)) + "</dc:identifier>\n" +
+                    "    <dc:title>" + title + "</dc:title>\n" +
+                    "    <dc:creator>" + author + "</dc:creator>\n" +
+                    "    <dc:publisher>Benchmark Press</dc:publisher>\n" +
+                    "    <dc:date>2001-02-03</dc:date>\n" +
+                    "    <dc:language>en</dc:language>\n" +
+                    "    <meta name=\"cover\" content=\"cover\"/>\n" +
+                    "  </metadata>\n" +
+                    "  <manifest>\n" +
+                    "    <item id=\"cover\" href=\"images/cover.png\" media-type=\"image/png\" properties=\"cover-image\"/>\n" +
+                    manifest +
+                    "  </manifest>\n" +
+                    "</package>\n");
+
+            byte[] cover = readCoverImage();
+            zip.putNextEntry(new ZipEntry("OEBPS/images/cover.png"));
+            zip.write(cover);
+            for (int i = 0; i < fillerEntries; i++) {
+                if (i % 2 == 0) {
+                    putText(zip, "OEBPS/text/chapter" + i + ".xhtml",
+                            "<html xmlns=\"http://www.w3.org/1999/xhtml\"><body><p>" + title + "</p></body></html>");
+                } else {
+                    zip.putNextEntry(new ZipEntry("OEBPS/images/figure" + i + ".png"));
+                    zip.write(cover);
+                }
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Write a single page PDF with title, author and creation date in its document information.
+     */
+    public static Path createPdf(Path file, String title, String author) throws IOException {
+        try (PDDocument pdf = new PDDocument()) {
+            pdf.addPage(new PDPage());
+            PDDocumentInformation info = pdf.getDocumentInformation();
+            info.setTitle(title);
+            info.setAuthor(author);
+            Calendar created = Calendar.getInstance();
+            created.setTimeInMillis(981158400000L);
+            info.setCreationDate(created);
+            try (OutputStream out = Files.newOutputStream(file)) {
+                pdf.save(out);
+            }
+        }
+        return file;
+    }
+
+    private static void putText(ZipOutputStream zip, String name, String text) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] readCoverImage() throws IOException {
+        try (InputStream in = Fixtures.class.getClassLoader().getResourceAsStream("nocover.png")) {
+            if (in == null)
+                throw new IOException("nocover.png not found on the class path.");
+            return in.readAllBytes();
+        }
+    }
+
+    private static String[] generateVocabulary() {
+        Random random = new Random(42);
+        String[] words = new String[VOCABULARY_SIZE];
+        for (int i = 0; i < words.length; i++) {
+            int length = 3 + random.nextInt(8);
+            StringBuilder sb = new StringBuilder(length);
+            for (int c = 0; c < length; c++) {
+                sb.append((char) ('a' + random.nextInt(26)));
+            }
+            words[i] = sb.toString();
+        }
+        return words;
+    }
+
+    // Skewed towards the start of the vocabulary, like word frequencies in real titles
+    private static String pickWord(Random random) {
+        double r = random.nextDouble();
+        return VOCABULARY[(int) (r * r * r * VOCABULARY.length)];
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+}
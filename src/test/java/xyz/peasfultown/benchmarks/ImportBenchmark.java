@@ -0,0 +1,78 @@
+package xyz.peasfultown.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import xyz.peasfultown.ImportReport;
+import xyz.peasfultown.MainController;
+import xyz.peasfultown.helpers.TreeDeleter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to import a corpus of generated EPUB and PDF files into an empty library, in bulk and one book at a time.
+ * Every iteration starts from a fresh library.
+ * Run with: mvn -P benchmarks verify -Djmh.include=ImportBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ImportBenchmark {
+    @Param({"200"})
+    private int books;
+
+    private Path corpusDir;
+    private List<Path> corpus;
+    private Path mainPath;
+    private MainController mc;
+
+    @Setup(Level.Trial)
+    public void createCorpus() throws Exception {
+        corpusDir = Files.createTempDirectory("jebman-bench-corpus");
+        corpus = Fixtures.createCorpus(corpusDir, books, 20);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteCorpus() throws Exception {
+        Files.walkFileTree(corpusDir, new TreeDeleter());
+    }
+
+    @Setup(Level.Iteration)
+    public void createLibrary() throws Exception {
+        mainPath = Fixtures.createLibrary(0);
+        mc = new MainController();
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteLibrary() throws Exception {
+        Fixtures.deleteLibrary(mainPath);
+    }
+
+    @Benchmark
+    public ImportReport importBooks() {
+        return mc.importBooks(corpus);
+    }
+
+    @Benchmark
+    public MainController insertBooks() throws Exception {
+        for (Path file : corpus) {
+            mc.insertBook(file);
+        }
+        return mc;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(ImportBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,70 @@
+package xyz.peasfultown.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import xyz.peasfultown.helpers.MetaReader;
+import xyz.peasfultown.helpers.MetadataReaderException;
+import xyz.peasfultown.helpers.TreeDeleter;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metadata parsing time per file. The entry count stands in for large illustrated EPUBs, where finding the package
+ * document among thousands of entries can cost more than parsing it.
+ * Run with: mvn -P benchmarks verify -Djmh.include=MetaReaderBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetaReaderBenchmark {
+    @Param({"10", "2000"})
+    private int epubEntries;
+
+    private Path dir;
+    private Path epub;
+    private Path pdf;
+
+    @Setup
+    public void setup() throws Exception {
+        dir = Files.createTempDirectory("jebman-bench-meta");
+        epub = Fixtures.createEpub(dir.resolve("book.epub"), "Benchmark Book", "Jane Doe", epubEntries);
+        pdf = Fixtures.createPdf(dir.resolve("book.pdf"), "Benchmark Book", "Jane Doe");
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.walkFileTree(dir, new TreeDeleter());
+    }
+
+    @Benchmark
+    public HashMap<String, String> epubMetadata() throws MetadataReaderException {
+        return MetaReader.getMetadata(epub);
+    }
+
+    @Benchmark
+    public HashMap<String, String> pdfMetadata() throws MetadataReaderException {
+        return MetaReader.getMetadata(pdf);
+    }
+
+    @Benchmark
+    public Instant parseDate() {
+        return MetaReader.parseDate("2001-02-03T04:05:06+01:00");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(MetaReaderBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
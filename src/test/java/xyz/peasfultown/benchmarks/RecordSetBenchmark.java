@@ -0,0 +1,84 @@
+package xyz.peasfultown.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import xyz.peasfultown.domain.Book;
+import xyz.peasfultown.domain.IndexedRecordSet;
+import xyz.peasfultown.domain.SearchableRecordSet;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares lookups on the linear {@link SearchableRecordSet} against the hash indexed {@link IndexedRecordSet}.
+ * Run with: mvn test-compile exec:java -Dexec.mainClass=xyz.peasfultown.benchmarks.RecordSetBenchmark -Dexec.classpathScope=test
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecordSetBenchmark {
+    @Param({"1000", "10000", "150000"})
+    private int size;
+
+    private SearchableRecordSet<Book> linear;
+    private IndexedRecordSet<Book> indexed;
+
+    @Setup
+    public void setup() {
+        linear = new SearchableRecordSet<>();
+        indexed = new IndexedRecordSet<>();
+        for (int i = 1; i <= size; i++) {
+            Book book = new Book("Book Title " + i);
+            book.setId(i);
+            linear.add(book);
+            indexed.add(book);
+        }
+    }
+
+    private int randomId() {
+        return ThreadLocalRandom.current().nextInt(1, size + 1);
+    }
+
+    @Benchmark
+    public Book linearGetById() {
+        return linear.getById(randomId());
+    }
+
+    @Benchmark
+    public Book indexedGetById() {
+        return indexed.getById(randomId());
+    }
+
+    @Benchmark
+    public Book linearGetByName() {
+        return linear.getByName("book title " + randomId());
+    }
+
+    @Benchmark
+    public Book indexedGetByName() {
+        return indexed.getByName("book title " + randomId());
+    }
+
+    @Benchmark
+    public Book linearMiss() {
+        return linear.getByName("not in library");
+    }
+
+    @Benchmark
+    public Book indexedMiss() {
+        return indexed.getByName("not in library");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(RecordSetBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
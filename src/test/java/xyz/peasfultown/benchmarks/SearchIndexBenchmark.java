@@ -0,0 +1,99 @@
+package xyz.peasfultown.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import xyz.peasfultown.search.SearchIndex;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query times of {@link SearchIndex} over a library of generated books with a realistic number of distinct words.
+ * Run with: mvn test-compile exec:java -Dexec.mainClass=xyz.peasfultown.benchmarks.SearchIndexBenchmark -Dexec.classpathScope=test
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchIndexBenchmark {
+    private static final String LETTERS = "abcdefghijklmnopqrstuvwxyz";
+
+    @Param({"150000"})
+    private int size;
+
+    private SearchIndex index;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        String[] vocabulary = new String[50000];
+        for (int i = 0; i < vocabulary.length; i++) {
+            vocabulary[i] = word(random, 4 + random.nextInt(7));
+        }
+        // Fixed words to query for, see the benchmarks below
+        vocabulary[0] = "frankenstein";
+        vocabulary[1] = "shelley";
+        vocabulary[2] = "the";
+
+        index = new SearchIndex();
+        for (int id = 1; id <= size; id++) {
+            StringBuilder title = new StringBuilder(pick(random, vocabulary));
+            for (int w = random.nextInt(4); w > 0; w--) {
+                title.append(' ').append(pick(random, vocabulary));
+            }
+            if (random.nextInt(3) == 0)
+                title.insert(0, "The ");
+            index.add(id, SearchIndex.Field.TITLE, title.toString());
+            index.add(id, SearchIndex.Field.AUTHOR, pick(random, vocabulary) + " " + pick(random, vocabulary));
+            index.add(id, SearchIndex.Field.TAG, vocabulary[random.nextInt(200)]);
+            index.add(id, SearchIndex.Field.PUBLISHER, vocabulary[random.nextInt(2000)] + " Press");
+        }
+    }
+
+    private static String word(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+        }
+        return sb.toString();
+    }
+
+    // Skewed towards the start of the vocabulary, like word frequencies in real titles
+    private static String pick(Random random, String[] vocabulary) {
+        double r = random.nextDouble();
+        return vocabulary[(int) (r * r * r * vocabulary.length)];
+    }
+
+    @Benchmark
+    public List<Integer> wholeWords() {
+        return index.search("frankenstein shelley", 500);
+    }
+
+    @Benchmark
+    public List<Integer> commonWord() {
+        return index.search("the", 500);
+    }
+
+    @Benchmark
+    public List<Integer> shortPrefix() {
+        return index.search("fr", 500);
+    }
+
+    @Benchmark
+    public List<Integer> misspelled() {
+        return index.search("frankenstien", 500);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(SearchIndexBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
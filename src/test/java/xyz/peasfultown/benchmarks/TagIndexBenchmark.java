@@ -0,0 +1,67 @@
+package xyz.peasfultown.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import xyz.peasfultown.search.TagIndex;
+import xyz.peasfultown.search.TagQuery;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to answer tag queries from {@link TagIndex} over a library of generated books, each with a few of 200 tags.
+ * Run with: mvn test-compile exec:java -Dexec.mainClass=xyz.peasfultown.benchmarks.TagIndexBenchmark -Dexec.classpathScope=test
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TagIndexBenchmark {
+    private static final Map<String, Integer> TAGS = Map.of("scifi", 0, "owned", 1, "borrowed", 2, "read", 3);
+
+    @Param({"150000"})
+    private int size;
+
+    private TagIndex index;
+    private TagQuery threeTags;
+    private TagQuery singleTag;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        index = new TagIndex();
+        for (int id = 1; id <= size; id++) {
+            index.addBook(id);
+            for (int t = random.nextInt(5); t > 0; t--) {
+                // Skewed, the first few tags are on a large part of the library
+                double r = random.nextDouble();
+                index.addTag(id, (int) (r * r * 200));
+            }
+        }
+        threeTags = TagQuery.parse("scifi AND (owned OR borrowed) AND NOT read");
+        singleTag = TagQuery.parse("scifi");
+    }
+
+    @Benchmark
+    public int[] threeTags() {
+        return index.search(threeTags, name -> TAGS.getOrDefault(name, -1));
+    }
+
+    @Benchmark
+    public int[] singleTag() {
+        return index.search(singleTag, name -> TAGS.getOrDefault(name, -1));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(TagIndexBenchmark.class.getSimpleName())
+                .build();
+        new Runner(opt).run();
+    }
+}
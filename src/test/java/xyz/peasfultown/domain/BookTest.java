@@ -0,0 +1,101 @@
+package xyz.peasfultown.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookTest {
+    @Test
+    void datesAreReadLikeInstantParse() {
+        String[] dates = {"2023-04-05T06:07:08Z", "1970-01-01T00:00:00Z", "1925-04-10T00:00:00Z",
+                "2000-02-29T23:59:59Z", "2100-12-31T12:00:00.999Z", "1969-12-31T23:59:59.5Z", "0001-01-01T00:00:00Z",
+                "+12023-01-01T00:00:00Z", "2008-06-05T17:14:45.123456789Z"};
+        for (String date : dates) {
+            assertEquals(Instant.parse(date).getEpochSecond(), Book.parseEpochSecond(date), date);
+        }
+        assertThrows(DateTimeParseException.class, () -> Book.parseEpochSecond("2023-02-30T00:00:00Z"));
+        assertThrows(DateTimeParseException.class, () -> Book.parseEpochSecond("2023-04-05"));
+    }
+
+    @Test
+    void isbnsAndUuidsComeBackAsSet() {
+        String[] isbns = {"", "9780141439471", "0000000000017", "030640615X", "0306406152", "978-0141439471",
+                "urn:isbn:9780141439471", "030640615x", "12345"};
+        String[] uuids = {"", "3f7c1e9a-2b4d-4e8f-9a0b-1c2d3e4f5a6b", "urn:uuid:3f7c1e9a-2b4d-4e8f-9a0b-1c2d3e4f5a6b",
+                "3F7C1E9A-2B4D-4E8F-9A0B-1C2D3E4F5A6B", "calibre:1234", null};
+        Book book = new Book("Frankenstein");
+        for (String isbn : isbns) {
+            book.setIsbn(isbn);
+            assertEquals(isbn, book.getIsbn());
+        }
+        for (String uuid : uuids) {
+            book.setUuid(uuid);
+            assertEquals(uuid, book.getUuid());
+        }
+
+        assertNotEquals(0, Book.packIsbn("9780141439471"));
+        assertNotEquals(0, Book.packIsbn("030640615X"));
+        assertEquals(0, Book.packIsbn("978-0141439471"));
+        Book other = new Book("9780141439471", "", "Frankenstein", book.getPublishDate());
+        book.setIsbn("9780141439471");
+        assertEquals(book, other);
+        assertEquals(book.hashCode(), other.hashCode());
+    }
+
+    @Test
+    void derivedPathsFollowTheTitleAndIdTheyWereMadeWith() {
+        String path = "Mary Shelley" + File.separator + "Frankenstein (3)";
+        Book book = new Book("Frankenstein");
+        book.setId(3);
+        book.setPath(path);
+        assertEquals(path, book.getPath());
+
+        // Renaming the book does not move its directory
+        book.setTitle("Frankenstein; or, The Modern Prometheus");
+        assertEquals(path, book.getPath());
+        book.setId(4);
+        assertEquals(path, book.getPath());
+
+        Book other = new Book("AC" + File.separator + "DC");
+        other.setId(12);
+        other.setPath("Unknown" + File.separator + "AC" + File.separator + "DC (12)");
+        assertEquals("Unknown" + File.separator + "AC" + File.separator + "DC (12)", other.getPath());
+        other.setPath("Elsewhere");
+        assertEquals("Elsewhere", other.getPath());
+        other.setPath(null);
+        assertNull(other.getPath());
+    }
+
+    @Test
+    void copiesKeepEveryFieldAndChangeOnTheirOwn() {
+        Book book = new Book(7, "9780141439471", "urn:uuid:3f7c1e9a-2b4d-4e8f-9a0b-1c2d3e4f5a6b", "Frankenstein",
+                null, 2.0, null, Instant.parse("1818-01-01T00:00:00Z"), Instant.parse("2023-04-05T06:07:08Z"),
+                Instant.parse("2023-04-06T06:07:08Z"), "Mary Shelley" + File.separator + "Frankenstein (7)");
+        book.setContentHash("00ff");
+
+        Book copy = new Book(book);
+        assertEquals(book.toString(), copy.toString());
+        assertEquals(book.getPath(), copy.getPath());
+        assertEquals(book.getContentHash(), copy.getContentHash());
+        assertEquals(book.getModifiedDate(), copy.getModifiedDate());
+
+        book.setTitle("Frankenstein; or, The Modern Prometheus");
+        assertEquals("Frankenstein", copy.getTitle());
+    }
+
+    @Test
+    void datesAreTruncatedAsBefore() {
+        Book book = new Book("Frankenstein");
+        Instant instant = Instant.parse("1818-01-01T10:20:30.400Z");
+        book.setPublishDate(instant);
+        book.setAddedDate(instant);
+        book.setModifiedDate(instant);
+        assertEquals(Instant.parse("1818-01-01T00:00:00Z"), book.getPublishDate());
+        assertEquals(Instant.parse("1818-01-01T10:20:30Z"), book.getAddedDate());
+        assertEquals(Instant.parse("1818-01-01T10:20:30Z"), book.getModifiedDate());
+    }
+}
@@ -0,0 +1,99 @@
+package xyz.peasfultown.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentRecordSetTest {
+    @Test
+    void iteratorsSeeASnapshot() {
+        ConcurrentRecordSet<Tag> tags = new ConcurrentRecordSet<>();
+        tags.add(new Tag(1, "tbr"));
+        tags.add(new Tag(2, "read"));
+
+        Iterator<Tag> it = tags.iterator();
+        tags.add(new Tag(3, "favs"));
+        tags.removeIf(t -> t.getId() == 2);
+
+        assertEquals("tbr", it.next().getName());
+        assertEquals("read", it.next().getName());
+        assertFalse(it.hasNext());
+        assertEquals(2, tags.size());
+        assertEquals("favs", tags.getById(3).getName());
+    }
+
+    @Test
+    void iteratorRemovesFromTheSet() {
+        ConcurrentRecordSet<Tag> tags = new ConcurrentRecordSet<>();
+        tags.add(new Tag(1, "tbr"));
+        tags.add(new Tag(2, "read"));
+
+        Iterator<Tag> it = tags.iterator();
+        it.next();
+        it.remove();
+
+        assertNull(tags.getById(1));
+        assertNull(tags.getByName("tbr"));
+        assertEquals(1, tags.size());
+    }
+
+    @Test
+    void concurrentWritersAndReaders() throws Exception {
+        ConcurrentRecordSet<Author> authors = new ConcurrentRecordSet<>();
+        int writers = 4;
+        int perWriter = 2000;
+        CountDownLatch done = new CountDownLatch(writers);
+        ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int first = w * perWriter;
+            threads.add(new Thread(() -> {
+                try {
+                    for (int i = first; i < first + perWriter; i++) {
+                        Author author = new Author(i, "Author " + i);
+                        authors.add(author);
+                        // Renamed in place, the set re-indexes it from this thread
+                        author.setName("Writer " + i);
+                    }
+                } catch (Throwable t) {
+                    errors.add(t);
+                } finally {
+                    done.countDown();
+                }
+            }));
+        }
+        threads.add(new Thread(() -> {
+            try {
+                while (done.getCount() > 0) {
+                    for (Author author : authors) {
+                        assertNotNull(author.getName());
+                    }
+                    authors.stream().filter(a -> a.getId() % 2 == 0).count();
+                }
+            } catch (Throwable t) {
+                errors.add(t);
+            }
+        }));
+
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(errors.isEmpty(), () -> errors.peek().toString());
+        assertEquals(writers * perWriter, authors.size());
+        for (int i = 0; i < writers * perWriter; i++) {
+            assertEquals(i, authors.getByName("writer " + i).getId());
+            assertNull(authors.getByName("Author " + i));
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package xyz.peasfultown.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndexedRecordSetTest {
+    @Test
+    void lookupsFindAddedRecords() {
+        IndexedRecordSet<Author> authors = new IndexedRecordSet<>();
+        authors.add(new Author(1, "Mary Shelley"));
+        authors.add(new Author(2, "E. M. Forster"));
+
+        assertEquals("E. M. Forster", authors.getById(2).getName());
+        assertEquals(1, authors.getByName("mary SHELLEY").getId());
+        assertNull(authors.getById(3));
+        assertNull(authors.getByName("Unknown"));
+        assertNull(authors.getByName(null));
+    }
+
+    @Test
+    void iterationOrderIsInsertionOrder() {
+        IndexedRecordSet<Tag> tags = new IndexedRecordSet<>();
+        tags.add(new Tag(3, "tbr"));
+        tags.add(new Tag(1, "classic"));
+        tags.add(new Tag(2, "favs"));
+
+        Iterator<Tag> it = tags.iterator();
+        assertEquals("tbr", it.next().getName());
+        assertEquals("classic", it.next().getName());
+        assertEquals("favs", it.next().getName());
+    }
+
+    @Test
+    void removeDropsRecordFromIndexes() {
+        IndexedRecordSet<Tag> tags = new IndexedRecordSet<>();
+        Tag tbr = new Tag(1, "tbr");
+        tags.add(tbr);
+        tags.add(new Tag(2, "read"));
+
+        assertTrue(tags.remove(tbr));
+        assertNull(tags.getById(1));
+        assertNull(tags.getByName("tbr"));
+
+        tags.removeIf(t -> t.getId() == 2);
+        assertNull(tags.getByName("read"));
+        assertTrue(tags.isEmpty());
+    }
+
+    @Test
+    void inPlaceRenamesAreReindexed() {
+        IndexedRecordSet<Book> books = new IndexedRecordSet<>();
+        Book book = new Book("Frankenstein");
+        book.setId(1);
+        books.add(book);
+
+        book.setTitle("Frankenstein; or, The Modern Prometheus");
+        book.setId(7);
+
+        assertNull(books.getByName("Frankenstein"));
+        assertNull(books.getById(1));
+        assertSame(book, books.getByName("frankenstein; or, the modern prometheus"));
+        assertSame(book, books.getById(7));
+
+        // Book hashes on its title, removal must still work after the rename
+        assertTrue(books.remove(book));
+        assertTrue(books.isEmpty());
+        assertNull(books.getById(7));
+    }
+
+    @Test
+    void duplicateKeysResolveToFirstRecord() {
+        IndexedRecordSet<Author> authors = new IndexedRecordSet<>();
+        Author first = new Author(0, "Unknown");
+        Author second = new Author(0, "unknown");
+        authors.add(first);
+        authors.add(second);
+
+        assertSame(first, authors.getById(0));
+        assertSame(first, authors.getByName("UNKNOWN"));
+
+        authors.remove(first);
+        assertSame(second, authors.getById(0));
+        assertSame(second, authors.getByName("Unknown"));
+    }
+
+    @Test
+    void recordsSharingANameAreRemovedInAnyOrder() {
+        IndexedRecordSet<Book> books = new IndexedRecordSet<>();
+        Book[] same = new Book[4];
+        for (int i = 0; i < same.length; i++) {
+            same[i] = new Book("Poems");
+            same[i].setId(i + 1);
+            same[i].setIsbn("isbn-" + i);
+            books.add(same[i]);
+        }
+
+        books.remove(same[2]);
+        assertSame(same[0], books.getByName("poems"));
+        books.remove(same[0]);
+        assertSame(same[1], books.getByName("poems"));
+        same[1].setTitle("Sonnets");
+        assertSame(same[3], books.getByName("poems"));
+        assertSame(same[1], books.getByName("sonnets"));
+        books.remove(same[3]);
+        assertNull(books.getByName("poems"));
+        assertSame(same[1], books.getById(2));
+    }
+
+    @Test
+    void namesMadeFromTheIdFollowIdChanges() {
+        IndexedRecordSet<BookAuthor> links = new IndexedRecordSet<>();
+        BookAuthor link = new BookAuthor(1, 2);
+        links.add(link);
+        link.setId(5);
+
+        assertSame(link, links.getById(5));
+        assertSame(link, links.getByName("5"));
+        assertNull(links.getById(0));
+        assertNull(links.getByName("0"));
+    }
+
+    @Test
+    void removedRecordsAreNoLongerTracked() {
+        IndexedRecordSet<Publisher> publishers = new IndexedRecordSet<>();
+        Publisher publisher = new Publisher(1, "Scribner");
+        publishers.add(publisher);
+        publishers.clear();
+
+        publisher.setName("Oxford University Press");
+        assertNull(publishers.getByName("Oxford University Press"));
+    }
+}
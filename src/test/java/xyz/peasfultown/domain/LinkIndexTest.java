@@ -0,0 +1,90 @@
+package xyz.peasfultown.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LinkIndexTest {
+    @Test
+    void linksAreFoundFromBothSides() {
+        LinkIndex links = new LinkIndex();
+        assertTrue(links.add(1, 10));
+        assertTrue(links.add(1, 11));
+        assertTrue(links.add(2, 10));
+        assertFalse(links.add(1, 10));
+
+        assertArrayEquals(new int[]{10, 11}, links.getRight(1));
+        assertArrayEquals(new int[]{1, 2}, links.getLeft(10));
+        assertEquals(10, links.getFirstRight(1));
+        assertEquals(-1, links.getFirstRight(3));
+        assertArrayEquals(new int[0], links.getLeft(12));
+        assertTrue(links.contains(2, 10));
+        assertFalse(links.contains(2, 11));
+        assertEquals(3, links.size());
+    }
+
+    @Test
+    void removedLinksAreGoneFromBothSides() {
+        LinkIndex links = new LinkIndex();
+        links.add(1, 10);
+        links.add(1, 11);
+        links.add(2, 11);
+
+        assertTrue(links.remove(1, 10));
+        assertFalse(links.remove(1, 10));
+        assertArrayEquals(new int[]{11}, links.getRight(1));
+        assertArrayEquals(new int[0], links.getLeft(10));
+
+        links.removeLeft(1);
+        assertArrayEquals(new int[0], links.getRight(1));
+        assertArrayEquals(new int[]{2}, links.getLeft(11));
+        assertEquals(1, links.size());
+    }
+
+    @Test
+    void matchesAMapOfListsUnderRandomChanges() {
+        LinkIndex links = new LinkIndex();
+        Map<Integer, Set<Integer>> expected = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 50000; i++) {
+            int left = 1 + random.nextInt(3000);
+            int right = 1 + random.nextInt(40);
+            int op = random.nextInt(10);
+            Set<Integer> rights = expected.computeIfAbsent(left, k -> new LinkedHashSet<>());
+            if (op < 7) {
+                assertEquals(rights.add(right), links.add(left, right));
+            } else if (op < 9) {
+                assertEquals(rights.remove(right), links.remove(left, right));
+            } else {
+                rights.clear();
+                links.removeLeft(left);
+            }
+        }
+
+        int size = 0;
+        for (Map.Entry<Integer, Set<Integer>> entry : expected.entrySet()) {
+            assertArrayEquals(entry.getValue().stream().mapToInt(Integer::intValue).toArray(),
+                    links.getRight(entry.getKey()));
+            size += entry.getValue().size();
+        }
+        assertEquals(size, links.size());
+
+        List<int[]> seen = new ArrayList<>();
+        links.forEach((left, right) -> seen.add(new int[]{left, right}));
+        assertEquals(size, seen.size());
+        for (int[] link : seen) {
+            assertTrue(expected.get(link[0]).contains(link[1]));
+            int[] lefts = links.getLeft(link[1]);
+            assertTrue(Arrays.stream(lefts).anyMatch(l -> l == link[0]));
+        }
+    }
+}
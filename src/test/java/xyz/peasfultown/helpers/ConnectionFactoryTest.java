@@ -0,0 +1,170 @@
+package xyz.peasfultown.helpers;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.sqlite.SQLiteConnection;
+import xyz.peasfultown.ApplicationConfig;
+import xyz.peasfultown.ApplicationDefaults;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static xyz.peasfultown.TestHelpers.cleanupPath;
+
+class ConnectionFactoryTest {
+    private static final Path MAIN_PATH = Path.of(ApplicationDefaults.TEMPORARY_PATH);
+
+    @BeforeAll
+    static void setup() throws Exception {
+        ApplicationConfig.setMainPath(MAIN_PATH);
+        ConnectionFactory.closeAll();
+        try (Connection con = ConnectionFactory.getConnection()) {
+            SchemaMigrator.migrate(con);
+        }
+    }
+
+    @AfterAll
+    static void cleanup() throws Exception {
+        ConnectionFactory.closeAll();
+        cleanupPath(MAIN_PATH);
+    }
+
+    @Test
+    void pooledConnectionsAreReused() throws Exception {
+        SQLiteConnection first;
+        try (Connection con = ConnectionFactory.getReadConnection()) {
+            first = con.unwrap(SQLiteConnection.class);
+        }
+        try (Connection con = ConnectionFactory.getReadConnection()) {
+            assertSame(first, con.unwrap(SQLiteConnection.class));
+            assertFalse(con.isClosed());
+        }
+    }
+
+    @Test
+    void preparedStatementsAreCachedPerConnection() throws Exception {
+        String query = "SELECT * FROM tags WHERE id=?;";
+        try (Connection con = ConnectionFactory.getReadConnection()) {
+            PreparedStatement first;
+            try (PreparedStatement stmt = con.prepareStatement(query)) {
+                first = stmt;
+            }
+            try (PreparedStatement stmt = con.prepareStatement(query)) {
+                assertSame(first, stmt);
+                // Nested use of the same query gets its own statement
+                try (PreparedStatement nested = con.prepareStatement(query)) {
+                    assertNotSame(stmt, nested);
+                }
+            }
+        }
+    }
+
+    @Test
+    void writerIsReentrantAndServesReadsOfItsOwner() throws Exception {
+        try (Connection writer = ConnectionFactory.getWriteConnection();
+             Connection nested = ConnectionFactory.getWriteConnection();
+             Connection reader = ConnectionFactory.getReadConnection()) {
+            SQLiteConnection physical = writer.unwrap(SQLiteConnection.class);
+            assertSame(physical, nested.unwrap(SQLiteConnection.class));
+            assertSame(physical, reader.unwrap(SQLiteConnection.class));
+        }
+    }
+
+    @Test
+    void writerIsExclusiveAmongThreads() throws Exception {
+        CountDownLatch acquired = new CountDownLatch(1);
+        AtomicBoolean otherGotWriter = new AtomicBoolean(false);
+
+        try (Connection writer = ConnectionFactory.getWriteConnection()) {
+            Thread other = new Thread(() -> {
+                try (Connection con = ConnectionFactory.getWriteConnection()) {
+                    otherGotWriter.set(true);
+                    acquired.countDown();
+                } catch (Exception e) {
+                    fail(e);
+                }
+            });
+            other.start();
+            assertFalse(acquired.await(200, TimeUnit.MILLISECONDS));
+            assertFalse(otherGotWriter.get());
+        }
+
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void uncommittedTransactionIsRolledBack() throws Exception {
+        boolean pooled = ApplicationConfig.CONNECTION_POOL_ENABLED;
+        try {
+            for (boolean enabled : new boolean[]{true, false}) {
+                ApplicationConfig.CONNECTION_POOL_ENABLED = enabled;
+                try (Connection tx = ConnectionFactory.beginTransaction()) {
+                    try (Connection con = ConnectionFactory.getWriteConnection();
+                         PreparedStatement stmt = con.prepareStatement("INSERT INTO tags (name) VALUES (?);")) {
+                        stmt.setString(1, "uncommitted");
+                        stmt.executeUpdate();
+                    }
+                    assertEquals(1, countTags("uncommitted"));
+                }
+                assertEquals(0, countTags("uncommitted"));
+            }
+        } finally {
+            ApplicationConfig.CONNECTION_POOL_ENABLED = pooled;
+        }
+    }
+
+    @Test
+    void settingsAreAppliedToEveryConnection() throws Exception {
+        try (Connection writer = ConnectionFactory.getWriteConnection()) {
+            assertSettings(writer);
+        }
+        // A reader opened while the writer is held by another thread
+        try (Connection writer = ConnectionFactory.getWriteConnection()) {
+            Thread other = new Thread(() -> {
+                try (Connection reader = ConnectionFactory.getReadConnection()) {
+                    assertNotSame(writer.unwrap(SQLiteConnection.class), reader.unwrap(SQLiteConnection.class));
+                    assertSettings(reader);
+                } catch (Exception e) {
+                    fail(e);
+                }
+            });
+            other.start();
+            other.join();
+        }
+    }
+
+    private static void assertSettings(Connection con) throws Exception {
+        assertEquals("wal", pragma(con, "journal_mode"));
+        assertEquals("1", pragma(con, "synchronous"));
+        assertEquals(String.valueOf(ApplicationConfig.SQLITE_CACHE_SIZE), pragma(con, "cache_size"));
+        assertEquals(String.valueOf(ApplicationConfig.SQLITE_MMAP_SIZE), pragma(con, "mmap_size"));
+        assertEquals("2", pragma(con, "temp_store"));
+        assertEquals(String.valueOf(ApplicationConfig.SQLITE_BUSY_TIMEOUT), pragma(con, "busy_timeout"));
+    }
+
+    private static String pragma(Connection con, String name) throws Exception {
+        try (PreparedStatement stmt = con.prepareStatement("PRAGMA " + name + ";");
+             ResultSet rs = stmt.executeQuery()) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+
+    private static int countTags(String name) throws Exception {
+        try (Connection con = ConnectionFactory.getReadConnection();
+             PreparedStatement stmt = con.prepareStatement("SELECT COUNT(*) AS count FROM tags WHERE name=?;")) {
+            stmt.setString(1, name);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getInt("count");
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package xyz.peasfultown.helpers;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentHasherTest {
+    private Path dir;
+
+    @BeforeEach
+    void setup() throws IOException {
+        dir = Files.createTempDirectory("jebman-hash");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.walkFileTree(dir, new TreeDeleter());
+    }
+
+    @Test
+    void copyHashesWhatItCopies() throws Exception {
+        Path source = Files.write(dir.resolve("source"), "abc".getBytes(StandardCharsets.US_ASCII));
+        Path target = Files.write(dir.resolve("target"), "longer previous content".getBytes(StandardCharsets.US_ASCII));
+
+        String hash = ContentHasher.copy(source, target);
+
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad", hash);
+        assertEquals("abc", Files.readString(target));
+        assertEquals(hash, ContentHasher.hash(target));
+    }
+}
@@ -0,0 +1,132 @@
+package xyz.peasfultown.helpers;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EpubArchiveTest {
+    private static final String CONTAINER = "<?xml version=\"1.0\"?>"
+            + "<container version=\"1.0\" xmlns=\"urn:oasis:names:tc:opendocument:xmlns:container\"><rootfiles>"
+            + "<rootfile full-path=\"OEBPS/package.opf\" media-type=\"application/oebps-package+xml\"/>"
+            + "</rootfiles></container>";
+
+    private Path dir;
+
+    @BeforeEach
+    void setup() throws IOException {
+        dir = Files.createTempDirectory("jebman-epub");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.walkFileTree(dir, new TreeDeleter());
+    }
+
+    private static String opf(String metadata, String manifest) {
+        return "<?xml version=\"1.0\"?>"
+                + "<package xmlns=\"http://www.idpf.org/2007/opf\" version=\"3.0\">"
+                + "<metadata xmlns:dc=\"http://purl.org/dc/elements/1.1/\">"
+                + "<dc:title>Package Title</dc:title><dc:creator>Jane Doe</dc:creator>" + metadata
+                + "</metadata><manifest>" + manifest + "</manifest></package>";
+    }
+
+    private Path epub(String... namesAndContents) throws IOException {
+        Path file = dir.resolve("book.epub");
+        try (OutputStream os = Files.newOutputStream(file);
+             ZipOutputStream zip = new ZipOutputStream(os)) {
+            for (int i = 0; i < namesAndContents.length; i += 2) {
+                zip.putNextEntry(new ZipEntry(namesAndContents[i]));
+                zip.write(namesAndContents[i + 1].getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return file;
+    }
+
+    @Test
+    void packageDocumentAndCoverImagePropertyAreFollowed() throws Exception {
+        Path file = epub(EpubArchive.CONTAINER_PATH, CONTAINER,
+                // A decoy the old name scan would have picked
+                "content.opf", opf("", ""),
+                "OEBPS/images/other-cover.jpg", "decoy",
+                "OEBPS/package.opf", opf("", "<item id=\"a\" href=\"images/other-cover.jpg\" media-type=\"image/jpeg\"/>"
+                        + "<item id=\"c\" href=\"images/front%20page.png\" media-type=\"image/png\" properties=\"cover-image\"/>"),
+                "OEBPS/images/front page.png", "cover");
+
+        try (EpubArchive epub = EpubArchive.open(file)) {
+            assertEquals("OEBPS/package.opf", epub.getPackageDocument().getName());
+            HashMap<String, String> meta = MetaReader.getMetadata(epub);
+            assertEquals("Package Title", meta.get("title"));
+            assertEquals("Jane Doe", meta.get("creator"));
+            assertEquals("epub", meta.get("filetype"));
+            assertEquals("OEBPS/images/front page.png", epub.getCoverEntry().getName());
+        }
+    }
+
+    @Test
+    void everyCreatorIsRead() throws Exception {
+        Path file = epub(EpubArchive.CONTAINER_PATH, CONTAINER,
+                "OEBPS/package.opf", opf("<dc:creator id=\"c2\">\n  John Roe\n</dc:creator>"
+                        + "<dc:creator>jane doe</dc:creator><dc:creator>Rita &amp; Co</dc:creator>", ""));
+
+        try (EpubArchive epub = EpubArchive.open(file)) {
+            HashMap<String, String> meta = MetaReader.getMetadata(epub);
+            assertEquals("Jane Doe", meta.get("creator"));
+            assertEquals(List.of("Jane Doe", "John Roe", "Rita & Co"), MetaReader.getAuthorNames(meta));
+        }
+    }
+
+    @Test
+    void coverMetaNamesTheManifestItem() throws Exception {
+        Path file = epub(EpubArchive.CONTAINER_PATH, CONTAINER,
+                "OEBPS/package.opf", opf("<meta name=\"cover\" content=\"img\"/>",
+                        "<item id=\"x\" href=\"../art/cover.jpg\" media-type=\"image/jpeg\"/>"
+                                + "<item id=\"img\" href=\"../art/front.jpg\" media-type=\"image/jpeg\"/>"),
+                "art/cover.jpg", "decoy",
+                "art/front.jpg", "cover");
+
+        // Without reading the metadata first
+        try (EpubArchive epub = EpubArchive.open(file)) {
+            assertEquals("art/front.jpg", epub.getCoverEntry().getName());
+        }
+    }
+
+    @Test
+    void archivesWithoutReferencesFallBackToEntryNames() throws Exception {
+        Path file = epub("content.opf", opf("", ""), "images/Cover.JPG", "cover");
+
+        try (EpubArchive epub = EpubArchive.open(file)) {
+            assertEquals("content.opf", epub.getPackageDocument().getName());
+            assertEquals("images/Cover.JPG", epub.getCoverEntry().getName());
+        }
+    }
+
+    @Test
+    void archivesWithoutPackageDocumentAreRejected() throws Exception {
+        Path file = epub("chapter.xhtml", "<html/>");
+
+        assertThrows(FileNotFoundException.class, () -> EpubArchive.open(file));
+        assertThrows(MetadataReaderException.class, () -> MetaReader.getMetadata(file));
+    }
+
+    @Test
+    void referencesResolveAgainstThePackageDocument() {
+        assertEquals("cover.jpg", EpubArchive.resolve("content.opf", "cover.jpg"));
+        assertEquals("OEBPS/img/a b.png", EpubArchive.resolve("OEBPS/content.opf", "img/a%20b.png"));
+        assertEquals("img/a.png", EpubArchive.resolve("OEBPS/content.opf", "../img/a.png"));
+        assertEquals("OEBPS/a b.png", EpubArchive.resolve("OEBPS/content.opf", "a b.png"));
+    }
+}
@@ -0,0 +1,84 @@
+package xyz.peasfultown.helpers;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IngestModeTest {
+    private static final byte[] CONTENT = "book content".getBytes(StandardCharsets.US_ASCII);
+
+    private Path dir;
+    private Path source;
+    private String hash;
+
+    @BeforeEach
+    void setup() throws IOException {
+        dir = Files.createTempDirectory("jebman-ingest");
+        source = Files.write(dir.resolve("source.pdf"), CONTENT);
+        hash = ContentHasher.hash(source);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.walkFileTree(dir, new TreeDeleter());
+    }
+
+    @Test
+    void everyModePutsTheContentInPlace() throws Exception {
+        for (IngestMode mode : IngestMode.values()) {
+            Path target = dir.resolve(mode + ".pdf");
+            mode.transfer(source, target, hash, true);
+
+            assertArrayEquals(CONTENT, Files.readAllBytes(target), mode.toString());
+            if (mode == IngestMode.MOVE)
+                assertFalse(Files.exists(source));
+        }
+    }
+
+    @Test
+    void linksShareTheOriginalAndCopiesDoNot() throws Exception {
+        Path link = dir.resolve("link.pdf");
+        Path clone = dir.resolve("clone.pdf");
+        IngestMode.HARD_LINK.transfer(source, link, hash, false);
+        IngestMode.REFLINK.transfer(source, clone, hash, false);
+
+        assertTrue(Files.isSameFile(source, link));
+        assertFalse(Files.isSameFile(source, clone));
+        assertEquals(hash, ContentHasher.hash(clone));
+    }
+
+    @Test
+    void mismatchingFilesAreRemoved() throws Exception {
+        Path target = dir.resolve("target.pdf");
+        IOException e = assertThrows(IOException.class,
+                () -> IngestMode.COPY.transfer(source, target, ContentHasher.toHex(new byte[32]), true));
+        assertTrue(e.getMessage().contains("Checksum"));
+        assertFalse(Files.exists(target));
+        assertTrue(Files.exists(source));
+    }
+
+    @Test
+    void mismatchingMovedFilesAreMovedBack() throws Exception {
+        Path target = dir.resolve("target.pdf");
+        assertThrows(IOException.class,
+                () -> IngestMode.MOVE.transfer(source, target, ContentHasher.toHex(new byte[32]), true));
+        assertFalse(Files.exists(target));
+        assertArrayEquals(CONTENT, Files.readAllBytes(source));
+    }
+
+    @Test
+    void existingTargetsAreNotOverwritten() throws Exception {
+        Path target = Files.write(dir.resolve("target.pdf"), new byte[]{1});
+        for (IngestMode mode : IngestMode.values()) {
+            assertThrows(IOException.class, () -> mode.transfer(source, target, hash, false), mode.toString());
+            assertArrayEquals(new byte[]{1}, Files.readAllBytes(target), mode.toString());
+        }
+    }
+}
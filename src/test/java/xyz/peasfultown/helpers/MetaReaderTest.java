@@ -12,6 +12,7 @@ import org.slf4j.LoggerFactory;
 import javax.xml.stream.XMLStreamConstants;
 import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -156,6 +157,32 @@ public class MetaReaderTest {
         assertEquals("2007-02-23T15:56:37Z", meta.get("date"));
     }
 
+    @Test
+    void pdfAuthorFieldsAreSplitIntoNames() {
+        assertEquals(List.of("Evangelos Vlachogiannis"), MetaReader.splitPdfAuthors("Evangelos Vlachogiannis"));
+        assertEquals(List.of("Mary Shelley", "Bram Stoker", "Edgar Allan Poe"),
+                MetaReader.splitPdfAuthors("Mary Shelley; Bram Stoker & Edgar Allan Poe"));
+        assertEquals(List.of("Jane Doe", "John Roe"), MetaReader.splitPdfAuthors("Jane Doe and John Roe"));
+        assertEquals(List.of("Jane Doe", "John Roe"), MetaReader.splitPdfAuthors("Jane Doe, John Roe"));
+        // Last name first, not two people
+        assertEquals(List.of("Shelley, Mary"), MetaReader.splitPdfAuthors("Shelley, Mary"));
+        // Only the word, not names containing it
+        assertEquals(List.of("Alexandra Sandberg"), MetaReader.splitPdfAuthors("Alexandra Sandberg"));
+    }
+
+    @Test
+    void authorNamesAreDedupedAndFallBack() {
+        HashMap<String, String> meta = new HashMap<>();
+        meta.put("authors", "Jane Doe\njane doe\n \nJohn Roe");
+        assertEquals(List.of("Jane Doe", "John Roe"), MetaReader.getAuthorNames(meta));
+
+        meta.clear();
+        meta.put("creator", "Jane Doe");
+        assertEquals(List.of("Jane Doe"), MetaReader.getAuthorNames(meta));
+        meta.clear();
+        assertEquals(List.of("Unknown"), MetaReader.getAuthorNames(meta));
+    }
+
     String getEventTypeString(int eventType) {
         switch (eventType) {
             case XMLStreamConstants.ATTRIBUTE:
@@ -0,0 +1,158 @@
+package xyz.peasfultown.helpers;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentInformation;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.util.DateConverter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PdfInfoReaderTest {
+    private Path dir;
+
+    @BeforeEach
+    void setup() throws IOException {
+        dir = Files.createTempDirectory("jebman-pdf");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.walkFileTree(dir, new TreeDeleter());
+    }
+
+    /**
+     * Write a pdf by hand, for structures PDFBox does not write. Objects are numbered from 1 in the given order, the
+     * catalog is object 1 and the Info dictionary object 2.
+     */
+    private Path handWrittenPdf(String... objects) throws IOException {
+        StringBuilder pdf = new StringBuilder("%PDF-1.4\n");
+        List<Integer> offsets = new ArrayList<>();
+        for (int i = 0; i < objects.length; i++) {
+            offsets.add(pdf.length());
+            pdf.append(i + 1).append(" 0 obj\n").append(objects[i]).append("\nendobj\n");
+        }
+        int xref = pdf.length();
+        pdf.append("xref\n0 ").append(objects.length + 1).append("\n0000000000 65535 f\r\n");
+        for (int offset : offsets) {
+            pdf.append(String.format("%010d 00000 n\r\n", offset));
+        }
+        pdf.append("trailer\n<< /Size ").append(objects.length + 1).append(" /Root 1 0 R /Info 2 0 R >>\n")
+                .append("startxref\n").append(xref).append("\n%%EOF\n");
+        Path file = dir.resolve("hand.pdf");
+        Files.write(file, pdf.toString().getBytes(StandardCharsets.ISO_8859_1));
+        return file;
+    }
+
+    @Test
+    void infoMatchesLoadedDocument() throws Exception {
+        for (String name : new String[]{"dummy.pdf", "machine-stops.pdf"}) {
+            Path file = Path.of(getClass().getClassLoader().getResource(name).toURI());
+            Map<String, String> info = PdfInfoReader.read(file);
+            assertNotNull(info, name);
+            try (PDDocument pdf = PDDocument.load(file.toFile())) {
+                PDDocumentInformation expected = pdf.getDocumentInformation();
+                assertEquals(expected.getTitle(), info.get(PdfInfoReader.TITLE), name);
+                assertEquals(expected.getAuthor(), info.get(PdfInfoReader.AUTHOR), name);
+                assertEquals(expected.getCreationDate(), DateConverter.toCalendar(info.get(PdfInfoReader.CREATION_DATE)), name);
+            }
+        }
+    }
+
+    @Test
+    void unicodeAndEscapedStringsAreDecoded() throws Exception {
+        Path file = dir.resolve("unicode.pdf");
+        Calendar created = new GregorianCalendar(TimeZone.getTimeZone("UTC"));
+        created.setTimeInMillis(981173106000L);
+        try (PDDocument pdf = new PDDocument()) {
+            pdf.addPage(new PDPage());
+            pdf.getDocumentInformation().setTitle("Les Misérables (tome 1) \\ 東京");
+            pdf.getDocumentInformation().setAuthor("Victor Hugo");
+            pdf.getDocumentInformation().setCreationDate(created);
+            pdf.save(file.toFile());
+        }
+
+        Map<String, String> info = PdfInfoReader.read(file);
+        assertNotNull(info);
+        assertEquals("Les Misérables (tome 1) \\ 東京", info.get(PdfInfoReader.TITLE));
+        assertEquals("Victor Hugo", info.get(PdfInfoReader.AUTHOR));
+        assertEquals(created.toInstant(), DateConverter.toCalendar(info.get(PdfInfoReader.CREATION_DATE)).toInstant());
+    }
+
+    @Test
+    void incrementalUpdatesAreFollowed() throws Exception {
+        Path original = dir.resolve("original.pdf");
+        try (PDDocument pdf = new PDDocument()) {
+            pdf.addPage(new PDPage());
+            pdf.getDocumentInformation().setTitle("First Title");
+            pdf.getDocumentInformation().setAuthor("Jane Doe");
+            pdf.save(original.toFile());
+        }
+        Path updated = dir.resolve("updated.pdf");
+        try (PDDocument pdf = PDDocument.load(original.toFile());
+             OutputStream os = Files.newOutputStream(updated)) {
+            pdf.getDocumentInformation().setTitle("Second Title");
+            pdf.getDocumentInformation().getCOSObject().setNeedToBeUpdated(true);
+            pdf.saveIncremental(os);
+        }
+
+        Map<String, String> info = PdfInfoReader.read(updated);
+        assertNotNull(info);
+        assertEquals("Second Title", info.get(PdfInfoReader.TITLE));
+        assertEquals("Jane Doe", info.get(PdfInfoReader.AUTHOR));
+    }
+
+    @Test
+    void hexStringsAndMissingEntries() throws Exception {
+        Path file = handWrittenPdf("<< /Type /Catalog /Pages 3 0 R >>",
+                "<< /Title <54686520 5469746C65> /Producer (x) /Keywords [/a 1 2.5 true] >>",
+                "<< /Type /Pages /Kids [] /Count 0 >>");
+
+        Map<String, String> info = PdfInfoReader.read(file);
+        assertEquals(Map.of(PdfInfoReader.TITLE, "The Title"), info);
+    }
+
+    @Test
+    void indirectStringsAreLeftToPdfBox() throws Exception {
+        Path file = handWrittenPdf("<< /Type /Catalog /Pages 3 0 R >>",
+                "<< /Title 4 0 R /Author (Jane Doe) >>",
+                "<< /Type /Pages /Kids [] /Count 0 >>",
+                "(Indirect Title)");
+
+        assertNull(PdfInfoReader.read(file));
+        Map<String, String> meta = MetaReader.getMetadata(file);
+        assertEquals("Indirect Title", meta.get("title"));
+        assertEquals("Jane Doe", meta.get("author"));
+    }
+
+    @Test
+    void unreadableStructuresAreLeftToPdfBox() throws Exception {
+        Path noXref = dir.resolve("no-xref.pdf");
+        Files.write(noXref, "%PDF-1.5\n1 0 obj\n<< >>\nendobj\n".getBytes(StandardCharsets.ISO_8859_1));
+        assertNull(PdfInfoReader.read(noXref));
+
+        // startxref pointing at an object, like a cross-reference stream
+        Path xrefStream = dir.resolve("xref-stream.pdf");
+        Files.write(xrefStream, "%PDF-1.5\n1 0 obj\n<< /Type /XRef >>\nendobj\nstartxref\n9\n%%EOF\n"
+                .getBytes(StandardCharsets.ISO_8859_1));
+        assertNull(PdfInfoReader.read(xrefStream));
+
+        Path outOfRange = dir.resolve("out-of-range.pdf");
+        Files.write(outOfRange, "%PDF-1.4\nstartxref\n99999\n%%EOF\n".getBytes(StandardCharsets.ISO_8859_1));
+        assertNull(PdfInfoReader.read(outOfRange));
+    }
+}
@@ -0,0 +1,92 @@
+package xyz.peasfultown.helpers;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SchemaMigratorTest {
+    private Path dir;
+    private Connection con;
+
+    @BeforeEach
+    void open() throws Exception {
+        dir = Files.createTempDirectory("jebman-schema");
+        con = DriverManager.getConnection("jdbc:sqlite:" + dir.resolve("metadata.db"));
+    }
+
+    @AfterEach
+    void close() throws Exception {
+        con.close();
+        Files.walkFileTree(dir, new TreeDeleter());
+    }
+
+    @Test
+    void migrateBringsNewDatabaseToLatestVersionOnce() throws Exception {
+        assertEquals(SchemaMigrator.getLatestVersion(), SchemaMigrator.migrate(con));
+        assertEquals(SchemaMigrator.getLatestVersion(), SchemaMigrator.getVersion(con));
+        assertEquals(0, SchemaMigrator.migrate(con));
+    }
+
+    @Test
+    void linkLookupsUseCoveringIndexes() throws Exception {
+        SchemaMigrator.migrate(con);
+
+        assertTrue(queryPlan("SELECT book_id FROM books_tags_link WHERE tag_id=1;").contains("COVERING INDEX"));
+        assertTrue(queryPlan("SELECT tag_id FROM books_tags_link WHERE book_id=1;").contains("COVERING INDEX"));
+        assertTrue(queryPlan("SELECT author_id FROM books_authors_link WHERE book_id=1;").contains("COVERING INDEX"));
+        assertTrue(queryPlan("SELECT * FROM books WHERE title='Frankenstein';").contains("ix_books_title"));
+        // The title column is declared COLLATE NOCASE, so its index also serves case-insensitive lookups
+        assertTrue(queryPlan("SELECT * FROM books WHERE title='frankenstein' COLLATE NOCASE;")
+                .contains("ix_books_title"));
+        assertTrue(queryPlan("SELECT * FROM books WHERE content_hash='00';").contains("ix_books_content_hash"));
+    }
+
+    @Test
+    void migrationDeduplicatesLegacyTagLinks() throws Exception {
+        // A database from before versioning, with the same tag applied twice
+        try (Statement stmt = con.createStatement()) {
+            ScriptRunner.runScript(con, new File("database.sql"));
+            stmt.executeUpdate("INSERT INTO books_tags_link (book_id, tag_id) VALUES (1, 1), (1, 2), (1, 1);");
+        }
+
+        SchemaMigrator.migrate(con);
+
+        try (Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM books_tags_link;")) {
+            rs.next();
+            assertEquals(2, rs.getInt(1));
+            assertThrows(SQLException.class,
+                    () -> stmt.executeUpdate("INSERT INTO books_tags_link (book_id, tag_id) VALUES (1, 2);"));
+        }
+    }
+
+    @Test
+    void newerDatabaseIsRejected() throws Exception {
+        try (Statement stmt = con.createStatement()) {
+            stmt.executeUpdate("PRAGMA user_version = " + (SchemaMigrator.getLatestVersion() + 1) + ";");
+        }
+        assertThrows(SQLException.class, () -> SchemaMigrator.migrate(con));
+    }
+
+    private String queryPlan(String query) throws SQLException {
+        StringBuilder sb = new StringBuilder();
+        try (Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("EXPLAIN QUERY PLAN " + query)) {
+            while (rs.next()) {
+                sb.append(rs.getString("detail")).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -4,10 +4,20 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import xyz.peasfultown.ApplicationDefaults;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class ThumbnailGeneratorTest {
@@ -38,4 +48,76 @@ class ThumbnailGeneratorTest {
 
         assertTrue(Files.exists(Path.of(TEMP_PATH).resolve("gatsbyThumb.png")));
     }
-}
\ No newline at end of file
+
+    @Test
+    void pdfThumbnailIsRenderedToWidth() throws Exception {
+        File pdf = new File(getClass().getClassLoader().getResource("machine-stops.pdf").getFile());
+        Path target = Path.of(TEMP_PATH).resolve("machineStopsThumb.png");
+        ThumbnailGenerator.generatePDFThumbnail(pdf, target);
+
+        BufferedImage thumbnail = ImageIO.read(target.toFile());
+        assertEquals(ThumbnailGenerator.PDF_THUMBNAIL_WIDTH, thumbnail.getWidth());
+        assertTrue(thumbnail.getHeight() > thumbnail.getWidth());
+    }
+
+    @Test
+    void epubCoverIsScaledDownKeepingItsShape() throws Exception {
+        Path epubFile = Path.of(getClass().getClassLoader().getResource("frankenstein.epub").toURI());
+        byte[] png;
+        BufferedImage cover;
+        try (EpubArchive epub = EpubArchive.open(epubFile)) {
+            png = ThumbnailGenerator.renderEpubThumbnail(epub);
+            cover = ImageIO.read(epub.getInputStream(epub.getCoverEntry()));
+        }
+
+        BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(png));
+        assertEquals(Math.min(cover.getWidth(), ThumbnailGenerator.COVER_THUMBNAIL_WIDTH), thumbnail.getWidth());
+        assertEquals((double) cover.getHeight() / cover.getWidth(),
+                (double) thumbnail.getHeight() / thumbnail.getWidth(), 0.01);
+    }
+
+    @Test
+    void smallImagesAreNotScaledUp() {
+        BufferedImage small = new BufferedImage(100, 150, BufferedImage.TYPE_INT_RGB);
+        assertEquals(small, ThumbnailRenderer.scaleToWidth(small, 300));
+
+        BufferedImage large = ThumbnailRenderer.scaleToWidth(new BufferedImage(2000, 3001, BufferedImage.TYPE_INT_RGB), 300);
+        assertEquals(300, large.getWidth());
+        assertEquals(450, large.getHeight());
+    }
+
+    @Test
+    void brokenFilesFailWithoutLeavingAThumbnail() throws Exception {
+        Path broken = Path.of(TEMP_PATH).resolve("broken.pdf");
+        Files.writeString(broken, "not a pdf");
+        Path target = Path.of(TEMP_PATH).resolve("brokenThumb.png");
+
+        assertThrows(ThumbnailGeneratorException.class, () -> ThumbnailGenerator.generatePDFThumbnail(broken.toFile(), target));
+        assertTrue(Files.notExists(target));
+    }
+
+    @Test
+    void renderersAreSharedBetweenManyThreads() throws Exception {
+        File epub = new File(getClass().getClassLoader().getResource("gatsby.epub").getFile());
+        ExecutorService executor = Executors.newFixedThreadPool(ThumbnailRenderer.POOL_SIZE * 2 + 1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < ThumbnailRenderer.POOL_SIZE * 4 + 2; i++) {
+                Path target = Path.of(TEMP_PATH).resolve("concurrent" + i + ".png");
+                futures.add(executor.submit(() -> {
+                    ThumbnailGenerator.generateEpubThumbnail(epub, target);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        for (int i = 0; i < ThumbnailRenderer.POOL_SIZE * 4 + 2; i++) {
+            assertEquals(ThumbnailGenerator.COVER_THUMBNAIL_WIDTH,
+                    ImageIO.read(Path.of(TEMP_PATH).resolve("concurrent" + i + ".png").toFile()).getWidth());
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package xyz.peasfultown.helpers;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WeightedLruCacheTest {
+    @Test
+    void evictsLeastRecentlyUsedUntilWithinWeight() {
+        WeightedLruCache<String, String> cache = new WeightedLruCache<>(10, String::length);
+        cache.put("a", "aaaa");
+        cache.put("b", "bbbb");
+        cache.get("a");
+        cache.put("c", "cccc");
+
+        assertNull(cache.get("b"));
+        assertEquals("aaaa", cache.get("a"));
+        assertEquals("cccc", cache.get("c"));
+        assertEquals(8, cache.getWeight());
+    }
+
+    @Test
+    void replacingAndRemovingKeepWeightInStep() {
+        WeightedLruCache<String, String> cache = new WeightedLruCache<>(10, String::length);
+        cache.put("a", "aaaa");
+        cache.put("a", "aa");
+        assertEquals(2, cache.getWeight());
+
+        cache.remove("a");
+        assertEquals(0, cache.getWeight());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void valuesHeavierThanTheLimitAreNotCached() {
+        WeightedLruCache<String, String> cache = new WeightedLruCache<>(3, String::length);
+        cache.put("a", "aa");
+        cache.put("b", "bbbb");
+
+        assertNull(cache.get("b"));
+        assertEquals("aa", cache.get("a"));
+    }
+}
@@ -0,0 +1,102 @@
+package xyz.peasfultown.interfaces;
+
+import javafx.collections.ListChangeListener;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import xyz.peasfultown.ApplicationConfig;
+import xyz.peasfultown.MainController;
+import xyz.peasfultown.domain.Book;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static xyz.peasfultown.TestHelpers.cleanupPath;
+
+class PagedBookViewListTest {
+    private static final Path mainPath = Path.of(System.getProperty("java.io.tmpdir"), "jebman-paged");
+    private MainController mc;
+
+    @BeforeAll
+    static void setup() {
+        ApplicationConfig.setMainPath(mainPath);
+    }
+
+    @BeforeEach
+    void importBooks() throws Exception {
+        cleanupPath(mainPath);
+        mc = new MainController();
+        mc.importBooks(Path.of(getClass().getClassLoader().getResource("dummy.pdf").getFile()).getParent());
+        mc.tagBook(2, "classic");
+        mc.tagBook(2, "tbr");
+    }
+
+    @Test
+    void rowsMatchBooksInIdOrder() throws Exception {
+        PagedBookViewList rows = new PagedBookViewList(mc, 3, 1);
+        rows.refresh();
+
+        List<Book> books = new ArrayList<>(mc.getBooks());
+        assertEquals(books.size(), rows.size());
+        // Jump to the last page first, then back to the start
+        for (int i = books.size() - 1; i >= 0; i--) {
+            BookAuthorView row = rows.get(i);
+            assertEquals(books.get(i).getId(), row.getBook().getId());
+            assertEquals(mc.getBookAuthorByBookId(row.getBook().getId()), row.getAuthor());
+            assertEquals(List.copyOf(mc.getTagsOfBook(row.getBook())), row.getTags());
+            assertTrue(rows.getLoadedPageCount() <= 1);
+        }
+        assertThrows(IndexOutOfBoundsException.class, () -> rows.get(books.size()));
+    }
+
+    @Test
+    void setAndRefreshNotifyListeners() throws Exception {
+        PagedBookViewList rows = new PagedBookViewList(mc, 2, 2);
+        rows.refresh();
+        AtomicInteger changes = new AtomicInteger();
+        rows.addListener((ListChangeListener<BookAuthorView>) c -> changes.incrementAndGet());
+
+        BookAuthorView row = rows.get(3);
+        BookAuthorView replacement = new BookAuthorView(row.getBook(), row.getAuthor(), new ArrayList<>());
+        assertSame(row, rows.set(3, replacement));
+        assertSame(replacement, rows.get(3));
+        assertEquals(1, changes.get());
+
+        mc.removeBook(row.getBook());
+        rows.refresh();
+        assertEquals(2, changes.get());
+        assertEquals(3, rows.size());
+    }
+
+    @Test
+    void appendAddsRowsAtTheEnd() throws Exception {
+        PagedBookViewList rows = new PagedBookViewList(mc, 3, 2);
+        rows.refresh();
+        BookAuthorView last = rows.get(3);
+        List<Integer> added = new ArrayList<>();
+        rows.addListener((ListChangeListener<BookAuthorView>) c -> {
+            while (c.next()) {
+                assertTrue(c.wasAdded());
+                added.add(c.getFrom());
+                added.add(c.getTo());
+            }
+        });
+
+        // Another book, its title taken from the file name
+        Path extra = Files.createDirectories(mainPath.resolve("incoming")).resolve("extra.pdf");
+        Files.copy(Path.of(getClass().getClassLoader().getResource("dummy.pdf").getFile()), extra);
+        Files.write(extra, new byte[]{'\n'}, StandardOpenOption.APPEND);
+        mc.importBooks(List.of(extra));
+        rows.append(1);
+
+        assertEquals(List.of(4, 5), added);
+        assertEquals(5, rows.size());
+        assertEquals(last.getBook().getId(), rows.get(3).getBook().getId());
+        assertEquals("extra", rows.get(4).getBook().getTitle());
+    }
+}
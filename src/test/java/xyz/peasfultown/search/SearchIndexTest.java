@@ -0,0 +1,83 @@
+package xyz.peasfultown.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchIndexTest {
+    private SearchIndex index;
+
+    @BeforeEach
+    void setup() {
+        index = new SearchIndex();
+        index.add(1, SearchIndex.Field.TITLE, "The Fellowship of the Ring");
+        index.add(1, SearchIndex.Field.AUTHOR, "J. R. R. Tolkien");
+        index.add(1, SearchIndex.Field.SERIES, "The Lord of the Rings");
+        index.add(2, SearchIndex.Field.TITLE, "Frankenstein");
+        index.add(2, SearchIndex.Field.AUTHOR, "Mary Wollstonecraft Shelley");
+        index.add(2, SearchIndex.Field.TAG, "classic");
+        index.add(3, SearchIndex.Field.TITLE, "Les Misérables");
+        index.add(3, SearchIndex.Field.AUTHOR, "Victor Hugo");
+        index.add(3, SearchIndex.Field.PUBLISHER, "Oxford University Press");
+        index.add(4, SearchIndex.Field.TITLE, "Classical Mechanics");
+    }
+
+    @Test
+    void everyWordHasToMatch() {
+        assertEquals(List.of(1), index.search("ring tolkien", 10));
+        assertEquals(List.of(2), index.search("frankenstein shelley", 10));
+        assertTrue(index.search("frankenstein tolkien", 10).isEmpty());
+    }
+
+    @Test
+    void wordsMatchByPrefixIgnoringCaseAndAccents() {
+        assertEquals(List.of(1), index.search("FELLOW", 10));
+        assertEquals(List.of(3), index.search("miserables", 10));
+        assertEquals(List.of(3), index.search("oxford", 10));
+    }
+
+    @Test
+    void misspelledWordsMatchWhenNothingMatchesAsTyped() {
+        assertEquals(List.of(1), index.search("tolkein", 10));
+        assertEquals(List.of(2), index.search("frankenstien", 10));
+        // Too short to guess at
+        assertTrue(index.search("hgo", 10).isEmpty());
+    }
+
+    @Test
+    void wholeWordsAndTitlesRankFirst() {
+        index.add(5, SearchIndex.Field.TITLE, "A Classic Tale");
+        // Whole title word, then the start of a title word, then a whole tag
+        assertEquals(List.of(5, 4, 2), index.search("classic", 10));
+        assertEquals(List.of(5), index.search("classic", 1));
+    }
+
+    @Test
+    void removedBooksAreNotFound() {
+        index.remove(2);
+        assertTrue(index.search("frankenstein", 10).isEmpty());
+        assertEquals(List.of(4), index.search("classic", 10));
+        assertEquals(3, index.size());
+
+        index.add(2, SearchIndex.Field.TITLE, "Frankenstein");
+        assertEquals(List.of(2), index.search("frankenstein", 10));
+    }
+
+    @Test
+    void queriesWithoutWordsFindNothing() {
+        assertTrue(index.search("", 10).isEmpty());
+        assertTrue(index.search(" - ", 10).isEmpty());
+        assertTrue(index.search(null, 10).isEmpty());
+    }
+
+    @Test
+    void editDistanceCountsSwappedLettersOnceAndGivesUpPastTheLimit() {
+        assertEquals(0, SearchIndex.editDistance("hugo", "hugo", 2));
+        assertEquals(1, SearchIndex.editDistance("tolkein", "tolkien", 2));
+        assertEquals(1, SearchIndex.editDistance("shelly", "shelley", 2));
+        assertEquals(3, SearchIndex.editDistance("abcdef", "uvwxyz", 2));
+    }
+}
@@ -0,0 +1,87 @@
+package xyz.peasfultown.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TagIndexTest {
+    private static final Map<String, Integer> TAGS = Map.of("scifi", 1, "owned", 2, "borrowed", 3, "read", 4,
+            "to read", 5, "and", 6);
+    private TagIndex index;
+
+    @BeforeEach
+    void setup() {
+        index = new TagIndex();
+        for (int id = 1; id <= 8; id++) {
+            index.addBook(id);
+        }
+        tag(1, "scifi", "owned");
+        tag(2, "scifi", "borrowed", "read");
+        tag(3, "scifi", "borrowed");
+        tag(4, "owned", "read");
+        tag(5, "scifi");
+        tag(6, "to read", "and");
+    }
+
+    private void tag(int bookId, String... tags) {
+        for (String tag : tags) {
+            index.addTag(bookId, TAGS.get(tag));
+        }
+    }
+
+    private int[] search(String query) {
+        return index.search(TagQuery.parse(query), name -> TAGS.getOrDefault(name, -1));
+    }
+
+    @Test
+    void operatorsCombineTags() {
+        assertArrayEquals(new int[]{1, 2, 3, 5}, search("scifi"));
+        assertArrayEquals(new int[]{1, 3}, search("scifi AND (owned OR borrowed) AND NOT read"));
+        assertArrayEquals(new int[]{1, 2, 3, 4}, search("owned or borrowed"));
+        assertArrayEquals(new int[]{4, 6, 7, 8}, search("not scifi"));
+        assertArrayEquals(new int[]{6, 7, 8}, search("NOT scifi NOT read"));
+    }
+
+    @Test
+    void andBindsTighterThanOr() {
+        assertArrayEquals(new int[]{1, 2, 4}, search("scifi AND owned OR read"));
+        assertArrayEquals(new int[]{1, 2}, search("scifi AND (owned OR read)"));
+        // Without an operator both tags have to match
+        assertArrayEquals(new int[]{2, 3}, search("scifi borrowed"));
+    }
+
+    @Test
+    void quotedNamesAreTags() {
+        assertArrayEquals(new int[]{6}, search("\"to read\""));
+        assertArrayEquals(new int[]{6}, search("\"and\" AND \"to read\""));
+    }
+
+    @Test
+    void unknownTagsMatchNothing() {
+        assertArrayEquals(new int[0], search("fantasy"));
+        assertArrayEquals(new int[]{1, 2, 3, 5}, search("scifi OR fantasy"));
+        assertEquals(8, search("NOT fantasy").length);
+    }
+
+    @Test
+    void removedBooksAreNotFound() {
+        index.removeBook(3);
+        assertArrayEquals(new int[]{1, 2, 5}, search("scifi"));
+        assertArrayEquals(new int[]{2}, index.getBookIds(TAGS.get("borrowed")));
+        assertFalse(search("NOT scifi").length > 4);
+        assertEquals(7, index.size());
+    }
+
+    @Test
+    void malformedQueriesAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> TagQuery.parse(""));
+        assertThrows(IllegalArgumentException.class, () -> TagQuery.parse("scifi AND"));
+        assertThrows(IllegalArgumentException.class, () -> TagQuery.parse("(scifi OR owned"));
+        assertThrows(IllegalArgumentException.class, () -> TagQuery.parse("scifi)"));
+        assertThrows(IllegalArgumentException.class, () -> TagQuery.parse("OR scifi"));
+        assertThrows(IllegalArgumentException.class, () -> TagQuery.parse("\"to read"));
+    }
+}